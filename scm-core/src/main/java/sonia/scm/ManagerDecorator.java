@@ -122,6 +122,12 @@ public class ManagerDecorator<T extends ModelObject> implements Manager<T> {
     return decorated.getAll(comparator, start, limit);
   }
 
+  @Override
+  public PageResult<T> getPage(Predicate<T> filter, Comparator<T> comparator, int pageNumber, int pageSize)
+  {
+    return decorated.getPage(filter, comparator, pageNumber, pageSize);
+  }
+
   @Override
   public Long getLastModified()
   {
@@ -36,6 +36,10 @@ package sonia.scm.cache;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.TimeUnit;
+
 /**
  * Statistics about the performance of a {@link Cache}.
  * Instances of this class are immutable.
@@ -55,10 +59,31 @@ public final class CacheStatistics
    * @param missCount miss count
    */
   public CacheStatistics(String name, long hitCount, long missCount)
+  {
+    this(name, hitCount, missCount, 0L, 0L);
+  }
+
+  /**
+   * Constructs a new performance statistic for a {@link Cache}, which includes
+   * the costs of the copies created by the cache.
+   *
+   *
+   * @param name name of the cache
+   * @param hitCount hit count
+   * @param missCount miss count
+   * @param copyCount number of copied values
+   * @param copyTime time spent to copy values in nanoseconds
+   *
+   * @since 2.0.0
+   */
+  public CacheStatistics(String name, long hitCount, long missCount,
+    long copyCount, long copyTime)
   {
     this.name = name;
     this.hitCount = hitCount;
     this.missCount = missCount;
+    this.copyCount = copyCount;
+    this.copyTime = copyTime;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -83,7 +108,9 @@ public final class CacheStatistics
 
     return Objects.equal(name, other.name)
       && Objects.equal(hitCount, other.hitCount)
-      && Objects.equal(missCount, other.missCount);
+      && Objects.equal(missCount, other.missCount)
+      && Objects.equal(copyCount, other.copyCount)
+      && Objects.equal(copyTime, other.copyTime);
   }
 
   /**
@@ -92,7 +119,7 @@ public final class CacheStatistics
   @Override
   public int hashCode()
   {
-    return Objects.hashCode(name, hitCount, missCount);
+    return Objects.hashCode(name, hitCount, missCount, copyCount, copyTime);
   }
 
   /**
@@ -106,12 +133,59 @@ public final class CacheStatistics
                   .add("name", name)
                   .add("hitCount", hitCount)
                   .add("missCount", missCount)
+                  .add("copyCount", copyCount)
+                  .add("copyTime", copyTime)
                   .toString();
     //J+
   }
 
   //~--- get methods ----------------------------------------------------------
 
+  /**
+   * Returns the average time spent to copy a single value.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return average time of a copy
+   *
+   * @since 2.0.0
+   */
+  public double getAverageCopyTime(TimeUnit unit)
+  {
+    return (copyCount == 0)
+      ? 0.0
+      : (double) copyTime / unit.toNanos(1L) / copyCount;
+  }
+
+  /**
+   * Returns number of values which were copied on read or write.
+   *
+   *
+   * @return number of copies
+   *
+   * @since 2.0.0
+   */
+  public long getCopyCount()
+  {
+    return copyCount;
+  }
+
+  /**
+   * Returns the total time spent to copy values.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return total time of all copies
+   *
+   * @since 2.0.0
+   */
+  public long getCopyTime(TimeUnit unit)
+  {
+    return unit.convert(copyTime, TimeUnit.NANOSECONDS);
+  }
+
   /**
    * Returns number of times requested elements were found in the cache.
    *
@@ -199,6 +273,12 @@ public final class CacheStatistics
 
   //~--- fields ---------------------------------------------------------------
 
+  /** copy count */
+  private final long copyCount;
+
+  /** copy time in nanoseconds */
+  private final long copyTime;
+
   /** hit count */
   private final long hitCount;
 
@@ -0,0 +1,33 @@
+package sonia.scm.cache;
+
+import sonia.scm.plugin.ExtensionPoint;
+
+/**
+ * Creates copies of cache values of a specific type. Caches which are configured to copy their values on read or
+ * write use a registered copier instead of the generic, serialization based deep copy. A copier should create a
+ * structural copy, which is deep enough that modifications of the copy do not affect the original value.
+ *
+ * @param <T> type of the copied values
+ *
+ * @since 2.0.0
+ */
+@ExtensionPoint
+public interface CacheValueCopier<T> {
+
+  /**
+   * Returns the type of values, which can be copied. The copier is used for the type and all of its subtypes, as long
+   * as no other copier is registered for a more specific type.
+   *
+   * @return type of copied values
+   */
+  Class<T> getType();
+
+  /**
+   * Creates a copy of the given value.
+   *
+   * @param value value to copy, never {@code null}
+   *
+   * @return copy of the value
+   */
+  T copy(T value);
+}
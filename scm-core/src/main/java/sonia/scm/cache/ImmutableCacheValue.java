@@ -0,0 +1,11 @@
+package sonia.scm.cache;
+
+/**
+ * Marker for values which can be shared by a {@link Cache} without creating copies. A cache never copies values
+ * implementing this interface, regardless of its configured copy strategy. Implementations must therefore be deeply
+ * immutable, which means neither the value itself nor any object reachable from it may change after construction.
+ *
+ * @since 2.0.0
+ */
+public interface ImmutableCacheValue {
+}
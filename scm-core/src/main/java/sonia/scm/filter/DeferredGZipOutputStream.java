@@ -0,0 +1,156 @@
+package sonia.scm.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stream which compresses its content chunk by chunk with gzip. Only the first bytes up to the threshold are
+ * buffered, so that small responses can be written uncompressed and the decision about the compression is made before
+ * the first byte reaches the target stream. The memory used by the stream is therefore fixed and does not depend on the
+ * size of the response.
+ *
+ * @since 2.0.0
+ */
+final class DeferredGZipOutputStream extends OutputStream {
+
+  private static final int DEFLATER_BUFFER_SIZE = 8192;
+
+  private final OutputStream target;
+  private final Decision decision;
+  private final byte[] buffer;
+
+  private int count;
+  private OutputStream delegate;
+  private GZIPOutputStream gzip;
+  private boolean finished;
+
+  DeferredGZipOutputStream(OutputStream target, int threshold, Decision decision) {
+    this.target = target;
+    this.decision = decision;
+    this.buffer = new byte[Math.max(threshold, 0)];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureNotFinished();
+    if (delegate == null) {
+      if (count < buffer.length) {
+        buffer[count++] = (byte) b;
+        return;
+      }
+      startStreaming();
+    }
+    delegate.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureNotFinished();
+    if (delegate == null) {
+      if (len <= buffer.length - count) {
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+        return;
+      }
+      startStreaming();
+    }
+    delegate.write(b, off, len);
+  }
+
+  /**
+   * Flushing forces the decision about the compression, because the buffered bytes have to be written.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureNotFinished();
+    if (delegate == null) {
+      if (count == 0) {
+        return;
+      }
+      startStreaming();
+    }
+    delegate.flush();
+  }
+
+  /**
+   * Writes the remaining content without closing the target stream.
+   *
+   * @throws IOException
+   */
+  void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    if (delegate == null) {
+      decision.uncompressed(count);
+      target.write(buffer, 0, count);
+    } else if (gzip != null) {
+      gzip.finish();
+    }
+    target.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finish();
+    } finally {
+      target.close();
+    }
+  }
+
+  /**
+   * Returns {@code true} if the content is written with gzip compression.
+   *
+   * @return {@code true} if the content is compressed
+   */
+  boolean isCompressed() {
+    return gzip != null;
+  }
+
+  private void startStreaming() throws IOException {
+    if (decision.compress()) {
+      gzip = new GZIPOutputStream(target, DEFLATER_BUFFER_SIZE, true);
+      delegate = gzip;
+    } else {
+      delegate = target;
+    }
+    if (count > 0) {
+      delegate.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+  private void ensureNotFinished() throws IOException {
+    if (finished) {
+      throw new IOException("stream is already finished");
+    }
+  }
+
+  /**
+   * Decides about the compression of the content and prepares the headers of the response. The headers are not yet
+   * committed, when one of the methods is called.
+   */
+  interface Decision {
+
+    /**
+     * Is called as soon as the content exceeds the threshold or is flushed.
+     *
+     * @return {@code true} if the content should be compressed
+     *
+     * @throws IOException
+     */
+    boolean compress() throws IOException;
+
+    /**
+     * Is called if the complete content fits into the threshold and is written uncompressed.
+     *
+     * @param length length of the content
+     *
+     * @throws IOException
+     */
+    void uncompressed(int length) throws IOException;
+  }
+}
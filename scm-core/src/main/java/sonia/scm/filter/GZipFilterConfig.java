@@ -33,6 +33,15 @@
 
 package sonia.scm.filter;
 
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.google.common.collect.ImmutableSet;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Locale;
+import java.util.Set;
+
 /**
  * Configuration for the {@link GZipFilter}.
  *
@@ -42,32 +51,171 @@ package sonia.scm.filter;
 public class GZipFilterConfig
 {
 
+  /**
+   * Default threshold in bytes, smaller responses are not compressed.
+   *
+   * @since 2.0.0
+   */
+  public static final int DEFAULT_THRESHOLD = 1024;
+
+  /**
+   * Content types which are compressed by default. A type may contain a
+   * single wildcard, e.g. text/* or application/*+json.
+   *
+   * @since 2.0.0
+   */
+  public static final Set<String> DEFAULT_COMPRESSIBLE_CONTENT_TYPES =
+    ImmutableSet.of("text/*", "application/json", "application/*+json",
+      "application/xml", "application/*+xml", "application/javascript",
+      "image/svg+xml");
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the content types which are compressed.
+   *
+   *
+   * @return compressible content types
+   * @since 2.0.0
+   */
+  public Set<String> getCompressibleContentTypes()
+  {
+    return compressibleContentTypes;
+  }
+
+  /**
+   * Returns the size in bytes, which a response must exceed before it is
+   * compressed.
+   *
+   *
+   * @return threshold in bytes
+   * @since 2.0.0
+   */
+  public int getThreshold()
+  {
+    return threshold;
+  }
 
   /**
    * Returns true if the response should be buffered.
    *
    *
    * @return true if the response should be buffered
+   * @deprecated responses are always streamed, only the first bytes up to the
+   * {@link #getThreshold()} are buffered
    */
+  @Deprecated
   public boolean isBufferResponse()
   {
     return bufferResponse;
   }
 
+  /**
+   * Returns true if a response with the given content type should be
+   * compressed. Responses without content type are compressed, parameters of
+   * the content type are ignored.
+   *
+   *
+   * @param contentType content type of the response or {@code null}
+   *
+   * @return true if the response should be compressed
+   * @since 2.0.0
+   */
+  public boolean isCompressible(String contentType)
+  {
+    if ((contentType == null) || compressibleContentTypes.isEmpty())
+    {
+      return true;
+    }
+
+    String type = contentType;
+    int separator = type.indexOf(';');
+
+    if (separator >= 0)
+    {
+      type = type.substring(0, separator);
+    }
+
+    type = type.trim().toLowerCase(Locale.ENGLISH);
+
+    for (String pattern : compressibleContentTypes)
+    {
+      if (matches(pattern, type))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   //~--- set methods ----------------------------------------------------------
 
   /**
    * Enables or disables response buffering. Default buffering is enabled.
    *
    * @param bufferResponse true to enabled response buffering.
+   * @deprecated responses are always streamed, only the first bytes up to the
+   * {@link #getThreshold()} are buffered
    */
+  @Deprecated
   public void setBufferResponse(boolean bufferResponse)
   {
     this.bufferResponse = bufferResponse;
   }
 
+  /**
+   * Sets the content types which are compressed. An empty set compresses
+   * responses of every content type.
+   *
+   * @param compressibleContentTypes compressible content types
+   * @since 2.0.0
+   */
+  public void setCompressibleContentTypes(Set<String> compressibleContentTypes)
+  {
+    this.compressibleContentTypes = ImmutableSet.copyOf(compressibleContentTypes);
+  }
+
+  /**
+   * Sets the size in bytes, which a response must exceed before it is
+   * compressed. The threshold is also the size of the buffer, which is used
+   * for every response.
+   *
+   * @param threshold threshold in bytes
+   * @since 2.0.0
+   */
+  public void setThreshold(int threshold)
+  {
+    this.threshold = threshold;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  private static boolean matches(String pattern, String type)
+  {
+    int wildcard = pattern.indexOf('*');
+
+    if (wildcard < 0)
+    {
+      return pattern.equals(type);
+    }
+
+    String prefix = pattern.substring(0, wildcard);
+    String suffix = pattern.substring(wildcard + 1);
+
+    return (type.length() >= prefix.length() + suffix.length())
+      && type.startsWith(prefix) && type.endsWith(suffix);
+  }
+
   //~--- fields ---------------------------------------------------------------
 
   /** Field description */
   private boolean bufferResponse = true;
+
+  /** compressible content types */
+  private Set<String> compressibleContentTypes =
+    DEFAULT_COMPRESSIBLE_CONTENT_TYPES;
+
+  /** threshold in bytes */
+  private int threshold = DEFAULT_THRESHOLD;
 }
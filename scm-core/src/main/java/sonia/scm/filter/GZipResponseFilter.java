@@ -8,19 +8,26 @@ import javax.inject.Provider;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.WriterInterceptor;
 import javax.ws.rs.ext.WriterInterceptorContext;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Locale;
-import java.util.zip.GZIPOutputStream;
 
+/**
+ * Compresses rest responses with gzip. The response is compressed chunk by chunk, responses which are smaller than
+ * the threshold of the {@link GZipFilterConfig} or which have a content type that is not compressible are written
+ * uncompressed.
+ */
 @javax.ws.rs.ext.Provider
 public class GZipResponseFilter implements WriterInterceptor {
 
   private static final Logger LOG = LoggerFactory.getLogger(GZipResponseFilter.class);
 
   private final Provider<HttpServletRequest> requestProvider;
+  private final GZipFilterConfig config = new GZipFilterConfig();
 
   @Inject
   public GZipResponseFilter(Provider<HttpServletRequest> requestProvider) {
@@ -29,7 +36,7 @@ public class GZipResponseFilter implements WriterInterceptor {
 
   @Override
   public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
-    if (isGZipSupported()) {
+    if (isGZipSupported() && isCompressible(context.getMediaType())) {
       LOG.trace("compress output with gzip");
       encodeWithGZip(context);
     } else {
@@ -38,11 +45,10 @@ public class GZipResponseFilter implements WriterInterceptor {
   }
 
   private void encodeWithGZip(WriterInterceptorContext context) throws IOException {
-    context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
-    context.getHeaders().add(HttpHeaders.CONTENT_ENCODING, "gzip");
-
     OutputStream outputStream = context.getOutputStream();
-    GZIPOutputStream compressedOutputStream = new GZIPOutputStream(outputStream);
+    DeferredGZipOutputStream compressedOutputStream = new DeferredGZipOutputStream(
+      outputStream, config.getThreshold(), new HeaderDecision(context.getHeaders())
+    );
     context.setOutputStream(compressedOutputStream);
     try {
       context.proceed();
@@ -52,8 +58,34 @@ public class GZipResponseFilter implements WriterInterceptor {
     }
   }
 
+  private boolean isCompressible(MediaType mediaType) {
+    return mediaType == null || config.isCompressible(mediaType.getType() + "/" + mediaType.getSubtype());
+  }
+
   private boolean isGZipSupported() {
     Object encoding = requestProvider.get().getHeader(HttpHeaders.ACCEPT_ENCODING);
     return encoding != null && encoding.toString().toLowerCase(Locale.ENGLISH).contains("gzip");
   }
+
+  private static class HeaderDecision implements DeferredGZipOutputStream.Decision {
+
+    private final MultivaluedMap<String, Object> headers;
+
+    private HeaderDecision(MultivaluedMap<String, Object> headers) {
+      this.headers = headers;
+    }
+
+    @Override
+    public boolean compress() {
+      headers.remove(HttpHeaders.CONTENT_LENGTH);
+      headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+      headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      return true;
+    }
+
+    @Override
+    public void uncompressed(int length) {
+      LOG.trace("skip gzip compression of response with {} bytes", length);
+    }
+  }
 }
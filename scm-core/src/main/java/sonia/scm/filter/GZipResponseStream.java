@@ -38,20 +38,21 @@ package sonia.scm.filter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import sonia.scm.util.IOUtil;
-
 //~--- JDK imports ------------------------------------------------------------
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 /**
- * Response stream for gzip encoding.
+ * Response stream for gzip encoding. The response is compressed chunk by
+ * chunk, only the first bytes up to the threshold of the
+ * {@link GZipFilterConfig} are buffered. Responses which are smaller than the
+ * threshold or which have a content type that is not compressible are written
+ * uncompressed.
  *
  * @author Sebastian Sdorra
  * @since 1.15
@@ -97,28 +98,12 @@ public class GZipResponseStream extends ServletOutputStream
     super();
     closed = false;
     this.response = response;
-    response.addHeader("Content-Encoding", "gzip");
-
-    if ((config == null) || config.isBufferResponse())
-    {
-      if (logger.isTraceEnabled())
-      {
-        logger.trace("use buffered gzip stream");
-      }
-
-      this.output = response.getOutputStream();
-      baos = new ByteArrayOutputStream();
-      gzipstream = new GZIPOutputStream(baos);
-    }
-    else
-    {
-      if (logger.isTraceEnabled())
-      {
-        logger.trace("use unbuffered gzip stream");
-      }
-
-      gzipstream = new GZIPOutputStream(response.getOutputStream());
-    }
+    this.config = (config != null)
+      ? config
+      : new GZipFilterConfig();
+    this.output = response.getOutputStream();
+    this.stream = new DeferredGZipOutputStream(output,
+      this.config.getThreshold(), new ResponseDecision());
   }
 
   //~--- methods --------------------------------------------------------------
@@ -137,27 +122,8 @@ public class GZipResponseStream extends ServletOutputStream
       throw new IOException("This output stream has already been closed");
     }
 
-    gzipstream.finish();
-    gzipstream.close();
-
-    if (baos != null)
-    {
-      byte[] bytes = baos.toByteArray();
-
-      response.addIntHeader("Content-Length", bytes.length);
-
-      try
-      {
-        output.write(bytes);
-        output.flush();
-      }
-      finally
-      {
-        IOUtil.close(output);
-      }
-    }
-
     closed = true;
+    stream.close();
   }
 
   /**
@@ -174,7 +140,7 @@ public class GZipResponseStream extends ServletOutputStream
       throw new IOException("Cannot flush a closed output stream");
     }
 
-    gzipstream.flush();
+    stream.flush();
   }
 
   /**
@@ -203,7 +169,7 @@ public class GZipResponseStream extends ServletOutputStream
       throw new IOException("Cannot write to a closed output stream");
     }
 
-    gzipstream.write((byte) b);
+    stream.write(b);
   }
 
   /**
@@ -238,7 +204,7 @@ public class GZipResponseStream extends ServletOutputStream
       throw new IOException("Cannot write to a closed output stream");
     }
 
-    gzipstream.write(b, off, len);
+    stream.write(b, off, len);
   }
 
   //~--- get methods ----------------------------------------------------------
@@ -254,12 +220,72 @@ public class GZipResponseStream extends ServletOutputStream
     return closed;
   }
 
+  /**
+   * Returns true if the response is compressed. The decision is made as soon
+   * as the response exceeds the threshold or is flushed.
+   *
+   *
+   * @return true if the response is compressed
+   * @since 2.0.0
+   */
+  public boolean isCompressed()
+  {
+    return stream.isCompressed();
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Sets the headers of the response, before the first byte is written.
+   */
+  private class ResponseDecision implements DeferredGZipOutputStream.Decision
+  {
+
+    @Override
+    public boolean compress()
+    {
+      String contentType = response.getContentType();
+
+      if (!config.isCompressible(contentType))
+      {
+        logger.trace("skip gzip encoding for content type {}", contentType);
+
+        return false;
+      }
+
+      logger.trace("compress response with gzip");
+      response.addHeader("Content-Encoding", "gzip");
+      response.addHeader("Vary", "Accept-Encoding");
+
+      return true;
+    }
+
+    @Override
+    public void uncompressed(int length)
+    {
+      logger.trace("skip gzip encoding for response of {} bytes", length);
+      response.setContentLength(length);
+    }
+  }
+
   //~--- fields ---------------------------------------------------------------
 
-  /** Field description */
+  /**
+   * Buffer of the compressed response.
+   *
+   * @deprecated the response is no longer buffered, the field is always
+   *             {@code null}
+   */
+  @Deprecated
   protected ByteArrayOutputStream baos = null;
 
-  /** Field description */
+  /**
+   * Compressing stream.
+   *
+   * @deprecated the response is compressed by an internal stream, the field
+   *             is always {@code null}
+   */
+  @Deprecated
   protected GZIPOutputStream gzipstream = null;
 
   /** Field description */
@@ -270,4 +296,10 @@ public class GZipResponseStream extends ServletOutputStream
 
   /** Field description */
   protected HttpServletResponse response = null;
+
+  /** gzip filter config */
+  private final GZipFilterConfig config;
+
+  /** compressing stream */
+  private final DeferredGZipOutputStream stream;
 }
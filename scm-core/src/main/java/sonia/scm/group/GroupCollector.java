@@ -1,5 +1,8 @@
 package sonia.scm.group;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 public interface GroupCollector {
@@ -7,4 +10,22 @@ public interface GroupCollector {
   String AUTHENTICATED = "_authenticated";
 
   Set<String> collect(String principal);
+
+  /**
+   * Collects the groups of many principals at once, e.g. for the display of permissions. Implementations should
+   * override the default, if they are able to resolve the groups more efficiently than one principal after another.
+   *
+   * @param principals names of the principals
+   *
+   * @return groups of every principal, in the order of the given principals
+   *
+   * @since 2.0.0
+   */
+  default Map<String, Set<String>> collectAll(Collection<String> principals) {
+    Map<String, Set<String>> groups = new LinkedHashMap<>();
+    for (String principal : principals) {
+      groups.put(principal, collect(principal));
+    }
+    return groups;
+  }
 }
@@ -261,6 +261,9 @@ public final class SmpArchive
         if (PluginConstants.PATH_DESCRIPTOR.equals(getPath(entry)))
         {
           p = Plugins.parsePluginDescriptor(new InputStreamByteSource(zis));
+
+          // the remaining entries are not required
+          break;
         }
 
         entry = zis.getNextEntry();
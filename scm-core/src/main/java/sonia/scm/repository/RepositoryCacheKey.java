@@ -48,4 +48,19 @@ public interface RepositoryCacheKey
    * @return
    */
   public String getRepositoryId();
+
+  /**
+   * Returns {@code true} if the cached value is keyed by the id of a
+   * changeset and does not change, if new changesets are pushed to the
+   * repository. Such values are kept on push. Changesets itself are not
+   * immutable, because their tags are changed by a push.
+   *
+   * @return {@code true} if the value is immutable
+   *
+   * @since 2.0.0
+   */
+  default boolean isImmutable()
+  {
+    return false;
+  }
 }
@@ -98,14 +98,17 @@ public final class BlameCommandBuilder
    * @param blameCommand implementation of the {@link BlameCommand}
    * @param repository repository to query
    * @param preProcessorUtil
+   * @param revisionResolver resolver for the ids of revisions
    */
   BlameCommandBuilder(CacheManager cacheManager, BlameCommand blameCommand,
-                      Repository repository, PreProcessorUtil preProcessorUtil)
+                      Repository repository, PreProcessorUtil preProcessorUtil,
+                      RevisionResolver revisionResolver)
   {
     this.cache = cacheManager.getCache(CACHE_NAME);
     this.blameCommand = blameCommand;
     this.repository = repository;
     this.preProcessorUtil = preProcessorUtil;
+    this.revisionResolver = revisionResolver;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -159,7 +162,9 @@ public final class BlameCommandBuilder
     }
     else
     {
-      CacheKey key = new CacheKey(repository, requestClone);
+      // blame of a resolved revision never changes and survives a push
+      String revisionId = revisionResolver.resolve(requestClone.getRevision());
+      CacheKey key = new CacheKey(repository, requestClone, revisionId);
 
       result = cache.get(key);
 
@@ -170,7 +175,17 @@ public final class BlameCommandBuilder
           logger.debug("create blame for {}", requestClone);
         }
 
-        result = blameCommand.getBlameResult(requestClone);
+        // the command has to read the resolved revision, because the branch
+        // could have been moved by a push since it was resolved
+        BlameCommandRequest resolvedRequest = requestClone;
+
+        if (revisionId != null)
+        {
+          resolvedRequest = requestClone.clone();
+          resolvedRequest.setRevision(revisionId);
+        }
+
+        result = blameCommand.getBlameResult(resolvedRequest);
 
         if (result != null)
         {
@@ -264,11 +279,14 @@ public final class BlameCommandBuilder
      *
      * @param repository
      * @param request
+     * @param revisionId resolved id of the revision or {@code null}
      */
-    public CacheKey(Repository repository, BlameCommandRequest request)
+    public CacheKey(Repository repository, BlameCommandRequest request,
+                    String revisionId)
     {
       this.repositoryId = repository.getId();
       this.request = request;
+      this.revisionId = revisionId;
     }
 
     //~--- methods ------------------------------------------------------------
@@ -297,7 +315,8 @@ public final class BlameCommandBuilder
       final CacheKey other = (CacheKey) obj;
 
       return Objects.equal(repositoryId, other.repositoryId)
-             && Objects.equal(request, other.request);
+             && Objects.equal(request, other.request)
+             && Objects.equal(revisionId, other.revisionId);
     }
 
     /**
@@ -309,7 +328,7 @@ public final class BlameCommandBuilder
     @Override
     public int hashCode()
     {
-      return Objects.hashCode(repositoryId, request);
+      return Objects.hashCode(repositoryId, request, revisionId);
     }
 
     //~--- get methods --------------------------------------------------------
@@ -326,6 +345,12 @@ public final class BlameCommandBuilder
       return repositoryId;
     }
 
+    @Override
+    public boolean isImmutable()
+    {
+      return revisionId != null;
+    }
+
     //~--- fields -------------------------------------------------------------
 
     /** repository id */
@@ -333,6 +358,9 @@ public final class BlameCommandBuilder
 
     /** request object */
     private final BlameCommandRequest request;
+
+    /** resolved id of the requested revision */
+    private final String revisionId;
   }
 
 
@@ -356,6 +384,9 @@ public final class BlameCommandBuilder
   /** the repository */
   private final Repository repository;
 
+  /** resolver for the ids of revisions */
+  private final RevisionResolver revisionResolver;
+
   /** request for the blame command implementation */
   private final BlameCommandRequest request = new BlameCommandRequest();
 }
@@ -97,14 +97,17 @@ public final class BrowseCommandBuilder
    * @param browseCommand
    * @param repository repository to query
    * @param preProcessorUtil
+   * @param revisionResolver resolver for the ids of revisions
    */
   BrowseCommandBuilder(CacheManager cacheManager, BrowseCommand browseCommand,
-    Repository repository, PreProcessorUtil preProcessorUtil)
+    Repository repository, PreProcessorUtil preProcessorUtil,
+    RevisionResolver revisionResolver)
   {
     this.cache = cacheManager.getCache(CACHE_NAME);
     this.browseCommand = browseCommand;
     this.repository = repository;
     this.preProcessorUtil = preProcessorUtil;
+    this.revisionResolver = revisionResolver;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -149,8 +152,11 @@ public final class BrowseCommandBuilder
     }
     else
     {
-      CacheKey key = new CacheKey(repository, request);
+      // results of a resolved revision never change and survive a push
+      String revisionId = revisionResolver.resolve(request.getRevision());
+      CacheKey key = new CacheKey(repository, request.clone(), revisionId);
 
+      cacheKey = key;
       result = cache.get(key);
 
       if (result == null)
@@ -160,7 +166,7 @@ public final class BrowseCommandBuilder
           logger.debug("create browser result for {}", request);
         }
 
-        result = browseCommand.getBrowserResult(request);
+        result = getBrowserResult(revisionId);
 
         if (result != null)
         {
@@ -181,6 +187,32 @@ public final class BrowseCommandBuilder
     return result;
   }
 
+  /**
+   * The cached result must belong to the resolved revision, even if the branch was moved by a push after the revision
+   * was resolved. So the command has to read the resolved revision instead of the requested one.
+   */
+  private BrowserResult getBrowserResult(String revisionId) throws IOException
+  {
+    if (revisionId == null)
+    {
+      return browseCommand.getBrowserResult(request);
+    }
+
+    BrowseCommandRequest resolvedRequest = request.clone();
+
+    resolvedRequest.setRevision(revisionId);
+
+    BrowserResult result = browseCommand.getBrowserResult(resolvedRequest);
+
+    if (result != null)
+    {
+      result = new BrowserResult(result.getRevision(), request.getRevision(),
+        result.getFile());
+    }
+
+    return result;
+  }
+
   //~--- set methods ----------------------------------------------------------
 
   /**
@@ -301,9 +333,8 @@ public final class BrowseCommandBuilder
   }
 
   private void updateCache(BrowserResult updatedResult) {
-    if (!disableCache) {
-      CacheKey key = new CacheKey(repository, request);
-      cache.put(key, updatedResult);
+    if (!disableCache && cacheKey != null) {
+      cache.put(cacheKey, updatedResult);
     }
   }
 
@@ -330,11 +361,14 @@ public final class BrowseCommandBuilder
      *
      * @param repository
      * @param request
+     * @param revisionId resolved id of the revision or {@code null}
      */
-    public CacheKey(Repository repository, BrowseCommandRequest request)
+    public CacheKey(Repository repository, BrowseCommandRequest request,
+      String revisionId)
     {
       this.repositoryId = repository.getId();
       this.request = request;
+      this.revisionId = revisionId;
     }
 
     //~--- methods ------------------------------------------------------------
@@ -363,7 +397,8 @@ public final class BrowseCommandBuilder
       final CacheKey other = (CacheKey) obj;
 
       return Objects.equal(repositoryId, other.repositoryId)
-        && Objects.equal(request, other.request);
+        && Objects.equal(request, other.request)
+        && Objects.equal(revisionId, other.revisionId);
     }
 
     /**
@@ -375,7 +410,7 @@ public final class BrowseCommandBuilder
     @Override
     public int hashCode()
     {
-      return Objects.hashCode(repositoryId, request);
+      return Objects.hashCode(repositoryId, request, revisionId);
     }
 
     //~--- get methods --------------------------------------------------------
@@ -392,6 +427,12 @@ public final class BrowseCommandBuilder
       return repositoryId;
     }
 
+    @Override
+    public boolean isImmutable()
+    {
+      return revisionId != null;
+    }
+
     //~--- fields -------------------------------------------------------------
 
     /** repository id */
@@ -399,6 +440,9 @@ public final class BrowseCommandBuilder
 
     /** request object */
     private final BrowseCommandRequest request;
+
+    /** resolved id of the requested revision */
+    private final String revisionId;
   }
 
 
@@ -422,6 +466,12 @@ public final class BrowseCommandBuilder
   /** the repsitory */
   private final Repository repository;
 
+  /** resolver for the ids of revisions */
+  private final RevisionResolver revisionResolver;
+
+  /** key of the last cached result, used to update lazily computed results */
+  private CacheKey cacheKey;
+
   /** request for the command */
   private final BrowseCommandRequest request = new BrowseCommandRequest(this::updateCache);
 }
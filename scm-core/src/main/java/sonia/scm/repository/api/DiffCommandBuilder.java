@@ -113,7 +113,8 @@ public final class DiffCommandBuilder extends AbstractDiffCommandBuilder<DiffCom
   //~--- get methods ----------------------------------------------------------
 
   /**
-   * Returns the content of the difference as string.
+   * Returns the content of the difference as string. The whole difference is
+   * held in memory, use {@link #retrieveContent()} to stream large diffs.
    *
    * @return content of the difference
    *
@@ -121,7 +122,7 @@ public final class DiffCommandBuilder extends AbstractDiffCommandBuilder<DiffCom
    */
   public String getContent() throws IOException {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-      getDiffResult();
+      getDiffResult().accept(baos);
       return baos.toString();
     }
   }
@@ -9,4 +9,15 @@ public interface DiffFile extends Iterable<Hunk> {
   String getOldPath();
 
   String getNewPath();
+
+  /**
+   * Returns {@code true} if the hunks of the file are incomplete, because the diff exceeded one of the limits of the
+   * request. The value is only reliable after the hunks were iterated.
+   *
+   * @return {@code true} if the diff of the file was truncated
+   * @since 2.0.0
+   */
+  default boolean isTruncated() {
+    return false;
+  }
 }
@@ -9,15 +9,82 @@ import sonia.scm.repository.spi.DiffResultCommand;
 import java.io.IOException;
 import java.util.Set;
 
+/**
+ * Builder for parsed diffs. The diff is parsed file by file, the hunks of a file are truncated if the file exceeds one
+ * of the limits. The default limits can be configured with the system properties
+ * {@code sonia.scm.diff.maxLinesPerFile} (default 10000), {@code sonia.scm.diff.maxBytesPerFile} (default 1 MiB),
+ * {@code sonia.scm.diff.maxTotalLines} (default 100000) and {@code sonia.scm.diff.maxTotalBytes} (default 16 MiB).
+ */
 public class DiffResultCommandBuilder extends AbstractDiffCommandBuilder<DiffResultCommandBuilder> {
 
   private static final Logger LOG = LoggerFactory.getLogger(DiffResultCommandBuilder.class);
 
+  private static final int DEFAULT_MAX_LINES_PER_FILE = 10_000;
+  private static final long DEFAULT_MAX_BYTES_PER_FILE = 1024L * 1024L;
+  private static final int DEFAULT_MAX_TOTAL_LINES = 100_000;
+  private static final long DEFAULT_MAX_TOTAL_BYTES = 16L * 1024L * 1024L;
+
   private final DiffResultCommand diffResultCommand;
 
   DiffResultCommandBuilder(DiffResultCommand diffResultCommand, Set<Feature> supportedFeatures) {
     super(supportedFeatures);
     this.diffResultCommand = diffResultCommand;
+    request.setMaxLinesPerFile(Integer.getInteger("sonia.scm.diff.maxLinesPerFile", DEFAULT_MAX_LINES_PER_FILE));
+    request.setMaxBytesPerFile(Long.getLong("sonia.scm.diff.maxBytesPerFile", DEFAULT_MAX_BYTES_PER_FILE));
+    request.setMaxTotalLines(Integer.getInteger("sonia.scm.diff.maxTotalLines", DEFAULT_MAX_TOTAL_LINES));
+    request.setMaxTotalBytes(Long.getLong("sonia.scm.diff.maxTotalBytes", DEFAULT_MAX_TOTAL_BYTES));
+  }
+
+  /**
+   * Sets the maximum number of diff lines of a single file. A value of 0 disables the limit.
+   *
+   * @param maxLinesPerFile maximum number of lines per file
+   *
+   * @return {@code this}
+   * @since 2.0.0
+   */
+  public DiffResultCommandBuilder setMaxLinesPerFile(int maxLinesPerFile) {
+    request.setMaxLinesPerFile(maxLinesPerFile);
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of bytes of the diff of a single file. A value of 0 disables the limit.
+   *
+   * @param maxBytesPerFile maximum number of bytes per file
+   *
+   * @return {@code this}
+   * @since 2.0.0
+   */
+  public DiffResultCommandBuilder setMaxBytesPerFile(long maxBytesPerFile) {
+    request.setMaxBytesPerFile(maxBytesPerFile);
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of diff lines of all files. A value of 0 disables the limit.
+   *
+   * @param maxTotalLines maximum number of lines
+   *
+   * @return {@code this}
+   * @since 2.0.0
+   */
+  public DiffResultCommandBuilder setMaxTotalLines(int maxTotalLines) {
+    request.setMaxTotalLines(maxTotalLines);
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of bytes of the diff of all files. A value of 0 disables the limit.
+   *
+   * @param maxTotalBytes maximum number of bytes
+   *
+   * @return {@code this}
+   * @since 2.0.0
+   */
+  public DiffResultCommandBuilder setMaxTotalBytes(long maxTotalBytes) {
+    request.setMaxTotalBytes(maxTotalBytes);
+    return this;
   }
 
   /**
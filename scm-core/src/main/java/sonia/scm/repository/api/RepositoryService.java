@@ -94,6 +94,7 @@ public final class RepositoryService implements Closeable {
   @SuppressWarnings("rawtypes")
   private final Set<ScmProtocolProvider> protocolProviders;
   private final WorkdirProvider workdirProvider;
+  private RevisionResolver revisionResolver;
 
   /**
    * Constructs a new {@link RepositoryService}. This constructor should only
@@ -154,7 +155,7 @@ public final class RepositoryService implements Closeable {
       repository.getNamespaceAndName());
 
     return new BlameCommandBuilder(cacheManager, provider.getBlameCommand(),
-      repository, preProcessorUtil);
+      repository, preProcessorUtil, revisionResolver());
   }
 
   /**
@@ -199,7 +200,7 @@ public final class RepositoryService implements Closeable {
       repository.getNamespaceAndName());
 
     return new BrowseCommandBuilder(cacheManager, provider.getBrowseCommand(),
-      repository, preProcessorUtil);
+      repository, preProcessorUtil, revisionResolver());
   }
 
   /**
@@ -460,6 +461,13 @@ public final class RepositoryService implements Closeable {
     return protocolProvider.get(repository);
   }
 
+  private RevisionResolver revisionResolver() {
+    if (revisionResolver == null) {
+      revisionResolver = new RevisionResolver(cacheManager, provider, repository);
+    }
+    return revisionResolver;
+  }
+
   @SuppressWarnings("unchecked")
   public <T extends ScmProtocol> T getProtocol(Class<T> clazz) {
     return this.getSupportedProtocols()
@@ -38,6 +38,7 @@ package sonia.scm.repository.api;
 import com.github.legman.ReferenceType;
 import com.github.legman.Subscribe;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
@@ -55,6 +56,7 @@ import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.PostReceiveRepositoryHookEvent;
 import sonia.scm.repository.PreProcessorUtil;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryCacheKey;
 import sonia.scm.repository.RepositoryCacheKeyPredicate;
 import sonia.scm.repository.RepositoryEvent;
 import sonia.scm.repository.RepositoryManager;
@@ -278,7 +280,7 @@ public final class RepositoryServiceFactory
   /**
    * Hook and listener to clear all relevant repository caches.
    */
-  private static class CacheClearHook
+  static class CacheClearHook
   {
     
     private final Set<Cache<?, ?>> caches = Sets.newHashSet();
@@ -296,6 +298,7 @@ public final class RepositoryServiceFactory
       this.caches.add(cacheManager.getCache(LogCommandBuilder.CACHE_NAME));
       this.caches.add(cacheManager.getCache(TagsCommandBuilder.CACHE_NAME));
       this.caches.add(cacheManager.getCache(BranchesCommandBuilder.CACHE_NAME));
+      this.caches.add(cacheManager.getCache(RevisionResolver.CACHE_NAME));
     }
 
     //~--- methods ------------------------------------------------------------
@@ -307,11 +310,13 @@ public final class RepositoryServiceFactory
      */
     @Subscribe
     public void onEvent(ClearRepositoryCacheEvent event) {
-      clearCaches(event.getRepository().getId());
+      clearCaches(event.getRepository().getId(), true);
     }
     
     /**
-     * Clear caches on repository push.
+     * Clear caches on repository push. Browse and blame results which are
+     * keyed by the id of a changeset are kept, because a push does not change
+     * them.
      *
      * @param event hook event
      */
@@ -324,7 +329,7 @@ public final class RepositoryServiceFactory
       {
         String id = repository.getId();
 
-        clearCaches(id);
+        clearCaches(id, false);
       }
     }
 
@@ -338,21 +343,23 @@ public final class RepositoryServiceFactory
     {
       if (event.getEventType() == HandlerEventType.DELETE)
       {
-        clearCaches(event.getItem().getId());
+        clearCaches(event.getItem().getId(), true);
       }
     }
     
     @SuppressWarnings("unchecked")
-    private void clearCaches(final String repositoryId)
+    private void clearCaches(final String repositoryId, boolean includingImmutable)
     {
       if (logger.isDebugEnabled())
       {
         logger.debug("clear caches for repository id {}", repositoryId);
       }
 
-      RepositoryCacheKeyPredicate predicate = new RepositoryCacheKeyPredicate(repositoryId);
+      RepositoryCacheKeyPredicate<RepositoryCacheKey> predicate = new RepositoryCacheKeyPredicate<>(repositoryId);
+      Predicate<RepositoryCacheKey> filter = includingImmutable
+        ? predicate : key -> predicate.apply(key) && !key.isImmutable();
       caches.forEach((cache) -> {
-        cache.removeAll(predicate);
+        cache.removeAll((Predicate) filter);
       });
     }
   }
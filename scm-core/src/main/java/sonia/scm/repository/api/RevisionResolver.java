@@ -0,0 +1,124 @@
+package sonia.scm.repository.api;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryCacheKey;
+import sonia.scm.repository.spi.LogCommandRequest;
+import sonia.scm.repository.spi.RepositoryServiceProvider;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Resolves branch names, tags and abbreviated ids to the id of the changeset they point to. The content of a changeset
+ * never changes, so results which are keyed by the resolved id can survive a push. Only the resolution itself is
+ * cached in a cache, which is cleared with every push.
+ *
+ * @since 2.0.0
+ */
+final class RevisionResolver {
+
+  /** name of the cache for resolved revisions */
+  static final String CACHE_NAME = "sonia.cache.cmd.revisions";
+
+  private static final Logger LOG = LoggerFactory.getLogger(RevisionResolver.class);
+
+  private final CacheManager cacheManager;
+  private final Cache<CacheKey, String> cache;
+  private final RepositoryServiceProvider provider;
+  private final Repository repository;
+
+  RevisionResolver(CacheManager cacheManager, RepositoryServiceProvider provider, Repository repository) {
+    this.cacheManager = cacheManager;
+    this.cache = cacheManager.getCache(CACHE_NAME);
+    this.provider = provider;
+    this.repository = repository;
+  }
+
+  /**
+   * Returns the id of the changeset the revision points to. An empty revision is resolved to the head of the default
+   * branch.
+   *
+   * @param revision branch, tag or id of a changeset, may be {@code null}
+   *
+   * @return id of the changeset or {@code null} if the revision could not be resolved
+   */
+  String resolve(String revision) {
+    String normalized = Strings.nullToEmpty(revision);
+    CacheKey key = new CacheKey(repository.getId(), normalized);
+    String id = cache.get(key);
+    if (id == null) {
+      try {
+        id = resolveFromRepository(normalized);
+      } catch (IOException | RuntimeException ex) {
+        // the command itself reports the failure, if the revision is invalid
+        LOG.debug("could not resolve revision {} of repository {}", normalized, repository.getNamespaceAndName(), ex);
+        return null;
+      }
+      if (id != null) {
+        LOG.trace("resolved revision {} of repository {} to {}", normalized, repository.getNamespaceAndName(), id);
+        cache.put(key, id);
+      }
+    }
+    return id;
+  }
+
+  private String resolveFromRepository(String revision) throws IOException {
+    if (provider.getSupportedCommands().contains(Command.BRANCHES)) {
+      Branches branches = new BranchesCommandBuilder(cacheManager, provider.getBranchesCommand(), repository)
+        .getBranches();
+      for (Branch branch : branches) {
+        if (revision.isEmpty() ? branch.isDefaultBranch() : revision.equals(branch.getName())) {
+          return branch.getRevision();
+        }
+      }
+    }
+    if (revision.isEmpty() || !provider.getSupportedCommands().contains(Command.LOG)) {
+      return null;
+    }
+    Changeset changeset = provider.getLogCommand().getChangeset(revision, new LogCommandRequest());
+    return changeset != null ? changeset.getId() : null;
+  }
+
+  static final class CacheKey implements RepositoryCacheKey, Serializable {
+
+    private static final long serialVersionUID = -1967516213489745913L;
+
+    private final String repositoryId;
+    private final String revision;
+
+    CacheKey(String repositoryId, String revision) {
+      this.repositoryId = repositoryId;
+      this.revision = revision;
+    }
+
+    @Override
+    public String getRepositoryId() {
+      return repositoryId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return Objects.equal(repositoryId, other.repositoryId) && Objects.equal(revision, other.revision);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(repositoryId, revision);
+    }
+  }
+}
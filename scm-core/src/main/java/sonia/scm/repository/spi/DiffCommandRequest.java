@@ -112,6 +112,54 @@ public final class DiffCommandRequest extends FileBaseCommandRequest
   public void setAncestorChangeset(String ancestorChangeset) {
     this.ancestorChangeset = ancestorChangeset;
   }
+
+  /**
+   * Sets the maximum number of diff lines of a single file, the parsed diff of
+   * a file with more lines is truncated. A value of 0 disables the limit.
+   *
+   * @param maxLinesPerFile maximum number of lines per file
+   *
+   * @since 2.0.0
+   */
+  public void setMaxLinesPerFile(int maxLinesPerFile) {
+    this.maxLinesPerFile = maxLinesPerFile;
+  }
+
+  /**
+   * Sets the maximum number of bytes of the diff of a single file, the parsed
+   * diff of a larger file is truncated. A value of 0 disables the limit.
+   *
+   * @param maxBytesPerFile maximum number of bytes per file
+   *
+   * @since 2.0.0
+   */
+  public void setMaxBytesPerFile(long maxBytesPerFile) {
+    this.maxBytesPerFile = maxBytesPerFile;
+  }
+
+  /**
+   * Sets the maximum number of diff lines of all files. Files which exceed the
+   * limit are truncated. A value of 0 disables the limit.
+   *
+   * @param maxTotalLines maximum number of lines
+   *
+   * @since 2.0.0
+   */
+  public void setMaxTotalLines(int maxTotalLines) {
+    this.maxTotalLines = maxTotalLines;
+  }
+
+  /**
+   * Sets the maximum number of bytes of the diff of all files. Files which
+   * exceed the limit are truncated. A value of 0 disables the limit.
+   *
+   * @param maxTotalBytes maximum number of bytes
+   *
+   * @since 2.0.0
+   */
+  public void setMaxTotalBytes(long maxTotalBytes) {
+    this.maxTotalBytes = maxTotalBytes;
+  }
 //~--- get methods ----------------------------------------------------------
 
   /**
@@ -130,10 +178,44 @@ public final class DiffCommandRequest extends FileBaseCommandRequest
   public String getAncestorChangeset() {
     return ancestorChangeset;
   }
+
+  /**
+   * @since 2.0.0
+   */
+  public int getMaxLinesPerFile() {
+    return maxLinesPerFile;
+  }
+
+  /**
+   * @since 2.0.0
+   */
+  public long getMaxBytesPerFile() {
+    return maxBytesPerFile;
+  }
+
+  /**
+   * @since 2.0.0
+   */
+  public int getMaxTotalLines() {
+    return maxTotalLines;
+  }
+
+  /**
+   * @since 2.0.0
+   */
+  public long getMaxTotalBytes() {
+    return maxTotalBytes;
+  }
 //~--- fields ---------------------------------------------------------------
 
   /** diff format */
   private DiffFormat format = DiffFormat.NATIVE;
 
   private String ancestorChangeset;
+
+  /** limits of the parsed diff, 0 means unlimited */
+  private int maxLinesPerFile;
+  private long maxBytesPerFile;
+  private int maxTotalLines;
+  private long maxTotalBytes;
 }
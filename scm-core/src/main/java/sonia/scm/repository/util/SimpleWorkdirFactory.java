@@ -2,33 +2,118 @@ package sonia.scm.repository.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sonia.scm.cache.CacheStatistics;
 import sonia.scm.repository.InternalRepositoryException;
 import sonia.scm.repository.Repository;
+import sonia.scm.util.IOUtil;
 
 import java.io.File;
 import java.io.IOException;
-
+import java.util.Optional;
+
+/**
+ * Base class for factories of working copies, which are cloned from the central repository. Closed working copies are
+ * kept in a pool and are reclaimed by the next request for the same repository, so that only the changes since the
+ * last use have to be fetched. The pool can be configured with the following system properties:
+ * <ul>
+ *   <li>{@code sonia.scm.workdir.pool.size}: maximum number of idle working copies (default 8,
+ *   {@code 0} disables the pool)</li>
+ *   <li>{@code sonia.scm.workdir.pool.quota}: disk quota of the idle working copies in megabytes (default
+ *   1024)</li>
+ *   <li>{@code sonia.scm.workdir.pool.prewarm}: number of additional working copies, which are prepared in the
+ *   background for repositories with concurrent requests (default 1)</li>
+ * </ul>
+ */
 public abstract class SimpleWorkdirFactory<R, W, C> implements WorkdirFactory<R, W, C> {
 
   private static final Logger logger = LoggerFactory.getLogger(SimpleWorkdirFactory.class);
 
+  private static final int DEFAULT_POOL_SIZE = 8;
+  private static final long DEFAULT_POOL_QUOTA = 1024;
+  private static final int DEFAULT_POOL_PREWARM = 1;
+
   private final WorkdirProvider workdirProvider;
+  private final WorkdirPool pool;
 
   public SimpleWorkdirFactory(WorkdirProvider workdirProvider) {
+    this(
+      workdirProvider,
+      Integer.getInteger("sonia.scm.workdir.pool.size", DEFAULT_POOL_SIZE),
+      Long.getLong("sonia.scm.workdir.pool.quota", DEFAULT_POOL_QUOTA) * 1024 * 1024
+    );
+  }
+
+  /**
+   * @param workdirProvider provider for new working directories
+   * @param poolSize maximum number of idle working copies
+   * @param poolQuota disk quota of the idle working copies in bytes
+   *
+   * @since 2.0.0
+   */
+  protected SimpleWorkdirFactory(WorkdirProvider workdirProvider, int poolSize, long poolQuota) {
     this.workdirProvider = workdirProvider;
+    this.pool = new WorkdirPool(
+      getClass().getSimpleName(), workdirProvider, poolSize, poolQuota,
+      Integer.getInteger("sonia.scm.workdir.pool.prewarm", DEFAULT_POOL_PREWARM)
+    );
   }
 
   @Override
   public WorkingCopy<R, W> createWorkingCopy(C context, String initialBranch) {
+    Repository scmRepository = getScmRepository(context);
+    String key = scmRepository.getId();
+
+    Optional<File> pooled = pool.take(key);
+    if (pooled.isPresent()) {
+      Optional<WorkingCopy<R, W>> workingCopy = reclaimWorkingCopy(context, key, pooled.get(), initialBranch);
+      if (workingCopy.isPresent()) {
+        return workingCopy.get();
+      }
+    }
+
+    File directory = workdirProvider.createNewWorkdir();
     try {
-      File directory = workdirProvider.createNewWorkdir();
       ParentAndClone<R, W> parentAndClone = cloneRepository(context, directory, initialBranch);
-      return new WorkingCopy<>(parentAndClone.getClone(), parentAndClone.getParent(), this::closeWorkdir, this::closeCentral, directory);
+      return createWorkingCopy(key, parentAndClone, directory);
     } catch (IOException e) {
-      throw new InternalRepositoryException(getScmRepository(context), "could not clone repository in temporary directory", e);
+      pool.discard(key, directory);
+      throw new InternalRepositoryException(scmRepository, "could not clone repository in temporary directory", e);
+    } catch (RuntimeException e) {
+      pool.discard(key, directory);
+      throw e;
     }
   }
 
+  /**
+   * Returns the hits and misses of the pool of working copies.
+   *
+   * @since 2.0.0
+   */
+  public CacheStatistics getStatistics() {
+    return pool.getStatistics();
+  }
+
+  private Optional<WorkingCopy<R, W>> reclaimWorkingCopy(C context, String key, File directory, String initialBranch) {
+    try {
+      ParentAndClone<R, W> parentAndClone = reclaim(context, directory, initialBranch);
+      return Optional.of(createWorkingCopy(key, parentAndClone, directory));
+    } catch (ReclaimFailedException e) {
+      logger.debug("could not reclaim working copy {}, create a new one", directory, e);
+      delete(directory);
+      return Optional.empty();
+    } catch (RuntimeException e) {
+      pool.discard(key, directory);
+      throw e;
+    }
+  }
+
+  private WorkingCopy<R, W> createWorkingCopy(String key, ParentAndClone<R, W> parentAndClone, File directory) {
+    return new WorkingCopy<>(
+      parentAndClone.getClone(), parentAndClone.getParent(), this::closeWorkdir, this::closeCentral,
+      directory, d -> pool.release(key, d)
+    );
+  }
+
   protected abstract Repository getScmRepository(C context);
 
   @SuppressWarnings("squid:S00112")
@@ -40,6 +125,22 @@ public abstract class SimpleWorkdirFactory<R, W, C> implements WorkdirFactory<R,
 
   protected abstract ParentAndClone<R, W> cloneRepository(C context, File target, String initialBranch) throws IOException;
 
+  /**
+   * Prepares a pooled working copy, which was cloned from the same repository earlier, for a new use. Implementations
+   * have to discard all local changes, fetch the changes of the central repository and switch to the initial branch.
+   * If the working copy cannot be reused, implementations throw a {@link ReclaimFailedException} and a new working
+   * copy is cloned instead.
+   *
+   * @param context context of the repository
+   * @param target directory of the pooled working copy
+   * @param initialBranch branch to check out or {@code null} for the default branch
+   *
+   * @return parent and clone of the reclaimed working copy
+   *
+   * @since 2.0.0
+   */
+  protected abstract ParentAndClone<R, W> reclaim(C context, File target, String initialBranch) throws ReclaimFailedException;
+
   private void closeCentral(R repository) {
     try {
       closeRepository(repository);
@@ -56,6 +157,30 @@ public abstract class SimpleWorkdirFactory<R, W, C> implements WorkdirFactory<R,
     }
   }
 
+  private void delete(File directory) {
+    try {
+      IOUtil.delete(directory);
+    } catch (IOException e) {
+      logger.warn("could not delete temporary workdir '{}'", directory, e);
+    }
+  }
+
+  /**
+   * Signals that a pooled working copy cannot be reused.
+   *
+   * @since 2.0.0
+   */
+  public static class ReclaimFailedException extends Exception {
+
+    public ReclaimFailedException(String message) {
+      super(message);
+    }
+
+    public ReclaimFailedException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+
   protected static class ParentAndClone<R, W> {
     private final R parent;
     private final W clone;
@@ -0,0 +1,337 @@
+package sonia.scm.repository.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.cache.CacheStatistics;
+import sonia.scm.util.IOUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of idle working copies, grouped by repository. A working copy taken from the pool is removed from it, so that
+ * it is used exclusively until it is released again. Idle working copies are evicted in least recently used order, if
+ * the pool exceeds its maximum number of working copies or its disk quota. For repositories with concurrent demand
+ * the pool copies released working copies in the background, so that the next request finds a warm one.
+ * <p>
+ * The pool itself is kept in memory only. Every idle working copy is marked with a file next to its directory, so that
+ * the idle working copies of a previous run are deleted when the pool is created again.
+ *
+ * @since 2.0.0
+ */
+final class WorkdirPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WorkdirPool.class);
+
+  private static final String IDLE_SUFFIX = ".idle";
+
+  private final String name;
+  private final WorkdirProvider workdirProvider;
+  private final int maxSize;
+  private final long quota;
+  private final int prewarm;
+  private final Executor executor;
+
+  private final LinkedHashMap<File, Entry> idle = new LinkedHashMap<>();
+  private final Map<String, Integer> inUse = new HashMap<>();
+  private final Set<String> hot;
+
+  private long size;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long prewarmCount;
+
+  WorkdirPool(String name, WorkdirProvider workdirProvider, int maxSize, long quota, int prewarm) {
+    this(name, workdirProvider, maxSize, quota, prewarm, createExecutor(name));
+  }
+
+  WorkdirPool(String name, WorkdirProvider workdirProvider, int maxSize, long quota, int prewarm, Executor executor) {
+    this.name = name;
+    this.workdirProvider = workdirProvider;
+    this.maxSize = maxSize;
+    this.quota = quota;
+    this.prewarm = prewarm;
+    this.executor = executor;
+    // more hot repositories than idle working copies would only evict the prewarmed copies of each other
+    this.hot = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > maxSize;
+      }
+    });
+    deleteIdleWorkingCopiesOfPreviousRun();
+  }
+
+  private static Executor createExecutor(String name) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      0, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+      new ThreadFactoryBuilder().setNameFormat(name + "-prewarm-%d").setDaemon(true).build()
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Takes the most recently released working copy of the repository out of the pool. The repository counts as in
+   * use until the working copy (or a new one, if the pool has none) is passed to {@link #release} or
+   * {@link #discard}.
+   *
+   * @param key id of the repository
+   *
+   * @return idle working copy or empty, if the pool has none for the repository
+   */
+  synchronized Optional<File> take(String key) {
+    int users = inUse.merge(key, 1, Integer::sum);
+    Entry found = null;
+    for (Entry entry : idle.values()) {
+      if (entry.key.equals(key)) {
+        found = entry;
+      }
+    }
+    if (found == null) {
+      missCount++;
+      // adding an existing key marks it as recently used
+      if (users > 1 && prewarm > 0 && hot.add(key)) {
+        LOG.debug("{}: repository {} is used concurrently, prewarm its working copies", name, key);
+      }
+      LOG.debug("{}: no idle working copy for repository {} ({} hits, {} misses)", name, key, hitCount, missCount);
+      return Optional.empty();
+    }
+    idle.remove(found.directory);
+    size -= found.size;
+    unmarkIdle(found.directory);
+    hitCount++;
+    LOG.debug("{}: reuse working copy {} of repository {} ({} hits, {} misses)", name, found.directory, key, hitCount, missCount);
+    return Optional.of(found.directory);
+  }
+
+  /**
+   * Returns the working copy of the repository into the pool.
+   *
+   * @param key id of the repository
+   * @param directory directory of the working copy
+   */
+  void release(String key, File directory) {
+    boolean copy;
+    synchronized (this) {
+      decrementInUse(key);
+      copy = hot.contains(key) && countIdle(key) < prewarm;
+    }
+    if (copy) {
+      executor.execute(() -> prewarm(key, directory));
+    } else {
+      add(key, directory);
+    }
+  }
+
+  /**
+   * Deletes the working copy of the repository, instead of returning it into the pool.
+   *
+   * @param key id of the repository
+   * @param directory directory of the working copy
+   */
+  void discard(String key, File directory) {
+    synchronized (this) {
+      decrementInUse(key);
+    }
+    delete(directory);
+  }
+
+  synchronized CacheStatistics getStatistics() {
+    return new CacheStatistics(name, hitCount, missCount);
+  }
+
+  synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  synchronized long getPrewarmCount() {
+    return prewarmCount;
+  }
+
+  synchronized int getIdleCount() {
+    return idle.size();
+  }
+
+  synchronized int getHotCount() {
+    return hot.size();
+  }
+
+  private void deleteIdleWorkingCopiesOfPreviousRun() {
+    File[] markers = workdirProvider.getPoolDirectory().listFiles((directory, fileName) -> fileName.endsWith(IDLE_SUFFIX));
+    if (markers == null) {
+      return;
+    }
+    for (File marker : markers) {
+      try {
+        if (name.equals(new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8))) {
+          String directoryName = marker.getName().substring(0, marker.getName().length() - IDLE_SUFFIX.length());
+          File directory = new File(marker.getParentFile(), directoryName);
+          LOG.info("{}: delete idle working copy {} of previous run", name, directory);
+          delete(directory);
+        }
+      } catch (IOException e) {
+        LOG.warn("{}: could not read marker of idle working copy {}", name, marker, e);
+      }
+    }
+  }
+
+  private void decrementInUse(String key) {
+    inUse.computeIfPresent(key, (k, users) -> users > 1 ? users - 1 : null);
+  }
+
+  private int countIdle(String key) {
+    int count = 0;
+    for (Entry entry : idle.values()) {
+      if (entry.key.equals(key)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private void prewarm(String key, File source) {
+    File target = workdirProvider.createNewWorkdir();
+    try {
+      copy(source.toPath(), target.toPath());
+      synchronized (this) {
+        prewarmCount++;
+      }
+      LOG.debug("{}: prewarmed working copy {} of repository {} from {}", name, target, key, source);
+      add(key, target);
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("{}: could not prewarm working copy of repository {}", name, key, e);
+      delete(target);
+    } finally {
+      add(key, source);
+    }
+  }
+
+  private void add(String key, File directory) {
+    long directorySize;
+    try {
+      directorySize = sizeOf(directory.toPath());
+    } catch (IOException e) {
+      LOG.warn("{}: could not determine size of working copy {}", name, directory, e);
+      delete(directory);
+      return;
+    }
+
+    markIdle(directory);
+    List<File> evicted = new ArrayList<>();
+    synchronized (this) {
+      idle.put(directory, new Entry(key, directory, directorySize));
+      size += directorySize;
+      Iterator<Entry> iterator = idle.values().iterator();
+      while ((idle.size() > maxSize || size > quota) && iterator.hasNext()) {
+        Entry eldest = iterator.next();
+        iterator.remove();
+        size -= eldest.size;
+        evictionCount++;
+        evicted.add(eldest.directory);
+      }
+    }
+    for (File directoryToDelete : evicted) {
+      LOG.debug("{}: evict working copy {}", name, directoryToDelete);
+      delete(directoryToDelete);
+    }
+  }
+
+  private void delete(File directory) {
+    try {
+      if (directory.exists()) {
+        IOUtil.delete(directory);
+      }
+      unmarkIdle(directory);
+    } catch (IOException e) {
+      LOG.warn("{}: could not delete working copy '{}'", name, directory, e);
+    }
+  }
+
+  private void markIdle(File directory) {
+    try {
+      Files.write(marker(directory).toPath(), name.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      LOG.warn("{}: could not mark working copy '{}' as idle, it will not be deleted after a restart", name, directory, e);
+    }
+  }
+
+  private void unmarkIdle(File directory) {
+    try {
+      Files.deleteIfExists(marker(directory).toPath());
+    } catch (IOException e) {
+      LOG.warn("{}: could not remove idle marker of working copy '{}'", name, directory, e);
+    }
+  }
+
+  private static File marker(File directory) {
+    return new File(directory.getParentFile(), directory.getName() + IDLE_SUFFIX);
+  }
+
+  private static long sizeOf(Path directory) throws IOException {
+    long[] total = {0};
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        total[0] += attrs.size();
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return total[0];
+  }
+
+  private static void copy(Path source, Path target) throws IOException {
+    Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        Files.createDirectories(target.resolve(source.relativize(dir)));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.copy(
+          file, target.resolve(source.relativize(file)),
+          StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS
+        );
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static final class Entry {
+
+    private final String key;
+    private final File directory;
+    private final long size;
+
+    private Entry(String key, File directory, long size) {
+      this.key = key;
+      this.directory = directory;
+      this.size = size;
+    }
+  }
+}
@@ -19,6 +19,10 @@ public class WorkdirProvider {
     }
   }
 
+  File getPoolDirectory() {
+    return poolDirectory;
+  }
+
   public File createNewWorkdir() {
     try {
       return Files.createTempDirectory(poolDirectory.toPath(),"workdir").toFile();
@@ -17,13 +17,24 @@ public class WorkingCopy<R, W> implements AutoCloseable {
   private final R centralRepository;
   private final Consumer<W> cleanupWorkdir;
   private final Consumer<R> cleanupCentral;
+  private final Consumer<File> releaseDirectory;
 
   public WorkingCopy(W workingRepository, R centralRepository, Consumer<W> cleanupWorkdir, Consumer<R> cleanupCentral, File directory) {
+    this(workingRepository, centralRepository, cleanupWorkdir, cleanupCentral, directory, WorkingCopy::delete);
+  }
+
+  /**
+   * Creates a working copy, whose directory is passed to the given consumer on close instead of being deleted.
+   *
+   * @since 2.0.0
+   */
+  public WorkingCopy(W workingRepository, R centralRepository, Consumer<W> cleanupWorkdir, Consumer<R> cleanupCentral, File directory, Consumer<File> releaseDirectory) {
     this.directory = directory;
     this.workingRepository = workingRepository;
     this.centralRepository = centralRepository;
     this.cleanupCentral = cleanupCentral;
     this.cleanupWorkdir = cleanupWorkdir;
+    this.releaseDirectory = releaseDirectory;
   }
 
   public W getWorkingRepository() {
@@ -40,9 +51,13 @@ public class WorkingCopy<R, W> implements AutoCloseable {
 
   @Override
   public void close() {
+    cleanupWorkdir.accept(workingRepository);
+    cleanupCentral.accept(centralRepository);
+    releaseDirectory.accept(directory);
+  }
+
+  private static void delete(File directory) {
     try {
-      cleanupWorkdir.accept(workingRepository);
-      cleanupCentral.accept(centralRepository);
       IOUtil.delete(directory);
     } catch (IOException e) {
       LOG.warn("could not delete temporary workdir '{}'", directory, e);
@@ -43,9 +43,11 @@ import sonia.scm.event.Event;
 public final class AuthorizationChangedEvent {
   
   private final String nameOfAffectedUser;
+  private final String nameOfAffectedGroup;
   
-  private AuthorizationChangedEvent(String nameOfAffectedUser) {
+  private AuthorizationChangedEvent(String nameOfAffectedUser, String nameOfAffectedGroup) {
     this.nameOfAffectedUser = nameOfAffectedUser;
+    this.nameOfAffectedGroup = nameOfAffectedGroup;
   }
   
   /**
@@ -65,6 +67,17 @@ public final class AuthorizationChangedEvent {
   public String getNameOfAffectedUser(){
     return nameOfAffectedUser;
   }
+
+  /**
+   * Returns the name of the group whose members are affected by this event or {@code null} if the event does not
+   * affect a single group.
+   *
+   * @return name of affected group
+   * @since 2.0.0
+   */
+  public String getNameOfAffectedGroup(){
+    return nameOfAffectedGroup;
+  }
   
   /**
    * Creates a new event which affects every user.
@@ -72,7 +85,7 @@ public final class AuthorizationChangedEvent {
    * @return new event for every user
    */
   public static AuthorizationChangedEvent createForEveryUser() {
-    return new AuthorizationChangedEvent(null);
+    return new AuthorizationChangedEvent(null, null);
   }
   
   /**
@@ -83,7 +96,19 @@ public final class AuthorizationChangedEvent {
    * @return new event for a single user
    */
   public static AuthorizationChangedEvent createForUser(String nameOfAffectedUser) {
-    return new AuthorizationChangedEvent(nameOfAffectedUser);
+    return new AuthorizationChangedEvent(nameOfAffectedUser, null);
+  }
+
+  /**
+   * Create a new event which affects the members of a single group.
+   *
+   * @param nameOfAffectedGroup name of affected group
+   *
+   * @return new event for the members of a group
+   * @since 2.0.0
+   */
+  public static AuthorizationChangedEvent createForGroup(String nameOfAffectedGroup) {
+    return new AuthorizationChangedEvent(null, nameOfAffectedGroup);
   }
   
 }
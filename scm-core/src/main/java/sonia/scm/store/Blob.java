@@ -37,6 +37,8 @@ package sonia.scm.store;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 /**
  * A blob is binary object. A blob can be used to store any unstructured data.
@@ -93,5 +95,51 @@ public interface Blob
    */
   public long getSize();
 
+  /**
+   * Opens a channel to read the content of the blob. Implementations which
+   * are backed by a file should return a
+   * {@link java.nio.channels.FileChannel}, which is able to read from any
+   * position and to transfer its content without copying it into the heap.
+   *
+   * @return channel to read the content
+   *
+   * @throws IOException
+   * @since 2.0.0
+   */
+  public default ReadableByteChannel openChannel() throws IOException
+  {
+    return Channels.newChannel(getInputStream());
+  }
 
+  /**
+   * Returns {@code true} if content can be appended to the blob with
+   * {@link #getAppendingOutputStream()}.
+   *
+   * @return {@code true} if the blob supports appending
+   *
+   * @since 2.0.0
+   */
+  public default boolean supportsAppending()
+  {
+    return false;
+  }
+
+  /**
+   * Returns a {@link OutputStream} which appends content to the existing
+   * content of the blob. The {@link #commit()} method have to be called after
+   * all data is written. Callers have to check {@link #supportsAppending()}
+   * before.
+   *
+   * @return outputstream which appends to the blob
+   *
+   * @throws IOException
+   * @throws UnsupportedOperationException if the blob does not support
+   *   appending
+   * @since 2.0.0
+   */
+  public default OutputStream getAppendingOutputStream() throws IOException
+  {
+    throw new UnsupportedOperationException(
+      "blob ".concat(getId()).concat(" does not support appending"));
+  }
 }
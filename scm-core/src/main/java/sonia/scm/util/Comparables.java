@@ -33,13 +33,30 @@ public final class Comparables {
   }
 
   public static <T> Comparator<T> comparator(Class<T> type, String sortBy) {
+    return comparator(type, sortBy, false);
+  }
+
+  /**
+   * Creates a comparator for the given property. In contrast to {@link Comparator#reversed()} the returned comparator
+   * keeps its property and direction, so that a manager is able to serve the order from an index.
+   *
+   * @param type type of the compared objects
+   * @param sortBy name of the property
+   * @param desc {@code true} for descending order
+   * @param <T> type of the compared objects
+   *
+   * @return comparator for the property
+   *
+   * @since 2.0.0
+   */
+  public static <T> PropertyComparator<T> comparator(Class<T> type, String sortBy, boolean desc) {
     BeanInfo info = createBeanInfo(type);
     PropertyDescriptor propertyDescriptor = findPropertyDescriptor(sortBy, info);
 
     Method readMethod = propertyDescriptor.getReadMethod();
     checkIfPropertyIsComparable(readMethod, sortBy);
 
-    return new MethodComparator<>(readMethod);
+    return new PropertyComparator<>(sortBy, readMethod, desc);
   }
 
   private static void checkIfPropertyIsComparable(Method readMethod, String sortBy) {
@@ -64,20 +81,49 @@ public final class Comparables {
     return beanInfoCache.getUnchecked(type);
   }
 
-  private static class MethodComparator<T> implements Comparator<T> {
+  /**
+   * Comparator which compares the value of a single property.
+   *
+   * @param <T> type of the compared objects
+   *
+   * @since 2.0.0
+   */
+  public static final class PropertyComparator<T> implements Comparator<T> {
 
+    private final String property;
     private final Method readMethod;
+    private final boolean desc;
 
-    private MethodComparator(Method readMethod) {
+    private PropertyComparator(String property, Method readMethod, boolean desc) {
+      this.property = property;
       this.readMethod = readMethod;
+      this.desc = desc;
+    }
+
+    /**
+     * Returns the name of the compared property.
+     *
+     * @return name of property
+     */
+    public String getProperty() {
+      return property;
+    }
+
+    /**
+     * Returns {@code true} if the comparator sorts in descending order.
+     *
+     * @return {@code true} for descending order
+     */
+    public boolean isDescending() {
+      return desc;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public int compare(T left, T right) {
       try {
-        Comparable leftResult = (Comparable) readMethod.invoke(left);
-        Comparable rightResult = (Comparable) readMethod.invoke(right);
+        Comparable leftResult = (Comparable) readMethod.invoke(desc ? right : left);
+        Comparable rightResult = (Comparable) readMethod.invoke(desc ? left : right);
         return leftResult.compareTo(rightResult);
       } catch (IllegalAccessException | InvocationTargetException ex) {
         throw new IllegalArgumentException("failed to invoke read method", ex);
@@ -59,6 +59,8 @@ public class VndMediaType {
   public static final String REPOSITORY_ROLE = PREFIX + "repositoryRole" + SUFFIX;
   public static final String REPOSITORY_ROLE_COLLECTION = PREFIX + "repositoryRoleCollection" + SUFFIX;
 
+  public static final String HEALTH_CHECK_PROGRESS = PREFIX + "healthCheckProgress" + SUFFIX;
+
   private VndMediaType() {
   }
 
@@ -37,6 +37,10 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.TimeUnit;
+
 /**
  *
  * @author Sebastian Sdorra
@@ -70,4 +74,19 @@ public class CacheStatisticsTest
     assertEquals(0.8d, stats.getHitRate(), 0.0);
     assertEquals(0.2d, stats.getMissRate(), 0.0);
   }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testCopyTime()
+  {
+    CacheStatistics stats = new CacheStatistics("", 12, 3, 4, 8000);
+
+    assertEquals(4, stats.getCopyCount());
+    assertEquals(8, stats.getCopyTime(TimeUnit.MICROSECONDS));
+    assertEquals(2.0d, stats.getAverageCopyTime(TimeUnit.MICROSECONDS), 0.0);
+    assertEquals(0.0d, new CacheStatistics("", 12, 3).getAverageCopyTime(TimeUnit.MICROSECONDS), 0.0);
+  }
 }
@@ -10,13 +10,17 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -60,28 +64,86 @@ class GZipResponseFilterTest {
   }
 
 
+  @Test
+  void shouldSkipGZipCompressionForNotCompressibleContentType() throws IOException {
+    when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, deflate, br");
+    when(context.getMediaType()).thenReturn(MediaType.valueOf("image/png"));
+
+    filter.aroundWriteTo(context);
+
+    verifySkipped();
+  }
+
   @Nested
   class AcceptGZipEncoding {
 
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private OutputStream entityStream;
+
     @BeforeEach
     void setUpContext() {
       when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, deflate, br");
-      when(context.getHeaders()).thenReturn(headers);
-      when(context.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+      lenient().when(context.getHeaders()).thenReturn(headers);
+      when(context.getOutputStream()).thenReturn(output);
+      doAnswer(invocation -> {
+        entityStream = invocation.getArgument(0);
+        return null;
+      }).when(context).setOutputStream(any(OutputStream.class));
     }
 
     @Test
     void shouldEncode() throws IOException {
+      byte[] entity = entity(GZipFilterConfig.DEFAULT_THRESHOLD * 4);
+      writeEntity(entity);
+
       filter.aroundWriteTo(context);
 
       verify(headers).remove(HttpHeaders.CONTENT_LENGTH);
       verify(headers).add(HttpHeaders.CONTENT_ENCODING, "gzip");
-
-      verify(context).setOutputStream(any(GZIPOutputStream.class));
       verify(context, times(2)).setOutputStream(any(OutputStream.class));
+
+      assertThat(entityStream).isSameAs(output);
+      assertThat(decompress(output.toByteArray())).isEqualTo(entity);
     }
 
-  }
+    @Test
+    void shouldNotEncodeSmallEntities() throws IOException {
+      byte[] entity = entity(GZipFilterConfig.DEFAULT_THRESHOLD / 2);
+      writeEntity(entity);
+
+      filter.aroundWriteTo(context);
 
+      verify(headers, never()).add(HttpHeaders.CONTENT_ENCODING, "gzip");
+      assertThat(output.toByteArray()).isEqualTo(entity);
+    }
+
+    private void writeEntity(byte[] entity) throws IOException {
+      doAnswer(invocation -> {
+        // write in chunks to pass the threshold in the middle of a write
+        for (int i = 0; i < entity.length; i += 100) {
+          entityStream.write(entity, i, Math.min(100, entity.length - i));
+        }
+        return null;
+      }).when(context).proceed();
+    }
+
+    private byte[] entity(int length) {
+      byte[] entity = new byte[length];
+      Arrays.fill(entity, (byte) 'a');
+      return entity;
+    }
+
+    private byte[] decompress(byte[] compressed) throws IOException {
+      ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+      try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = input.read(buffer)) > 0) {
+          decompressed.write(buffer, 0, read);
+        }
+      }
+      return decompressed.toByteArray();
+    }
+  }
 
 }
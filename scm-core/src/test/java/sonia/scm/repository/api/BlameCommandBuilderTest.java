@@ -0,0 +1,93 @@
+package sonia.scm.repository.api;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.repository.BlameResult;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.PreProcessorUtil;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.spi.BlameCommand;
+import sonia.scm.repository.spi.BlameCommandRequest;
+import sonia.scm.repository.spi.BranchesCommand;
+import sonia.scm.repository.spi.RepositoryServiceProvider;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The branch is moved by a push after it was resolved by the {@link RevisionResolver}, but before the command is
+ * executed. The cached result must belong to the resolved revision anyway.
+ */
+@ExtendWith(MockitoExtension.class)
+class BlameCommandBuilderTest {
+
+  private final Repository repository = new Repository("42", "git", "hitchhiker", "heartOfGold");
+
+  @Mock
+  private CacheManager cacheManager;
+
+  @Mock
+  private Cache<RevisionResolver.CacheKey, String> revisionCache;
+
+  @Mock
+  private Cache<Object, Object> resultCache;
+
+  @Mock
+  private RepositoryServiceProvider provider;
+
+  @Mock
+  private BranchesCommand branchesCommand;
+
+  @Mock
+  private BlameCommand blameCommand;
+
+  @Mock
+  private PreProcessorUtil preProcessorUtil;
+
+  private RevisionResolver resolver;
+
+  @BeforeEach
+  void setUpResolver() throws IOException {
+    when(cacheManager.<RevisionResolver.CacheKey, String>getCache(RevisionResolver.CACHE_NAME))
+      .thenReturn(revisionCache);
+    lenient().when(cacheManager.getCache(BlameCommandBuilder.CACHE_NAME)).thenReturn(resultCache);
+    lenient().when(provider.getSupportedCommands()).thenReturn(ImmutableSet.of(Command.BRANCHES));
+    lenient().when(provider.getBranchesCommand()).thenReturn(branchesCommand);
+    lenient().when(branchesCommand.getBranches()).thenReturn(
+      Collections.singletonList(Branch.defaultBranch("master", "new-head"))
+    );
+    // the resolution was cached before the push, the cache is cleared asynchronously
+    when(revisionCache.get(new RevisionResolver.CacheKey("42", "master"))).thenReturn("old-head");
+
+    resolver = new RevisionResolver(cacheManager, provider, repository);
+  }
+
+  @Test
+  void shouldBlameResolvedRevision() throws IOException {
+    BlameResult blameResult = new BlameResult(Collections.emptyList());
+    when(blameCommand.getBlameResult(any())).thenReturn(blameResult);
+
+    BlameResult result = new BlameCommandBuilder(cacheManager, blameCommand, repository, preProcessorUtil, resolver)
+      .setRevision("master")
+      .getBlameResult("README.md");
+
+    ArgumentCaptor<BlameCommandRequest> request = ArgumentCaptor.forClass(BlameCommandRequest.class);
+    verify(blameCommand).getBlameResult(request.capture());
+    assertThat(request.getValue().getRevision()).isEqualTo("old-head");
+    assertThat(request.getValue().getPath()).isEqualTo("README.md");
+    assertThat(result).isSameAs(blameResult);
+  }
+}
@@ -0,0 +1,108 @@
+package sonia.scm.repository.api;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+import sonia.scm.repository.PreProcessorUtil;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryHookEvent;
+import sonia.scm.repository.RepositoryHookType;
+import sonia.scm.repository.spi.LogCommand;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LogCommandBuilderTest {
+
+  private final Repository repository = new Repository("42", "git", "hitchhiker", "heartOfGold");
+
+  private final Map<Object, Object> cached = new HashMap<>();
+
+  @Mock
+  private CacheManager cacheManager;
+
+  @Mock
+  private Cache<Object, Object> cache;
+
+  @Mock
+  private LogCommand logCommand;
+
+  @Mock
+  private PreProcessorUtil preProcessorUtil;
+
+  private RepositoryServiceFactory.CacheClearHook cacheClearHook;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUpCache() {
+    when(cacheManager.getCache(anyString())).thenReturn(cache);
+    lenient().when(cache.get(any())).thenAnswer(invocation -> cached.get(invocation.getArgument(0)));
+    lenient().when(cache.put(any(), any()))
+      .thenAnswer(invocation -> cached.put(invocation.getArgument(0), invocation.getArgument(1)));
+    lenient().when(cache.removeAll(any())).thenAnswer(invocation -> {
+      Predicate<Object> predicate = invocation.getArgument(0);
+      cached.keySet().removeIf(predicate::apply);
+      return Collections.emptyList();
+    });
+
+    cacheClearHook = new RepositoryServiceFactory.CacheClearHook(cacheManager);
+  }
+
+  @Test
+  void shouldReturnChangesetFromCache() throws IOException {
+    when(logCommand.getChangeset(eq("abc"), any())).thenReturn(changeset());
+
+    createBuilder().getChangeset("abc");
+    Changeset changeset = createBuilder().getChangeset("abc");
+
+    assertThat(changeset.getId()).isEqualTo("abc");
+    verify(logCommand).getChangeset(eq("abc"), any());
+  }
+
+  @Test
+  void shouldReturnTagPushedAfterChangesetWasCached() throws IOException {
+    when(logCommand.getChangeset(eq("abc"), any()))
+      .thenReturn(changeset())
+      .thenReturn(changeset("1.0.0"));
+
+    assertThat(createBuilder().getChangeset("abc").getTags()).isEmpty();
+
+    cacheClearHook.onEvent(new PostReceiveRepositoryHookEvent(
+      new RepositoryHookEvent(null, repository, RepositoryHookType.POST_RECEIVE)
+    ));
+
+    assertThat(createBuilder().getChangeset("abc").getTags()).containsExactly("1.0.0");
+    verify(logCommand, times(2)).getChangeset(eq("abc"), any());
+  }
+
+  private LogCommandBuilder createBuilder() {
+    return new LogCommandBuilder(cacheManager, logCommand, repository, preProcessorUtil, Collections.emptySet());
+  }
+
+  private Changeset changeset(String... tags) {
+    Changeset changeset = new Changeset("abc", 0L, new Person("Trillian"));
+    changeset.setTags(ImmutableList.copyOf(tags));
+    return changeset;
+  }
+}
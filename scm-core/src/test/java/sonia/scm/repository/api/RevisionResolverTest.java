@@ -0,0 +1,114 @@
+package sonia.scm.repository.api;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.spi.BranchesCommand;
+import sonia.scm.repository.spi.LogCommand;
+import sonia.scm.repository.spi.RepositoryServiceProvider;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RevisionResolverTest {
+
+  private final Repository repository = new Repository("42", "git", "hitchhiker", "heartOfGold");
+
+  @Mock
+  private CacheManager cacheManager;
+
+  @Mock
+  private Cache<RevisionResolver.CacheKey, String> revisionCache;
+
+  @Mock
+  private Cache<Object, Branches> branchesCache;
+
+  @Mock
+  private RepositoryServiceProvider provider;
+
+  @Mock
+  private BranchesCommand branchesCommand;
+
+  @Mock
+  private LogCommand logCommand;
+
+  private RevisionResolver resolver;
+
+  @BeforeEach
+  void setUpResolver() throws IOException {
+    when(cacheManager.<RevisionResolver.CacheKey, String>getCache(RevisionResolver.CACHE_NAME))
+      .thenReturn(revisionCache);
+    lenient().when(cacheManager.<Object, Branches>getCache(BranchesCommandBuilder.CACHE_NAME))
+      .thenReturn(branchesCache);
+    lenient().when(provider.getSupportedCommands()).thenReturn(ImmutableSet.of(Command.BRANCHES, Command.LOG));
+    lenient().when(provider.getBranchesCommand()).thenReturn(branchesCommand);
+    lenient().when(provider.getLogCommand()).thenReturn(logCommand);
+    lenient().when(branchesCommand.getBranches()).thenReturn(Arrays.asList(
+      Branch.normalBranch("develop", "abc"), Branch.defaultBranch("master", "def")
+    ));
+
+    resolver = new RevisionResolver(cacheManager, provider, repository);
+  }
+
+  @Test
+  void shouldResolveBranch() {
+    assertThat(resolver.resolve("develop")).isEqualTo("abc");
+    verify(revisionCache).put(new RevisionResolver.CacheKey("42", "develop"), "abc");
+  }
+
+  @Test
+  void shouldResolveEmptyRevisionToDefaultBranch() {
+    assertThat(resolver.resolve(null)).isEqualTo("def");
+  }
+
+  @Test
+  void shouldResolveTagWithLogCommand() throws IOException {
+    when(logCommand.getChangeset(eq("1.0"), any())).thenReturn(new Changeset("123", 0L, new Person("trillian")));
+
+    assertThat(resolver.resolve("1.0")).isEqualTo("123");
+  }
+
+  @Test
+  void shouldUseCachedRevision() {
+    when(revisionCache.get(new RevisionResolver.CacheKey("42", "develop"))).thenReturn("cached");
+
+    assertThat(resolver.resolve("develop")).isEqualTo("cached");
+    verifyZeroInteractions(branchesCommand, logCommand);
+  }
+
+  @Test
+  void shouldReturnNullForUnresolvableRevision() throws IOException {
+    when(logCommand.getChangeset(anyString(), any())).thenThrow(new IOException("unknown revision"));
+
+    assertThat(resolver.resolve("unknown")).isNull();
+    verify(revisionCache, never()).put(any(), anyString());
+  }
+
+  @Test
+  void shouldNotResolveEmptyRevisionWithoutBranches() {
+    when(provider.getSupportedCommands()).thenReturn(ImmutableSet.of(Command.LOG));
+
+    assertThat(resolver.resolve("")).isNull();
+    verifyZeroInteractions(logCommand);
+  }
+}
@@ -27,11 +27,17 @@ public class SimpleWorkdirFactoryTest {
   private SimpleWorkdirFactory<Closeable, Closeable, Context> simpleWorkdirFactory;
 
   private String initialBranchForLastCloneCall;
+  private String initialBranchForLastReclaimCall;
+  private boolean reclaimFails;
 
   @Before
   public void initFactory() throws IOException {
+    simpleWorkdirFactory = createFactory(8);
+  }
+
+  private SimpleWorkdirFactory<Closeable, Closeable, Context> createFactory(int poolSize) throws IOException {
     WorkdirProvider workdirProvider = new WorkdirProvider(temporaryFolder.newFolder());
-    simpleWorkdirFactory = new SimpleWorkdirFactory<Closeable, Closeable, Context>(workdirProvider) {
+    return new SimpleWorkdirFactory<Closeable, Closeable, Context>(workdirProvider, poolSize, Long.MAX_VALUE) {
       @Override
       protected Repository getScmRepository(Context context) {
         return REPOSITORY;
@@ -52,6 +58,15 @@ public class SimpleWorkdirFactoryTest {
         initialBranchForLastCloneCall = initialBranch;
         return new ParentAndClone<>(parent, clone);
       }
+
+      @Override
+      protected ParentAndClone<Closeable, Closeable> reclaim(Context context, File target, String initialBranch) throws ReclaimFailedException {
+        if (reclaimFails) {
+          throw new ReclaimFailedException("could not reclaim");
+        }
+        initialBranchForLastReclaimCall = initialBranch;
+        return new ParentAndClone<>(parent, clone);
+      }
     };
   }
 
@@ -88,5 +103,60 @@ public class SimpleWorkdirFactoryTest {
     }
   }
 
+  @Test
+  public void shouldReuseClosedWorkingCopy() {
+    Context context = new Context();
+    File firstDirectory;
+    try (WorkingCopy<Closeable, Closeable> workingCopy = simpleWorkdirFactory.createWorkingCopy(context, null)) {
+      firstDirectory = workingCopy.getDirectory();
+    }
+    assertThat(firstDirectory).exists();
+
+    try (WorkingCopy<Closeable, Closeable> workingCopy = simpleWorkdirFactory.createWorkingCopy(context, "other")) {
+      assertThat(workingCopy.getDirectory()).isEqualTo(firstDirectory);
+      assertThat(initialBranchForLastReclaimCall).isEqualTo("other");
+    }
+    assertThat(simpleWorkdirFactory.getStatistics().getHitCount()).isEqualTo(1);
+    assertThat(simpleWorkdirFactory.getStatistics().getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotShareWorkingCopyInUse() {
+    Context context = new Context();
+    try (
+      WorkingCopy<Closeable, Closeable> first = simpleWorkdirFactory.createWorkingCopy(context, null);
+      WorkingCopy<Closeable, Closeable> second = simpleWorkdirFactory.createWorkingCopy(context, null)
+    ) {
+      assertThat(second.getDirectory()).isNotEqualTo(first.getDirectory());
+    }
+  }
+
+  @Test
+  public void shouldCloneNewWorkingCopyIfReclaimFails() {
+    Context context = new Context();
+    File firstDirectory;
+    try (WorkingCopy<Closeable, Closeable> workingCopy = simpleWorkdirFactory.createWorkingCopy(context, null)) {
+      firstDirectory = workingCopy.getDirectory();
+    }
+
+    reclaimFails = true;
+    try (WorkingCopy<Closeable, Closeable> workingCopy = simpleWorkdirFactory.createWorkingCopy(context, "some")) {
+      assertThat(workingCopy.getDirectory()).isNotEqualTo(firstDirectory);
+      assertThat(initialBranchForLastCloneCall).isEqualTo("some");
+    }
+    assertThat(firstDirectory).doesNotExist();
+  }
+
+  @Test
+  public void shouldDeleteWorkingCopyIfPoolIsDisabled() throws IOException {
+    SimpleWorkdirFactory<Closeable, Closeable, Context> factory = createFactory(0);
+
+    File directory;
+    try (WorkingCopy<Closeable, Closeable> workingCopy = factory.createWorkingCopy(new Context(), null)) {
+      directory = workingCopy.getDirectory();
+    }
+    assertThat(directory).doesNotExist();
+  }
+
   private static class Context {}
 }
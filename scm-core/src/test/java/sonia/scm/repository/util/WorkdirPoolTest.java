@@ -0,0 +1,120 @@
+package sonia.scm.repository.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WorkdirPoolTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private WorkdirProvider workdirProvider;
+
+  @Before
+  public void initProvider() throws IOException {
+    workdirProvider = new WorkdirProvider(temporaryFolder.newFolder());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedWorkingCopies() throws IOException {
+    WorkdirPool pool = new WorkdirPool("test", workdirProvider, 2, Long.MAX_VALUE, 0, Runnable::run);
+
+    File a = createWorkdir(pool, "a", 1);
+    File b = createWorkdir(pool, "b", 1);
+    File c = createWorkdir(pool, "c", 1);
+
+    assertThat(a).doesNotExist();
+    assertThat(b).exists();
+    assertThat(c).exists();
+    assertThat(pool.getEvictionCount()).isEqualTo(1);
+    assertThat(pool.take("a")).isEmpty();
+    assertThat(pool.take("b")).contains(b);
+  }
+
+  @Test
+  public void shouldEvictWorkingCopiesExceedingQuota() throws IOException {
+    WorkdirPool pool = new WorkdirPool("test", workdirProvider, 8, 100, 0, Runnable::run);
+
+    File a = createWorkdir(pool, "a", 60);
+    File b = createWorkdir(pool, "b", 60);
+
+    assertThat(a).doesNotExist();
+    assertThat(b).exists();
+    assertThat(pool.getIdleCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldPrewarmWorkingCopiesOfRepositoriesInConcurrentUse() throws IOException {
+    WorkdirPool pool = new WorkdirPool("test", workdirProvider, 8, Long.MAX_VALUE, 1, Runnable::run);
+
+    assertThat(pool.take("a")).isEmpty();
+    assertThat(pool.take("a")).isEmpty();
+    File first = workdirProvider.createNewWorkdir();
+    Files.write(new File(first, "content").toPath(), new byte[]{42});
+    pool.release("a", first);
+    pool.discard("a", workdirProvider.createNewWorkdir());
+
+    assertThat(pool.getPrewarmCount()).isEqualTo(1);
+    assertThat(pool.getIdleCount()).isEqualTo(2);
+    File taken = pool.take("a").orElseThrow(AssertionError::new);
+    File other = pool.take("a").orElseThrow(AssertionError::new);
+    assertThat(taken).isNotEqualTo(other);
+    assertThat(new File(taken, "content")).hasBinaryContent(new byte[]{42});
+    assertThat(new File(other, "content")).hasBinaryContent(new byte[]{42});
+  }
+
+  @Test
+  public void shouldDeleteIdleWorkingCopiesOfPreviousRun() throws IOException {
+    File idle = createWorkdir(new WorkdirPool("test", workdirProvider, 8, Long.MAX_VALUE, 0, Runnable::run), "a", 1);
+    File idleOfOtherPool = createWorkdir(new WorkdirPool("other", workdirProvider, 8, Long.MAX_VALUE, 0, Runnable::run), "a", 1);
+    File inUse = workdirProvider.createNewWorkdir();
+
+    WorkdirPool pool = new WorkdirPool("test", workdirProvider, 8, Long.MAX_VALUE, 0, Runnable::run);
+
+    assertThat(idle).doesNotExist();
+    assertThat(new File(idle.getParentFile(), idle.getName() + ".idle")).doesNotExist();
+    assertThat(idleOfOtherPool).exists();
+    assertThat(inUse).exists();
+    assertThat(pool.take("a")).isEmpty();
+  }
+
+  @Test
+  public void shouldNotDeleteWorkingCopiesTakenFromThePool() throws IOException {
+    WorkdirPool previous = new WorkdirPool("test", workdirProvider, 8, Long.MAX_VALUE, 0, Runnable::run);
+    File taken = createWorkdir(previous, "a", 1);
+    assertThat(previous.take("a")).contains(taken);
+
+    new WorkdirPool("test", workdirProvider, 8, Long.MAX_VALUE, 0, Runnable::run);
+
+    assertThat(taken).exists();
+  }
+
+  @Test
+  public void shouldLimitNumberOfHotRepositories() {
+    WorkdirPool pool = new WorkdirPool("test", workdirProvider, 2, Long.MAX_VALUE, 1, Runnable::run);
+
+    for (String key : Arrays.asList("a", "b", "c")) {
+      assertThat(pool.take(key)).isEmpty();
+      assertThat(pool.take(key)).isEmpty();
+    }
+
+    assertThat(pool.getHotCount()).isEqualTo(2);
+  }
+
+  private File createWorkdir(WorkdirPool pool, String key, int size) throws IOException {
+    assertThat(pool.take(key)).isEmpty();
+    File directory = workdirProvider.createNewWorkdir();
+    Files.write(new File(directory, "content").toPath(), new byte[size]);
+    pool.release(key, directory);
+    return directory;
+  }
+}
@@ -18,6 +18,17 @@ class ComparablesTest {
     assertThat(comparable.compare(a, b)).isEqualTo(-1);
   }
 
+  @Test
+  void shouldCompareDescending() {
+    One a = new One("a");
+    One b = new One("b");
+
+    Comparables.PropertyComparator<One> comparable = Comparables.comparator(One.class, "value", true);
+    assertThat(comparable.compare(a, b)).isEqualTo(1);
+    assertThat(comparable.getProperty()).isEqualTo("value");
+    assertThat(comparable.isDescending()).isTrue();
+  }
+
   @Test
   void shouldThrowAnExceptionForNonExistingField() {
     assertThrows(IllegalArgumentException.class, () -> Comparables.comparator(One.class, "awesome"));
@@ -38,6 +38,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * File base implementation of {@link Blob}.
@@ -75,6 +78,21 @@ public final class FileBlob implements Blob {
     return new FileOutputStream(file);
   }
 
+  @Override
+  public ReadableByteChannel openChannel() throws IOException {
+    return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+  }
+
+  @Override
+  public boolean supportsAppending() {
+    return true;
+  }
+
+  @Override
+  public OutputStream getAppendingOutputStream() throws IOException {
+    return new FileOutputStream(file, true);
+  }
+
   @Override
   public long getSize() {
     if (this.file.isFile()) {
@@ -250,6 +250,31 @@ public class JAXBConfigurationEntryStore<V> implements ConfigurationEntryStore<V
   {
     logger.debug("load configuration from {}", file);
 
+    read(file, context, type, entries);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  private void store()
+  {
+    logger.debug("store configuration to {}", file);
+
+    write(file, context, type, entries);
+  }
+
+  /**
+   * Reads the entries of the configuration file into the given map.
+   *
+   * @param file configuration file
+   * @param context jaxb context for the type of the values
+   * @param type type of the values
+   * @param entries map to store the entries
+   * @param <V> type of the values
+   */
+  static <V> void read(File file, JAXBContext context, Class<V> type, Map<String, V> entries)
+  {
     XMLStreamReader reader = null;
 
     try
@@ -310,13 +335,16 @@ public class JAXBConfigurationEntryStore<V> implements ConfigurationEntryStore<V
   }
 
   /**
-   * Method description
+   * Writes the entries to the configuration file, using {@link CopyOnWrite}.
    *
+   * @param file configuration file
+   * @param context jaxb context for the type of the values
+   * @param type type of the values
+   * @param entries entries to write
+   * @param <V> type of the values
    */
-  private void store()
+  static <V> void write(File file, JAXBContext context, Class<V> type, Map<String, V> entries)
   {
-    logger.debug("store configuration to {}", file);
-
     CopyOnWrite.withTemporaryFile(
       temp -> {
         try (IndentXMLStreamWriter writer = XmlStreams.createWriter(temp)) {
@@ -0,0 +1,352 @@
+package sonia.scm.store;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Collections2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.security.KeyGenerator;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * Configuration entry store which appends every mutation to a journal instead of rewriting the whole xml file. The
+ * entries are kept in memory, the xml file is only rewritten by a compaction, which runs in the background as soon as
+ * the journal contains more records than the configured threshold and more records than entries.
+ * <p>
+ * The xml file has the same format as the one of {@link JAXBConfigurationEntryStore} and is written with
+ * {@link CopyOnWrite}. Every journal record carries its length and a checksum, so that a record which was not
+ * completely written before a crash is detected and ignored on the next load. A compaction first moves the journal
+ * aside, writes the snapshot and deletes the old journal afterwards. If the process dies in between, the old journal
+ * is replayed on top of the new snapshot, which leads to the same entries, because all records are idempotent.
+ *
+ * @param <V> type of the values
+ * @since 2.0.0
+ */
+public class JournaledConfigurationEntryStore<V> implements ConfigurationEntryStore<V> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(JournaledConfigurationEntryStore.class);
+
+  static final String JOURNAL_EXTENSION = ".journal";
+  static final String COMPACTING_EXTENSION = ".compacting";
+
+  private static final byte OP_PUT = 'P';
+  private static final byte OP_REMOVE = 'R';
+  private static final byte OP_CLEAR = 'C';
+
+  private static final String TAG_VALUE = "value";
+
+  /** length of the record size and the checksum in front of every record */
+  private static final int RECORD_HEADER_LENGTH = 12;
+
+  private final File file;
+  private final Path journal;
+  private final Path compacting;
+  private final KeyGenerator keyGenerator;
+  private final Class<V> type;
+  private final JAXBContext context;
+  private final Executor compactor;
+  private final int compactThreshold;
+
+  private final Map<String, V> entries = new ConcurrentHashMap<>();
+  private final Object lock = new Object();
+
+  private OutputStream journalStream;
+  private int journalRecords;
+  private boolean compactionScheduled;
+
+  JournaledConfigurationEntryStore(File file, KeyGenerator keyGenerator, Class<V> type, Executor compactor, int compactThreshold) {
+    this.file = file;
+    this.journal = new File(file.getPath() + JOURNAL_EXTENSION).toPath();
+    this.compacting = new File(file.getPath() + COMPACTING_EXTENSION).toPath();
+    this.keyGenerator = keyGenerator;
+    this.type = type;
+    this.compactor = compactor;
+    this.compactThreshold = compactThreshold;
+
+    try {
+      this.context = JAXBContext.newInstance(type);
+    } catch (JAXBException ex) {
+      throw new StoreException("could not create jaxb context", ex);
+    }
+
+    load();
+  }
+
+  @Override
+  public void clear() {
+    LOG.debug("clear configuration store");
+    append(new byte[]{OP_CLEAR}, entries::clear);
+  }
+
+  @Override
+  public String put(V item) {
+    String id = keyGenerator.createKey();
+    put(id, item);
+    return id;
+  }
+
+  @Override
+  public void put(String id, V item) {
+    LOG.debug("put item {} to configuration store", id);
+    append(record(OP_PUT, id, item), () -> entries.put(id, item));
+  }
+
+  @Override
+  public void remove(String id) {
+    LOG.debug("remove item {} from configuration store", id);
+    append(record(OP_REMOVE, id, null), () -> entries.remove(id));
+  }
+
+  @Override
+  public V get(String id) {
+    LOG.trace("get item {} from configuration store", id);
+    return entries.get(id);
+  }
+
+  @Override
+  public Map<String, V> getAll() {
+    LOG.trace("get all items from configuration store");
+    return Collections.unmodifiableMap(entries);
+  }
+
+  @Override
+  public Collection<V> getMatchingValues(Predicate<V> predicate) {
+    return Collections2.filter(entries.values(), predicate);
+  }
+
+  /**
+   * Writes the snapshot and removes the journal. The method is called by the background compaction and could be used
+   * to compact the store on demand.
+   */
+  void compact() {
+    Map<String, V> snapshot;
+    synchronized (lock) {
+      compactionScheduled = false;
+      if (journalRecords == 0 && !Files.exists(journal) && !Files.exists(compacting)) {
+        return;
+      }
+      LOG.debug("compact configuration store {} with {} journal records", file, journalRecords);
+      closeJournal();
+      rotateJournal();
+      snapshot = new HashMap<>(entries);
+    }
+
+    JAXBConfigurationEntryStore.write(file, context, type, snapshot);
+    delete(compacting);
+  }
+
+  private void load() {
+    if (file.exists()) {
+      LOG.debug("load configuration from {}", file);
+      JAXBConfigurationEntryStore.read(file, context, type, entries);
+    }
+    boolean replayed = replay(compacting);
+    replayed |= replay(journal);
+    if (replayed) {
+      try {
+        compact();
+      } catch (StoreException ex) {
+        LOG.warn("could not compact configuration store {}, keeping the journal", file, ex);
+      }
+    }
+  }
+
+  private boolean replay(Path path) {
+    if (!Files.exists(path)) {
+      return false;
+    }
+    LOG.debug("replay journal {}", path);
+    int records = 0;
+    try {
+      long size = Files.size(path);
+      long valid = 0;
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+        byte[] payload;
+        while ((payload = readRecord(input, size - valid)) != null) {
+          apply(payload);
+          valid += RECORD_HEADER_LENGTH + payload.length;
+          records++;
+        }
+      }
+      if (valid < size) {
+        LOG.warn("truncate journal {} to {} bytes, because the last record is incomplete or corrupt", path, valid);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+          channel.truncate(valid);
+        }
+      }
+    } catch (IOException ex) {
+      throw new StoreException("could not replay journal " + path, ex);
+    }
+    LOG.debug("replayed {} records of journal {}", records, path);
+    return true;
+  }
+
+  private byte[] readRecord(DataInputStream input, long remaining) throws IOException {
+    if (remaining < RECORD_HEADER_LENGTH) {
+      return null;
+    }
+    int length = input.readInt();
+    long checksum = input.readLong();
+    if (length < 1 || length > remaining - RECORD_HEADER_LENGTH) {
+      return null;
+    }
+    byte[] payload = new byte[length];
+    input.readFully(payload);
+    if (checksum(payload) != checksum) {
+      return null;
+    }
+    return payload;
+  }
+
+  private void apply(byte[] payload) throws IOException {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload))) {
+      byte op = input.readByte();
+      if (op == OP_CLEAR) {
+        entries.clear();
+      } else if (op == OP_REMOVE) {
+        entries.remove(input.readUTF());
+      } else if (op == OP_PUT) {
+        String key = input.readUTF();
+        entries.put(key, unmarshal(input));
+      } else {
+        throw new StoreException("unknown journal operation " + op);
+      }
+    }
+  }
+
+  private V unmarshal(InputStream input) {
+    try {
+      JAXBElement<V> element = context.createUnmarshaller().unmarshal(new StreamSource(input), type);
+      return element.getValue();
+    } catch (JAXBException ex) {
+      throw new StoreException("could not unmarshal journal record", ex);
+    }
+  }
+
+  private byte[] record(byte op, String id, V item) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(baos)) {
+      output.writeByte(op);
+      output.writeUTF(id);
+      if (item != null) {
+        Marshaller marshaller = context.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        marshaller.marshal(new JAXBElement<>(QName.valueOf(TAG_VALUE), type, item), output);
+      }
+    } catch (IOException | JAXBException ex) {
+      throw new StoreException("could not create journal record", ex);
+    }
+    return baos.toByteArray();
+  }
+
+  private void append(byte[] payload, Runnable mutation) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(payload.length + RECORD_HEADER_LENGTH);
+    try (DataOutputStream output = new DataOutputStream(baos)) {
+      output.writeInt(payload.length);
+      output.writeLong(checksum(payload));
+      output.write(payload);
+    } catch (IOException ex) {
+      throw new StoreException("could not create journal record", ex);
+    }
+
+    synchronized (lock) {
+      try {
+        if (journalStream == null) {
+          journalStream = new FileOutputStream(journal.toFile(), true);
+        }
+        journalStream.write(baos.toByteArray());
+        journalStream.flush();
+      } catch (IOException ex) {
+        closeJournal();
+        throw new StoreException("could not append to journal of " + file, ex);
+      }
+      mutation.run();
+      journalRecords++;
+      scheduleCompactionIfRequired();
+    }
+  }
+
+  private void scheduleCompactionIfRequired() {
+    if (!compactionScheduled && journalRecords > compactThreshold && journalRecords > entries.size()) {
+      compactionScheduled = true;
+      compactor.execute(() -> {
+        try {
+          compact();
+        } catch (Exception ex) {
+          LOG.warn("compaction of configuration store {} failed", file, ex);
+        }
+      });
+    }
+  }
+
+  /**
+   * Moves the journal aside. If a previous compaction has failed, the journal is appended to the one of the failed
+   * compaction, so that no record gets lost.
+   */
+  private void rotateJournal() {
+    try {
+      if (Files.exists(journal)) {
+        if (Files.exists(compacting)) {
+          Files.write(compacting, Files.readAllBytes(journal), StandardOpenOption.APPEND);
+          Files.delete(journal);
+        } else {
+          Files.move(journal, compacting);
+        }
+      }
+      journalRecords = 0;
+    } catch (IOException ex) {
+      throw new StoreException("could not rotate journal of " + file, ex);
+    }
+  }
+
+  private void closeJournal() {
+    if (journalStream != null) {
+      try {
+        journalStream.close();
+      } catch (IOException ex) {
+        LOG.warn("could not close journal of {}", file, ex);
+      }
+      journalStream = null;
+    }
+  }
+
+  private void delete(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ex) {
+      throw new StoreException("could not delete " + path, ex);
+    }
+  }
+
+  private static long checksum(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    return crc.getValue();
+  }
+}
@@ -0,0 +1,102 @@
+package sonia.scm.store;
+
+import com.github.legman.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.SCMContextProvider;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.repository.RepositoryLocationResolver;
+import sonia.scm.security.KeyGenerator;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory for {@link JournaledConfigurationEntryStore}. The factory keeps one store instance per file, because the
+ * entries of the journaled store live in memory and every instance would otherwise compact its own view of the file.
+ * The journal is compacted as soon as it contains more records than the threshold, which can be configured with the
+ * system property {@code sonia.scm.store.journal.compactThreshold} (default 1000). The stores of a repository are
+ * dropped, when the repository is deleted.
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class JournaledConfigurationEntryStoreFactory extends FileBasedStoreFactory
+  implements ConfigurationEntryStoreFactory {
+
+  static final String PROPERTY_COMPACT_THRESHOLD = "sonia.scm.store.journal.compactThreshold";
+
+  private final KeyGenerator keyGenerator;
+  private final int compactThreshold;
+  private final ExecutorService compactor = Executors.newSingleThreadExecutor(
+    new ThreadFactoryBuilder().setNameFormat("ConfigurationEntryStoreCompactor-%d").setDaemon(true).build()
+  );
+  private final Map<StoreKey, JournaledConfigurationEntryStore<?>> stores = new ConcurrentHashMap<>();
+
+  @Inject
+  public JournaledConfigurationEntryStoreFactory(SCMContextProvider contextProvider, RepositoryLocationResolver repositoryLocationResolver, KeyGenerator keyGenerator) {
+    super(contextProvider, repositoryLocationResolver, Store.CONFIG);
+    this.keyGenerator = keyGenerator;
+    this.compactThreshold = Integer.getInteger(PROPERTY_COMPACT_THRESHOLD, 1000);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> ConfigurationEntryStore<T> getStore(TypedStoreParameters<T> storeParameters) {
+    File file = getStoreLocation(storeParameters.getName().concat(StoreConstants.FILE_EXTENSION), storeParameters.getType(), storeParameters.getRepositoryId());
+    StoreKey key = new StoreKey(file, storeParameters.getType(), storeParameters.getRepositoryId());
+    return (ConfigurationEntryStore<T>) stores.computeIfAbsent(
+      key, k -> new JournaledConfigurationEntryStore<>(file, keyGenerator, storeParameters.getType(), compactor, compactThreshold)
+    );
+  }
+
+  /**
+   * Drops the stores of a deleted repository. Otherwise they would stay in memory forever and a repository, which is
+   * created again at the same location, would get the entries of the deleted one.
+   *
+   * @param event repository event
+   */
+  @Subscribe(async = false)
+  public void onEvent(RepositoryEvent event) {
+    if (event.getEventType() == HandlerEventType.DELETE) {
+      String repositoryId = event.getItem().getId();
+      stores.keySet().removeIf(key -> repositoryId.equals(key.repositoryId));
+    }
+  }
+
+  private static final class StoreKey {
+
+    private final String path;
+    private final String type;
+    private final String repositoryId;
+
+    private StoreKey(File file, Class<?> type, String repositoryId) {
+      this.path = file.getAbsolutePath();
+      this.type = type.getName();
+      this.repositoryId = repositoryId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      StoreKey other = (StoreKey) o;
+      return path.equals(other.path) && type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, type);
+    }
+  }
+}
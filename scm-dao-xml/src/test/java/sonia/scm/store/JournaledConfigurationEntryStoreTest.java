@@ -0,0 +1,137 @@
+package sonia.scm.store;
+
+import org.junit.Test;
+import sonia.scm.HandlerEventType;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.security.UUIDKeyGenerator;
+import sonia.scm.util.IOUtil;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JournaledConfigurationEntryStoreTest extends ConfigurationEntryStoreTestBase {
+
+  @Override
+  protected ConfigurationEntryStoreFactory createConfigurationStoreFactory() {
+    return new JournaledConfigurationEntryStoreFactory(contextProvider, repositoryLocationResolver, new UUIDKeyGenerator());
+  }
+
+  @Test
+  public void shouldReplayJournalOnLoad() {
+    store.put("a", new StoreObject("a1"));
+    store.put("b", new StoreObject("b1"));
+    store.put("a", new StoreObject("a2"));
+    store.remove("b");
+
+    ConfigurationEntryStore<StoreObject> reloaded = getDataStore(StoreObject.class);
+
+    assertThat(reloaded.getAll()).containsOnlyKeys("a");
+    assertThat(reloaded.get("a").getValue()).isEqualTo("a2");
+  }
+
+  @Test
+  public void shouldCompactJournalOnLoad() {
+    store.put("a", new StoreObject("a1"));
+
+    getDataStore(StoreObject.class);
+
+    assertThat(journal()).doesNotExist();
+    assertThat(snapshot()).exists();
+
+    ConfigurationEntryStore<StoreObject> jaxbStore = new JAXBConfigurationEntryStoreFactory(contextProvider, repositoryLocationResolver, new UUIDKeyGenerator())
+      .withType(StoreObject.class)
+      .withName(storeName)
+      .build();
+    assertThat(jaxbStore.get("a").getValue()).isEqualTo("a1");
+  }
+
+  @Test
+  public void shouldIgnoreIncompleteRecordAtTheEndOfTheJournal() throws IOException {
+    store.put("a", new StoreObject("a1"));
+    try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(journal().toPath(), StandardOpenOption.APPEND))) {
+      output.writeInt(42);
+      output.writeLong(21L);
+      output.write(new byte[]{'P', 0, 1});
+    }
+
+    ConfigurationEntryStore<StoreObject> reloaded = getDataStore(StoreObject.class);
+
+    assertThat(reloaded.getAll()).containsOnlyKeys("a");
+  }
+
+  @Test
+  public void shouldIgnoreCorruptRecord() throws IOException {
+    store.put("a", new StoreObject("a1"));
+    store.put("b", new StoreObject("b1"));
+    byte[] content = Files.readAllBytes(journal().toPath());
+    content[content.length - 1] ^= 0x01;
+    Files.write(journal().toPath(), content);
+
+    ConfigurationEntryStore<StoreObject> reloaded = getDataStore(StoreObject.class);
+
+    assertThat(reloaded.getAll()).containsOnlyKeys("a");
+  }
+
+  @Test
+  public void shouldCompactIfJournalExceedsThreshold() {
+    JournaledConfigurationEntryStore<StoreObject> journaled = new JournaledConfigurationEntryStore<>(
+      snapshot(), new UUIDKeyGenerator(), StoreObject.class, Runnable::run, 2
+    );
+
+    journaled.put("a", new StoreObject("a1"));
+    journaled.put("a", new StoreObject("a2"));
+    assertThat(journal()).exists();
+
+    journaled.put("a", new StoreObject("a3"));
+    assertThat(journal()).doesNotExist();
+
+    ConfigurationEntryStore<StoreObject> reloaded = getDataStore(StoreObject.class);
+    assertThat(reloaded.get("a").getValue()).isEqualTo("a3");
+  }
+
+  @Test
+  public void shouldReplayJournalOfInterruptedCompaction() throws IOException {
+    store.put("a", new StoreObject("a1"));
+    store.put("b", new StoreObject("b1"));
+    Files.move(journal().toPath(), new File(snapshot().getPath() + JournaledConfigurationEntryStore.COMPACTING_EXTENSION).toPath());
+
+    ConfigurationEntryStore<StoreObject> reloaded = getDataStore(StoreObject.class);
+
+    assertThat(reloaded.getAll()).containsOnlyKeys("a", "b");
+  }
+
+  @Test
+  public void shouldDropStoresOfDeletedRepository() throws IOException {
+    JournaledConfigurationEntryStoreFactory factory = new JournaledConfigurationEntryStoreFactory(
+      contextProvider, repositoryLocationResolver, new UUIDKeyGenerator()
+    );
+    ConfigurationEntryStore<StoreObject> global = factory.withType(StoreObject.class).withName(storeName).build();
+    ConfigurationEntryStore<StoreObject> deleted = factory.withType(StoreObject.class).withName(repoStoreName)
+      .forRepository(repository).build();
+    deleted.put("a", new StoreObject("a1"));
+
+    factory.onEvent(new RepositoryEvent(HandlerEventType.DELETE, repository));
+    Path location = repositoryLocationResolver.forClass(Path.class).getLocation(repository.getId());
+    IOUtil.delete(location.resolve(Store.CONFIG.getRepositoryStoreDirectory()).toFile());
+
+    ConfigurationEntryStore<StoreObject> created = factory.withType(StoreObject.class).withName(repoStoreName)
+      .forRepository(repository).build();
+    assertThat(created).isNotSameAs(deleted);
+    assertThat(created.getAll()).isEmpty();
+    assertThat(factory.withType(StoreObject.class).withName(storeName).build()).isSameAs(global);
+  }
+
+  private File snapshot() {
+    return new File(new File(contextProvider.getBaseDirectory(), "config"), storeName + StoreConstants.FILE_EXTENSION);
+  }
+
+  private File journal() {
+    return new File(snapshot().getPath() + JournaledConfigurationEntryStore.JOURNAL_EXTENSION);
+  }
+}
@@ -90,6 +90,23 @@ public class GitChangesetConverter implements Closeable
    */
   public GitChangesetConverter(org.eclipse.jgit.lib.Repository repository,
     RevWalk revWalk)
+  {
+    this(repository, revWalk, GitUtil.createTagMap(repository, revWalk));
+  }
+
+  /**
+   * Constructs a converter which uses the given tags, instead of reading
+   * them from the repository.
+   *
+   *
+   * @param repository
+   * @param revWalk
+   * @param tags commit ids mapped to tag names
+   *
+   * @since 2.0.0
+   */
+  public GitChangesetConverter(org.eclipse.jgit.lib.Repository repository,
+    RevWalk revWalk, Multimap<ObjectId, String> tags)
   {
     this.repository = repository;
 
@@ -103,7 +120,7 @@ public class GitChangesetConverter implements Closeable
       this.revWalk = new RevWalk(repository);
     }
 
-    this.tags = GitUtil.createTagMap(repository, revWalk);
+    this.tags = tags;
     treeWalk = new TreeWalk(repository);
   }
 
@@ -0,0 +1,351 @@
+package sonia.scm.repository;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.Striped;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Persistent index of the commits reachable from the branches of a git repository. For every indexed branch the
+ * index stores the ids of all reachable commits in the order in which a default {@link RevWalk} emits them. With
+ * this positions the log command is able to compute the total count and any page of the history without walking
+ * the whole history again.
+ * <p>
+ * The index files are stored in the git directory of the repository and are updated incrementally, if the new head
+ * of a branch is a descendant of the indexed head and the new commits do not change the order of the already
+ * indexed history. In every other case the index of the branch is rebuilt from scratch.
+ *
+ * @since 2.0.0
+ */
+public final class GitCommitIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GitCommitIndex.class);
+
+  static final String DIRECTORY = "scm-commit-index";
+
+  private static final int MAGIC = 0x53434D49;
+  private static final int VERSION = 1;
+
+  // magic, version, head id, max commit time and count
+  private static final int HEADER_LENGTH = 4 + 4 + ObjectId.OBJECT_ID_LENGTH + 4 + 4;
+
+  private static final Striped<Lock> LOCKS = Striped.lock(16);
+
+  private final File directory;
+
+  public GitCommitIndex(File gitDirectory) {
+    this.directory = new File(gitDirectory, DIRECTORY);
+  }
+
+  /**
+   * Returns the up to date index entry for the given branch. The entry is created or updated, if the indexed head of
+   * the branch does not match the current one.
+   *
+   * @param repository git repository
+   * @param branch branch ref
+   *
+   * @return index entry of the branch
+   *
+   * @throws IOException if the index could not be read or written
+   */
+  public Entry get(org.eclipse.jgit.lib.Repository repository, Ref branch) throws IOException {
+    File file = getFile(branch.getName());
+    ObjectId head = branch.getObjectId();
+
+    Lock lock = LOCKS.get(file.getAbsolutePath());
+    lock.lock();
+    try {
+      Entry entry = read(file);
+      if (entry != null && entry.getHead().equals(head)) {
+        return entry;
+      }
+
+      if (entry != null) {
+        Entry updated = append(repository, file, entry, head);
+        if (updated != null) {
+          return updated;
+        }
+      }
+
+      return rebuild(repository, file, head);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Updates the index of every already indexed branch and removes the index of branches which are gone.
+   *
+   * @param repository git repository
+   *
+   * @throws IOException if the index could not be read or written
+   */
+  public void update(org.eclipse.jgit.lib.Repository repository) throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.getName().endsWith(".tmp")) {
+        continue;
+      }
+      String refName = decode(file.getName());
+      Ref ref = refName != null ? repository.exactRef(refName) : null;
+      if (ref == null || ref.getObjectId() == null) {
+        LOG.debug("remove commit index of {}, because the branch does not exist anymore", refName);
+        Files.deleteIfExists(file.toPath());
+      } else {
+        get(repository, ref);
+      }
+    }
+  }
+
+  private Entry append(org.eclipse.jgit.lib.Repository repository, File file, Entry entry, ObjectId head) throws IOException {
+    try (RevWalk walk = new RevWalk(repository)) {
+      RevCommit newHead = walk.parseCommit(head);
+      RevCommit oldHead = walk.parseCommit(entry.getHead());
+      if (!walk.isMergedInto(oldHead, newHead)) {
+        LOG.debug("indexed head {} is not an ancestor of {}, rebuild commit index", oldHead.name(), newHead.name());
+        return null;
+      }
+
+      walk.reset();
+      walk.markStart(newHead);
+      walk.markUninteresting(oldHead);
+
+      List<RevCommit> commits = new ArrayList<>();
+      for (RevCommit commit : walk) {
+        commits.add(commit);
+      }
+
+      if (!canAppend(commits, oldHead, entry.getMaxCommitTime())) {
+        LOG.debug("new commits change the order of the indexed history, rebuild commit index");
+        return null;
+      }
+
+      int maxCommitTime = entry.getMaxCommitTime();
+      for (RevCommit commit : commits) {
+        maxCommitTime = Math.max(maxCommitTime, commit.getCommitTime());
+      }
+
+      LOG.trace("append {} commits to commit index {}", commits.size(), file);
+      return write(file, head, maxCommitTime, commits, entry);
+    } catch (MissingObjectException ex) {
+      LOG.debug("indexed head is missing, rebuild commit index", ex);
+      return null;
+    }
+  }
+
+  /**
+   * The new commits can be put in front of the indexed history, if every new commit is newer than the indexed
+   * history and the old head is the only indexed commit which is referenced by the new commits. Only then a full
+   * walk would emit the new commits first, followed by the exactly same sequence as the indexed walk.
+   */
+  private boolean canAppend(List<RevCommit> commits, RevCommit oldHead, int maxCommitTime) {
+    Set<ObjectId> ids = new HashSet<>();
+    for (RevCommit commit : commits) {
+      if (commit.getCommitTime() <= maxCommitTime) {
+        return false;
+      }
+      ids.add(commit.getId());
+    }
+    for (RevCommit commit : commits) {
+      for (RevCommit parent : commit.getParents()) {
+        if (!ids.contains(parent.getId()) && !parent.getId().equals(oldHead.getId())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private Entry rebuild(org.eclipse.jgit.lib.Repository repository, File file, ObjectId head) throws IOException {
+    LOG.debug("build commit index {} for head {}", file, head.name());
+    try (RevWalk walk = new RevWalk(repository)) {
+      walk.markStart(walk.parseCommit(head));
+
+      List<RevCommit> commits = new ArrayList<>();
+      int maxCommitTime = 0;
+      for (RevCommit commit : walk) {
+        commits.add(commit);
+        maxCommitTime = Math.max(maxCommitTime, commit.getCommitTime());
+      }
+
+      return write(file, head, maxCommitTime, commits, null);
+    }
+  }
+
+  private Entry write(File file, ObjectId head, int maxCommitTime, List<RevCommit> commits, Entry previous) throws IOException {
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("could not create directory " + directory);
+    }
+
+    int count = commits.size() + (previous != null ? previous.getCount() : 0);
+
+    File tmp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      writeId(output, head);
+      output.writeInt(maxCommitTime);
+      output.writeInt(count);
+      for (RevCommit commit : commits) {
+        writeId(output, commit);
+      }
+      if (previous != null) {
+        copyIds(previous, output);
+      }
+    }
+
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return new Entry(file, head.copy(), maxCommitTime, count);
+  }
+
+  private void writeId(DataOutputStream output, ObjectId id) throws IOException {
+    byte[] raw = new byte[ObjectId.OBJECT_ID_LENGTH];
+    id.copyRawTo(raw, 0);
+    output.write(raw);
+  }
+
+  private void copyIds(Entry entry, DataOutputStream output) throws IOException {
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(entry.getFile())))) {
+      input.skipBytes(HEADER_LENGTH);
+      byte[] buffer = new byte[ObjectId.OBJECT_ID_LENGTH * 1024];
+      long remaining = (long) entry.getCount() * ObjectId.OBJECT_ID_LENGTH;
+      while (remaining > 0) {
+        int length = (int) Math.min(buffer.length, remaining);
+        input.readFully(buffer, 0, length);
+        output.write(buffer, 0, length);
+        remaining -= length;
+      }
+    }
+  }
+
+  private Entry read(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        LOG.warn("commit index {} has an unknown format, it will be rebuilt", file);
+        return null;
+      }
+      byte[] raw = new byte[ObjectId.OBJECT_ID_LENGTH];
+      input.readFully(raw);
+      int maxCommitTime = input.readInt();
+      int count = input.readInt();
+      if (file.length() != HEADER_LENGTH + (long) count * ObjectId.OBJECT_ID_LENGTH) {
+        LOG.warn("commit index {} is incomplete, it will be rebuilt", file);
+        return null;
+      }
+      return new Entry(file, ObjectId.fromRaw(raw), maxCommitTime, count);
+    } catch (EOFException ex) {
+      LOG.warn("commit index {} is truncated, it will be rebuilt", file);
+      return null;
+    } catch (IOException ex) {
+      LOG.warn("could not read commit index {}, it will be rebuilt", file, ex);
+      return null;
+    }
+  }
+
+  private File getFile(String refName) {
+    return new File(directory, BaseEncoding.base16().lowerCase().encode(refName.getBytes(UTF_8)));
+  }
+
+  private String decode(String fileName) {
+    try {
+      return new String(BaseEncoding.base16().lowerCase().decode(fileName), UTF_8);
+    } catch (IllegalArgumentException ex) {
+      LOG.warn("found unexpected file {} in commit index directory", fileName);
+      return null;
+    }
+  }
+
+  /**
+   * Index of a single branch.
+   */
+  public static final class Entry {
+
+    private final File file;
+    private final ObjectId head;
+    private final int maxCommitTime;
+    private final int count;
+
+    private Entry(File file, ObjectId head, int maxCommitTime, int count) {
+      this.file = file;
+      this.head = head;
+      this.maxCommitTime = maxCommitTime;
+      this.count = count;
+    }
+
+    /**
+     * Returns the ids of the commits at the given positions of the history.
+     *
+     * @param start position of the first commit
+     * @param limit maximum count of commits, a negative value returns all commits after start
+     *
+     * @return commit ids
+     *
+     * @throws IOException if the index could not be read
+     */
+    public List<ObjectId> read(int start, int limit) throws IOException {
+      if (start >= count) {
+        return Collections.emptyList();
+      }
+      int end = limit < 0 ? count : (int) Math.min(count, (long) start + limit);
+
+      List<ObjectId> ids = new ArrayList<>(end - start);
+      try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+        input.seek(HEADER_LENGTH + (long) start * ObjectId.OBJECT_ID_LENGTH);
+        byte[] raw = new byte[ObjectId.OBJECT_ID_LENGTH];
+        for (int i = start; i < end; i++) {
+          input.readFully(raw);
+          ids.add(ObjectId.fromRaw(raw));
+        }
+      }
+      return ids;
+    }
+
+    public ObjectId getHead() {
+      return head;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    int getMaxCommitTime() {
+      return maxCommitTime;
+    }
+
+    File getFile() {
+      return file;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package sonia.scm.repository;
+
+import com.github.legman.Subscribe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.EagerSingleton;
+import sonia.scm.plugin.Extension;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Updates the {@link GitCommitIndex} of a git repository after a push, so that the next log request does not have to
+ * pay for the update.
+ *
+ * @since 2.0.0
+ */
+@Extension
+@EagerSingleton
+public class GitCommitIndexUpdateListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GitCommitIndexUpdateListener.class);
+
+  private final GitRepositoryHandler repositoryHandler;
+
+  @Inject
+  public GitCommitIndexUpdateListener(GitRepositoryHandler repositoryHandler) {
+    this.repositoryHandler = repositoryHandler;
+  }
+
+  @Subscribe
+  public void onEvent(PostReceiveRepositoryHookEvent event) {
+    Repository repository = event.getRepository();
+    if (repository == null || !GitRepositoryHandler.TYPE_NAME.equals(repository.getType())) {
+      return;
+    }
+
+    File directory = repositoryHandler.getDirectory(repository.getId());
+    try (org.eclipse.jgit.lib.Repository gitRepository = GitUtil.open(directory)) {
+      new GitCommitIndex(directory).update(gitRepository);
+    } catch (IOException ex) {
+      LOG.warn("could not update commit index of repository {}", repository.getNamespaceAndName(), ex);
+    }
+  }
+}
@@ -43,10 +43,12 @@ import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sonia.scm.web.lfs.LfsObjectStore;
 
 /**
  * Executes git gc on every git repository. Statistics of the gc process are logged to the info level. The task is 
- * disabled by default and must be enabled through the global git configuration.
+ * disabled by default and must be enabled through the global git configuration. After the repositories, the lfs
+ * objects which are no longer referenced by any repository are removed.
  * 
  * @author Sebastian Sdorra
  * @since 1.47
@@ -59,12 +61,19 @@ public class GitGcTask implements Runnable {
 
   private final RepositoryManager repositoryManager;
   private final RepositoryDirectoryHandler repositoryHandler;
+  private final LfsObjectStore lfsObjectStore;
 
-  @Inject
   public GitGcTask(RepositoryManager repositoryManager)
+  {
+    this(repositoryManager, null);
+  }
+
+  @Inject
+  public GitGcTask(RepositoryManager repositoryManager, LfsObjectStore lfsObjectStore)
   {
     this.repositoryManager = repositoryManager;
     this.repositoryHandler = (RepositoryDirectoryHandler) repositoryManager.getHandler(GitRepositoryHandler.TYPE_NAME);
+    this.lfsObjectStore = lfsObjectStore;
   }
 
   @Override
@@ -74,6 +83,27 @@ public class GitGcTask implements Runnable {
     {
       handle(repository);
     }
+    if (lfsObjectStore != null)
+    {
+      gcLfsObjects();
+    }
+  }
+
+  private void gcLfsObjects()
+  {
+    logger.info("start gc of lfs objects");
+    Stopwatch sw = Stopwatch.createStarted();
+    try
+    {
+      // the repositories are looked up during the gc of the lfs objects, because repositories could have been
+      // created or deleted while the git gc was running
+      int removed = lfsObjectStore.gc(id -> repositoryManager.get(id) != null);
+      logger.debug("gc of lfs objects has removed {} objects after {}", removed, sw.stop());
+    }
+    catch (IOException ex)
+    {
+      logger.warn("failed running gc of lfs objects", ex);
+    }
   }
 
   private void handle(Repository repository){
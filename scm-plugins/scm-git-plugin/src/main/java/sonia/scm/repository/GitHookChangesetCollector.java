@@ -35,12 +35,16 @@ package sonia.scm.repository;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.ReceiveCommand;
@@ -49,23 +53,49 @@ import org.eclipse.jgit.transport.ReceivePack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.repository.GitHookPushState.ChangesetBuffer;
 import sonia.scm.util.IOUtil;
 import sonia.scm.web.CollectingPackParserListener;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.Closeable;
 import java.io.IOException;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Collects the changesets which were added with the commands of a push. All
+ * branch commands are walked with a single {@link RevWalk}, which marks every
+ * new commit with the branches it was pushed to, and the commits are
+ * converted lazily during the iteration over the changesets. The tags of the
+ * repository and the first changesets are stored in the
+ * {@link GitHookPushState} of the push, which is shared between the pre and
+ * post receive hook. The number of buffered changesets can be configured with
+ * the system property {@value #PROPERTY_BUFFER_SIZE} (default
+ * {@value #DEFAULT_BUFFER_SIZE}), iterations beyond the buffer continue with
+ * a new walk.
  *
  * @author Sebastian Sdorra
  */
 public class GitHookChangesetCollector
 {
 
+  /** system property for the maximum number of buffered changesets */
+  static final String PROPERTY_BUFFER_SIZE =
+    "sonia.scm.git.hook.changesetBufferSize";
+
+  /** default maximum number of buffered changesets */
+  static final int DEFAULT_BUFFER_SIZE = 1000;
+
+  /**
+   * every branch of a walk needs its own flag and the number of flags of a
+   * {@link RevWalk} is limited
+   */
+  private static final int MAX_BRANCHES_PER_WALK = 16;
+
   /**
    * the logger for GitHookChangesetCollector
    */
@@ -84,152 +114,407 @@ public class GitHookChangesetCollector
   public GitHookChangesetCollector(ReceivePack rpack,
     List<ReceiveCommand> receiveCommands)
   {
-    this.rpack = rpack;
+    this(rpack, receiveCommands,
+      Integer.getInteger(PROPERTY_BUFFER_SIZE, DEFAULT_BUFFER_SIZE));
+  }
+
+  /**
+   * Constructs a new instance
+   *
+   *
+   * @param rpack
+   * @param receiveCommands
+   * @param bufferSize maximum number of buffered changesets
+   */
+  @VisibleForTesting
+  GitHookChangesetCollector(ReceivePack rpack,
+    List<ReceiveCommand> receiveCommands, int bufferSize)
+  {
+    this.repository = rpack.getRepository();
     this.receiveCommands = receiveCommands;
     this.listener = CollectingPackParserListener.get(rpack);
+    this.bufferSize = bufferSize;
+    this.branchCommands = filterBranchCommands(receiveCommands);
   }
 
   //~--- methods --------------------------------------------------------------
 
   /**
    * Collect all new changesets from the received hook.
+   * <strong>Note:</strong> This method converts all changesets at once, use
+   * {@link #getChangesets()} to iterate over the changesets of large pushes.
    *
    * @return new changesets
    */
   public List<Changeset> collectChangesets()
   {
-    Map<String, Changeset> changesets = Maps.newLinkedHashMap();
+    return Lists.newArrayList(getChangesets());
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the new changesets from the received hook. The changesets are
+   * collected during the iteration.
+   *
+   * @return new changesets
+   *
+   * @since 2.0.0
+   */
+  public Iterable<Changeset> getChangesets()
+  {
+    GitHookPushState state = listener.getPushState();
+    Multimap<ObjectId, String> tags = state.getTags(repository,
+                                        receiveCommands);
+    ChangesetBuffer buffer = state.getBuffer(createBufferKey(), bufferSize);
 
-    org.eclipse.jgit.lib.Repository repository = rpack.getRepository();
+    return () -> new ChangesetIterator(buffer, tags);
+  }
 
-    RevWalk walk = null;
+  //~--- methods --------------------------------------------------------------
 
-    GitChangesetConverter converter = null;
+  private static List<ReceiveCommand> filterBranchCommands(
+    List<ReceiveCommand> receiveCommands)
+  {
+    ImmutableList.Builder<ReceiveCommand> builder = ImmutableList.builder();
 
-    try
+    for (ReceiveCommand rc : receiveCommands)
     {
-      walk = rpack.getRevWalk();
-      converter = new GitChangesetConverter(repository, walk);
+      String ref = rc.getRefName();
 
-      for (ReceiveCommand rc : receiveCommands)
+      logger.trace("handle receive command, type={}, ref={}, result={}",
+        rc.getType(), ref, rc.getResult());
+
+      if (rc.getType() == ReceiveCommand.Type.DELETE)
+      {
+        logger.debug("skip delete of ref {}", ref);
+      }
+      else if (!GitUtil.isBranch(ref))
       {
-        String ref = rc.getRefName();
-        
-        logger.trace("handle receive command, type={}, ref={}, result={}", rc.getType(), ref, rc.getResult());
-        
-        if (rc.getType() == ReceiveCommand.Type.DELETE)
+        logger.debug("skip ref {}, because it is not a branch", ref);
+      }
+      else
+      {
+        builder.add(rc);
+      }
+    }
+
+    return builder.build();
+  }
+
+  private List<String> createBufferKey()
+  {
+    List<String> key = Lists.newArrayList();
+
+    for (ReceiveCommand rc : branchCommands)
+    {
+      key.add(rc.getRefName().concat(":").concat(rc.getOldId().name())
+        .concat(":").concat(rc.getNewId().name()));
+    }
+
+    return key;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Iterator which returns the buffered changesets first and continues with a
+   * walk, if the buffer is not complete.
+   */
+  private class ChangesetIterator extends AbstractIterator<Changeset>
+  {
+
+    private ChangesetIterator(ChangesetBuffer buffer,
+      Multimap<ObjectId, String> tags)
+    {
+      this.buffer = buffer;
+      this.tags = tags;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    @Override
+    protected Changeset computeNext()
+    {
+      if (walk == null)
+      {
+        Changeset changeset = buffer.get(index);
+
+        if (changeset != null)
         {
-          logger.debug("skip delete of ref {}", ref);
+          index++;
+
+          return changeset;
         }
-        else if (! GitUtil.isBranch(ref))
+        else if (buffer.isComplete())
         {
-          logger.debug("skip ref {}, because it is not a branch", ref);
+          return endOfData();
         }
-        else
+      }
+
+      try
+      {
+        if (walk == null)
         {
-          try
-          {
-            collectChangesets(changesets, converter, walk, rc);
-          }
-          catch (IOException ex)
-          {
-            StringBuilder builder = new StringBuilder();
-
-            builder.append("could not handle receive command, type=");
-            builder.append(rc.getType()).append(", ref=");
-            builder.append(rc.getRefName()).append(", result=");
-            builder.append(rc.getResult());
-            
-            logger.error(builder.toString(), ex);
-          }
+          logger.debug("collect changesets, skip {} buffered changesets",
+            index);
+          walk = new CommitWalk(tags);
+          walk.skip(index);
         }
+
+        Changeset changeset = walk.next();
+
+        if (changeset == null)
+        {
+          buffer.complete(index);
+          walk.close();
+
+          return endOfData();
+        }
+
+        buffer.append(index, changeset);
+        index++;
+
+        return changeset;
       }
+      catch (IOException ex)
+      {
+        logger.error("could not collect changesets", ex);
+        IOUtil.close(walk);
 
+        return endOfData();
+      }
     }
-    catch (Exception ex)
+
+    //~--- fields -------------------------------------------------------------
+
+    private final ChangesetBuffer buffer;
+
+    private final Multimap<ObjectId, String> tags;
+
+    private int index;
+
+    private CommitWalk walk;
+  }
+
+
+  /**
+   * Walks the new commits of all branch commands. The commands are walked in
+   * batches of {@link #MAX_BRANCHES_PER_WALK} branches, commits which were
+   * already returned for a previous batch are not returned again.
+   */
+  private class CommitWalk implements Closeable
+  {
+
+    private CommitWalk(Multimap<ObjectId, String> tags)
     {
-      logger.error("could not collect changesets", ex);
+      this.tags = tags;
+      this.batches = Lists.partition(branchCommands, MAX_BRANCHES_PER_WALK);
+
+      for (ReceiveCommand rc : branchCommands)
+      {
+        ObjectId oldId = rc.getOldId();
+
+        if ((oldId != null) && !oldId.equals(ObjectId.zeroId()))
+        {
+          uninteresting.add(oldId);
+        }
+      }
     }
-    finally
+
+    //~--- methods ------------------------------------------------------------
+
+    @Override
+    public void close()
     {
-      IOUtil.close(converter);
-      GitUtil.release(walk);
+      closeBatch();
+
+      if (stopwatch.isRunning())
+      {
+        logger.debug("converted {} changesets of {} branches in {}", count,
+          branchCommands.size(), stopwatch.stop());
+      }
     }
 
-    return Lists.newArrayList(changesets.values());
-  }
+    Changeset next() throws IOException
+    {
+      RevCommit commit = nextCommit();
 
-  private void collectChangesets(Map<String, Changeset> changesets,
-    GitChangesetConverter converter, RevWalk walk, ReceiveCommand rc)
-    throws IncorrectObjectTypeException, IOException
-  {
-    ObjectId newId = rc.getNewId();
+      if (commit == null)
+      {
+        return null;
+      }
 
-    String branch = GitUtil.getBranch(rc.getRefName());
+      revWalk.parseBody(commit);
 
-    walk.reset();
-    walk.sort(RevSort.TOPO);
-    walk.sort(RevSort.REVERSE, true);
+      Changeset changeset = converter.createChangeset(commit,
+                              getBranches(commit));
 
-    logger.trace("mark {} as start for rev walk", newId.getName());
+      // the body is not needed anymore, release it to keep huge pushes small
+      commit.disposeBody();
+      count++;
 
-    walk.markStart(walk.parseCommit(newId));
+      logger.trace("retrieve commit {} for hook", changeset.getId());
 
-    ObjectId oldId = rc.getOldId();
+      return changeset;
+    }
 
-    if ((oldId != null) && !oldId.equals(ObjectId.zeroId()))
+    void skip(int skip) throws IOException
     {
-      logger.trace("mark {} as uninteresting for rev walk", oldId.getName());
+      int skipped = 0;
 
-      walk.markUninteresting(walk.parseCommit(oldId));
+      while ((skipped < skip) && (nextCommit() != null))
+      {
+        skipped++;
+      }
     }
 
-    RevCommit commit = walk.next();
-
-    while (commit != null)
+    private void closeBatch()
     {
-      String id = commit.getId().name();
-      Changeset changeset = changesets.get(id);
+      IOUtil.close(converter);
+      GitUtil.release(revWalk);
+      converter = null;
+      revWalk = null;
+    }
 
-      if (changeset != null)
+    private RevCommit nextCommit() throws IOException
+    {
+      while (true)
       {
-        logger.trace(
-          "commit {} already received durring this push, add branch {} to the commit",
-          commit, branch);
-        changeset.getBranches().add(branch);
+        if (revWalk != null)
+        {
+          for (RevCommit commit = revWalk.next(); commit != null;
+            commit = revWalk.next())
+          {
+            // only append new commits
+            if (listener.isNew(commit))
+            {
+              return commit;
+            }
+
+            logger.trace("commit {} was already received", commit.getId());
+          }
+
+          closeBatch();
+        }
+
+        if (batch >= batches.size())
+        {
+          return null;
+        }
+
+        startBatch(batches.get(batch++));
       }
-      else
+    }
+
+    private void startBatch(List<ReceiveCommand> commands) throws IOException
+    {
+      revWalk = new RevWalk(repository);
+      revWalk.setRetainBody(false);
+      revWalk.sort(RevSort.TOPO);
+      revWalk.sort(RevSort.REVERSE, true);
+      converter = new GitChangesetConverter(repository, revWalk, tags);
+      flags.clear();
+
+      for (ReceiveCommand rc : commands)
       {
+        String branch = GitUtil.getBranch(rc.getRefName());
 
-        // only append new commits
-        if (listener.isNew(commit))
+        try
         {
+          RevCommit start = revWalk.parseCommit(rc.getNewId());
+
+          // the flag is carried to every parent, to find the branches of a
+          // commit which is reachable from more than one pushed branch
+          RevFlag flag = revWalk.newFlag(branch);
 
-          // parse commit body to avoid npe
-          walk.parseBody(commit);
+          revWalk.carry(flag);
+          start.add(flag);
 
-          changeset = converter.createChangeset(commit, branch);
+          logger.trace("mark {} as start for rev walk", start.getName());
 
-          logger.trace("retrieve commit {} for hook", changeset.getId());
+          revWalk.markStart(start);
+          flags.put(flag, branch);
+        }
+        catch (IOException ex)
+        {
+          logger.error(
+            "could not handle receive command, type={}, ref={}, result={}",
+            rc.getType(), rc.getRefName(), rc.getResult(), ex);
+        }
+      }
 
-          changesets.put(id, changeset);
+      for (ObjectId id : uninteresting)
+      {
+        try
+        {
+          logger.trace("mark {} as uninteresting for rev walk", id.getName());
+          revWalk.markUninteresting(revWalk.parseCommit(id));
         }
-        else
+        catch (IOException ex)
         {
-          logger.trace("commit {} was already received", commit.getId());
+          logger.warn("could not mark {} as uninteresting", id.getName(), ex);
         }
       }
 
-      commit = walk.next();
+      // commits of this batch should not be returned again by a later batch
+      for (ReceiveCommand rc : commands)
+      {
+        uninteresting.add(rc.getNewId());
+      }
     }
+
+    //~--- get methods --------------------------------------------------------
+
+    private List<String> getBranches(RevCommit commit)
+    {
+      List<String> branches = Lists.newArrayList();
+
+      for (Map.Entry<RevFlag, String> e : flags.entrySet())
+      {
+        if (commit.has(e.getKey()))
+        {
+          branches.add(e.getValue());
+        }
+      }
+
+      return branches;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    private final List<List<ReceiveCommand>> batches;
+
+    private final Map<RevFlag, String> flags = new LinkedHashMap<>();
+
+    private final Stopwatch stopwatch = Stopwatch.createStarted();
+
+    private final Multimap<ObjectId, String> tags;
+
+    private final List<ObjectId> uninteresting = Lists.newArrayList();
+
+    private int batch;
+
+    private GitChangesetConverter converter;
+
+    private int count;
+
+    private RevWalk revWalk;
   }
 
+
   //~--- fields ---------------------------------------------------------------
 
+  /** branch commands of the push */
+  private final List<ReceiveCommand> branchCommands;
+
+  /** maximum number of buffered changesets */
+  private final int bufferSize;
+
   /** listener to track new objects */
   private final CollectingPackParserListener listener;
 
   private final List<ReceiveCommand> receiveCommands;
 
-  private final ReceivePack rpack;
+  private final org.eclipse.jgit.lib.Repository repository;
 }
@@ -0,0 +1,147 @@
+package sonia.scm.repository;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of a single push, which is shared between the pre and post receive hook and between all handlers of the hook
+ * events. The state holds the tags of the repository, which are read only once per push, and a bounded buffer of the
+ * changesets collected for the received commands.
+ *
+ * @since 2.0.0
+ */
+public final class GitHookPushState {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GitHookPushState.class);
+
+  private ImmutableListMultimap<ObjectId, String> tags;
+  private ChangesetBuffer buffer;
+
+  /**
+   * Returns the tags of the repository. The tags are read on the first call, later calls apply the tag commands of
+   * the push which were already executed.
+   *
+   * @param repository git repository
+   * @param commands received commands
+   *
+   * @return commit ids mapped to tag names
+   */
+  synchronized Multimap<ObjectId, String> getTags(org.eclipse.jgit.lib.Repository repository,
+                                                  Iterable<ReceiveCommand> commands) {
+    try (RevWalk walk = new RevWalk(repository)) {
+      if (tags == null) {
+        Stopwatch sw = Stopwatch.createStarted();
+        tags = ImmutableListMultimap.copyOf(GitUtil.createTagMap(repository, walk));
+        LOG.debug("read {} tags of repository in {}", tags.size(), sw.stop());
+      } else {
+        applyTagCommands(walk, commands);
+      }
+    }
+    return tags;
+  }
+
+  /**
+   * Returns the buffer for the changesets of the given branch commands. A new buffer is created, if the commands
+   * differ from those of the current buffer, e.g. because some of them were rejected in the pre receive hook.
+   *
+   * @param commands keys of the branch commands
+   * @param limit maximum number of buffered changesets
+   *
+   * @return changeset buffer
+   */
+  synchronized ChangesetBuffer getBuffer(List<String> commands, int limit) {
+    if (buffer == null || !buffer.commands.equals(commands)) {
+      buffer = new ChangesetBuffer(commands, limit);
+    }
+    return buffer;
+  }
+
+  private void applyTagCommands(RevWalk walk, Iterable<ReceiveCommand> commands) {
+    ListMultimap<ObjectId, String> modified = ArrayListMultimap.create(tags);
+    for (ReceiveCommand rc : commands) {
+      String tag = GitUtil.getTagName(rc.getRefName());
+      if (rc.getResult() != ReceiveCommand.Result.OK || tag == null) {
+        continue;
+      }
+      modified.entries().removeIf(e -> e.getValue().equals(tag));
+      if (rc.getType() != ReceiveCommand.Type.DELETE) {
+        try {
+          RevObject object = walk.peel(walk.parseAny(rc.getNewId()));
+          if (object instanceof RevCommit) {
+            modified.put(object.copy(), tag);
+          }
+        } catch (IOException ex) {
+          LOG.warn("could not read commit of tag {}", tag, ex);
+        }
+      }
+    }
+    if (!modified.equals(tags)) {
+      LOG.trace("tags were modified by the push, clear buffered changesets");
+      tags = ImmutableListMultimap.copyOf(modified);
+      buffer = null;
+    }
+  }
+
+  /**
+   * Buffer of the first changesets of a push. The buffer is filled by the first iteration over the changesets and
+   * is used by all subsequent iterations. Iterations beyond the buffer have to walk the history again.
+   */
+  static final class ChangesetBuffer {
+
+    private final List<String> commands;
+    private final int limit;
+    private final List<Changeset> changesets = new ArrayList<>();
+    private boolean complete;
+
+    private ChangesetBuffer(List<String> commands, int limit) {
+      this.commands = commands;
+      this.limit = limit;
+    }
+
+    /**
+     * Returns the changeset at the index or {@code null}, if the buffer does not contain the index.
+     */
+    synchronized Changeset get(int index) {
+      return index < changesets.size() ? changesets.get(index) : null;
+    }
+
+    /**
+     * Returns {@code true} if the buffer contains all changesets of the push.
+     */
+    synchronized boolean isComplete() {
+      return complete;
+    }
+
+    /**
+     * Appends the changeset, if it is the next one and the buffer has not reached its limit.
+     */
+    synchronized void append(int index, Changeset changeset) {
+      if (index == changesets.size() && index < limit) {
+        changesets.add(changeset);
+      }
+    }
+
+    /**
+     * Marks the buffer as complete, if it contains all of the given number of changesets.
+     */
+    synchronized void complete(int count) {
+      if (count == changesets.size()) {
+        complete = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,335 @@
+package sonia.scm.repository;
+
+import com.github.legman.Subscribe;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reference counted cache of opened jGit repositories. Opening a repository reads its config, refs and pack indexes,
+ * which is expensive compared to most of the commands executed on it. The cache shares one handle per repository
+ * directory between all {@link sonia.scm.repository.spi.GitContext}s. A handle is closed as soon as it was evicted
+ * and the last lease was released.
+ * <p>
+ * Handles are evicted if the repository was modified or deleted, if they were not used for the idle timeout or if the
+ * cache exceeds its size. The cache can be configured with the following system properties:
+ * <ul>
+ *   <li>{@value #PROPERTY_MAX_SIZE}: maximum number of cached handles (default {@value #DEFAULT_MAX_SIZE},
+ *   0 disables the cache)</li>
+ *   <li>{@value #PROPERTY_IDLE_TIMEOUT}: seconds after which an unused handle is closed
+ *   (default {@value #DEFAULT_IDLE_TIMEOUT})</li>
+ * </ul>
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class GitRepositoryHandleCache implements Closeable {
+
+  static final String PROPERTY_MAX_SIZE = "sonia.scm.git.repositoryCache.maxSize";
+  static final String PROPERTY_IDLE_TIMEOUT = "sonia.scm.git.repositoryCache.idleTimeout";
+
+  static final int DEFAULT_MAX_SIZE = 64;
+  static final int DEFAULT_IDLE_TIMEOUT = 600;
+
+  private static final Logger LOG = LoggerFactory.getLogger(GitRepositoryHandleCache.class);
+
+  private final GitRepositoryHandler handler;
+  private final int maxSize;
+  private final long idleTimeout;
+
+  /** handles in access order, the least recently used handle comes first */
+  private final Map<File, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+  private boolean closed;
+
+  @Inject
+  public GitRepositoryHandleCache(GitRepositoryHandler handler) {
+    this(
+      handler,
+      Integer.getInteger(PROPERTY_MAX_SIZE, DEFAULT_MAX_SIZE),
+      TimeUnit.SECONDS.toNanos(Integer.getInteger(PROPERTY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT))
+    );
+  }
+
+  @VisibleForTesting
+  GitRepositoryHandleCache(GitRepositoryHandler handler, int maxSize, long idleTimeoutNanos) {
+    this.handler = handler;
+    this.maxSize = maxSize;
+    this.idleTimeout = idleTimeoutNanos;
+  }
+
+  /**
+   * Returns a lease for the repository of the given directory. The lease must be closed after use, the repository of
+   * the lease must not be closed.
+   *
+   * @param directory directory of the repository
+   *
+   * @return lease of the repository handle
+   *
+   * @throws IOException if the repository could not be opened
+   */
+  public synchronized Lease acquire(File directory) throws IOException {
+    long now = System.nanoTime();
+    evictIdle(now);
+
+    if (closed || maxSize <= 0) {
+      misses++;
+      return new Lease(this, new Handle(directory, GitUtil.open(directory)), false);
+    }
+
+    Handle handle = handles.get(directory);
+    if (handle != null) {
+      hits++;
+      LOG.trace("reuse cached handle of git repository {}", directory);
+    } else {
+      misses++;
+      LOG.trace("open git repository {}", directory);
+      handle = new Handle(directory, GitUtil.open(directory));
+      handles.put(directory, handle);
+      evictOverflow();
+    }
+
+    handle.leases++;
+    handle.lastAccess = now;
+    handle.repository.incrementOpen();
+    return new Lease(this, handle, true);
+  }
+
+  private synchronized void release(Lease lease) {
+    Handle handle = lease.handle;
+    if (!lease.cached) {
+      handle.repository.close();
+      return;
+    }
+    handle.leases--;
+    handle.lastAccess = System.nanoTime();
+    handle.repository.close();
+    if (handle.evicted && handle.leases == 0) {
+      closeHandle(handle);
+    }
+  }
+
+  /**
+   * Evicts the cached handle of the repository directory. Leased handles are closed with the release of their last
+   * lease.
+   *
+   * @param directory directory of the repository
+   */
+  public synchronized void invalidate(File directory) {
+    Handle handle = handles.remove(directory);
+    if (handle != null) {
+      LOG.debug("invalidate cached handle of git repository {}", directory);
+      invalidations++;
+      evict(handle);
+    }
+  }
+
+  /**
+   * Evicts the cached handle of a git repository, if the repository was modified or deleted.
+   *
+   * @param event repository event
+   */
+  @Subscribe(async = false)
+  public void onEvent(RepositoryEvent event) {
+    HandlerEventType type = event.getEventType();
+    Repository repository = event.getItem();
+    if ((type == HandlerEventType.MODIFY || type == HandlerEventType.DELETE)
+      && GitRepositoryHandler.TYPE_NAME.equals(repository.getType())) {
+      invalidate(handler.getDirectory(repository.getId()));
+    }
+  }
+
+  private void evictIdle(long now) {
+    Iterator<Handle> iterator = handles.values().iterator();
+    while (iterator.hasNext()) {
+      Handle handle = iterator.next();
+      if (handle.leases == 0 && now - handle.lastAccess > idleTimeout) {
+        LOG.trace("close idle handle of git repository {}", handle.directory);
+        iterator.remove();
+        evictions++;
+        evict(handle);
+      }
+    }
+  }
+
+  private void evictOverflow() {
+    Iterator<Handle> iterator = handles.values().iterator();
+    while (handles.size() > maxSize && iterator.hasNext()) {
+      Handle handle = iterator.next();
+      if (handle.leases == 0) {
+        LOG.trace("evict least recently used handle of git repository {}", handle.directory);
+        iterator.remove();
+        evictions++;
+        evict(handle);
+      }
+    }
+  }
+
+  private void evict(Handle handle) {
+    handle.evicted = true;
+    if (handle.leases == 0) {
+      closeHandle(handle);
+    }
+  }
+
+  private void closeHandle(Handle handle) {
+    // releases the reference which was created by opening the repository
+    handle.repository.close();
+  }
+
+  /**
+   * Returns statistics about the usage of the cache.
+   *
+   * @return statistics
+   */
+  public synchronized Statistics getStatistics() {
+    int leases = 0;
+    for (Handle handle : handles.values()) {
+      leases += handle.leases;
+    }
+    return new Statistics(hits, misses, evictions, invalidations, handles.size(), leases);
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    for (Handle handle : handles.values()) {
+      evict(handle);
+    }
+    handles.clear();
+  }
+
+  private static class Handle {
+
+    private final File directory;
+    private final org.eclipse.jgit.lib.Repository repository;
+
+    private int leases;
+    private long lastAccess;
+    private boolean evicted;
+
+    private Handle(File directory, org.eclipse.jgit.lib.Repository repository) {
+      this.directory = directory;
+      this.repository = repository;
+    }
+  }
+
+  /**
+   * Lease of a repository handle.
+   */
+  public static final class Lease implements Closeable {
+
+    private final GitRepositoryHandleCache cache;
+    private final Handle handle;
+    private final boolean cached;
+    private boolean released;
+
+    private Lease(GitRepositoryHandleCache cache, Handle handle, boolean cached) {
+      this.cache = cache;
+      this.handle = handle;
+      this.cached = cached;
+    }
+
+    /**
+     * Returns the leased repository. The repository must not be closed.
+     *
+     * @return leased repository
+     */
+    public org.eclipse.jgit.lib.Repository getRepository() {
+      return handle.repository;
+    }
+
+    @Override
+    public void close() {
+      if (!released) {
+        released = true;
+        cache.release(this);
+      }
+    }
+  }
+
+  /**
+   * Usage statistics of the {@link GitRepositoryHandleCache}.
+   */
+  public static final class Statistics {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final int openCount;
+    private final int leaseCount;
+
+    Statistics(long hitCount, long missCount, long evictionCount, long invalidationCount, int openCount, int leaseCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.invalidationCount = invalidationCount;
+      this.openCount = openCount;
+      this.leaseCount = leaseCount;
+    }
+
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    public long getMissCount() {
+      return missCount;
+    }
+
+    public double getHitRate() {
+      long requests = hitCount + missCount;
+      return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    public long getInvalidationCount() {
+      return invalidationCount;
+    }
+
+    /**
+     * Returns the number of cached repository handles.
+     */
+    public int getOpenCount() {
+      return openCount;
+    }
+
+    /**
+     * Returns the number of active leases.
+     */
+    public int getLeaseCount() {
+      return leaseCount;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+        .add("hitCount", hitCount)
+        .add("missCount", missCount)
+        .add("hitRate", getHitRate())
+        .add("evictionCount", evictionCount)
+        .add("invalidationCount", invalidationCount)
+        .add("openCount", openCount)
+        .add("leaseCount", leaseCount)
+        .toString();
+    }
+  }
+}
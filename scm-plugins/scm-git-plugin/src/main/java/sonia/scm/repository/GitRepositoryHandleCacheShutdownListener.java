@@ -0,0 +1,38 @@
+package sonia.scm.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.plugin.Extension;
+
+import javax.inject.Inject;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Closes the cached git repository handles on shutdown.
+ *
+ * @since 2.0.0
+ */
+@Extension
+public class GitRepositoryHandleCacheShutdownListener implements ServletContextListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GitRepositoryHandleCacheShutdownListener.class);
+
+  private final GitRepositoryHandleCache cache;
+
+  @Inject
+  public GitRepositoryHandleCacheShutdownListener(GitRepositoryHandleCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    LOG.info("close cached git repository handles, {}", cache.getStatistics());
+    cache.close();
+  }
+}
@@ -37,34 +37,34 @@ package sonia.scm.repository.spi;
 import com.google.common.base.Strings;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.subject.Subject;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.Status;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.ScmTransportProtocol;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.URIish;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sonia.scm.ConcurrentModificationException;
 import sonia.scm.repository.GitUtil;
-import sonia.scm.repository.GitWorkdirFactory;
 import sonia.scm.repository.InternalRepositoryException;
 import sonia.scm.repository.Person;
-import sonia.scm.repository.util.WorkingCopy;
 import sonia.scm.user.User;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.function.Function;
-import java.util.function.Supplier;
 
-import static java.util.Optional.empty;
-import static java.util.Optional.of;
 import static sonia.scm.ContextEntry.ContextBuilder.entity;
 import static sonia.scm.NotFoundException.notFound;
 
@@ -145,13 +145,11 @@ class AbstractGitCommand
     }
   }
 
-  <R, W extends GitCloneWorker<R>> R inClone(Function<Git, W> workerSupplier, GitWorkdirFactory workdirFactory, String initialBranch) {
-    try (WorkingCopy<Repository, Repository> workingCopy = workdirFactory.createWorkingCopy(context, initialBranch)) {
-      Repository repository = workingCopy.getWorkingRepository();
-      logger.debug("cloned repository to folder {}", repository.getWorkTree());
-      return workerSupplier.apply(new Git(repository)).run();
+  <R> R inCore(Function<Repository, ? extends GitInCoreWorker<R>> workerFactory) {
+    try (GitInCoreWorker<R> worker = workerFactory.apply(open())) {
+      return worker.run();
     } catch (IOException e) {
-      throw new InternalRepositoryException(context.getRepository(), "could not clone repository", e);
+      throw new InternalRepositoryException(context.getRepository(), "could not write changes into repository", e);
     }
   }
 
@@ -169,21 +167,30 @@ class AbstractGitCommand
     }
   }
 
-  abstract static class GitCloneWorker<R> {
-    private final Git clone;
+  /**
+   * Base class for workers which write new objects directly into the object database of the repository, without a
+   * working copy. Branches are updated with a push over the {@link ScmTransportProtocol}, so that the hooks of the
+   * repository are triggered and the update fails if the branch was modified concurrently.
+   */
+  abstract static class GitInCoreWorker<R> implements AutoCloseable {
+    private final Repository gitRepository;
     private final GitContext context;
     private final sonia.scm.repository.Repository repository;
+    private final ObjectInserter inserter;
+    private final RevWalk revWalk;
 
-    GitCloneWorker(Git clone, GitContext context, sonia.scm.repository.Repository repository) {
-      this.clone = clone;
+    GitInCoreWorker(Repository gitRepository, GitContext context, sonia.scm.repository.Repository repository) {
+      this.gitRepository = gitRepository;
       this.context = context;
       this.repository = repository;
+      this.inserter = gitRepository.newObjectInserter();
+      this.revWalk = new RevWalk(gitRepository);
     }
 
     abstract R run() throws IOException;
 
-    Git getClone() {
-      return clone;
+    Repository getGitRepository() {
+      return gitRepository;
     }
 
     GitContext getContext() {
@@ -194,98 +201,64 @@ class AbstractGitCommand
       return repository;
     }
 
-    void checkOutBranch(String branchName) throws IOException {
-      try {
-        clone.checkout().setName(branchName).call();
-      } catch (RefNotFoundException e) {
-        logger.trace("could not checkout branch {} directly; trying to create local branch", branchName, e);
-        checkOutTargetAsNewLocalBranch(branchName);
-      } catch (GitAPIException e) {
-        throw new InternalRepositoryException(context.getRepository(), "could not checkout branch: " + branchName, e);
-      }
+    ObjectInserter getInserter() {
+      return inserter;
     }
 
-    private void checkOutTargetAsNewLocalBranch(String branchName) throws IOException {
-      try {
-        ObjectId targetRevision = resolveRevision(branchName);
-        clone.checkout().setStartPoint(targetRevision.getName()).setName(branchName).setCreateBranch(true).call();
-      } catch (RefNotFoundException e) {
-        logger.debug("could not checkout branch {} as local branch", branchName, e);
-        throw notFound(entity("Revision", branchName).in(context.getRepository()));
-      } catch (GitAPIException e) {
-        throw new InternalRepositoryException(context.getRepository(), "could not checkout branch as local branch: " + branchName, e);
-      }
+    RevWalk getRevWalk() {
+      return revWalk;
     }
 
-    ObjectId resolveRevision(String revision) throws IOException {
-      ObjectId resolved = clone.getRepository().resolve(revision);
-      if (resolved == null) {
-        return resolveRevisionOrThrowNotFound(clone.getRepository(), "origin/" + revision, context.getRepository());
-      } else {
-        return resolved;
-      }
+    RevCommit parseCommit(AnyObjectId id) throws IOException {
+      return revWalk.parseCommit(id);
     }
 
-    void failIfNotChanged(Supplier<RuntimeException> doThrow) {
-      try {
-        if (clone.status().call().isClean()) {
-          throw doThrow.get();
-        }
-      } catch (GitAPIException e) {
-        throw new InternalRepositoryException(context.getRepository(), "could not read status of repository", e);
-      }
-    }
-
-    Optional<RevCommit> doCommit(String message, Person author) {
+    RevCommit commit(ObjectId tree, String message, Person author, AnyObjectId... parents) throws IOException {
       Person authorToUse = determineAuthor(author);
-      try {
-        Status status = clone.status().call();
-        if (!status.isClean() || isInMerge()) {
-          return of(clone.commit()
-            .setAuthor(authorToUse.getName(), authorToUse.getMail())
-            .setCommitter("SCM-Manager", "noreply@scm-manager.org")
-            .setMessage(message)
-            .call());
-        } else {
-          return empty();
-        }
-      } catch (GitAPIException | IOException e) {
-        throw new InternalRepositoryException(context.getRepository(), "could not commit changes", e);
-      }
+      CommitBuilder commit = new CommitBuilder();
+      commit.setTreeId(tree);
+      commit.setParentIds(parents);
+      commit.setAuthor(new PersonIdent(authorToUse.getName(), authorToUse.getMail()));
+      commit.setCommitter(new PersonIdent("SCM-Manager", "noreply@scm-manager.org"));
+      commit.setMessage(message);
+      ObjectId commitId = inserter.insert(commit);
+      inserter.flush();
+      return revWalk.parseCommit(commitId);
     }
 
-    private boolean isInMerge() throws IOException {
-      return clone.getRepository().readMergeHeads() != null && !clone.getRepository().readMergeHeads().isEmpty();
-    }
-
-    void push() {
-      try {
-        Iterable<PushResult> pushResults = clone.push().call();
-        Iterator<PushResult> pushResultIterator = pushResults.iterator();
-        if (!pushResultIterator.hasNext()) {
-          throw new InternalRepositoryException(repository, "got no result from push");
-        }
-        PushResult pushResult = pushResultIterator.next();
-        Collection<RemoteRefUpdate> remoteUpdates = pushResult.getRemoteUpdates();
-        if (remoteUpdates.isEmpty()) {
-          throw new InternalRepositoryException(repository, "push created no update");
+    /**
+     * Sets the branch to the new revision, if it still points to the expected revision.
+     *
+     * @param branch full name of the branch
+     * @param expectedRevision current revision of the branch or {@code null}, if the branch does not exist yet
+     * @param newRevision new revision of the branch
+     */
+    void updateBranch(String branch, ObjectId expectedRevision, ObjectId newRevision) {
+      URIish uri = new URIish()
+        .setScheme(ScmTransportProtocol.NAME)
+        .setPath(gitRepository.getDirectory().getAbsolutePath());
+      try (Transport transport = Transport.open(gitRepository, uri)) {
+        ObjectId expected = expectedRevision == null ? ObjectId.zeroId() : expectedRevision;
+        RemoteRefUpdate update = new RemoteRefUpdate(gitRepository, null, newRevision, branch, false, null, expected);
+        PushResult pushResult = transport.push(NullProgressMonitor.INSTANCE, Collections.singleton(update));
+        RemoteRefUpdate.Status status = update.getStatus();
+        if (status == RemoteRefUpdate.Status.REJECTED_REMOTE_CHANGED
+          || status == RemoteRefUpdate.Status.REJECTED_NONFASTFORWARD) {
+          throw new ConcurrentModificationException("branch", Repository.shortenRefName(branch));
+        } else if (status != RemoteRefUpdate.Status.OK) {
+          logger.info("message for failed push: {}", pushResult.getMessages());
+          throw new IntegrateChangesFromWorkdirException(repository, "could not push changes into central repository: " + status);
         }
-        remoteUpdates
-          .stream()
-          .filter(remoteRefUpdate -> remoteRefUpdate.getStatus() != RemoteRefUpdate.Status.OK)
-          .findAny()
-          .ifPresent(remoteRefUpdate -> {
-            logger.info("message for failed push: {}", pushResult.getMessages());
-            throw new IntegrateChangesFromWorkdirException(repository, "could not push changes into central repository: " + remoteRefUpdate.getStatus());
-          });
-      } catch (GitAPIException e) {
+      } catch (IOException e) {
         throw new InternalRepositoryException(repository, "could not push changes into central repository", e);
       }
-      logger.debug("pushed changes");
+      logger.debug("updated branch {} to {}", branch, newRevision.name());
     }
 
-    Ref getCurrentRevision() throws IOException {
-      return getClone().getRepository().getRefDatabase().findRef("HEAD");
+    @Override
+    public void close() {
+      revWalk.close();
+      inserter.close();
     }
 
     private Person determineAuthor(Person author) {
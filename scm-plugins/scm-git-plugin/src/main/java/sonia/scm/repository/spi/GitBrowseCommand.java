@@ -48,13 +48,12 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
-import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.LfsFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sonia.scm.NotFoundException;
+import sonia.scm.cache.CacheManager;
 import sonia.scm.repository.BrowserResult;
 import sonia.scm.repository.FileObject;
 import sonia.scm.repository.GitSubModuleParser;
@@ -70,13 +69,12 @@ import sonia.scm.web.lfs.LfsBlobStoreFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
-import static java.util.Optional.empty;
-import static java.util.Optional.of;
 import static sonia.scm.ContextEntry.ContextBuilder.entity;
 import static sonia.scm.NotFoundException.notFound;
 import static sonia.scm.repository.spi.SyncAsyncExecutor.ExecutionType.ASYNCHRONOUS;
@@ -108,12 +106,21 @@ public class GitBrowseCommand extends AbstractGitCommand
 
   private final SyncAsyncExecutor executor;
 
+  private final GitLastCommitCollector lastCommitCollector;
+
+  /** tree ids of the visited directories */
+  private final Map<String, ObjectId> directoryTrees = Maps.newHashMap();
+
+  /** files without last commit, grouped by their directory */
+  private final Map<String, List<PendingFile>> pendingFiles = new LinkedHashMap<>();
+
   private BrowserResult browserResult;
 
-  public GitBrowseCommand(GitContext context, Repository repository, LfsBlobStoreFactory lfsBlobStoreFactory, SyncAsyncExecutor executor) {
+  public GitBrowseCommand(GitContext context, Repository repository, LfsBlobStoreFactory lfsBlobStoreFactory, SyncAsyncExecutor executor, CacheManager cacheManager) {
     super(context, repository);
     this.lfsBlobStoreFactory = lfsBlobStoreFactory;
     this.executor = executor;
+    this.lastCommitCollector = new GitLastCommitCollector(cacheManager.getCache(GitLastCommitCollector.CACHE_NAME));
   }
 
   @Override
@@ -126,6 +133,7 @@ public class GitBrowseCommand extends AbstractGitCommand
 
     if (revId != null) {
       browserResult = new BrowserResult(revId.getName(), request.getRevision(), getEntry(repo, request, revId));
+      completeLastCommits(repo, request, revId);
       return browserResult;
     } else {
       logger.warn("could not find head of repository {}, empty?", repository.getNamespaceAndName());
@@ -200,15 +208,33 @@ public class GitBrowseCommand extends AbstractGitCommand
           file.setLength(loader.getSize());
         }
 
-        executor.execute(
-          new CompleteFileInformation(path, revId, repo, file, request),
-          new AbortFileInformation(request)
-        );
+        pendingFiles
+          .computeIfAbsent(getDirectory(path), directory -> Lists.newArrayList())
+          .add(new PendingFile(path, treeWalk.getObjectId(0), file));
       }
     }
     return file;
   }
 
+  private String getDirectory(String path) {
+    int index = path.lastIndexOf('/');
+    return index > 0 ? path.substring(0, index) : "";
+  }
+
+  /**
+   * Resolves the last commits of all collected files with one task per directory, so that the history is walked
+   * only once for all files of a directory.
+   */
+  private void completeLastCommits(org.eclipse.jgit.lib.Repository repo, BrowseCommandRequest request, ObjectId revId) {
+    pendingFiles.forEach((directory, files) ->
+      executor.execute(
+        new CompleteFileInformation(directory, directoryTrees.get(directory), files, revId, repo, request),
+        new AbortFileInformation(request)
+      )
+    );
+    pendingFiles.clear();
+  }
+
   private void updateCache(BrowseCommandRequest request) {
     request.updateCache(browserResult);
     logger.info("updated browser result for repository {}", repository.getNamespaceAndName());
@@ -225,6 +251,7 @@ public class GitBrowseCommand extends AbstractGitCommand
       RevTree tree = revWalk.parseTree(revId);
 
       if (tree != null) {
+        directoryTrees.put("", tree.getId());
         treeWalk.addTree(tree);
       } else {
         throw new IllegalStateException("could not find tree for " + revId.name());
@@ -237,6 +264,7 @@ public class GitBrowseCommand extends AbstractGitCommand
       } else {
         FileObject result = findFirstMatch(repo, request, revId, treeWalk);
         if ( result.isDirectory() ) {
+          directoryTrees.put(result.getPath(), treeWalk.getObjectId(0));
           treeWalk.enterSubtree();
           findChildren(result, repo, request, revId, treeWalk);
         }
@@ -263,6 +291,7 @@ public class GitBrowseCommand extends AbstractGitCommand
       files.add(fileObject);
 
       if (request.isRecursive() && fileObject.isDirectory()) {
+        directoryTrees.put(fileObject.getPath(), treeWalk.getObjectId(0));
         treeWalk.enterSubtree();
         FileObject rc = findChildren(fileObject, repo, request, revId, treeWalk);
         if (rc != null) {
@@ -291,6 +320,7 @@ public class GitBrowseCommand extends AbstractGitCommand
         if (currentDepth >= limit) {
           return createFileObject(repo, request, revId, treeWalk);
         } else {
+          directoryTrees.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
           treeWalk.enterSubtree();
         }
       }
@@ -351,61 +381,72 @@ public class GitBrowseCommand extends AbstractGitCommand
     }
   }
 
-  private class CompleteFileInformation implements Consumer<SyncAsyncExecutor.ExecutionType> {
+  private static class PendingFile {
     private final String path;
+    private final ObjectId objectId;
+    private final FileObject file;
+
+    PendingFile(String path, ObjectId objectId, FileObject file) {
+      this.path = path;
+      this.objectId = objectId;
+      this.file = file;
+    }
+  }
+
+  private class CompleteFileInformation implements Consumer<SyncAsyncExecutor.ExecutionType> {
+    private final String directory;
+    private final ObjectId treeId;
+    private final List<PendingFile> files;
     private final ObjectId revId;
     private final org.eclipse.jgit.lib.Repository repo;
-    private final FileObject file;
     private final BrowseCommandRequest request;
 
-    public CompleteFileInformation(String path, ObjectId revId, org.eclipse.jgit.lib.Repository repo, FileObject file, BrowseCommandRequest request) {
-      this.path = path;
+    public CompleteFileInformation(String directory, ObjectId treeId, List<PendingFile> files, ObjectId revId, org.eclipse.jgit.lib.Repository repo, BrowseCommandRequest request) {
+      this.directory = directory;
+      this.treeId = treeId;
+      this.files = files;
       this.revId = revId;
       this.repo = repo;
-      this.file = file;
       this.request = request;
     }
 
     @Override
     public void accept(SyncAsyncExecutor.ExecutionType executionType) {
-      logger.trace("fetch last commit for {} at {}", path, revId.getName());
+      logger.trace("fetch last commits for {} files in {} at {}", files.size(), directory, revId.getName());
 
       Stopwatch sw = Stopwatch.createStarted();
 
-      Optional<RevCommit> commit = getLatestCommit(repo, revId, path);
+      Map<String, GitLastCommitCollector.LastCommit> lastCommits = getLatestCommits();
 
       synchronized (asyncMonitor) {
-        file.setPartialResult(false);
-        if (commit.isPresent()) {
-          applyValuesFromCommit(executionType, commit.get());
-        } else {
-          logger.warn("could not find latest commit for {} on {}", path, revId);
+        for (PendingFile pendingFile : files) {
+          pendingFile.file.setPartialResult(false);
+          GitLastCommitCollector.LastCommit commit = lastCommits.get(pendingFile.path);
+          if (commit != null) {
+            pendingFile.file.setCommitDate(commit.getDate());
+            pendingFile.file.setDescription(commit.getDescription());
+          } else {
+            logger.warn("could not find latest commit for {} on {}", pendingFile.path, revId);
+          }
+        }
+        if (executionType == ASYNCHRONOUS && browserResult != null) {
+          updateCache(request);
         }
       }
 
-      logger.trace("finished loading of last commit {} of {} in {}", revId.getName(), path, sw.stop());
+      logger.trace("finished loading of last commits {} of {} in {}", revId.getName(), directory, sw.stop());
     }
 
-    private Optional<RevCommit> getLatestCommit(org.eclipse.jgit.lib.Repository repo,
-                                      ObjectId revId, String path) {
-      try (RevWalk walk = new RevWalk(repo)) {
-        walk.setTreeFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, PathFilter.create(path)));
-
-        RevCommit commit = walk.parseCommit(revId);
-
-        walk.markStart(commit);
-        return of(Util.getFirst(walk));
-      } catch (IOException ex) {
-        logger.error("could not parse commit for file", ex);
-        return empty();
+    private Map<String, GitLastCommitCollector.LastCommit> getLatestCommits() {
+      Map<String, ObjectId> objectIds = Maps.newHashMap();
+      for (PendingFile pendingFile : files) {
+        objectIds.put(pendingFile.path, pendingFile.objectId);
       }
-    }
-
-    private void applyValuesFromCommit(SyncAsyncExecutor.ExecutionType executionType, RevCommit commit) {
-      file.setCommitDate(GitUtil.getCommitTime(commit));
-      file.setDescription(commit.getShortMessage());
-      if (executionType == ASYNCHRONOUS && browserResult != null) {
-        updateCache(request);
+      try {
+        return lastCommitCollector.collect(repo, repository.getId(), revId, directory, treeId, objectIds);
+      } catch (IOException ex) {
+        logger.error("could not collect last commits for files", ex);
+        return Collections.emptyMap();
       }
     }
   }
@@ -38,7 +38,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import sonia.scm.api.v2.resources.GitRepositoryConfigStoreProvider;
+import sonia.scm.repository.GitCommitIndex;
 import sonia.scm.repository.GitRepositoryConfig;
+import sonia.scm.repository.GitRepositoryHandleCache;
 import sonia.scm.repository.GitUtil;
 import sonia.scm.repository.Repository;
 
@@ -71,10 +73,27 @@ public class GitContext implements Closeable
    * @param repository
    */
   public GitContext(File directory, Repository repository, GitRepositoryConfigStoreProvider storeProvider)
+  {
+    this(directory, repository, storeProvider, null);
+  }
+
+  /**
+   * Constructs a context which leases the jGit repository from the given cache instead of opening its own. The leased
+   * repository must not be closed by the commands, it is released with the close of the context.
+   *
+   * @param directory
+   * @param repository
+   * @param storeProvider
+   * @param handleCache cache of repository handles or {@code null}
+   *
+   * @since 2.0.0
+   */
+  public GitContext(File directory, Repository repository, GitRepositoryConfigStoreProvider storeProvider, GitRepositoryHandleCache handleCache)
   {
     this.directory = directory;
     this.repository = repository;
     this.storeProvider = storeProvider;
+    this.handleCache = handleCache;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -88,7 +107,15 @@ public class GitContext implements Closeable
   {
     logger.trace("close git repository {}", directory);
 
-    GitUtil.close(gitRepository);
+    if (lease != null)
+    {
+      lease.close();
+      lease = null;
+    }
+    else
+    {
+      GitUtil.close(gitRepository);
+    }
     gitRepository = null;
   }
 
@@ -106,7 +133,15 @@ public class GitContext implements Closeable
     {
       logger.trace("open git repository {}", directory);
 
-      gitRepository = GitUtil.open(directory);
+      if (handleCache != null)
+      {
+        lease = handleCache.acquire(directory);
+        gitRepository = lease.getRepository();
+      }
+      else
+      {
+        gitRepository = GitUtil.open(directory);
+      }
     }
 
     return gitRepository;
@@ -120,6 +155,10 @@ public class GitContext implements Closeable
     return directory;
   }
 
+  GitCommitIndex getCommitIndex() {
+    return new GitCommitIndex(directory);
+  }
+
   GitRepositoryConfig getConfig() {
     GitRepositoryConfig config = storeProvider.get(repository).get();
     if (config == null) {
@@ -139,7 +178,9 @@ public class GitContext implements Closeable
   private final File directory;
   private final Repository repository;
   private final GitRepositoryConfigStoreProvider storeProvider;
+  private final GitRepositoryHandleCache handleCache;
 
   /** Field description */
   private org.eclipse.jgit.lib.Repository gitRepository;
+  private GitRepositoryHandleCache.Lease lease;
 }
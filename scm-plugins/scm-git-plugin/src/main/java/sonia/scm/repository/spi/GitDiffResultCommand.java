@@ -1,5 +1,6 @@
 package sonia.scm.repository.spi;
 
+import com.google.common.collect.Iterators;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import sonia.scm.repository.GitUtil;
@@ -9,10 +10,9 @@ import sonia.scm.repository.api.DiffFile;
 import sonia.scm.repository.api.DiffResult;
 import sonia.scm.repository.api.Hunk;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Iterator;
-import java.util.stream.Collectors;
+import java.util.List;
 
 public class GitDiffResultCommand extends AbstractGitCommand implements DiffResultCommand {
 
@@ -22,17 +22,21 @@ public class GitDiffResultCommand extends AbstractGitCommand implements DiffResu
 
   public DiffResult getDiffResult(DiffCommandRequest diffCommandRequest) throws IOException {
     org.eclipse.jgit.lib.Repository repository = open();
-    return new GitDiffResult(repository, Differ.diff(repository, diffCommandRequest));
+    return new GitDiffResult(repository, Differ.diff(repository, diffCommandRequest), diffCommandRequest);
   }
 
   private class GitDiffResult implements DiffResult {
 
     private final org.eclipse.jgit.lib.Repository repository;
     private final Differ.Diff diff;
+    private final DiffCommandRequest request;
+    private final HunkParsingOutputStream.Budget totalBudget;
 
-    private GitDiffResult(org.eclipse.jgit.lib.Repository repository, Differ.Diff diff) {
+    private GitDiffResult(org.eclipse.jgit.lib.Repository repository, Differ.Diff diff, DiffCommandRequest request) {
       this.repository = repository;
       this.diff = diff;
+      this.request = request;
+      this.totalBudget = new HunkParsingOutputStream.Budget(request.getMaxTotalLines(), request.getMaxTotalBytes());
     }
 
     @Override
@@ -47,11 +51,10 @@ public class GitDiffResultCommand extends AbstractGitCommand implements DiffResu
 
     @Override
     public Iterator<DiffFile> iterator() {
-      return diff.getEntries()
-        .stream()
-        .map(diffEntry -> new GitDiffFile(repository, diffEntry))
-        .collect(Collectors.<DiffFile>toList())
-        .iterator();
+      return Iterators.transform(
+        diff.getEntries().iterator(),
+        diffEntry -> new GitDiffFile(repository, diffEntry, request, totalBudget)
+      );
     }
   }
 
@@ -59,10 +62,17 @@ public class GitDiffResultCommand extends AbstractGitCommand implements DiffResu
 
     private final org.eclipse.jgit.lib.Repository repository;
     private final DiffEntry diffEntry;
+    private final DiffCommandRequest request;
+    private final HunkParsingOutputStream.Budget totalBudget;
 
-    private GitDiffFile(org.eclipse.jgit.lib.Repository repository, DiffEntry diffEntry) {
+    private List<Hunk> hunks;
+    private boolean truncated;
+
+    private GitDiffFile(org.eclipse.jgit.lib.Repository repository, DiffEntry diffEntry, DiffCommandRequest request, HunkParsingOutputStream.Budget totalBudget) {
       this.repository = repository;
       this.diffEntry = diffEntry;
+      this.request = request;
+      this.totalBudget = totalBudget;
     }
 
     @Override
@@ -87,21 +97,38 @@ public class GitDiffResultCommand extends AbstractGitCommand implements DiffResu
 
     @Override
     public Iterator<Hunk> iterator() {
-      String content = format(repository, diffEntry);
-      GitHunkParser parser = new GitHunkParser();
-      return parser.parse(content).iterator();
+      if (hunks == null) {
+        hunks = parse();
+      }
+      return hunks.iterator();
+    }
+
+    @Override
+    public boolean isTruncated() {
+      return truncated;
     }
 
-    private String format(org.eclipse.jgit.lib.Repository repository, DiffEntry entry) {
-      try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DiffFormatter formatter = new DiffFormatter(baos)) {
+    private List<Hunk> parse() {
+      GitHunkParser parser = new GitHunkParser();
+      if (totalBudget.isExhausted()) {
+        truncated = true;
+        return parser.finish();
+      }
+
+      HunkParsingOutputStream.Budget fileBudget = new HunkParsingOutputStream.Budget(request.getMaxLinesPerFile(), request.getMaxBytesPerFile());
+      HunkParsingOutputStream output = new HunkParsingOutputStream(parser, fileBudget, totalBudget);
+      try (DiffFormatter formatter = new DiffFormatter(output)) {
         formatter.setRepository(repository);
-        formatter.format(entry);
-        return baos.toString();
+        formatter.format(diffEntry);
+        formatter.flush();
+        output.finish();
+      } catch (HunkParsingOutputStream.TruncatedException ex) {
+        truncated = true;
       } catch (IOException ex) {
         throw new InternalRepositoryException(GitDiffResultCommand.this.repository, "failed to format diff entry", ex);
       }
+      return parser.finish();
     }
-
   }
 
 }
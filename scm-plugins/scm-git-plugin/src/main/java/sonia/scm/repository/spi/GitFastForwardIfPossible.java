@@ -1,37 +1,27 @@
 package sonia.scm.repository.spi;
 
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.MergeCommand;
-import org.eclipse.jgit.api.MergeResult;
-import sonia.scm.repository.Repository;
+import org.eclipse.jgit.lib.Repository;
 import sonia.scm.repository.api.MergeCommandResult;
 
 import java.io.IOException;
-import java.util.Collections;
 
 class GitFastForwardIfPossible extends GitMergeStrategy {
 
-  private GitMergeStrategy fallbackMerge;
-
-  GitFastForwardIfPossible(Git clone, MergeCommandRequest request, GitContext context, Repository repository) {
-    super(clone, request, context, repository);
-    fallbackMerge = new GitMergeCommit(clone, request, context, repository);
+  GitFastForwardIfPossible(Repository gitRepository, MergeCommandRequest request, GitContext context, sonia.scm.repository.Repository repository) {
+    super(gitRepository, request, context, repository);
   }
 
   @Override
-  MergeCommandResult run() throws IOException {
-    MergeResult fastForwardResult = mergeWithFastForwardOnlyMode();
-    if (fastForwardResult.getMergeStatus().isSuccessful()) {
-      push();
-      return createSuccessResult(fastForwardResult.getNewHead().name());
+  MergeCommandResult doMerge() throws IOException {
+    if (isMergedIntoTarget()) {
+      // like a fast forward only merge of git, a branch which is already merged leaves the target unchanged
+      return createSuccessResult(getTargetRevision().name());
+    }
+    if (isFastForwardPossible()) {
+      updateTargetBranch(getRevisionToMerge());
+      return createSuccessResult(getRevisionToMerge().name());
     } else {
-      return fallbackMerge.run();
+      return mergeWithCommit();
     }
   }
-
-  private MergeResult mergeWithFastForwardOnlyMode() throws IOException {
-    MergeCommand mergeCommand = getClone().merge();
-    mergeCommand.setFastForward(MergeCommand.FastForwardMode.FF_ONLY);
-    return doMergeInClone(mergeCommand);
-  }
 }
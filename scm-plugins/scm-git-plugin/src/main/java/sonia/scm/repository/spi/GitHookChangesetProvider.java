@@ -82,7 +82,7 @@ public class GitHookChangesetProvider implements HookChangesetProvider
       GitHookChangesetCollector collector =
         new GitHookChangesetCollector(receivePack, receiveCommands);
 
-      response = new HookChangesetResponse(collector.collectChangesets());
+      response = new HookChangesetResponse(collector.getChangesets());
     }
 
     return response;
@@ -14,6 +14,7 @@ final class GitHunkParser {
   private static final int HEADER_PREFIX_LENGTH = "@@ -".length();
   private static final int HEADER_SUFFIX_LENGTH = " @@".length();
 
+  private final List<Hunk> hunks = new ArrayList<>();
   private GitHunk currentGitHunk = null;
   private List<DiffLine> collectedLines = null;
   private int oldLineCounter = 0;
@@ -23,26 +24,37 @@ final class GitHunkParser {
   }
 
   public List<Hunk> parse(String content) {
-    List<Hunk> hunks = new ArrayList<>();
-
     try (Scanner scanner = new Scanner(content)) {
       while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        if (line.startsWith("@@")) {
-          parseHeader(hunks, line);
-        } else if (currentGitHunk != null) {
-          parseDiffLine(line);
-        }
+        parseLine(scanner.nextLine());
       }
     }
+    return finish();
+  }
+
+  /**
+   * Parses the next line of the diff output. The parser keeps only the hunks of the current file, so the output can be
+   * passed line by line without buffering the whole diff.
+   */
+  void parseLine(String line) {
+    if (line.startsWith("@@")) {
+      parseHeader(line);
+    } else if (currentGitHunk != null) {
+      parseDiffLine(line);
+    }
+  }
+
+  /**
+   * Completes the current hunk and returns all parsed hunks.
+   */
+  List<Hunk> finish() {
     if (currentGitHunk != null) {
       currentGitHunk.setLines(collectedLines);
     }
-
     return hunks;
   }
 
-  private void parseHeader(List<Hunk> hunks, String line) {
+  private void parseHeader(String line) {
     if (currentGitHunk != null) {
       currentGitHunk.setLines(collectedLines);
     }
@@ -0,0 +1,245 @@
+package sonia.scm.repository.spi;
+
+import com.google.common.base.Strings;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.cache.Cache;
+import sonia.scm.repository.GitUtil;
+import sonia.scm.repository.RepositoryCacheKey;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Resolves the last commit of many paths with a single walk over the history ("blame the tree"). Instead of starting
+ * a path filtered walk for every file, the history is walked once with a filter for all requested paths. A commit is
+ * the last commit of a path, if it introduces the object of the path which is found at the requested revision.
+ * <p>
+ * The results for a directory are cached by the id of the directory tree. A later revision reuses them, if the tree
+ * of the directory is unchanged and no commit between the two revisions touched the directory.
+ */
+class GitLastCommitCollector {
+
+  static final String CACHE_NAME = "sonia.cache.git.lastCommits";
+
+  private static final Logger LOG = LoggerFactory.getLogger(GitLastCommitCollector.class);
+
+  private final Cache<CacheKey, CacheEntry> cache;
+
+  GitLastCommitCollector(Cache<CacheKey, CacheEntry> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the last commits of the given files of a directory.
+   *
+   * @param repo git repository
+   * @param repositoryId id of the scm repository
+   * @param revId revision to start from
+   * @param directory path of the directory which contains the files
+   * @param treeId id of the directory tree at the revision, or {@code null} if the result should not be cached
+   * @param files paths of the files mapped to their object ids at the revision
+   *
+   * @return last commits mapped by the path of the files
+   */
+  Map<String, LastCommit> collect(Repository repo, String repositoryId, ObjectId revId, String directory, ObjectId treeId, Map<String, ObjectId> files) throws IOException {
+    CacheKey key = treeId != null ? new CacheKey(repositoryId, treeId) : null;
+
+    if (key != null) {
+      CacheEntry cached = cache.get(key);
+      if (cached != null && cached.lastCommits.keySet().containsAll(files.keySet()) && isReusable(repo, cached, revId, directory)) {
+        LOG.trace("reuse last commits of tree {} computed at {}", treeId.name(), cached.revision);
+        return cached.lastCommits;
+      }
+    }
+
+    Map<String, LastCommit> lastCommits = collect(repo, revId, files);
+
+    if (key != null && lastCommits.size() == files.size()) {
+      cache.put(key, new CacheEntry(revId.name(), lastCommits));
+    }
+
+    return lastCommits;
+  }
+
+  private boolean isReusable(Repository repo, CacheEntry cached, ObjectId revId, String directory) throws IOException {
+    if (cached.revision.equals(revId.name())) {
+      return true;
+    }
+    try (RevWalk walk = new RevWalk(repo)) {
+      RevCommit cachedRevision = walk.parseCommit(ObjectId.fromString(cached.revision));
+      RevCommit revision = walk.parseCommit(revId);
+      if (!walk.isMergedInto(cachedRevision, revision)) {
+        return false;
+      }
+
+      walk.reset();
+      if (Strings.isNullOrEmpty(directory)) {
+        walk.setTreeFilter(TreeFilter.ANY_DIFF);
+      } else {
+        walk.setTreeFilter(AndTreeFilter.create(PathFilter.create(directory), TreeFilter.ANY_DIFF));
+      }
+      walk.markStart(revision);
+      walk.markUninteresting(cachedRevision);
+      return walk.next() == null;
+    } catch (MissingObjectException ex) {
+      LOG.debug("cached revision {} is missing", cached.revision, ex);
+      return false;
+    }
+  }
+
+  private Map<String, LastCommit> collect(Repository repo, ObjectId revId, Map<String, ObjectId> files) throws IOException {
+    Map<String, ObjectId> pending = new HashMap<>(files);
+    Map<String, LastCommit> lastCommits = new HashMap<>();
+
+    if (pending.isEmpty()) {
+      return lastCommits;
+    }
+
+    try (RevWalk walk = new RevWalk(repo)) {
+      walk.setTreeFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(pending.keySet()), TreeFilter.ANY_DIFF));
+      walk.markStart(walk.parseCommit(revId));
+
+      for (RevCommit commit : walk) {
+        resolve(repo, walk, commit, pending, lastCommits);
+        if (pending.isEmpty()) {
+          break;
+        }
+      }
+    }
+
+    if (!pending.isEmpty()) {
+      LOG.debug("could not find last commit for {} paths at {}", pending.size(), revId.name());
+    }
+
+    return lastCommits;
+  }
+
+  private void resolve(Repository repo, RevWalk walk, RevCommit commit, Map<String, ObjectId> pending, Map<String, LastCommit> lastCommits) throws IOException {
+    try (TreeWalk treeWalk = new TreeWalk(repo)) {
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(PathFilterGroup.createFromStrings(pending.keySet()));
+      treeWalk.addTree(commit.getTree());
+      for (RevCommit parent : commit.getParents()) {
+        walk.parseHeaders(parent);
+        treeWalk.addTree(parent.getTree());
+      }
+
+      List<String> resolved = new ArrayList<>();
+      while (treeWalk.next()) {
+        String path = treeWalk.getPathString();
+        ObjectId target = pending.get(path);
+        if (target != null && target.equals(treeWalk.getObjectId(0)) && isIntroducedBy(treeWalk)) {
+          lastCommits.put(path, new LastCommit(commit));
+          resolved.add(path);
+        }
+      }
+      resolved.forEach(pending::remove);
+    }
+  }
+
+  /**
+   * The current entry of the tree walk was introduced by the commit, if it differs from the entry of every parent.
+   */
+  private boolean isIntroducedBy(TreeWalk treeWalk) {
+    ObjectId id = treeWalk.getObjectId(0);
+    int mode = treeWalk.getRawMode(0);
+    for (int i = 1; i < treeWalk.getTreeCount(); i++) {
+      if (treeWalk.getRawMode(i) != FileMode.MISSING.getBits() && treeWalk.getRawMode(i) == mode && id.equals(treeWalk.getObjectId(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static final class LastCommit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final long date;
+    private final String description;
+
+    LastCommit(RevCommit commit) {
+      this.id = commit.getId().name();
+      this.date = GitUtil.getCommitTime(commit);
+      this.description = commit.getShortMessage();
+    }
+
+    String getId() {
+      return id;
+    }
+
+    long getDate() {
+      return date;
+    }
+
+    String getDescription() {
+      return description;
+    }
+  }
+
+  static final class CacheEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String revision;
+    private final Map<String, LastCommit> lastCommits;
+
+    CacheEntry(String revision, Map<String, LastCommit> lastCommits) {
+      this.revision = revision;
+      this.lastCommits = lastCommits;
+    }
+  }
+
+  static final class CacheKey implements RepositoryCacheKey, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String repositoryId;
+    private final String treeId;
+
+    CacheKey(String repositoryId, ObjectId treeId) {
+      this.repositoryId = repositoryId;
+      this.treeId = treeId.name();
+    }
+
+    @Override
+    public String getRepositoryId() {
+      return repositoryId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey that = (CacheKey) o;
+      return repositoryId.equals(that.repositoryId) && treeId.equals(that.treeId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(repositoryId, treeId);
+    }
+  }
+}
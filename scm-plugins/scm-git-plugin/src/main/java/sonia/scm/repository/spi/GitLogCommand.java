@@ -52,6 +52,7 @@ import sonia.scm.NotFoundException;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.GitChangesetConverter;
+import sonia.scm.repository.GitCommitIndex;
 import sonia.scm.repository.GitUtil;
 import sonia.scm.repository.InternalRepositoryException;
 import sonia.scm.util.IOUtil;
@@ -162,7 +163,6 @@ public class GitLogCommand extends AbstractGitCommand implements LogCommand
     {
       IOUtil.close(converter);
       GitUtil.release(revWalk);
-      GitUtil.close(gr);
     }
 
     return changeset;
@@ -172,6 +172,14 @@ public class GitLogCommand extends AbstractGitCommand implements LogCommand
     return revWalk.isMergedInto(commit, findHeadCommitOfBranch(repository, revWalk, branchName));
   }
 
+  /**
+   * The commit index contains the whole history of a branch, so it can only be used for requests which are not
+   * restricted by a path or by a range of changesets.
+   */
+  private boolean isIndexable(LogCommandRequest request, ObjectId startId, ObjectId endId, ObjectId ancestorId) {
+    return Strings.isNullOrEmpty(request.getPath()) && startId == null && endId == null && ancestorId == null;
+  }
+
   private boolean isBranchRequested(LogCommandRequest request) {
     return request != null && !Strings.isNullOrEmpty(request.getBranch());
   }
@@ -201,7 +209,8 @@ public class GitLogCommand extends AbstractGitCommand implements LogCommand
     GitChangesetConverter converter = null;
     RevWalk revWalk = null;
 
-    try (org.eclipse.jgit.lib.Repository repository = open()) {
+    try {
+      org.eclipse.jgit.lib.Repository repository = open();
       if (!repository.getAllRefs().isEmpty()) {
         int counter = 0;
         int start = request.getPagingStart();
@@ -260,20 +269,30 @@ public class GitLogCommand extends AbstractGitCommand implements LogCommand
             revWalk.markUninteresting(revWalk.lookupCommit(ancestorId));
           }
 
-          Iterator<RevCommit> iterator = revWalk.iterator();
-
-          while (iterator.hasNext()) {
-            RevCommit commit = iterator.next();
+          if (isIndexable(request, startId, endId, ancestorId)) {
+            GitCommitIndex.Entry index = context.getCommitIndex().get(repository, branch);
 
-            if ((counter >= start)
-              && ((limit < 0) || (counter < start + limit))) {
-              changesetList.add(converter.createChangeset(commit));
+            for (ObjectId id : index.read(start, limit)) {
+              changesetList.add(converter.createChangeset(revWalk.parseCommit(id)));
             }
 
-            counter++;
+            counter = index.getCount();
+          } else {
+            Iterator<RevCommit> iterator = revWalk.iterator();
+
+            while (iterator.hasNext()) {
+              RevCommit commit = iterator.next();
+
+              if ((counter >= start)
+                && ((limit < 0) || (counter < start + limit))) {
+                changesetList.add(converter.createChangeset(commit));
+              }
+
+              counter++;
 
-            if (commit.getId().equals(endId)) {
-              break;
+              if (commit.getId().equals(endId)) {
+                break;
+              }
             }
           }
         } else if (ancestorId != null) {
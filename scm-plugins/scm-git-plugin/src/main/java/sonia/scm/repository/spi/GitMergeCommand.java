@@ -1,18 +1,23 @@
 package sonia.scm.repository.spi;
 
 import com.google.common.collect.ImmutableSet;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.MergeResult;
-import org.eclipse.jgit.api.Status;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeFormatter;
+import org.eclipse.jgit.merge.MergeResult;
 import org.eclipse.jgit.merge.ResolveMerger;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
-import sonia.scm.repository.GitWorkdirFactory;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import sonia.scm.repository.InternalRepositoryException;
 import sonia.scm.repository.api.MergeCommandResult;
 import sonia.scm.repository.api.MergeDryRunCommandResult;
@@ -21,15 +26,16 @@ import sonia.scm.repository.api.MergeStrategyNotSupportedException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Set;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm.HISTOGRAM;
 import static org.eclipse.jgit.merge.MergeStrategy.RECURSIVE;
-import static sonia.scm.ContextEntry.ContextBuilder.entity;
-import static sonia.scm.NotFoundException.notFound;
 
 public class GitMergeCommand extends AbstractGitCommand implements MergeCommand {
 
-  private final GitWorkdirFactory workdirFactory;
+  private static final Logger logger = LoggerFactory.getLogger(GitMergeCommand.class);
 
   private static final Set<MergeStrategy> STRATEGIES = ImmutableSet.of(
     MergeStrategy.MERGE_COMMIT,
@@ -37,9 +43,8 @@ public class GitMergeCommand extends AbstractGitCommand implements MergeCommand
     MergeStrategy.SQUASH
   );
 
-  GitMergeCommand(GitContext context, sonia.scm.repository.Repository repository, GitWorkdirFactory workdirFactory) {
+  GitMergeCommand(GitContext context, sonia.scm.repository.Repository repository) {
     super(context, repository);
-    this.workdirFactory = workdirFactory;
   }
 
   @Override
@@ -49,19 +54,19 @@ public class GitMergeCommand extends AbstractGitCommand implements MergeCommand
 
   @Override
   public MergeConflictResult computeConflicts(MergeCommandRequest request) {
-    return inClone(git -> new ConflictWorker(git, request), workdirFactory, request.getTargetBranch());
+    return inCore(gitRepository -> new ConflictWorker(gitRepository, request));
   }
 
   private MergeCommandResult mergeWithStrategy(MergeCommandRequest request) {
     switch(request.getMergeStrategy()) {
       case SQUASH:
-        return inClone(clone -> new GitMergeWithSquash(clone, request, context, repository), workdirFactory, request.getTargetBranch());
+        return inCore(gitRepository -> new GitMergeWithSquash(gitRepository, request, context, repository));
 
       case FAST_FORWARD_IF_POSSIBLE:
-        return inClone(clone -> new GitFastForwardIfPossible(clone, request, context, repository), workdirFactory, request.getTargetBranch());
+        return inCore(gitRepository -> new GitFastForwardIfPossible(gitRepository, request, context, repository));
 
       case MERGE_COMMIT:
-        return inClone(clone -> new GitMergeCommit(clone, request, context, repository), workdirFactory, request.getTargetBranch());
+        return inCore(gitRepository -> new GitMergeCommit(gitRepository, request, context, repository));
 
       default:
         throw new MergeStrategyNotSupportedException(repository, request.getMergeStrategy());
@@ -92,91 +97,83 @@ public class GitMergeCommand extends AbstractGitCommand implements MergeCommand
     return STRATEGIES;
   }
 
-  private class ConflictWorker extends GitCloneWorker<MergeConflictResult> {
+  private class ConflictWorker extends GitInCoreWorker<MergeConflictResult> {
     private final String theirs;
     private final String ours;
-    private final CanonicalTreeParser treeParser;
-    private final ObjectId treeId;
-    private final ByteArrayOutputStream diffBuffer;
 
     private final MergeConflictResult result = new MergeConflictResult();
 
-
-    private ConflictWorker(Git git, MergeCommandRequest request) {
-      super(git, context, repository);
+    private ConflictWorker(Repository gitRepository, MergeCommandRequest request) {
+      super(gitRepository, context, repository);
       theirs = request.getBranchToMerge();
       ours = request.getTargetBranch();
-
-      treeParser = new CanonicalTreeParser();
-      diffBuffer = new ByteArrayOutputStream();
-      try {
-        treeId = git.getRepository().resolve(ours + "^{tree}");
-      } catch (IOException e) {
-        throw notFound(entity("branch", ours).in(repository));
-      }
     }
 
     @Override
     MergeConflictResult run() throws IOException {
-      MergeResult mergeResult = doTemporaryMerge();
-      if (mergeResult.getConflicts() != null) {
-        getStatus().getConflictingStageState().forEach(this::computeConflict);
+      RevCommit ourCommit = parseCommit(resolveRevisionOrThrowNotFound(getGitRepository(), ours));
+      RevCommit theirCommit = parseCommit(resolveRevisionOrThrowNotFound(getGitRepository(), theirs));
+
+      ResolveMerger merger = (ResolveMerger) RECURSIVE.newMerger(getGitRepository(), true);
+      merger.setCommitNames(new String[]{"BASE", "HEAD", theirs});
+      if (!merger.merge(ourCommit, theirCommit) && merger.getFailingPaths() == null) {
+        RevTree baseTree = merger.getBaseCommitId() == null ? null : parseCommit(merger.getBaseCommitId()).getTree();
+        for (String path : merger.getUnmergedPaths()) {
+          computeConflict(path, baseTree, ourCommit.getTree(), theirCommit.getTree(), merger.getMergeResults().get(path));
+        }
       }
       return result;
     }
 
-    private void computeConflict(String path, IndexDiff.StageState stageState) {
-      switch (stageState) {
-        case BOTH_MODIFIED:
-          diffBuffer.reset();
-          try (ObjectReader reader = getClone().getRepository().newObjectReader()) {
-            treeParser.reset(reader, treeId);
-            getClone()
-              .diff()
-              .setOldTree(treeParser)
-              .setPathFilter(PathFilter.create(path))
-              .setOutputStream(diffBuffer)
-              .call();
-            result.addBothModified(path, diffBuffer.toString());
-          } catch (GitAPIException | IOException e) {
-            throw new InternalRepositoryException(repository, "could not calculate diff for path " + path, e);
-          }
-          break;
-        case BOTH_ADDED:
+    private void computeConflict(String path, RevTree baseTree, RevTree ourTree, RevTree theirTree, MergeResult<? extends Sequence> mergeResult) throws IOException {
+      ObjectId base = findBlob(path, baseTree);
+      ObjectId ourBlob = findBlob(path, ourTree);
+      ObjectId theirBlob = findBlob(path, theirTree);
+      if (ourBlob != null && theirBlob != null) {
+        if (base != null) {
+          result.addBothModified(path, createConflictDiff(path, ourBlob, mergeResult));
+        } else {
           result.addAddedByBoth(path);
-          break;
-        case DELETED_BY_THEM:
-          result.addDeletedByUs(path);
-          break;
-        case DELETED_BY_US:
-          result.addDeletedByThem(path);
-          break;
-        default:
-          throw new InternalRepositoryException(context.getRepository(), "unexpected conflict type: " + stageState);
+        }
+      } else if (ourBlob != null) {
+        result.addDeletedByUs(path);
+      } else if (theirBlob != null) {
+        result.addDeletedByThem(path);
+      } else {
+        logger.debug("ignoring conflict of path {}, which is neither in our nor in their tree", path);
       }
     }
 
-    private MergeResult doTemporaryMerge() throws IOException {
-      ObjectId sourceRevision = resolveRevision(theirs);
-      try {
-        return getClone().merge()
-          .setFastForward(org.eclipse.jgit.api.MergeCommand.FastForwardMode.NO_FF)
-          .setCommit(false)
-          .include(theirs, sourceRevision)
-          .call();
-      } catch (GitAPIException e) {
-        throw new InternalRepositoryException(context.getRepository(), "could not merge branch " + theirs + " into " + ours, e);
+    private ObjectId findBlob(String path, RevTree tree) throws IOException {
+      if (tree == null) {
+        return null;
+      }
+      try (TreeWalk treeWalk = TreeWalk.forPath(getGitRepository(), path, tree)) {
+        return treeWalk == null ? null : treeWalk.getObjectId(0);
       }
     }
 
-    private Status getStatus() {
-      Status status;
-      try {
-        status = getClone().status().call();
-      } catch (GitAPIException e) {
-        throw new InternalRepositoryException(context.getRepository(), "could not get status", e);
+    /**
+     * Creates a diff of our version of the file and the version with conflict markers, as a merge in a working copy
+     * would leave it.
+     */
+    @SuppressWarnings("unchecked")
+    private String createConflictDiff(String path, ObjectId ourBlob, MergeResult<? extends Sequence> mergeResult) throws IOException {
+      ByteArrayOutputStream diffBuffer = new ByteArrayOutputStream();
+      diffBuffer.write(("diff --git a/" + path + " b/" + path + "\n").getBytes(UTF_8));
+      if (mergeResult != null) {
+        ByteArrayOutputStream conflicted = new ByteArrayOutputStream();
+        new MergeFormatter().formatMerge(conflicted, (MergeResult<RawText>) mergeResult, Arrays.asList("BASE", "HEAD", theirs), UTF_8);
+        RawText ourText = new RawText(getGitRepository().open(ourBlob, Constants.OBJ_BLOB).getCachedBytes());
+        RawText conflictedText = new RawText(conflicted.toByteArray());
+
+        diffBuffer.write(("--- a/" + path + "\n+++ b/" + path + "\n").getBytes(UTF_8));
+        EditList edits = DiffAlgorithm.getAlgorithm(HISTOGRAM).diff(RawTextComparator.DEFAULT, ourText, conflictedText);
+        try (DiffFormatter formatter = new DiffFormatter(diffBuffer)) {
+          formatter.format(edits, ourText, conflictedText);
+        }
       }
-      return status;
+      return diffBuffer.toString();
     }
   }
 }
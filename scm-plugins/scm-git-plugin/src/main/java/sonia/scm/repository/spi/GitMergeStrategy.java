@@ -1,23 +1,27 @@
 package sonia.scm.repository.spi;
 
 import com.google.common.base.Strings;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.MergeCommand;
-import org.eclipse.jgit.api.MergeResult;
-import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.ResolveMerger;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import sonia.scm.repository.InternalRepositoryException;
+import sonia.scm.NoChangesMadeException;
+import sonia.scm.repository.GitUtil;
 import sonia.scm.repository.Person;
 import sonia.scm.repository.api.MergeCommandResult;
 
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.Optional;
 
-abstract class GitMergeStrategy extends AbstractGitCommand.GitCloneWorker<MergeCommandResult> {
+import static org.eclipse.jgit.merge.MergeStrategy.RECURSIVE;
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+import static sonia.scm.repository.spi.GitRevisionExtractor.extractRevisionFromRevCommit;
+
+abstract class GitMergeStrategy extends AbstractGitCommand.GitInCoreWorker<MergeCommandResult> {
 
   private static final Logger logger = LoggerFactory.getLogger(GitMergeStrategy.class);
 
@@ -27,55 +31,86 @@ abstract class GitMergeStrategy extends AbstractGitCommand.GitCloneWorker<MergeC
     "Automatic merge by SCM-Manager.");
 
   private final String targetBranch;
-  private final ObjectId targetRevision;
   private final String branchToMerge;
-  private final ObjectId revisionToMerge;
   private final Person author;
   private final String messageTemplate;
 
-  GitMergeStrategy(Git clone, MergeCommandRequest request, GitContext context, sonia.scm.repository.Repository repository) {
-    super(clone, context, repository);
+  private String targetRef;
+  private RevCommit targetRevision;
+  private RevCommit revisionToMerge;
+
+  GitMergeStrategy(Repository gitRepository, MergeCommandRequest request, GitContext context, sonia.scm.repository.Repository repository) {
+    super(gitRepository, context, repository);
     this.targetBranch = request.getTargetBranch();
     this.branchToMerge = request.getBranchToMerge();
     this.author = request.getAuthor();
     this.messageTemplate = request.getMessageTemplate();
-    try {
-      this.targetRevision = resolveRevision(request.getTargetBranch());
-      this.revisionToMerge = resolveRevision(request.getBranchToMerge());
-    } catch (IOException e) {
-      throw new InternalRepositoryException(repository, "Could not resolve revisions of target branch or branch to merge", e);
+  }
+
+  @Override
+  MergeCommandResult run() throws IOException {
+    Ref target = GitUtil.getBranchId(getGitRepository(), targetBranch);
+    if (target == null) {
+      throw notFound(entity("Branch", targetBranch).in(getRepository()));
     }
+    targetRef = target.getName();
+    targetRevision = parseCommit(target.getObjectId());
+    revisionToMerge = parseCommit(AbstractGitCommand.resolveRevisionOrThrowNotFound(getGitRepository(), branchToMerge, getRepository()));
+    return doMerge();
+  }
+
+  abstract MergeCommandResult doMerge() throws IOException;
+
+  boolean isMergedIntoTarget() throws IOException {
+    return getRevWalk().isMergedInto(revisionToMerge, targetRevision);
   }
 
-  MergeResult doMergeInClone(MergeCommand mergeCommand) throws IOException {
-    MergeResult result;
-    try {
-      ObjectId sourceRevision = resolveRevision(branchToMerge);
-      mergeCommand
-        .setCommit(false) // we want to set the author manually
-        .include(branchToMerge, sourceRevision);
-
-      result = mergeCommand.call();
-    } catch (GitAPIException e) {
-      throw new InternalRepositoryException(getContext().getRepository(), "could not merge branch " + branchToMerge + " into " + targetBranch, e);
+  boolean isFastForwardPossible() throws IOException {
+    return getRevWalk().isMergedInto(targetRevision, revisionToMerge);
+  }
+
+  /**
+   * Merges the trees of the target branch and the branch to merge in core. The returned merger contains either the
+   * id of the merged tree or the paths with conflicts.
+   */
+  ResolveMerger mergeTrees() throws IOException {
+    ResolveMerger merger = (ResolveMerger) RECURSIVE.newMerger(getGitRepository(), true);
+    merger.setCommitNames(new String[]{"BASE", "HEAD", branchToMerge});
+    merger.merge(targetRevision, revisionToMerge);
+    return merger;
+  }
+
+  MergeCommandResult mergeWithCommit() throws IOException {
+    if (isMergedIntoTarget()) {
+      throw new NoChangesMadeException(getRepository());
     }
-    return result;
+    ResolveMerger merger = mergeTrees();
+    if (merger.getResultTreeId() == null) {
+      return analyseFailure(merger);
+    }
+    RevCommit revCommit = doCommit(merger.getResultTreeId(), targetRevision, revisionToMerge);
+    updateTargetBranch(revCommit);
+    return createSuccessResult(extractRevisionFromRevCommit(revCommit));
   }
 
-  Optional<RevCommit> doCommit() {
+  RevCommit doCommit(ObjectId tree, RevCommit... parents) throws IOException {
     logger.debug("merged branch {} into {}", branchToMerge, targetBranch);
-    return doCommit(MessageFormat.format(determineMessageTemplate(), branchToMerge, targetBranch), author);
+    return commit(tree, MessageFormat.format(determineMessageTemplate(), branchToMerge, targetBranch), author, parents);
+  }
+
+  void updateTargetBranch(RevCommit newRevision) {
+    updateBranch(targetRef, targetRevision, newRevision);
   }
 
   MergeCommandResult createSuccessResult(String newRevision) {
     return MergeCommandResult.success(targetRevision.name(), revisionToMerge.name(), newRevision);
   }
 
-  ObjectId getTargetRevision() {
+  RevCommit getTargetRevision() {
     return targetRevision;
   }
 
-  ObjectId getRevisionToMerge() {
+  RevCommit getRevisionToMerge() {
     return revisionToMerge;
   }
 
@@ -87,15 +122,12 @@ abstract class GitMergeStrategy extends AbstractGitCommand.GitCloneWorker<MergeC
     }
   }
 
-  MergeCommandResult analyseFailure(MergeResult result) {
-    logger.info("could not merge branch {} into {} with merge status '{}' due to ...", branchToMerge, targetBranch, result.getMergeStatus());
-    logger.info("... conflicts: {}", result.getConflicts());
-    logger.info("... checkout conflicts: {}", result.getCheckoutConflicts());
-    logger.info("... failing paths: {}", result.getFailingPaths());
-    logger.info("... message: {}", result);
-    if (result.getConflicts() == null) {
-      throw new UnexpectedMergeResultException(getRepository(), result);
+  MergeCommandResult analyseFailure(ResolveMerger merger) {
+    if (merger.getFailingPaths() != null) {
+      logger.info("could not merge branch {} into {} due to failing paths: {}", branchToMerge, targetBranch, merger.getFailingPaths());
+      throw new UnexpectedMergeResultException(getRepository(), merger.getFailingPaths());
     }
-    return MergeCommandResult.failure(targetRevision.name(), revisionToMerge.name(), result.getConflicts().keySet());
+    logger.info("could not merge branch {} into {} due to conflicts: {}", branchToMerge, targetBranch, merger.getUnmergedPaths());
+    return MergeCommandResult.failure(targetRevision.name(), revisionToMerge.name(), merger.getUnmergedPaths());
   }
 }
@@ -1,11 +1,10 @@
 package sonia.scm.repository.spi;
 
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.MergeCommand;
-import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.ResolveMerger;
 import org.eclipse.jgit.revwalk.RevCommit;
 import sonia.scm.NoChangesMadeException;
-import sonia.scm.repository.Repository;
 import sonia.scm.repository.api.MergeCommandResult;
 
 import java.io.IOException;
@@ -14,22 +13,26 @@ import static sonia.scm.repository.spi.GitRevisionExtractor.extractRevisionFromR
 
 class GitMergeWithSquash extends GitMergeStrategy {
 
-  GitMergeWithSquash(Git clone, MergeCommandRequest request, GitContext context, Repository repository) {
-    super(clone, request, context, repository);
+  GitMergeWithSquash(Repository gitRepository, MergeCommandRequest request, GitContext context, sonia.scm.repository.Repository repository) {
+    super(gitRepository, request, context, repository);
   }
 
   @Override
-  MergeCommandResult run() throws IOException {
-    MergeCommand mergeCommand = getClone().merge();
-    mergeCommand.setSquash(true);
-    MergeResult result = doMergeInClone(mergeCommand);
-
-    if (result.getMergeStatus().isSuccessful()) {
-      RevCommit revCommit = doCommit().orElseThrow(() -> new NoChangesMadeException(getRepository()));
-      push();
-      return MergeCommandResult.success(getTargetRevision().name(), revCommit.name(), extractRevisionFromRevCommit(revCommit));
-    } else {
-      return analyseFailure(result);
+  MergeCommandResult doMerge() throws IOException {
+    if (isMergedIntoTarget()) {
+      throw new NoChangesMadeException(getRepository());
+    }
+    ResolveMerger merger = mergeTrees();
+    ObjectId tree = merger.getResultTreeId();
+    if (tree == null) {
+      return analyseFailure(merger);
     }
+    if (tree.equals(getTargetRevision().getTree())) {
+      throw new NoChangesMadeException(getRepository());
+    }
+
+    RevCommit revCommit = doCommit(tree, getTargetRevision());
+    updateTargetBranch(revCommit);
+    return MergeCommandResult.success(getTargetRevision().name(), revCommit.name(), extractRevisionFromRevCommit(revCommit));
   }
 }
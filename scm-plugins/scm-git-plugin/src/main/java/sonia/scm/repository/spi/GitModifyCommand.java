@@ -1,135 +1,224 @@
 package sonia.scm.repository.spi;
 
-import com.google.common.util.concurrent.Striped;
-import org.apache.commons.lang.StringUtils;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.attributes.FilterCommandRegistry;
+import com.google.common.base.Strings;
+import org.eclipse.jgit.attributes.Attribute;
+import org.eclipse.jgit.attributes.AttributesNode;
+import org.eclipse.jgit.attributes.AttributesRule;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sonia.scm.ConcurrentModificationException;
+import sonia.scm.ContextEntry;
 import sonia.scm.NoChangesMadeException;
-import sonia.scm.repository.GitWorkdirFactory;
+import sonia.scm.repository.GitUtil;
 import sonia.scm.repository.InternalRepositoryException;
 import sonia.scm.repository.Repository;
 import sonia.scm.web.lfs.LfsBlobStoreFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.util.Optional;
-import java.util.concurrent.locks.Lock;
+import java.io.InputStream;
+
+import static sonia.scm.AlreadyExistsException.alreadyExists;
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
 
 public class GitModifyCommand extends AbstractGitCommand implements ModifyCommand {
 
   private static final Logger LOG = LoggerFactory.getLogger(GitModifyCommand.class);
-  private static final Striped<Lock> REGISTER_LOCKS = Striped.lock(5);
 
-  private final GitWorkdirFactory workdirFactory;
   private final LfsBlobStoreFactory lfsBlobStoreFactory;
 
-  GitModifyCommand(GitContext context, Repository repository, GitWorkdirFactory workdirFactory, LfsBlobStoreFactory lfsBlobStoreFactory) {
+  GitModifyCommand(GitContext context, Repository repository, LfsBlobStoreFactory lfsBlobStoreFactory) {
     super(context, repository);
-    this.workdirFactory = workdirFactory;
     this.lfsBlobStoreFactory = lfsBlobStoreFactory;
   }
 
   @Override
   public String execute(ModifyCommandRequest request) {
-    return inClone(clone -> new ModifyWorker(clone, request), workdirFactory, request.getBranch());
+    return inCore(gitRepository -> new ModifyWorker(gitRepository, request));
   }
 
-  private class ModifyWorker extends GitCloneWorker<String> implements ModifyWorkerHelper {
+  /**
+   * Applies the modifications to an in-core index of the branch and commits the resulting tree, without a working
+   * copy.
+   */
+  private class ModifyWorker extends GitInCoreWorker<String> implements ModifyCommand.Worker {
 
-    private final File workDir;
     private final ModifyCommandRequest request;
+    private final DirCache index = DirCache.newInCore();
 
-    ModifyWorker(Git clone, ModifyCommandRequest request) {
-      super(clone, context, repository);
-      this.workDir = clone.getRepository().getWorkTree();
+    ModifyWorker(org.eclipse.jgit.lib.Repository gitRepository, ModifyCommandRequest request) {
+      super(gitRepository, context, repository);
       this.request = request;
     }
 
     @Override
     String run() throws IOException {
-      getClone().getRepository().getFullBranch();
-      if (!StringUtils.isEmpty(request.getExpectedRevision())
-        && !request.getExpectedRevision().equals(getCurrentRevision().getName())) {
+      Ref branch = findBranch();
+      ObjectId currentRevision = branch.getObjectId();
+      if (!Strings.isNullOrEmpty(request.getExpectedRevision())
+        && (currentRevision == null || !request.getExpectedRevision().equals(currentRevision.name()))) {
         throw new ConcurrentModificationException("branch", request.getBranch() == null ? "default" : request.getBranch());
       }
+
+      RevCommit parent = currentRevision == null ? null : parseCommit(currentRevision);
+      if (parent != null) {
+        DirCacheBuilder builder = index.builder();
+        builder.addTree(new byte[0], DirCacheEntry.STAGE_0, getRevWalk().getObjectReader(), parent.getTree());
+        builder.finish();
+      }
       for (ModifyCommandRequest.PartialRequest r : request.getRequests()) {
         r.execute(this);
       }
-      failIfNotChanged(() -> new NoChangesMadeException(repository, ModifyWorker.this.request.getBranch()));
-      Optional<RevCommit> revCommit = doCommit(request.getCommitMessage(), request.getAuthor());
-      push();
-      return revCommit.orElseThrow(() -> new NoChangesMadeException(repository, ModifyWorker.this.request.getBranch())).name();
-    }
 
-    @Override
-    public void addFileToScm(String name, Path file) {
-      addToGitWithLfsSupport(name, file);
+      ObjectId tree = index.writeTree(getInserter());
+      if (parent == null ? index.getEntryCount() == 0 : tree.equals(parent.getTree())) {
+        throw new NoChangesMadeException(repository, request.getBranch());
+      }
+      RevCommit revCommit = parent == null
+        ? commit(tree, request.getCommitMessage(), request.getAuthor())
+        : commit(tree, request.getCommitMessage(), request.getAuthor(), parent);
+      updateBranch(branch.getName(), currentRevision, revCommit);
+      return revCommit.name();
     }
 
-    private void addToGitWithLfsSupport(String path, Path targetFile) {
-      REGISTER_LOCKS.get(targetFile).lock();
-      try {
-        LfsBlobStoreCleanFilterFactory cleanFilterFactory = new LfsBlobStoreCleanFilterFactory(lfsBlobStoreFactory, repository, targetFile);
-
-        String registerKey = "git-lfs clean -- '" + path + "'";
-        LOG.debug("register lfs filter command factory for command '{}'", registerKey);
-        FilterCommandRegistry.register(registerKey, cleanFilterFactory::createFilter);
-        try {
-          addFileToGit(path);
-        } catch (GitAPIException e) {
-          throwInternalRepositoryException("could not add file to index", e);
-        } finally {
-          LOG.debug("unregister lfs filter command factory for command \"{}\"", registerKey);
-          FilterCommandRegistry.unregister(registerKey);
+    private Ref findBranch() throws IOException {
+      if (Strings.isNullOrEmpty(request.getBranch())) {
+        Ref head = getGitRepository().exactRef(Constants.HEAD);
+        if (head == null || !head.isSymbolic()) {
+          throw new InternalRepositoryException(repository, "could not find default branch of repository");
         }
-      } finally {
-        REGISTER_LOCKS.get(targetFile).unlock();
+        return head.getTarget();
+      }
+      Ref ref = GitUtil.getBranchId(getGitRepository(), request.getBranch());
+      if (ref == null) {
+        throw notFound(entity("Branch", request.getBranch()).in(repository));
       }
+      return ref;
     }
 
-    private void addFileToGit(String toBeCreated) throws GitAPIException {
-      getClone().add().addFilepattern(removeStartingPathSeparators(toBeCreated)).call();
+    @Override
+    public void delete(String toBeDeleted) {
+      String path = removeStartingPathSeparators(toBeDeleted);
+      if (index.getEntry(path) == null) {
+        throw notFound(createFileContext(path));
+      }
+      edit(new DirCacheEditor.DeletePath(path));
     }
 
     @Override
-    public void doScmDelete(String toBeDeleted) {
-      try {
-        getClone().rm().addFilepattern(removeStartingPathSeparators(toBeDeleted)).call();
-      } catch (GitAPIException e) {
-        throwInternalRepositoryException("could not remove file from index", e);
+    public void create(String toBeCreated, File file, boolean overwrite) throws IOException {
+      String path = removeStartingPathSeparators(toBeCreated);
+      for (int i = path.indexOf('/'); i > 0; i = path.indexOf('/', i + 1)) {
+        if (index.getEntry(path.substring(0, i)) != null) {
+          throw alreadyExists(createFileContext(path));
+        }
+      }
+      if ((index.getEntry(path) != null && !overwrite) || index.getEntriesWithin(path).length > 0) {
+        throw alreadyExists(createFileContext(path));
       }
+      add(path, FileMode.REGULAR_FILE, file);
     }
 
     @Override
-    public File getWorkDir() {
-      return workDir;
+    public void modify(String toBeModified, File file) throws IOException {
+      String path = removeStartingPathSeparators(toBeModified);
+      DirCacheEntry entry = index.getEntry(path);
+      if (entry == null) {
+        throw notFound(createFileContext(path));
+      }
+      boolean executable = FileMode.EXECUTABLE_FILE.equals(entry.getFileMode());
+      add(path, executable ? FileMode.EXECUTABLE_FILE : FileMode.REGULAR_FILE, file);
     }
 
-    @Override
-    public Repository getRepository() {
-      return repository;
+    private void add(String path, FileMode fileMode, File file) throws IOException {
+      ObjectId blob = isLfsFile(path) ? insertLfsPointer(file) : insertFile(file);
+      edit(new DirCacheEditor.PathEdit(path) {
+        @Override
+        public void apply(DirCacheEntry entry) {
+          entry.setFileMode(fileMode);
+          entry.setObjectId(blob);
+        }
+      });
     }
 
-    @Override
-    public String getBranch() {
-      return request.getBranch();
+    private void edit(DirCacheEditor.PathEdit edit) {
+      DirCacheEditor editor = index.editor();
+      editor.add(edit);
+      editor.finish();
+    }
+
+    private ObjectId insertFile(File file) throws IOException {
+      try (InputStream content = new FileInputStream(file)) {
+        return getInserter().insert(Constants.OBJ_BLOB, file.length(), content);
+      }
+    }
+
+    private ObjectId insertLfsPointer(File file) throws IOException {
+      LOG.debug("store file {} of repository {} as lfs object", file, repository.getNamespaceAndName());
+      ByteArrayOutputStream pointer = new ByteArrayOutputStream();
+      new LfsBlobStoreCleanFilter(
+        new FileInputStream(file), pointer, lfsBlobStoreFactory.getLfsBlobStore(repository), file.toPath()
+      ).run();
+      return getInserter().insert(Constants.OBJ_BLOB, pointer.toByteArray());
+    }
+
+    /**
+     * Checks the filter attribute of the path in the attributes files of the index, from the root directory down to
+     * the directory of the path. As in git, a matching rule in a deeper directory overrides the upper ones.
+     */
+    private boolean isLfsFile(String path) throws IOException {
+      boolean lfs = false;
+      int separator = -1;
+      do {
+        String directory = path.substring(0, separator + 1);
+        DirCacheEntry attributesFile = index.getEntry(directory + Constants.DOT_GIT_ATTRIBUTES);
+        if (attributesFile != null) {
+          AttributesNode attributes = new AttributesNode();
+          try (InputStream content = getGitRepository().open(attributesFile.getObjectId(), Constants.OBJ_BLOB).openStream()) {
+            attributes.parse(content);
+          }
+          String relativePath = path.substring(directory.length());
+          for (AttributesRule rule : attributes.getRules()) {
+            if (rule.isMatch(relativePath, false)) {
+              for (Attribute attribute : rule.getAttributes()) {
+                if ("filter".equals(attribute.getKey())) {
+                  lfs = "lfs".equals(attribute.getValue());
+                }
+              }
+            }
+          }
+        }
+        separator = path.indexOf('/', separator + 1);
+      } while (separator >= 0);
+      return lfs;
+    }
+
+    private ContextEntry.ContextBuilder createFileContext(String path) {
+      ContextEntry.ContextBuilder contextBuilder = entity("file", path);
+      if (!Strings.isNullOrEmpty(request.getBranch())) {
+        contextBuilder.in("branch", request.getBranch());
+      }
+      contextBuilder.in(repository);
+      return contextBuilder;
     }
 
     private String removeStartingPathSeparators(String path) {
-      while (path.startsWith(File.separator)) {
+      while (path.startsWith("/")) {
         path = path.substring(1);
       }
       return path;
     }
-
-    private String throwInternalRepositoryException(String message, Exception e) {
-      throw new InternalRepositoryException(context.getRepository(), message, e);
-    }
   }
 }
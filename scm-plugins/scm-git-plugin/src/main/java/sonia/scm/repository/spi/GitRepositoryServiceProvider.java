@@ -35,8 +35,10 @@ package sonia.scm.repository.spi;
 
 import com.google.common.collect.ImmutableSet;
 import sonia.scm.api.v2.resources.GitRepositoryConfigStoreProvider;
+import sonia.scm.cache.CacheManager;
 import sonia.scm.event.ScmEventBus;
 import sonia.scm.repository.Feature;
+import sonia.scm.repository.GitRepositoryHandleCache;
 import sonia.scm.repository.GitRepositoryHandler;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.api.Command;
@@ -80,14 +82,15 @@ public class GitRepositoryServiceProvider extends RepositoryServiceProvider
 
   //~--- constructors ---------------------------------------------------------
 
-  public GitRepositoryServiceProvider(GitRepositoryHandler handler, Repository repository, GitRepositoryConfigStoreProvider storeProvider, LfsBlobStoreFactory lfsBlobStoreFactory, HookContextFactory hookContextFactory, ScmEventBus eventBus, SyncAsyncExecutorProvider executorProvider) {
+  public GitRepositoryServiceProvider(GitRepositoryHandler handler, Repository repository, GitRepositoryConfigStoreProvider storeProvider, LfsBlobStoreFactory lfsBlobStoreFactory, HookContextFactory hookContextFactory, ScmEventBus eventBus, SyncAsyncExecutorProvider executorProvider, CacheManager cacheManager, GitRepositoryHandleCache handleCache) {
     this.handler = handler;
     this.repository = repository;
     this.lfsBlobStoreFactory = lfsBlobStoreFactory;
     this.hookContextFactory = hookContextFactory;
     this.eventBus = eventBus;
     this.executorProvider = executorProvider;
-    this.context = new GitContext(handler.getDirectory(repository.getId()), repository, storeProvider);
+    this.cacheManager = cacheManager;
+    this.context = new GitContext(handler.getDirectory(repository.getId()), repository, storeProvider, handleCache);
   }
 
   //~--- methods --------------------------------------------------------------
@@ -151,7 +154,7 @@ public class GitRepositoryServiceProvider extends RepositoryServiceProvider
   @Override
   public BrowseCommand getBrowseCommand()
   {
-    return new GitBrowseCommand(context, repository, lfsBlobStoreFactory, executorProvider.createExecutorWithDefaultTimeout());
+    return new GitBrowseCommand(context, repository, lfsBlobStoreFactory, executorProvider.createExecutorWithDefaultTimeout(), cacheManager);
   }
 
   /**
@@ -274,12 +277,12 @@ public class GitRepositoryServiceProvider extends RepositoryServiceProvider
 
   @Override
   public MergeCommand getMergeCommand() {
-    return new GitMergeCommand(context, repository, handler.getWorkdirFactory());
+    return new GitMergeCommand(context, repository);
   }
 
   @Override
   public ModifyCommand getModifyCommand() {
-    return new GitModifyCommand(context, repository, handler.getWorkdirFactory(), lfsBlobStoreFactory);
+    return new GitModifyCommand(context, repository, lfsBlobStoreFactory);
   }
 
   @Override
@@ -304,4 +307,6 @@ public class GitRepositoryServiceProvider extends RepositoryServiceProvider
   private final ScmEventBus eventBus;
 
   private final SyncAsyncExecutorProvider executorProvider;
+
+  private final CacheManager cacheManager;
 }
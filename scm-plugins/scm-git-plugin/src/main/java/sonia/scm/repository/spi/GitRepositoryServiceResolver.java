@@ -36,8 +36,10 @@ package sonia.scm.repository.spi;
 
 import com.google.inject.Inject;
 import sonia.scm.api.v2.resources.GitRepositoryConfigStoreProvider;
+import sonia.scm.cache.CacheManager;
 import sonia.scm.event.ScmEventBus;
 import sonia.scm.plugin.Extension;
+import sonia.scm.repository.GitRepositoryHandleCache;
 import sonia.scm.repository.GitRepositoryHandler;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.api.HookContextFactory;
@@ -56,15 +58,19 @@ public class GitRepositoryServiceResolver implements RepositoryServiceResolver {
   private final HookContextFactory hookContextFactory;
   private final ScmEventBus eventBus;
   private final SyncAsyncExecutorProvider executorProvider;
+  private final CacheManager cacheManager;
+  private final GitRepositoryHandleCache handleCache;
 
   @Inject
-  public GitRepositoryServiceResolver(GitRepositoryHandler handler, GitRepositoryConfigStoreProvider storeProvider, LfsBlobStoreFactory lfsBlobStoreFactory, HookContextFactory hookContextFactory, ScmEventBus eventBus, SyncAsyncExecutorProvider executorProvider) {
+  public GitRepositoryServiceResolver(GitRepositoryHandler handler, GitRepositoryConfigStoreProvider storeProvider, LfsBlobStoreFactory lfsBlobStoreFactory, HookContextFactory hookContextFactory, ScmEventBus eventBus, SyncAsyncExecutorProvider executorProvider, CacheManager cacheManager, GitRepositoryHandleCache handleCache) {
     this.handler = handler;
     this.storeProvider = storeProvider;
     this.lfsBlobStoreFactory = lfsBlobStoreFactory;
     this.hookContextFactory = hookContextFactory;
     this.eventBus = eventBus;
     this.executorProvider = executorProvider;
+    this.cacheManager = cacheManager;
+    this.handleCache = handleCache;
   }
 
   @Override
@@ -72,7 +78,7 @@ public class GitRepositoryServiceResolver implements RepositoryServiceResolver {
     GitRepositoryServiceProvider provider = null;
 
     if (GitRepositoryHandler.TYPE_NAME.equalsIgnoreCase(repository.getType())) {
-      provider = new GitRepositoryServiceProvider(handler, repository, storeProvider, lfsBlobStoreFactory, hookContextFactory, eventBus, executorProvider);
+      provider = new GitRepositoryServiceProvider(handler, repository, storeProvider, lfsBlobStoreFactory, hookContextFactory, eventBus, executorProvider, cacheManager, handleCache);
     }
 
     return provider;
@@ -0,0 +1,139 @@
+package sonia.scm.repository.spi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Passes the output of a {@link org.eclipse.jgit.diff.DiffFormatter} line by line to a {@link GitHunkParser}, so that
+ * the diff of a file is never buffered as a whole. Every line is charged to the given budgets, the stream aborts the
+ * formatter with a {@link TruncatedException} as soon as one of them is exhausted.
+ */
+final class HunkParsingOutputStream extends OutputStream {
+
+  private static final int INITIAL_LINE_BUFFER_SIZE = 256;
+
+  private final GitHunkParser parser;
+  private final Budget[] budgets;
+
+  private byte[] line = new byte[INITIAL_LINE_BUFFER_SIZE];
+  private int length;
+
+  HunkParsingOutputStream(GitHunkParser parser, Budget... budgets) {
+    this.parser = parser;
+    this.budgets = budgets;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (b == '\n') {
+      completeLine();
+    } else {
+      append(new byte[]{(byte) b}, 0, 1);
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    int end = off + len;
+    int start = off;
+    for (int i = off; i < end; i++) {
+      if (b[i] == '\n') {
+        append(b, start, i - start);
+        completeLine();
+        start = i + 1;
+      }
+    }
+    append(b, start, end - start);
+  }
+
+  /**
+   * Passes the last line to the parser, if the output does not end with a line break.
+   *
+   * @throws IOException
+   */
+  void finish() throws IOException {
+    if (length > 0) {
+      completeLine();
+    }
+  }
+
+  private void append(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return;
+    }
+    int required = length + len;
+    for (Budget budget : budgets) {
+      if (!budget.fits(required)) {
+        budget.exhausted = true;
+        throw new TruncatedException();
+      }
+    }
+    if (required > line.length) {
+      line = Arrays.copyOf(line, Math.max(required, line.length * 2));
+    }
+    System.arraycopy(b, off, line, length, len);
+    length = required;
+  }
+
+  private void completeLine() throws IOException {
+    for (Budget budget : budgets) {
+      if (!budget.consume(length + 1)) {
+        throw new TruncatedException();
+      }
+    }
+    int end = length;
+    if (end > 0 && line[end - 1] == '\r') {
+      end--;
+    }
+    parser.parseLine(new String(line, 0, end, StandardCharsets.UTF_8));
+    length = 0;
+  }
+
+  /**
+   * Limits the number of lines and bytes of a diff. A limit of 0 or less is unlimited.
+   */
+  static final class Budget {
+
+    private final int maxLines;
+    private final long maxBytes;
+
+    private int lines;
+    private long bytes;
+    private boolean exhausted;
+
+    Budget(int maxLines, long maxBytes) {
+      this.maxLines = maxLines;
+      this.maxBytes = maxBytes;
+    }
+
+    boolean isExhausted() {
+      return exhausted;
+    }
+
+    private boolean fits(long pendingBytes) {
+      return maxBytes <= 0 || bytes + pendingBytes <= maxBytes;
+    }
+
+    private boolean consume(long lineBytes) {
+      if (!fits(lineBytes) || (maxLines > 0 && lines >= maxLines)) {
+        exhausted = true;
+        return false;
+      }
+      lines++;
+      bytes += lineBytes;
+      return true;
+    }
+  }
+
+  /**
+   * Aborts the formatting of a diff, which exceeds one of the budgets.
+   */
+  static final class TruncatedException extends IOException {
+
+    private TruncatedException() {
+      super("diff exceeds limit");
+    }
+  }
+}
@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import sonia.scm.store.Blob;
 import sonia.scm.store.BlobStore;
 import sonia.scm.util.IOUtil;
+import sonia.scm.web.lfs.LfsBlobStore;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -54,6 +55,10 @@ class LfsBlobStoreCleanFilter extends FilterCommand {
         if (blobSize != size) {
           throw new RuntimeException("lfs entry already exists for loid " + hash + " but has wrong size");
         }
+      } else if (lfsBlobStore instanceof LfsBlobStore) {
+        LOG.debug("linking new lfs blob for oid {}", hash);
+        // the file of the request is not modified afterwards, it is safe to share it with the store
+        ((LfsBlobStore) lfsBlobStore).importFile(hash, targetFile);
       } else {
         LOG.debug("uploading new lfs blob for oid {}", hash);
         Blob newBlob = lfsBlobStore.create(hash);
@@ -1,6 +1,8 @@
 package sonia.scm.repository.spi;
 
+import org.eclipse.jgit.api.CreateBranchCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
@@ -12,12 +14,14 @@ import sonia.scm.repository.util.SimpleWorkdirFactory;
 import sonia.scm.repository.util.WorkdirProvider;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.io.File;
 import java.io.IOException;
 
 import static sonia.scm.ContextEntry.ContextBuilder.entity;
 import static sonia.scm.NotFoundException.notFound;
 
+@Singleton
 public class SimpleGitWorkdirFactory extends SimpleWorkdirFactory<Repository, Repository, GitContext> implements GitWorkdirFactory {
 
   @Inject
@@ -47,6 +51,54 @@ public class SimpleGitWorkdirFactory extends SimpleWorkdirFactory<Repository, Re
     }
   }
 
+  @Override
+  protected ParentAndClone<Repository, Repository> reclaim(GitContext context, File target, String initialBranch) throws ReclaimFailedException {
+    Git git;
+    try {
+      git = Git.open(target);
+    } catch (IOException e) {
+      throw new ReclaimFailedException("could not open working copy", e);
+    }
+    try {
+      String branch = initialBranch == null ? context.open().getBranch() : initialBranch;
+      checkout(git, branch);
+      return new ParentAndClone<>(null, git.getRepository());
+    } catch (GitAPIException | IOException e) {
+      git.close();
+      throw new ReclaimFailedException("could not reset working copy", e);
+    } catch (ReclaimFailedException | RuntimeException e) {
+      git.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Fetches the central repository and resets the working copy to the state of the branch in the central repository,
+   * including the removal of untracked and ignored files.
+   */
+  private void checkout(Git git, String branch) throws GitAPIException, IOException, ReclaimFailedException {
+    git.fetch().setRemoveDeletedRefs(true).call();
+
+    Ref remoteBranch = git.getRepository().exactRef(Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + branch);
+    if (remoteBranch == null) {
+      throw new ReclaimFailedException("branch " + branch + " does not exist in the central repository");
+    }
+
+    git.reset().setMode(ResetCommand.ResetType.HARD).call();
+    git.clean().setCleanDirectories(true).setIgnore(false).call();
+    if (git.getRepository().exactRef(Constants.R_HEADS + branch) == null) {
+      git.checkout()
+        .setName(branch)
+        .setCreateBranch(true)
+        .setStartPoint(remoteBranch.getName())
+        .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK)
+        .call();
+    } else {
+      git.checkout().setName(branch).call();
+    }
+    git.reset().setMode(ResetCommand.ResetType.HARD).setRef(remoteBranch.getName()).call();
+  }
+
   private String createScmTransportProtocolUri(File bareRepository) {
     return ScmTransportProtocol.NAME + "://" + bareRepository.getAbsolutePath();
   }
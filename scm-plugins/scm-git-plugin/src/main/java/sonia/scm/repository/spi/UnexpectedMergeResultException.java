@@ -1,23 +1,18 @@
 package sonia.scm.repository.spi;
 
-import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.merge.ResolveMerger.MergeFailureReason;
 import sonia.scm.ContextEntry;
 import sonia.scm.ExceptionWithContext;
 import sonia.scm.repository.Repository;
 
+import java.util.Map;
+
 class UnexpectedMergeResultException extends ExceptionWithContext {
 
   public static final String CODE = "4GRrgkSC01";
 
-  public UnexpectedMergeResultException(Repository repository, MergeResult result) {
-    super(ContextEntry.ContextBuilder.entity(repository).build(), createMessage(result));
-  }
-
-  private static String createMessage(MergeResult result) {
-    return "unexpected merge result: " + result
-      + "\nconflicts: " + result.getConflicts()
-      + "\ncheckout conflicts: " + result.getCheckoutConflicts()
-      + "\nfailing paths: " + result.getFailingPaths();
+  public UnexpectedMergeResultException(Repository repository, Map<String, MergeFailureReason> failingPaths) {
+    super(ContextEntry.ContextBuilder.entity(repository).build(), "unexpected merge result\nfailing paths: " + failingPaths);
   }
 
   @Override
@@ -46,6 +46,8 @@ import org.eclipse.jgit.transport.PackParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sonia.scm.repository.GitHookPushState;
+
 //~--- JDK imports ------------------------------------------------------------
 
 import java.util.Set;
@@ -157,6 +159,20 @@ public class CollectingPackParserListener implements PackParserListener
 
   //~--- get methods ----------------------------------------------------------
 
+  /**
+   * Returns the state of the push, which is shared between the pre and the
+   * post receive hook.
+   *
+   *
+   * @return state of the push
+   *
+   * @since 2.0.0
+   */
+  public GitHookPushState getPushState()
+  {
+    return pushState;
+  }
+
   /**
    * Returns {@code true} if the object is a new object. The method will also
    * return {@code true}, if the pack parser does not return a list with new
@@ -192,4 +208,7 @@ public class CollectingPackParserListener implements PackParserListener
 
   /** set of new object ids */
   private Set<ObjectId> newObjectIds;
+
+  /** state of the push */
+  private final GitHookPushState pushState = new GitHookPushState();
 }
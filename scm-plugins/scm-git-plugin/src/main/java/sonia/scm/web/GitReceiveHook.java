@@ -35,6 +35,7 @@ package sonia.scm.web;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import com.google.common.base.Stopwatch;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.transport.PostReceiveHook;
@@ -134,8 +135,13 @@ public class GitReceiveHook implements PreReceiveHook, PostReceiveHook
       GitHookContextProvider context = new GitHookContextProvider(rpack,
                                          receiveCommands);
 
+      Stopwatch sw = Stopwatch.createStarted();
+
       hookEventFacade.handle(repositoryId).fireHookEvent(type, context);
 
+      logger.debug("handled {} hook of repository {} in {}", type,
+        repositoryId, sw.stop());
+
     }
     catch (Exception ex)
     {
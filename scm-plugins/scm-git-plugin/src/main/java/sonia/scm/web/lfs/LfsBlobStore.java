@@ -0,0 +1,145 @@
+package sonia.scm.web.lfs;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.store.Blob;
+import sonia.scm.store.BlobStore;
+import sonia.scm.store.EntryAlreadyExistsStoreException;
+import sonia.scm.store.StoreException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * {@link BlobStore} of a single repository, which stores lfs objects and partial uploads in the global
+ * {@link LfsObjectStore}. Blobs whose id is not a lfs oid and blobs which were stored before the global store was
+ * introduced are kept in the blob store of the repository. Old blobs are moved into the global store, when they are
+ * requested.
+ *
+ * @since 2.0.0
+ */
+public final class LfsBlobStore implements BlobStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LfsBlobStore.class);
+
+  private final LfsObjectStore objectStore;
+  private final String repositoryId;
+  private final BlobStore repositoryStore;
+
+  LfsBlobStore(LfsObjectStore objectStore, String repositoryId, BlobStore repositoryStore) {
+    this.objectStore = objectStore;
+    this.repositoryId = repositoryId;
+    this.repositoryStore = repositoryStore;
+  }
+
+  @Override
+  public Blob create() {
+    return repositoryStore.create();
+  }
+
+  @Override
+  public Blob create(String id) {
+    if (LfsObjectStore.isPartial(id)) {
+      return objectStore.createPartial(repositoryId, id);
+    }
+    if (!LfsObjectStore.isOid(id)) {
+      return repositoryStore.create(id);
+    }
+    if (get(id) != null) {
+      throw new EntryAlreadyExistsStoreException("blob with id ".concat(id).concat(" already exists"));
+    }
+    return objectStore.create(repositoryId, id);
+  }
+
+  /**
+   * Stores an existing file as lfs object of the repository. The file is linked into the global store, if possible,
+   * and must not be modified afterwards.
+   *
+   * @param oid oid of the content of the file
+   * @param file file to store
+   */
+  public void importFile(String oid, Path file) {
+    objectStore.importFile(repositoryId, oid, file);
+  }
+
+  @Override
+  public void remove(Blob blob) {
+    if (blob instanceof LfsObjectStore.PendingObject) {
+      try {
+        ((LfsObjectStore.PendingObject) blob).discard();
+      } catch (IOException ex) {
+        throw new StoreException("could not discard lfs object ".concat(blob.getId()), ex);
+      }
+    } else {
+      remove(blob.getId());
+    }
+  }
+
+  @Override
+  public void remove(String id) {
+    if (LfsObjectStore.isOid(id)) {
+      objectStore.removeReference(repositoryId, id);
+    } else if (LfsObjectStore.isPartial(id)) {
+      objectStore.removePartial(repositoryId, id);
+    }
+    if (repositoryStore.get(id) != null) {
+      repositoryStore.remove(id);
+    }
+  }
+
+  @Override
+  public Blob get(String id) {
+    if (LfsObjectStore.isPartial(id)) {
+      return objectStore.getPartial(repositoryId, id);
+    }
+    if (!LfsObjectStore.isOid(id)) {
+      return repositoryStore.get(id);
+    }
+    if (objectStore.isReferenced(repositoryId, id)) {
+      Blob blob = objectStore.get(id);
+      if (blob != null) {
+        return blob;
+      }
+    }
+    return migrate(id);
+  }
+
+  @Override
+  public List<Blob> getAll() {
+    ImmutableList.Builder<Blob> builder = ImmutableList.builder();
+    for (String oid : objectStore.getReferences(repositoryId)) {
+      Blob blob = objectStore.get(oid);
+      if (blob != null) {
+        builder.add(blob);
+      }
+    }
+    builder.addAll(repositoryStore.getAll());
+    return builder.build();
+  }
+
+  @Override
+  public void clear() {
+    objectStore.removeReferences(repositoryId);
+    repositoryStore.clear();
+  }
+
+  private Blob migrate(String oid) {
+    Blob blob = repositoryStore.get(oid);
+    if (blob == null) {
+      return null;
+    }
+    try {
+      Blob imported = objectStore.importBlob(repositoryId, blob);
+      if (imported != null) {
+        LOG.debug("moved lfs object {} of repository {} into the global store", oid, repositoryId);
+        repositoryStore.remove(blob);
+        return imported;
+      }
+    } catch (IOException | StoreException ex) {
+      LOG.warn("could not move lfs object {} of repository {} into the global store", oid, repositoryId, ex);
+    }
+    return blob;
+  }
+}
@@ -50,15 +50,18 @@ public class LfsBlobStoreFactory {
   private static final String GIT_LFS_REPOSITORY_POSTFIX = "-git-lfs";
   
   private final BlobStoreFactory blobStoreFactory;
+  private final LfsObjectStore objectStore;
 
   /**
    * Create a new instance.
    * 
    * @param blobStoreFactory blob store factory
+   * @param objectStore global store for lfs objects
    */
   @Inject
-  public LfsBlobStoreFactory(BlobStoreFactory blobStoreFactory) {
+  public LfsBlobStoreFactory(BlobStoreFactory blobStoreFactory, LfsObjectStore objectStore) {
     this.blobStoreFactory = blobStoreFactory;
+    this.objectStore = objectStore;
   }
   
   /**
@@ -69,6 +72,10 @@ public class LfsBlobStoreFactory {
    * other drawbacks, as well.
    * <p>
    * These repositories will have {@linkplain #GIT_LFS_REPOSITORY_POSTFIX} appended to their IDs.
+   * <p>
+   * The lfs objects itself are stored content addressed in the global {@link LfsObjectStore}, so that forks and
+   * mirrors share identical objects. The blob store of the repository keeps only partial uploads and objects which
+   * were stored before the global store was introduced.
    *
    * @param repository The SCM Repository to provide a LFS {@link BlobStore} for.
    * 
@@ -76,9 +83,10 @@ public class LfsBlobStoreFactory {
    */
   @SuppressWarnings("unchecked")
   public BlobStore getLfsBlobStore(Repository repository) {
-    return blobStoreFactory
+    BlobStore repositoryStore = blobStoreFactory
         .withName(repository.getId() + GIT_LFS_REPOSITORY_POSTFIX)
         .forRepository(repository)
         .build();
+    return new LfsBlobStore(objectStore, repository.getId(), repositoryStore);
   }
 }
@@ -0,0 +1,731 @@
+package sonia.scm.web.lfs;
+
+import com.github.legman.Subscribe;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import org.eclipse.jgit.lfs.lib.Constants;
+import org.eclipse.jgit.lfs.lib.LongObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.HandlerEventType;
+import sonia.scm.SCMContextProvider;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.store.Blob;
+import sonia.scm.store.StoreException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Global content addressed store for git lfs objects. Every object is stored once, regardless of the number of
+ * repositories which are using it, in a directory which is sharded by the first characters of the oid
+ * ({@code objects/ab/cd/abcd...}). Each repository keeps references to the objects it has received, so that a
+ * repository can only read its own objects and objects which are no longer referenced can be collected with
+ * {@link #gc(Predicate)}.
+ * <p>
+ * The sizes of the objects are kept in a cache, because the size is requested for every object of a lfs batch
+ * request.
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class LfsObjectStore {
+
+  @VisibleForTesting
+  static final String CACHE_NAME = "sonia.cache.lfs.sizes";
+
+  @VisibleForTesting
+  static final String DIRECTORY = "lfs";
+
+  /**
+   * Suffix of the id of a partial upload, which is appended to the oid of the uploaded object.
+   */
+  public static final String PARTIAL_SUFFIX = ".partial";
+
+  /**
+   * Unreferenced objects and temporary files are kept for this period, because they may belong to an upload which is
+   * not yet finished.
+   */
+  @VisibleForTesting
+  static final long GC_GRACE_PERIOD = TimeUnit.DAYS.toMillis(1);
+
+  private static final Logger LOG = LoggerFactory.getLogger(LfsObjectStore.class);
+
+  private static final Pattern OID = Pattern.compile("[0-9a-f]{64}");
+  private static final Pattern PARTIAL = Pattern.compile("[0-9a-f]{64}" + Pattern.quote(PARTIAL_SUFFIX));
+
+  private final Path objects;
+  private final Path refs;
+  private final Path tmp;
+  private final Cache<String, Long> sizes;
+  private final ConcurrentMap<String, References> references = new ConcurrentHashMap<>();
+
+  /**
+   * Objects are created and referenced with the read lock and are collected with the write lock, so that the gc
+   * never removes an object which has just been referenced.
+   */
+  private final ReadWriteLock gcLock = new ReentrantReadWriteLock();
+
+  @Inject
+  public LfsObjectStore(SCMContextProvider context, CacheManager cacheManager) {
+    this(new File(context.getBaseDirectory(), DIRECTORY).toPath(), cacheManager.getCache(CACHE_NAME));
+  }
+
+  @VisibleForTesting
+  LfsObjectStore(Path directory, Cache<String, Long> sizes) {
+    this.objects = directory.resolve("objects");
+    this.refs = directory.resolve("refs");
+    this.tmp = directory.resolve("tmp");
+    this.sizes = sizes;
+  }
+
+  /**
+   * Returns {@code true} if the id is a valid lfs oid.
+   *
+   * @param id id of a blob
+   *
+   * @return {@code true} for a sha256 hash
+   */
+  public static boolean isOid(String id) {
+    return id != null && OID.matcher(id).matches();
+  }
+
+  /**
+   * Returns {@code true} if the id is the id of a partial upload of a lfs object.
+   *
+   * @param id id of a blob
+   *
+   * @return {@code true} for a oid with the partial suffix
+   */
+  public static boolean isPartial(String id) {
+    return id != null && PARTIAL.matcher(id).matches();
+  }
+
+  /**
+   * Returns the size of the object or -1 if the store does not contain the object.
+   *
+   * @param oid oid of the object
+   *
+   * @return size of the object
+   */
+  public long getSize(String oid) {
+    Long size = sizes.get(oid);
+    if (size == null) {
+      try {
+        size = Files.size(path(oid));
+      } catch (NoSuchFileException ex) {
+        return -1;
+      } catch (IOException ex) {
+        throw new StoreException("could not read size of lfs object " + oid, ex);
+      }
+      sizes.put(oid, size);
+    }
+    return size;
+  }
+
+  /**
+   * Returns the object with the given oid or {@code null}, if the store does not contain the object. The references of
+   * the repositories are not checked.
+   *
+   * @param oid oid of the object
+   *
+   * @return object or {@code null}
+   */
+  public Blob get(String oid) {
+    long size = getSize(oid);
+    return size >= 0 ? new StoredObject(oid, size) : null;
+  }
+
+  /**
+   * Creates a new object for the repository. The object is stored and referenced with {@link Blob#commit()}. The
+   * caller has to ensure, that the content matches the oid. If the store already contains the object, the written
+   * content is dropped and only the reference is added.
+   *
+   * @param repositoryId id of the repository
+   * @param oid oid of the object
+   *
+   * @return new object
+   */
+  public Blob create(String repositoryId, String oid) {
+    checkOid(oid);
+    try {
+      Files.createDirectories(tmp);
+      return new PendingObject(repositoryId, oid, Files.createTempFile(tmp, oid, ".tmp"));
+    } catch (IOException ex) {
+      throw new StoreException("could not create lfs object " + oid, ex);
+    }
+  }
+
+  /**
+   * Returns the partial upload of the repository or {@code null}, if there is no such upload. Partial uploads are kept
+   * with the temporary files of the store, so that the gc removes an upload, which is not resumed within the grace
+   * period.
+   *
+   * @param repositoryId id of the repository
+   * @param id id of the partial upload
+   *
+   * @return partial upload or {@code null}
+   */
+  public Blob getPartial(String repositoryId, String id) {
+    Path file = partialPath(repositoryId, id);
+    return Files.exists(file) ? new PartialObject(id, file) : null;
+  }
+
+  /**
+   * Creates a new and empty partial upload for the repository.
+   *
+   * @param repositoryId id of the repository
+   * @param id id of the partial upload
+   *
+   * @return partial upload
+   */
+  public Blob createPartial(String repositoryId, String id) {
+    Path file = partialPath(repositoryId, id);
+    try {
+      Files.createDirectories(tmp);
+      Files.write(file, new byte[0]);
+    } catch (IOException ex) {
+      throw new StoreException("could not create partial upload " + id, ex);
+    }
+    return new PartialObject(id, file);
+  }
+
+  /**
+   * Removes the partial upload of the repository.
+   *
+   * @param repositoryId id of the repository
+   * @param id id of the partial upload
+   */
+  public void removePartial(String repositoryId, String id) {
+    try {
+      Files.deleteIfExists(partialPath(repositoryId, id));
+    } catch (IOException ex) {
+      throw new StoreException("could not remove partial upload " + id, ex);
+    }
+  }
+
+  /**
+   * Stores an existing file as object of the repository. The file is linked into the store, if the file system
+   * supports hard links, otherwise it is copied. The file must not be modified afterwards, because it shares its
+   * content with the store.
+   *
+   * @param repositoryId id of the repository
+   * @param oid oid of the content of the file
+   * @param file file to store
+   */
+  public void importFile(String repositoryId, String oid, Path file) {
+    checkOid(oid);
+    gcLock.readLock().lock();
+    try {
+      Path target = path(oid);
+      if (!Files.exists(target)) {
+        Files.createDirectories(target.getParent());
+        try {
+          // the link shares the modification time with the source, which must not be touched; the gc can not remove
+          // the object anyway, because it is referenced below while the gc lock is held
+          Files.createLink(target, file);
+          LOG.trace("linked {} as lfs object {}", file, oid);
+        } catch (FileAlreadyExistsException ex) {
+          LOG.trace("lfs object {} was stored concurrently", oid);
+        } catch (IOException | UnsupportedOperationException ex) {
+          LOG.debug("could not link {} as lfs object {}, fall back to copy", file, oid, ex);
+          Files.createDirectories(tmp);
+          Path temp = Files.createTempFile(tmp, oid, ".tmp");
+          Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+          store(temp, oid);
+        }
+      }
+      sizes.put(oid, Files.size(target));
+      references(repositoryId).add(oid);
+    } catch (IOException ex) {
+      throw new StoreException("could not import " + file + " as lfs object " + oid, ex);
+    } finally {
+      gcLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Copies the content of a blob into the store and references the object for the repository. The content is
+   * verified against the oid during the copy.
+   *
+   * @param repositoryId id of the repository
+   * @param blob blob with the id of a lfs object
+   *
+   * @return stored object or {@code null}, if the content does not match the oid
+   *
+   * @throws IOException if the blob could not be read
+   */
+  public Blob importBlob(String repositoryId, Blob blob) throws IOException {
+    String oid = blob.getId();
+    PendingObject object = (PendingObject) create(repositoryId, oid);
+    MessageDigest digest = Constants.newMessageDigest();
+    try (InputStream input = blob.getInputStream();
+         OutputStream output = new DigestOutputStream(object.getOutputStream(), digest)) {
+      ByteStreams.copy(input, output);
+    } catch (IOException ex) {
+      object.discard();
+      throw ex;
+    }
+    if (!oid.equals(LongObjectId.fromRaw(digest.digest()).getName())) {
+      LOG.warn("content of blob {} does not match its oid, the blob is not imported into the lfs store", oid);
+      object.discard();
+      return null;
+    }
+    object.commit();
+    return get(oid);
+  }
+
+  /**
+   * Returns {@code true} if the repository references the object.
+   *
+   * @param repositoryId id of the repository
+   * @param oid oid of the object
+   *
+   * @return {@code true} if the object is referenced
+   */
+  public boolean isReferenced(String repositoryId, String oid) {
+    return references(repositoryId).contains(oid);
+  }
+
+  /**
+   * Returns the oids of all objects, which are referenced by the repository.
+   *
+   * @param repositoryId id of the repository
+   *
+   * @return referenced oids
+   */
+  public Set<String> getReferences(String repositoryId) {
+    return references(repositoryId).getAll();
+  }
+
+  /**
+   * Removes the reference of the repository to the object. The object itself is removed with the next gc, if no other
+   * repository references it.
+   *
+   * @param repositoryId id of the repository
+   * @param oid oid of the object
+   */
+  public void removeReference(String repositoryId, String oid) {
+    references(repositoryId).remove(oid);
+  }
+
+  /**
+   * Removes all references of the repository.
+   *
+   * @param repositoryId id of the repository
+   */
+  public void removeReferences(String repositoryId) {
+    LOG.debug("remove lfs references of repository {}", repositoryId);
+    references(repositoryId).clear();
+    references.remove(repositoryId);
+  }
+
+  /**
+   * Removes the references of a deleted repository.
+   *
+   * @param event repository event
+   */
+  @Subscribe
+  public void onEvent(RepositoryEvent event) {
+    if (event.getEventType() == HandlerEventType.DELETE) {
+      removeReferences(event.getItem().getId());
+    }
+  }
+
+  /**
+   * Removes all objects, which are not referenced by any repository. The references of a repository are removed only,
+   * if the repository does no longer exist; this is normally done by the delete event of the repository and is
+   * repeated here for events which were missed. The existence is checked with the given predicate while the store is
+   * locked, so that a repository which was created while the gc was running keeps its references. Objects, temporary
+   * files and partial uploads which are younger than the grace period are kept, because they could belong to an
+   * upload in progress.
+   *
+   * @param exists returns {@code true} if the repository with the given id exists
+   *
+   * @return number of removed objects
+   *
+   * @throws IOException if the store could not be read
+   */
+  public int gc(Predicate<String> exists) throws IOException {
+    Set<String> repositoryIds = new HashSet<>(list(refs));
+    repositoryIds.addAll(references.keySet());
+
+    Set<String> reachable = new HashSet<>();
+    for (String repositoryId : repositoryIds) {
+      if (removeReferencesOfDeletedRepository(repositoryId, exists)) {
+        continue;
+      }
+      reachable.addAll(getReferences(repositoryId));
+    }
+
+    long threshold = System.currentTimeMillis() - GC_GRACE_PERIOD;
+    int removed = 0;
+    for (Path file : files(objects, 3)) {
+      String oid = file.getFileName().toString();
+      if (!reachable.contains(oid) && isOlder(file, threshold) && removeUnreferenced(oid, file)) {
+        removed++;
+      }
+    }
+    for (Path file : files(tmp, 1)) {
+      if (isOlder(file, threshold)) {
+        Files.deleteIfExists(file);
+      }
+    }
+    LOG.info("removed {} unreferenced lfs objects", removed);
+    return removed;
+  }
+
+  private boolean removeReferencesOfDeletedRepository(String repositoryId, Predicate<String> exists) {
+    gcLock.writeLock().lock();
+    try {
+      if (exists.test(repositoryId)) {
+        return false;
+      }
+      removeReferences(repositoryId);
+      return true;
+    } finally {
+      gcLock.writeLock().unlock();
+    }
+  }
+
+  private boolean removeUnreferenced(String oid, Path file) throws IOException {
+    gcLock.writeLock().lock();
+    try {
+      // every repository which has referenced an object since the start of the gc, has loaded its references
+      for (References repositoryReferences : references.values()) {
+        if (repositoryReferences.contains(oid)) {
+          return false;
+        }
+      }
+      LOG.debug("remove unreferenced lfs object {}", oid);
+      sizes.remove(oid);
+      return Files.deleteIfExists(file);
+    } finally {
+      gcLock.writeLock().unlock();
+    }
+  }
+
+  private void store(Path temp, String oid) throws IOException {
+    Path target = path(oid);
+    if (Files.exists(target)) {
+      LOG.trace("lfs object {} already exists, drop duplicate", oid);
+      Files.deleteIfExists(temp);
+    } else {
+      Files.createDirectories(target.getParent());
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  private Path path(String oid) {
+    return objects.resolve(oid.substring(0, 2)).resolve(oid.substring(2, 4)).resolve(oid);
+  }
+
+  private Path partialPath(String repositoryId, String id) {
+    if (!isPartial(id)) {
+      throw new StoreException(id + " is not a valid id of a partial lfs upload");
+    }
+    return tmp.resolve(repositoryId + "-" + id);
+  }
+
+  private References references(String repositoryId) {
+    return references.computeIfAbsent(repositoryId, id -> new References(refs.resolve(id)));
+  }
+
+  private static void checkOid(String oid) {
+    if (!isOid(oid)) {
+      throw new StoreException(oid + " is not a valid lfs oid");
+    }
+  }
+
+  private static boolean isOlder(Path file, long threshold) throws IOException {
+    return Files.getLastModifiedTime(file).toMillis() < threshold;
+  }
+
+  private static List<String> list(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> stream = Files.list(directory)) {
+      return stream.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+    }
+  }
+
+  private static List<Path> files(Path directory, int depth) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> stream = Files.walk(directory, depth)) {
+      return stream.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Object which is already stored.
+   */
+  private final class StoredObject implements Blob {
+
+    private final String oid;
+    private final long size;
+
+    private StoredObject(String oid, long size) {
+      this.oid = oid;
+      this.size = size;
+    }
+
+    @Override
+    public void commit() {
+      // stored objects are immutable
+    }
+
+    @Override
+    public String getId() {
+      return oid;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return Files.newInputStream(path(oid));
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() throws IOException {
+      return FileChannel.open(path(oid), StandardOpenOption.READ);
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      throw new StoreException("lfs object " + oid + " is immutable");
+    }
+
+    @Override
+    public long getSize() {
+      return size;
+    }
+  }
+
+  /**
+   * Object which is written to a temporary file and is moved into the store with {@link #commit()}.
+   */
+  final class PendingObject implements Blob {
+
+    private final String repositoryId;
+    private final String oid;
+    private final Path temp;
+
+    private PendingObject(String repositoryId, String oid, Path temp) {
+      this.repositoryId = repositoryId;
+      this.oid = oid;
+      this.temp = temp;
+    }
+
+    @Override
+    public void commit() throws IOException {
+      gcLock.readLock().lock();
+      try {
+        if (Files.exists(temp)) {
+          store(temp, oid);
+        }
+        sizes.put(oid, Files.size(path(oid)));
+        references(repositoryId).add(oid);
+      } finally {
+        gcLock.readLock().unlock();
+      }
+    }
+
+    /**
+     * Drops the written content.
+     */
+    void discard() throws IOException {
+      Files.deleteIfExists(temp);
+    }
+
+    @Override
+    public String getId() {
+      return oid;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return Files.newInputStream(temp);
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+      return Files.newOutputStream(temp);
+    }
+
+    @Override
+    public boolean supportsAppending() {
+      return true;
+    }
+
+    @Override
+    public OutputStream getAppendingOutputStream() throws IOException {
+      return Files.newOutputStream(temp, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public long getSize() {
+      try {
+        return Files.size(temp);
+      } catch (IOException ex) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Chunks of an upload, which are collected in a temporary file. Every appended chunk updates the modification time of
+   * the file and thereby resets the grace period of the gc.
+   */
+  private static final class PartialObject implements Blob {
+
+    private final String id;
+    private final Path file;
+
+    private PartialObject(String id, Path file) {
+      this.id = id;
+      this.file = file;
+    }
+
+    @Override
+    public void commit() {
+      // the content is written directly to the file
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return Files.newInputStream(file);
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+      return Files.newOutputStream(file);
+    }
+
+    @Override
+    public boolean supportsAppending() {
+      return true;
+    }
+
+    @Override
+    public OutputStream getAppendingOutputStream() throws IOException {
+      return Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public long getSize() {
+      try {
+        return Files.size(file);
+      } catch (IOException ex) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * References of a single repository, which are stored as one oid per line.
+   */
+  private final class References {
+
+    private final Path file;
+    private final Set<String> oids = ConcurrentHashMap.newKeySet();
+
+    private References(Path file) {
+      this.file = file;
+      try {
+        if (Files.exists(file)) {
+          for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+            if (isOid(line)) {
+              oids.add(line);
+            }
+          }
+        }
+      } catch (IOException ex) {
+        throw new StoreException("could not read lfs references " + file, ex);
+      }
+    }
+
+    boolean contains(String oid) {
+      return oids.contains(oid);
+    }
+
+    Set<String> getAll() {
+      return new HashSet<>(oids);
+    }
+
+    synchronized void add(String oid) {
+      if (oids.add(oid)) {
+        try {
+          Files.createDirectories(file.getParent());
+          Files.write(file, (oid + "\n").getBytes(StandardCharsets.US_ASCII),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+          oids.remove(oid);
+          throw new StoreException("could not write lfs reference " + file, ex);
+        }
+      }
+    }
+
+    synchronized void remove(String oid) {
+      if (oids.remove(oid)) {
+        write();
+      }
+    }
+
+    synchronized void clear() {
+      oids.clear();
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException ex) {
+        throw new StoreException("could not remove lfs references " + file, ex);
+      }
+    }
+
+    private void write() {
+      try {
+        Files.createDirectories(tmp);
+        Path temp = Files.createTempFile(tmp, file.getFileName().toString(), ".refs");
+        Files.write(temp, oids, StandardCharsets.US_ASCII);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException ex) {
+        throw new StoreException("could not write lfs references " + file, ex);
+      }
+    }
+  }
+}
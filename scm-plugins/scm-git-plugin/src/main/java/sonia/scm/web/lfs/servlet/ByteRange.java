@@ -0,0 +1,163 @@
+package sonia.scm.web.lfs.servlet;
+
+import com.google.common.base.Splitter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inclusive range of bytes of a http range request or of a chunked upload.
+ *
+ * @since 2.0.0
+ */
+final class ByteRange {
+
+  private static final String UNIT = "bytes";
+
+  /**
+   * Requests with more ranges are answered with the whole content, to avoid responses which are mostly headers.
+   */
+  private static final int MAX_RANGES = 16;
+
+  private final long first;
+  private final long last;
+
+  ByteRange(long first, long last) {
+    this.first = first;
+    this.last = last;
+  }
+
+  long getFirst() {
+    return first;
+  }
+
+  long getLast() {
+    return last;
+  }
+
+  long getLength() {
+    return last - first + 1;
+  }
+
+  /**
+   * Returns the value of a {@code Content-Range} header for this range.
+   *
+   * @param size size of the whole content
+   *
+   * @return value of the content range header
+   */
+  String toContentRange(long size) {
+    return UNIT + " " + first + "-" + last + "/" + size;
+  }
+
+  /**
+   * Parses the value of a {@code Range} header of a request.
+   *
+   * @param header value of the range header
+   * @param size size of the content
+   *
+   * @return satisfiable ranges, an empty list if no range is satisfiable or {@code null} if the header is invalid and
+   *   should be ignored
+   */
+  static List<ByteRange> parse(String header, long size) {
+    if (header == null || !header.startsWith(UNIT + "=")) {
+      return null;
+    }
+    List<String> specs = Splitter.on(',').trimResults().omitEmptyStrings()
+      .splitToList(header.substring(UNIT.length() + 1));
+    if (specs.isEmpty() || specs.size() > MAX_RANGES) {
+      return null;
+    }
+    List<ByteRange> ranges = new ArrayList<>(specs.size());
+    for (String spec : specs) {
+      int dash = spec.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+      try {
+        if (dash == 0) {
+          long suffix = Long.parseLong(spec.substring(1));
+          if (suffix > 0 && size > 0) {
+            ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+          }
+        } else {
+          long first = Long.parseLong(spec.substring(0, dash));
+          long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+          if (first < 0 || last < first) {
+            return null;
+          }
+          if (first < size) {
+            ranges.add(new ByteRange(first, Math.min(last, size - 1)));
+          }
+        }
+      } catch (NumberFormatException ex) {
+        return null;
+      }
+    }
+    return ranges.isEmpty() ? Collections.emptyList() : ranges;
+  }
+
+  /**
+   * Parses the value of a {@code Content-Range} header of a chunked upload. The value has the form
+   * {@code bytes first-last/size} for a chunk or {@code bytes *}{@code /size} for a query of the received bytes.
+   *
+   * @param header value of the content range header
+   *
+   * @return parsed range or {@code null} if the header is invalid
+   */
+  static Upload parseUpload(String header) {
+    if (header == null || !header.startsWith(UNIT + " ")) {
+      return null;
+    }
+    String value = header.substring(UNIT.length() + 1).trim();
+    int slash = value.indexOf('/');
+    if (slash < 0) {
+      return null;
+    }
+    try {
+      long size = Long.parseLong(value.substring(slash + 1));
+      String range = value.substring(0, slash);
+      if ("*".equals(range)) {
+        return size >= 0 ? new Upload(null, size) : null;
+      }
+      int dash = range.indexOf('-');
+      if (dash <= 0) {
+        return null;
+      }
+      long first = Long.parseLong(range.substring(0, dash));
+      long last = Long.parseLong(range.substring(dash + 1));
+      if (first < 0 || last < first || last >= size) {
+        return null;
+      }
+      return new Upload(new ByteRange(first, last), size);
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Range of a chunked upload.
+   */
+  static final class Upload {
+
+    private final ByteRange range;
+    private final long size;
+
+    private Upload(ByteRange range, long size) {
+      this.range = range;
+      this.size = size;
+    }
+
+    /**
+     * Returns the range of the chunk or {@code null}, if the client queries the received bytes.
+     */
+    ByteRange getRange() {
+      return range;
+    }
+
+    long getSize() {
+      return size;
+    }
+  }
+}
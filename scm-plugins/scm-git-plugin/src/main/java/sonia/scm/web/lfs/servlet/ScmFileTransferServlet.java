@@ -1,11 +1,13 @@
 package sonia.scm.web.lfs.servlet;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.Striped;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.apache.http.HttpStatus;
-import org.eclipse.jgit.lfs.errors.CorruptLongObjectException;
 import org.eclipse.jgit.lfs.errors.InvalidLongObjectIdException;
 import org.eclipse.jgit.lfs.lib.AnyLongObjectId;
 import org.eclipse.jgit.lfs.lib.Constants;
@@ -18,7 +20,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sonia.scm.store.Blob;
 import sonia.scm.store.BlobStore;
+import sonia.scm.store.EntryAlreadyExistsStoreException;
 import sonia.scm.util.IOUtil;
+import sonia.scm.web.lfs.LfsObjectStore;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletInputStream;
@@ -30,7 +34,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.text.MessageFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
 
 /**
  * This Servlet provides the upload and download of files via git-lfs.
@@ -38,6 +53,10 @@ import java.text.MessageFormat;
  * This implementation is based on {@link FileLfsServlet} but adjusted to work with
  * servlet-2.5 instead of servlet-3.1.
  * <p>
+ * Downloads support single and multiple byte ranges, which are conditional on the oid as entity tag. Uploads are
+ * verified against the oid. An upload can be split into chunks, which are described by a {@code Content-Range} header
+ * and which are collected in a partial blob. A chunk with the range {@code bytes *}{@code /size} queries the bytes
+ * received so far, so that an interrupted upload can be resumed.
  *
  * @see FileLfsServlet
  * @since 1.54
@@ -49,6 +68,22 @@ public class ScmFileTransferServlet extends HttpServlet {
 
   private static final long serialVersionUID = 1L;
 
+  /**
+   * Status code for an incomplete chunked upload.
+   */
+  @VisibleForTesting
+  static final int SC_RESUME_INCOMPLETE = 308;
+
+  @VisibleForTesting
+  static final String PARTIAL_SUFFIX = LfsObjectStore.PARTIAL_SUFFIX;
+
+  private static final String MULTIPART_CONTENT_TYPE = "multipart/byteranges; boundary=";
+
+  /**
+   * The servlet is created for every request, so uploads of the same object have to be synchronized across instances.
+   */
+  private static final Striped<Lock> UPLOAD_LOCKS = Striped.lazyWeakLock(64);
+
   /**
    * Gson is used because the implementation was based on the jgit implementation. However the {@link LfsProtocolServlet} (which we do use in
    * {@link ScmLfsProtocolServlet}) also uses Gson, which currently ties us to Gson anyway.
@@ -158,7 +193,7 @@ public class ScmFileTransferServlet extends HttpServlet {
       if (isBlobPresent(savedBlob)) {
 
         logger.trace("----- Object {}: providing {} bytes", objectIdName, savedBlob.getSize());
-        writeBlobIntoResponse(savedBlob, response);
+        writeBlobIntoResponse(savedBlob, objectIdName, request, response);
       } else {
 
         sendErrorAndLog(response, HttpStatus.SC_NOT_FOUND, MessageFormat.format(LfsServerText.get().objectNotFound, objectIdName));
@@ -228,39 +263,334 @@ public class ScmFileTransferServlet extends HttpServlet {
     return savedBlob != null && savedBlob.getSize() >= 0;
   }
 
-  private void writeBlobIntoResponse(Blob savedBlob, HttpServletResponse response) throws IOException {
+  private void writeBlobIntoResponse(Blob savedBlob, String objectIdName, HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-    try (ServletOutputStream responseOutputStream = response.getOutputStream();
-         InputStream savedBlobInputStream = savedBlob.getInputStream()) {
+    String etag = "\"" + objectIdName + "\"";
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
 
-      response.addHeader(HttpSupport.HDR_CONTENT_LENGTH, String.valueOf(savedBlob.getSize()));
-      response.setContentType(Constants.HDR_APPLICATION_OCTET_STREAM);
+    if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    long size = savedBlob.getSize();
+    List<ByteRange> ranges = null;
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange == null || etag.equals(ifRange.trim())) {
+      ranges = ByteRange.parse(request.getHeader(HttpHeaders.RANGE), size);
+    }
 
-      IOUtil.copy(savedBlobInputStream, responseOutputStream);
+    if (ranges != null && ranges.isEmpty()) {
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+      sendError(response, HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, "requested range not satisfiable");
+      return;
+    }
+
+    try (ServletOutputStream responseOutputStream = response.getOutputStream();
+         BlobReader reader = new BlobReader(savedBlob)) {
+
+      if (ranges == null) {
+        response.addHeader(HttpSupport.HDR_CONTENT_LENGTH, String.valueOf(size));
+        response.setContentType(Constants.HDR_APPLICATION_OCTET_STREAM);
+        reader.transfer(0, size, responseOutputStream);
+      } else if (ranges.size() == 1) {
+        ByteRange range = ranges.get(0);
+        response.setStatus(HttpStatus.SC_PARTIAL_CONTENT);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(size));
+        response.addHeader(HttpSupport.HDR_CONTENT_LENGTH, String.valueOf(range.getLength()));
+        response.setContentType(Constants.HDR_APPLICATION_OCTET_STREAM);
+        reader.transfer(range.getFirst(), range.getLength(), responseOutputStream);
+      } else {
+        writeMultipleRanges(reader, ranges, size, response, responseOutputStream);
+      }
     } catch (IOException ex) {
 
-      sendErrorAndLog(response, HttpStatus.SC_INTERNAL_SERVER_ERROR, ex);
+      if (response.isCommitted()) {
+        logger.warn("download of lfs object {} was aborted", objectIdName, ex);
+      } else {
+        sendErrorAndLog(response, HttpStatus.SC_INTERNAL_SERVER_ERROR, ex);
+      }
     }
 
   }
 
+  private void writeMultipleRanges(BlobReader reader, List<ByteRange> ranges, long size, HttpServletResponse response, OutputStream output) throws IOException {
+
+    String boundary = UUID.randomUUID().toString();
+    String end = "\r\n--" + boundary + "--\r\n";
+
+    long length = end.length();
+    for (ByteRange range : ranges) {
+      length += partHeader(boundary, range, size).length + range.getLength();
+    }
+
+    response.setStatus(HttpStatus.SC_PARTIAL_CONTENT);
+    response.setContentType(MULTIPART_CONTENT_TYPE + boundary);
+    response.addHeader(HttpSupport.HDR_CONTENT_LENGTH, String.valueOf(length));
+
+    for (ByteRange range : ranges) {
+      output.write(partHeader(boundary, range, size));
+      reader.transfer(range.getFirst(), range.getLength(), output);
+    }
+    output.write(end.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static byte[] partHeader(String boundary, ByteRange range, long size) {
+    return ("\r\n--" + boundary + "\r\n"
+      + HttpHeaders.CONTENT_TYPE + ": " + Constants.HDR_APPLICATION_OCTET_STREAM + "\r\n"
+      + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(size) + "\r\n\r\n"
+    ).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String value : ifNoneMatch.split(",")) {
+      String candidate = value.trim();
+      if ("*".equals(candidate) || etag.equals(candidate) || ("W/" + etag).equals(candidate)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void readBlobFromResponse(HttpServletRequest request, HttpServletResponse response, AnyLongObjectId objectId) throws IOException {
 
+    String contentRange = request.getHeader(HttpHeaders.CONTENT_RANGE);
+    if (contentRange != null) {
+
+      ByteRange.Upload upload = ByteRange.parseUpload(contentRange);
+      if (upload == null) {
+        sendErrorAndLog(response, HttpStatus.SC_BAD_REQUEST, "invalid content range " + contentRange);
+      } else {
+        readChunkFromResponse(request, response, objectId, upload);
+      }
+      return;
+    }
+
     Blob blob = blobStore.create(objectId.getName());
-    try (OutputStream blobOutputStream = blob.getOutputStream();
-         ServletInputStream requestInputStream = request.getInputStream()) {
+    boolean verified = false;
+    try (ServletInputStream requestInputStream = request.getInputStream()) {
+
+      MessageDigest digest = Constants.newMessageDigest();
+      try (OutputStream blobOutputStream = new DigestOutputStream(blob.getOutputStream(), digest)) {
+        IOUtil.copy(requestInputStream, blobOutputStream);
+      }
+
+      verified = verify(response, objectId, digest);
+      if (verified) {
+        blob.commit();
+
+        response.setContentType(Constants.CONTENT_TYPE_GIT_LFS_JSON);
+        response.setStatus(HttpServletResponse.SC_OK);
+      }
+    } finally {
+      if (!verified) {
+        blobStore.remove(blob);
+      }
+    }
+
+
+  }
+
+  private void readChunkFromResponse(HttpServletRequest request, HttpServletResponse response, AnyLongObjectId objectId, ByteRange.Upload upload) throws IOException {
+
+    String objectIdName = objectId.getName();
+    Lock lock = UPLOAD_LOCKS.get(objectIdName);
+    lock.lock();
+    try {
 
-      IOUtil.copy(requestInputStream, blobOutputStream);
-      blob.commit();
+      if (isBlobPresent(blobStore.get(objectIdName))) {
+        logger.trace("----- Object {}: upload is already complete", objectIdName);
+        response.setContentType(Constants.CONTENT_TYPE_GIT_LFS_JSON);
+        response.setStatus(HttpServletResponse.SC_OK);
+        return;
+      }
+
+      Blob partial = blobStore.get(objectIdName + PARTIAL_SUFFIX);
+      long received = partial != null ? Math.max(partial.getSize(), 0) : 0;
 
-      response.setContentType(Constants.CONTENT_TYPE_GIT_LFS_JSON);
-      response.setStatus(HttpServletResponse.SC_OK);
-    } catch (CorruptLongObjectException ex) {
+      ByteRange range = upload.getRange();
+      if (range == null) {
+        sendIncomplete(response, received);
+        return;
+      }
+      if (range.getFirst() != received) {
+        setReceivedRange(response, received);
+        sendErrorAndLog(response, HttpStatus.SC_CONFLICT,
+          "chunk of lfs object " + objectIdName + " starts at " + range.getFirst() + ", but " + received + " bytes are received");
+        return;
+      }
+
+      if (partial == null) {
+        partial = blobStore.create(objectIdName + PARTIAL_SUFFIX);
+      }
+      if (!partial.supportsAppending()) {
+        blobStore.remove(partial);
+        sendErrorAndLog(response, HttpStatus.SC_NOT_IMPLEMENTED,
+          "blob store of lfs object " + objectIdName + " does not support chunked uploads");
+        return;
+      }
+      try (InputStream requestInputStream = ByteStreams.limit(request.getInputStream(), range.getLength());
+           OutputStream blobOutputStream = partial.getAppendingOutputStream()) {
+        received += ByteStreams.copy(requestInputStream, blobOutputStream);
+      } finally {
+        partial.commit();
+      }
 
-      sendErrorAndLog(response, HttpStatus.SC_BAD_REQUEST, ex);
+      logger.trace("----- Object {}: received {} of {} bytes", objectIdName, received, upload.getSize());
+      if (received < upload.getSize()) {
+        sendIncomplete(response, received);
+      } else {
+        completeUpload(response, objectId, partial);
+      }
+    } finally {
+      lock.unlock();
     }
+  }
 
+  /**
+   * Copies the collected chunks into the blob of the object. The content is verified during the copy, because the
+   * state of the hash can not be kept between the requests of the chunks.
+   */
+  private void completeUpload(HttpServletResponse response, AnyLongObjectId objectId, Blob partial) throws IOException {
+
+    Blob blob;
+    try {
+      blob = blobStore.create(objectId.getName());
+    } catch (EntryAlreadyExistsStoreException ex) {
+      blobStore.remove(partial);
+      throw ex;
+    }
+
+    boolean verified = false;
+    try {
+
+      MessageDigest digest = Constants.newMessageDigest();
+      try (InputStream partialInputStream = partial.getInputStream();
+           OutputStream blobOutputStream = new DigestOutputStream(blob.getOutputStream(), digest)) {
+        IOUtil.copy(partialInputStream, blobOutputStream);
+      }
+
+      verified = verify(response, objectId, digest);
+      if (verified) {
+        blob.commit();
+
+        response.setContentType(Constants.CONTENT_TYPE_GIT_LFS_JSON);
+        response.setStatus(HttpServletResponse.SC_OK);
+      }
+    } finally {
+      blobStore.remove(partial);
+      if (!verified) {
+        blobStore.remove(blob);
+      }
+    }
+  }
+
+  private static boolean verify(HttpServletResponse response, AnyLongObjectId objectId, MessageDigest digest) throws IOException {
+
+    LongObjectId contentId = LongObjectId.fromRaw(digest.digest());
+    if (contentId.equals(objectId)) {
+      return true;
+    }
+    sendErrorAndLog(response, HttpStatus.SC_BAD_REQUEST,
+      "content hash " + contentId.getName() + " does not match lfs object " + objectId.getName());
+    return false;
+  }
 
+  private static void sendIncomplete(HttpServletResponse response, long received) {
+
+    setReceivedRange(response, received);
+    response.setStatus(SC_RESUME_INCOMPLETE);
+  }
+
+  private static void setReceivedRange(HttpServletResponse response, long received) {
+
+    if (received > 0) {
+      response.setHeader(HttpHeaders.RANGE, "bytes=0-" + (received - 1));
+    }
+  }
+
+  /**
+   * Reads ranges of a blob. A {@link FileChannel} transfers the ranges directly to the response, other blobs are read
+   * sequentially and are reopened if a range starts before the current position.
+   */
+  private static final class BlobReader implements AutoCloseable {
+
+    private final Blob blob;
+    private ReadableByteChannel channel;
+    private long position;
+
+    private BlobReader(Blob blob) {
+      this.blob = blob;
+    }
+
+    void transfer(long first, long length, OutputStream output) throws IOException {
+      if (channel == null || (!(channel instanceof FileChannel) && first < position)) {
+        close();
+        channel = blob.openChannel();
+        position = 0;
+      }
+      WritableByteChannel target = Channels.newChannel(output);
+      if (channel instanceof FileChannel) {
+        FileChannel fileChannel = (FileChannel) channel;
+        long transferred = 0;
+        while (transferred < length) {
+          long count = fileChannel.transferTo(first + transferred, length - transferred, target);
+          if (count <= 0) {
+            throw new IOException("unexpected end of blob " + blob.getId());
+          }
+          transferred += count;
+        }
+      } else {
+        skip(first - position);
+        copy(length, target);
+      }
+    }
+
+    private void skip(long count) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(8192);
+      long remaining = count;
+      while (remaining > 0) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), remaining));
+        int read = channel.read(buffer);
+        if (read < 0) {
+          throw new IOException("unexpected end of blob " + blob.getId());
+        }
+        remaining -= read;
+        position += read;
+      }
+    }
+
+    private void copy(long count, WritableByteChannel target) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(8192);
+      long remaining = count;
+      while (remaining > 0) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), remaining));
+        int read = channel.read(buffer);
+        if (read < 0) {
+          throw new IOException("unexpected end of blob " + blob.getId());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          target.write(buffer);
+        }
+        remaining -= read;
+        position += read;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (channel != null) {
+        channel.close();
+        channel = null;
+      }
+    }
   }
 
   /**
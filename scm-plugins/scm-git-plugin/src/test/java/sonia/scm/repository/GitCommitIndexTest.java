@@ -0,0 +1,157 @@
+package sonia.scm.repository;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GitCommitIndexTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Git git;
+  private GitCommitIndex index;
+  private long time = 1_500_000_000_000L;
+
+  @Before
+  public void initRepository() throws IOException, GitAPIException {
+    git = Git.init().setDirectory(temporaryFolder.newFolder()).call();
+    index = new GitCommitIndex(git.getRepository().getDirectory());
+  }
+
+  @After
+  public void closeRepository() {
+    git.close();
+  }
+
+  @Test
+  public void shouldIndexHistoryInWalkOrder() throws IOException, GitAPIException {
+    commit("a");
+    commit("b");
+    commit("c");
+
+    GitCommitIndex.Entry entry = index.get(git.getRepository(), master());
+
+    assertThat(entry.getCount()).isEqualTo(3);
+    assertThat(entry.read(0, -1)).containsExactlyElementsOf(walk());
+  }
+
+  @Test
+  public void shouldReadPages() throws IOException, GitAPIException {
+    for (int i = 0; i < 5; i++) {
+      commit("commit " + i);
+    }
+    List<ObjectId> all = walk();
+
+    GitCommitIndex.Entry entry = index.get(git.getRepository(), master());
+
+    assertThat(entry.read(1, 2)).containsExactly(all.get(1), all.get(2));
+    assertThat(entry.read(4, 10)).containsExactly(all.get(4));
+    assertThat(entry.read(5, 10)).isEmpty();
+  }
+
+  @Test
+  public void shouldAppendNewCommits() throws IOException, GitAPIException {
+    commit("a");
+    commit("b");
+    index.get(git.getRepository(), master());
+
+    commit("c");
+    commit("d");
+
+    GitCommitIndex.Entry entry = index.get(git.getRepository(), master());
+
+    assertThat(entry.getHead()).isEqualTo(master().getObjectId());
+    assertThat(entry.getCount()).isEqualTo(4);
+    assertThat(entry.read(0, -1)).containsExactlyElementsOf(walk());
+  }
+
+  @Test
+  public void shouldRebuildIfNewCommitsAreOlderThanTheIndexedHistory() throws IOException, GitAPIException {
+    commit("a");
+    commit("b");
+    index.get(git.getRepository(), master());
+
+    time -= 10_000_000L;
+    commit("c");
+
+    GitCommitIndex.Entry entry = index.get(git.getRepository(), master());
+
+    assertThat(entry.getCount()).isEqualTo(3);
+    assertThat(entry.read(0, -1)).containsExactlyElementsOf(walk());
+  }
+
+  @Test
+  public void shouldRebuildAfterHistoryRewrite() throws IOException, GitAPIException {
+    commit("a");
+    RevCommit b = commit("b");
+    commit("c");
+    index.get(git.getRepository(), master());
+
+    git.reset().setRef(b.name()).setMode(ResetCommand.ResetType.HARD).call();
+    commit("d");
+
+    GitCommitIndex.Entry entry = index.get(git.getRepository(), master());
+
+    assertThat(entry.getCount()).isEqualTo(3);
+    assertThat(entry.read(0, -1)).containsExactlyElementsOf(walk());
+  }
+
+  @Test
+  public void shouldRemoveIndexOfDeletedBranches() throws IOException, GitAPIException {
+    commit("a");
+    git.branchCreate().setName("feature").call();
+    index.get(git.getRepository(), git.getRepository().exactRef("refs/heads/feature"));
+
+    git.branchDelete().setBranchNames("feature").call();
+    index.update(git.getRepository());
+
+    File[] files = new File(git.getRepository().getDirectory(), GitCommitIndex.DIRECTORY).listFiles();
+    assertThat(files).isEmpty();
+  }
+
+  private Ref master() throws IOException {
+    return git.getRepository().exactRef("refs/heads/master");
+  }
+
+  private List<ObjectId> walk() throws IOException {
+    List<ObjectId> ids = new ArrayList<>();
+    try (RevWalk walk = new RevWalk(git.getRepository())) {
+      walk.markStart(walk.parseCommit(master().getObjectId()));
+      for (RevCommit commit : walk) {
+        ids.add(commit.getId());
+      }
+    }
+    return ids;
+  }
+
+  private RevCommit commit(String message) throws GitAPIException {
+    time += 1000;
+    PersonIdent ident = new PersonIdent("Trillian", "tricia@hitchhiker.com", new Date(time), TimeZone.getTimeZone("UTC"));
+    return git.commit()
+      .setMessage(message)
+      .setAllowEmpty(true)
+      .setAuthor(ident)
+      .setCommitter(ident)
+      .call();
+  }
+}
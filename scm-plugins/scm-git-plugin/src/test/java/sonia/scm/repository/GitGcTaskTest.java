@@ -35,17 +35,29 @@ import com.google.common.collect.Lists;
 import org.eclipse.jgit.api.GarbageCollectCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lfs.lib.Constants;
+import org.eclipse.jgit.lfs.lib.LongObjectId;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import sonia.scm.SCMContextProvider;
+import sonia.scm.cache.MapCacheManager;
+import sonia.scm.web.lfs.LfsObjectStore;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -71,6 +83,9 @@ public class GitGcTaskTest
   @Mock
   private Git git;
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private GitGcTask task;
   
   /**
@@ -128,4 +143,47 @@ public class GitGcTaskTest
     verify(gcc).call();
   }
 
+  /**
+   * Tests that the lfs gc keeps the references of a repository, which was created during the git gc.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void shouldKeepLfsReferencesOfRepositoryCreatedDuringGc() throws IOException
+  {
+    SCMContextProvider context = mock(SCMContextProvider.class);
+    when(context.getBaseDirectory()).thenReturn(temporaryFolder.newFolder());
+    LfsObjectStore lfsObjectStore = new LfsObjectStore(context, new MapCacheManager());
+
+    Path file = temporaryFolder.newFile().toPath();
+    byte[] content = "hitchhiker".getBytes(StandardCharsets.UTF_8);
+    Files.write(file, content);
+    String oid = LongObjectId.fromRaw(Constants.newMessageDigest().digest(content)).getName();
+
+    Repository existing = RepositoryTestData.create42Puzzle("git");
+    existing.setId("42");
+    Repository created = RepositoryTestData.createHeartOfGold("git");
+    created.setId("21");
+    when(manager.getAll()).thenReturn(Collections.singletonList(existing));
+    when(manager.get("21")).thenReturn(created);
+
+    lfsObjectStore.importFile("deleted", oid, file);
+
+    task = new GitGcTask(manager, lfsObjectStore) {
+
+      @Override
+      protected Git open(File directory)
+      {
+        // the repository is created and receives lfs objects, while the existing repository is collected
+        lfsObjectStore.importFile("21", oid, file);
+        return git;
+      }
+
+    };
+    task.run();
+
+    assertThat(lfsObjectStore.isReferenced("21", oid)).isTrue();
+    assertThat(lfsObjectStore.getReferences("deleted")).isEmpty();
+    assertThat(lfsObjectStore.get(oid)).isNotNull();
+  }
 }
@@ -0,0 +1,135 @@
+package sonia.scm.repository;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.PackParser;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.ReceivePack;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sonia.scm.web.CollectingPackParserListener;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GitHookChangesetCollectorTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Git git;
+  private ReceivePack receivePack;
+
+  @Before
+  public void initRepository() throws IOException, GitAPIException {
+    git = Git.init().setDirectory(temporaryFolder.newFolder()).call();
+    receivePack = new ReceivePack(git.getRepository());
+    CollectingPackParserListener.set(receivePack);
+
+    // an empty set of new object ids marks every commit as new
+    PackParser parser = mock(PackParser.class);
+    when(parser.getNewObjectIds()).thenReturn(new ObjectIdSubclassMap<>());
+    CollectingPackParserListener.get(receivePack).after(parser);
+  }
+
+  @After
+  public void closeRepository() {
+    git.close();
+  }
+
+  @Test
+  public void shouldCollectNewCommitsInOrder() throws GitAPIException {
+    RevCommit a = commit("a");
+    RevCommit b = commit("b");
+    RevCommit c = commit("c");
+
+    List<Changeset> changesets = collector(1000, update("master", a, c)).collectChangesets();
+
+    assertThat(changesets).extracting("id").containsExactly(b.name(), c.name());
+    assertThat(changesets.get(0).getBranches()).containsExactly("master");
+  }
+
+  @Test
+  public void shouldCollectSharedCommitsOnlyOnce() throws GitAPIException {
+    RevCommit a = commit("a");
+    RevCommit b = commit("b");
+    git.branchCreate().setName("feature").call();
+    RevCommit c = commit("c");
+
+    List<Changeset> changesets = collector(1000, update("master", a, c), create("feature", b))
+      .collectChangesets();
+
+    assertThat(changesets).extracting("id").containsExactly(b.name(), c.name());
+    assertThat(changesets.get(0).getBranches()).containsExactlyInAnyOrder("master", "feature");
+    assertThat(changesets.get(1).getBranches()).containsExactly("master");
+  }
+
+  @Test
+  public void shouldContinueBeyondBuffer() throws GitAPIException {
+    RevCommit a = commit("a");
+    commit("b");
+    commit("c");
+    RevCommit d = commit("d");
+
+    Iterable<Changeset> changesets = collector(1, update("master", a, d)).getChangesets();
+
+    assertThat(changesets).hasSize(3);
+    assertThat(changesets).extracting("id").endsWith(d.name());
+  }
+
+  @Test
+  public void shouldShareBufferBetweenHooks() throws GitAPIException {
+    RevCommit a = commit("a");
+    RevCommit b = commit("b");
+    ReceiveCommand command = update("master", a, b);
+
+    Changeset pre = collector(1000, command).getChangesets().iterator().next();
+    command.setResult(ReceiveCommand.Result.OK);
+    Changeset post = collector(1000, command).getChangesets().iterator().next();
+
+    assertThat(post).isSameAs(pre);
+  }
+
+  @Test
+  public void shouldApplyTagsOfPush() throws GitAPIException {
+    RevCommit a = commit("a");
+    RevCommit b = commit("b");
+    ReceiveCommand command = update("master", a, b);
+    ReceiveCommand tag = new ReceiveCommand(ObjectId.zeroId(), b, "refs/tags/1.0");
+
+    Changeset pre = collector(1000, command, tag).getChangesets().iterator().next();
+    command.setResult(ReceiveCommand.Result.OK);
+    tag.setResult(ReceiveCommand.Result.OK);
+    Changeset post = collector(1000, command, tag).getChangesets().iterator().next();
+
+    assertThat(pre.getTags()).isEmpty();
+    assertThat(post.getTags()).containsExactly("1.0");
+  }
+
+  private GitHookChangesetCollector collector(int bufferSize, ReceiveCommand... commands) {
+    return new GitHookChangesetCollector(receivePack, Arrays.asList(commands), bufferSize);
+  }
+
+  private ReceiveCommand update(String branch, ObjectId oldId, ObjectId newId) {
+    return new ReceiveCommand(oldId, newId, "refs/heads/" + branch);
+  }
+
+  private ReceiveCommand create(String branch, ObjectId newId) {
+    return update(branch, ObjectId.zeroId(), newId);
+  }
+
+  private RevCommit commit(String message) throws GitAPIException {
+    return git.commit().setMessage(message).setAllowEmpty(true).call();
+  }
+}
@@ -0,0 +1,137 @@
+package sonia.scm.repository;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GitRepositoryHandleCacheTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private GitRepositoryHandler handler;
+  private GitRepositoryHandleCache cache;
+
+  @Before
+  public void setUpCache() {
+    handler = mock(GitRepositoryHandler.class);
+    cache = new GitRepositoryHandleCache(handler, 2, TimeUnit.MINUTES.toNanos(10));
+  }
+
+  @Test
+  public void shouldReuseHandle() throws IOException, GitAPIException {
+    File directory = createRepository();
+
+    org.eclipse.jgit.lib.Repository first;
+    try (GitRepositoryHandleCache.Lease lease = cache.acquire(directory)) {
+      first = lease.getRepository();
+    }
+    try (GitRepositoryHandleCache.Lease lease = cache.acquire(directory)) {
+      assertThat(lease.getRepository()).isSameAs(first);
+    }
+
+    GitRepositoryHandleCache.Statistics statistics = cache.getStatistics();
+    assertThat(statistics.getHitCount()).isEqualTo(1);
+    assertThat(statistics.getMissCount()).isEqualTo(1);
+    assertThat(statistics.getOpenCount()).isEqualTo(1);
+    assertThat(statistics.getLeaseCount()).isZero();
+  }
+
+  @Test
+  public void shouldShareHandleBetweenConcurrentLeases() throws IOException, GitAPIException {
+    File directory = createRepository();
+
+    try (GitRepositoryHandleCache.Lease one = cache.acquire(directory);
+         GitRepositoryHandleCache.Lease two = cache.acquire(directory)) {
+      assertThat(one.getRepository()).isSameAs(two.getRepository());
+      assertThat(cache.getStatistics().getLeaseCount()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void shouldOpenNewHandleAfterModification() throws IOException, GitAPIException {
+    File directory = createRepository();
+    Repository repository = new Repository("42", GitRepositoryHandler.TYPE_NAME, "space", "git");
+    when(handler.getDirectory("42")).thenReturn(directory);
+
+    org.eclipse.jgit.lib.Repository first;
+    try (GitRepositoryHandleCache.Lease lease = cache.acquire(directory)) {
+      first = lease.getRepository();
+      cache.onEvent(new RepositoryModificationEvent(HandlerEventType.MODIFY, repository, repository));
+
+      // the leased handle stays usable until the lease is released
+      assertThat(lease.getRepository().getConfig()).isNotNull();
+    }
+
+    try (GitRepositoryHandleCache.Lease lease = cache.acquire(directory)) {
+      assertThat(lease.getRepository()).isNotSameAs(first);
+    }
+    assertThat(cache.getStatistics().getInvalidationCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldIgnoreEventsOfOtherRepositoryTypes() throws IOException, GitAPIException {
+    File directory = createRepository();
+    Repository repository = new Repository("42", "hg", "space", "hg");
+
+    cache.acquire(directory).close();
+    cache.onEvent(new RepositoryEvent(HandlerEventType.DELETE, repository));
+
+    assertThat(cache.getStatistics().getOpenCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedHandle() throws IOException, GitAPIException {
+    File one = createRepository();
+    File two = createRepository();
+    File three = createRepository();
+
+    org.eclipse.jgit.lib.Repository first;
+    try (GitRepositoryHandleCache.Lease lease = cache.acquire(one)) {
+      first = lease.getRepository();
+    }
+    cache.acquire(two).close();
+    cache.acquire(one).close();
+    cache.acquire(three).close();
+
+    GitRepositoryHandleCache.Statistics statistics = cache.getStatistics();
+    assertThat(statistics.getOpenCount()).isEqualTo(2);
+    assertThat(statistics.getEvictionCount()).isEqualTo(1);
+
+    try (GitRepositoryHandleCache.Lease lease = cache.acquire(one)) {
+      assertThat(lease.getRepository()).isSameAs(first);
+    }
+  }
+
+  @Test
+  public void shouldNotCacheIfDisabled() throws IOException, GitAPIException {
+    File directory = createRepository();
+    cache = new GitRepositoryHandleCache(handler, 0, 0);
+
+    org.eclipse.jgit.lib.Repository first;
+    try (GitRepositoryHandleCache.Lease lease = cache.acquire(directory)) {
+      first = lease.getRepository();
+    }
+    try (GitRepositoryHandleCache.Lease lease = cache.acquire(directory)) {
+      assertThat(lease.getRepository()).isNotSameAs(first);
+    }
+    assertThat(cache.getStatistics().getOpenCount()).isZero();
+  }
+
+  private File createRepository() throws IOException, GitAPIException {
+    try (Git git = Git.init().setBare(true).setDirectory(temporaryFolder.newFolder()).call()) {
+      return git.getRepository().getDirectory();
+    }
+  }
+}
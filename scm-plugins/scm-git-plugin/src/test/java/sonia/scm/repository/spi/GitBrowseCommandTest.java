@@ -32,6 +32,7 @@
 package sonia.scm.repository.spi;
 
 import org.junit.Test;
+import sonia.scm.cache.MapCacheManager;
 import sonia.scm.repository.BrowserResult;
 import sonia.scm.repository.FileObject;
 import sonia.scm.repository.GitRepositoryConfig;
@@ -127,7 +128,7 @@ public class GitBrowseCommandTest extends AbstractGitCommandTestBase {
   @Test
   public void testAsynchronousBrowse() throws IOException {
     try (AsyncExecutorStepper executor = stepperAsynchronousExecutor()) {
-      GitBrowseCommand command = new GitBrowseCommand(createContext(), repository, null, executor);
+      GitBrowseCommand command = new GitBrowseCommand(createContext(), repository, null, executor, new MapCacheManager());
       List<BrowserResult> updatedResults = new LinkedList<>();
       BrowseCommandRequest request = new BrowseCommandRequest(updatedResults::add);
       FileObject root = command.getBrowserResult(request).getFile();
@@ -151,14 +152,7 @@ public class GitBrowseCommandTest extends AbstractGitCommandTestBase {
       assertFalse(a.isPartialResult());
       assertNotNull("expected correct name after commit could have been read", a.getDescription());
       assertTrue("expected correct date after commit could have been read", a.getCommitDate().isPresent());
-      assertTrue(b.isPartialResult());
-      assertFalse("expected empty name before commit could have been read", b.getDescription().isPresent());
-      assertFalse("expected empty date before commit could have been read", b.getCommitDate().isPresent());
-
-      executor.next();
-
-      assertEquals(2, updatedResults.size());
-      assertFalse(b.isPartialResult());
+      assertFalse("expected files of the same directory to be completed together", b.isPartialResult());
       assertNotNull("expected correct name after commit could have been read", b.getDescription());
       assertTrue("expected correct date after commit could have been read", b.getCommitDate().isPresent());
     }
@@ -244,6 +238,6 @@ public class GitBrowseCommandTest extends AbstractGitCommandTestBase {
   }
 
   private GitBrowseCommand createCommand() {
-    return new GitBrowseCommand(createContext(), repository, lfsBlobStoreFactory, synchronousExecutor());
+    return new GitBrowseCommand(createContext(), repository, lfsBlobStoreFactory, synchronousExecutor(), new MapCacheManager());
   }
 }
@@ -79,9 +79,50 @@ public class GitDiffResultCommandTest extends AbstractGitCommandTestBase {
     assertThat(hunk.getNewLineCount()).isEqualTo(2);
   }
 
+  @Test
+  public void shouldTruncateFileWhichExceedsLineLimit() throws IOException {
+    DiffCommandRequest diffCommandRequest = new DiffCommandRequest();
+    diffCommandRequest.setMaxLinesPerFile(4);
+
+    DiffResult diffResult = createDiffResult("fcd0ef1831e4002ac43ea539f4094334c79ea9ec", diffCommandRequest);
+    DiffFile a = diffResult.iterator().next();
+
+    assertThat(a).isEmpty();
+    assertThat(a.isTruncated()).isTrue();
+  }
+
+  @Test
+  public void shouldTruncateFilesWhichExceedTotalLimit() throws IOException {
+    DiffCommandRequest diffCommandRequest = new DiffCommandRequest();
+    diffCommandRequest.setMaxTotalBytes(1);
+
+    DiffResult diffResult = createDiffResult("3f76a12f08a6ba0dc988c68b7f0b2cd190efc3c4", diffCommandRequest);
+    Iterator<DiffFile> iterator = diffResult.iterator();
+
+    DiffFile a = iterator.next();
+    assertThat(a).isEmpty();
+    assertThat(a.isTruncated()).isTrue();
+
+    DiffFile b = iterator.next();
+    assertThat(b).isEmpty();
+    assertThat(b.isTruncated()).isTrue();
+  }
+
+  @Test
+  public void shouldNotTruncateFilesWithinLimits() throws IOException {
+    DiffResult diffResult = createDiffResult("3f76a12f08a6ba0dc988c68b7f0b2cd190efc3c4");
+    DiffFile a = diffResult.iterator().next();
+
+    assertThat(a).isNotEmpty();
+    assertThat(a.isTruncated()).isFalse();
+  }
+
   private DiffResult createDiffResult(String s) throws IOException {
+    return createDiffResult(s, new DiffCommandRequest());
+  }
+
+  private DiffResult createDiffResult(String s, DiffCommandRequest diffCommandRequest) throws IOException {
     GitDiffResultCommand gitDiffResultCommand = new GitDiffResultCommand(createContext(), repository);
-    DiffCommandRequest diffCommandRequest = new DiffCommandRequest();
     diffCommandRequest.setRevision(s);
 
     return gitDiffResultCommand.getDiffResult(diffCommandRequest);
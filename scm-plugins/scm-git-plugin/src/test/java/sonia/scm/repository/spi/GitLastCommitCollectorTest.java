@@ -0,0 +1,84 @@
+package sonia.scm.repository.spi;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.junit.Test;
+import sonia.scm.cache.MapCache;
+import sonia.scm.cache.MapCacheManager;
+import sonia.scm.repository.GitUtil;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GitLastCommitCollectorTest extends AbstractGitCommandTestBase {
+
+  private final MapCacheManager cacheManager = new MapCacheManager();
+
+  @Test
+  public void shouldFindSameCommitsAsPathFilteredWalks() throws IOException {
+    Repository repo = createContext().open();
+    ObjectId head = GitUtil.getRepositoryHead(repo);
+    Map<String, ObjectId> files = files(repo, head);
+
+    Map<String, GitLastCommitCollector.LastCommit> lastCommits = createCollector()
+      .collect(repo, repository.getId(), head, "", null, files);
+
+    assertThat(lastCommits).containsOnlyKeys(files.keySet());
+    for (String path : files.keySet()) {
+      assertThat(lastCommits.get(path).getId()).isEqualTo(lastCommitOf(repo, head, path));
+    }
+  }
+
+  @Test
+  public void shouldCacheResultByTreeId() throws IOException {
+    Repository repo = createContext().open();
+    ObjectId head = GitUtil.getRepositoryHead(repo);
+    ObjectId treeId;
+    try (RevWalk walk = new RevWalk(repo)) {
+      treeId = walk.parseCommit(head).getTree().getId();
+    }
+    Map<String, ObjectId> files = files(repo, head);
+
+    GitLastCommitCollector collector = createCollector();
+    Map<String, GitLastCommitCollector.LastCommit> first = collector.collect(repo, repository.getId(), head, "", treeId, files);
+    Map<String, GitLastCommitCollector.LastCommit> second = collector.collect(repo, repository.getId(), head, "", treeId, files);
+
+    MapCache<Object, Object> cache = cacheManager.getCache(GitLastCommitCollector.CACHE_NAME);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(second).isSameAs(first);
+  }
+
+  private GitLastCommitCollector createCollector() {
+    return new GitLastCommitCollector(cacheManager.getCache(GitLastCommitCollector.CACHE_NAME));
+  }
+
+  private Map<String, ObjectId> files(Repository repo, ObjectId revision) throws IOException {
+    Map<String, ObjectId> files = new HashMap<>();
+    try (RevWalk walk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+      treeWalk.addTree(walk.parseCommit(revision).getTree());
+      treeWalk.setRecursive(true);
+      while (treeWalk.next()) {
+        files.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+      }
+    }
+    return files;
+  }
+
+  private String lastCommitOf(Repository repo, ObjectId revision, String path) throws IOException {
+    try (RevWalk walk = new RevWalk(repo)) {
+      walk.setTreeFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, PathFilter.create(path)));
+      walk.markStart(walk.parseCommit(revision));
+      RevCommit commit = walk.next();
+      return commit.getId().name();
+    }
+  }
+}
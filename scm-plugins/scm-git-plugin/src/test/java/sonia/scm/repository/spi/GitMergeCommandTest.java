@@ -8,29 +8,25 @@ import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Rule;
 import org.junit.Test;
-import org.junit.jupiter.api.Assertions;
+import sonia.scm.ConcurrentModificationException;
 import sonia.scm.NoChangesMadeException;
 import sonia.scm.NotFoundException;
-import sonia.scm.repository.GitWorkdirFactory;
 import sonia.scm.repository.Person;
 import sonia.scm.repository.api.MergeCommandResult;
 import sonia.scm.repository.api.MergeStrategy;
-import sonia.scm.repository.util.WorkdirProvider;
 import sonia.scm.user.User;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.function.Consumer;
-import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SubjectAware(configuration = "classpath:sonia/scm/configuration/shiro.ini", username = "admin", password = "secret")
 public class GitMergeCommandTest extends AbstractGitCommandTestBase {
@@ -170,29 +166,6 @@ public class GitMergeCommandTest extends AbstractGitCommandTestBase {
     assertThat(mergeCommandResult.getFilesWithConflict()).containsExactly("a.txt");
   }
 
-  @Test
-  public void shouldHandleUnexpectedMergeResults() {
-    GitMergeCommand command = createCommand(git -> {
-      try {
-        FileWriter fw = new FileWriter(new File(git.getRepository().getWorkTree(), "b.txt"), true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("change");
-        bw.newLine();
-        bw.close();
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
-    });
-    MergeCommandRequest request = new MergeCommandRequest();
-    request.setBranchToMerge("mergeable");
-    request.setTargetBranch("master");
-    request.setMergeStrategy(MergeStrategy.MERGE_COMMIT);
-    request.setAuthor(new Person("Dirk Gently", "dirk@holistic.det"));
-    request.setMessageTemplate("simple");
-
-    Assertions.assertThrows(UnexpectedMergeResultException.class, () -> command.merge(request));
-  }
-
   @Test
   public void shouldTakeAuthorFromSubjectIfNotSet() throws IOException, GitAPIException {
     SimplePrincipalCollection principals = new SimplePrincipalCollection();
@@ -327,6 +300,49 @@ public class GitMergeCommandTest extends AbstractGitCommandTestBase {
     assertThat(mergeCommit.getId()).isEqualTo(featureBranchHead);
   }
 
+  @Test
+  public void shouldNotChangeTargetIfAlreadyMergedWithFastForward() throws IOException {
+    Repository repository = createContext().open();
+    ObjectId targetHead = repository.resolve("squash");
+
+    GitMergeCommand command = createCommand();
+    MergeCommandRequest request = new MergeCommandRequest();
+    request.setBranchToMerge("master");
+    request.setTargetBranch("squash");
+    request.setMergeStrategy(MergeStrategy.FAST_FORWARD_IF_POSSIBLE);
+    request.setAuthor(new Person("Dirk Gently", "dirk@holistic.det"));
+
+    MergeCommandResult mergeCommandResult = command.merge(request);
+
+    assertThat(mergeCommandResult.isSuccess()).isTrue();
+    assertThat(mergeCommandResult.getNewHeadRevision()).isEqualTo(targetHead.name());
+    assertThat(repository.resolve("squash")).isEqualTo(targetHead);
+  }
+
+  @Test
+  public void shouldFailIfTargetBranchIsModifiedConcurrently() throws IOException {
+    Repository gitRepository = createContext().open();
+    ObjectId concurrentRevision = gitRepository.resolve("test-branch");
+
+    GitMergeCommand command = createCommand();
+    MergeCommandRequest request = new MergeCommandRequest();
+    request.setTargetBranch("master");
+    request.setBranchToMerge("mergeable");
+    request.setMergeStrategy(MergeStrategy.MERGE_COMMIT);
+    request.setAuthor(new Person("Dirk Gently", "dirk@holistic.det"));
+
+    assertThatThrownBy(() -> command.inCore(workerRepository -> new GitMergeCommit(workerRepository, request, createContext(), repository) {
+      @Override
+      void updateTargetBranch(RevCommit newRevision) {
+        // another push moves the branch, after the merge has read it
+        moveBranch(gitRepository, "master", concurrentRevision);
+        super.updateTargetBranch(newRevision);
+      }
+    })).isInstanceOf(ConcurrentModificationException.class);
+
+    assertThat(gitRepository.resolve("master")).isEqualTo(concurrentRevision);
+  }
+
   @Test
   public void shouldDoMergeCommitIfFastForwardIsNotPossible() throws IOException, GitAPIException {
     GitMergeCommand command = createCommand();
@@ -394,20 +410,16 @@ public class GitMergeCommandTest extends AbstractGitCommandTestBase {
   }
 
   private GitMergeCommand createCommand() {
-    return createCommand(git -> {
-    });
+    return new GitMergeCommand(createContext(), repository);
   }
 
-  private GitMergeCommand createCommand(Consumer<Git> interceptor) {
-    return new GitMergeCommand(createContext(), repository, new SimpleGitWorkdirFactory(new WorkdirProvider())) {
-      @Override
-      <R, W extends GitCloneWorker<R>> R inClone(Function<Git, W> workerSupplier, GitWorkdirFactory workdirFactory, String initialBranch) {
-        Function<Git, W> interceptedWorkerSupplier = git -> {
-          interceptor.accept(git);
-          return workerSupplier.apply(git);
-        };
-        return super.inClone(interceptedWorkerSupplier, workdirFactory, initialBranch);
-      }
-    };
+  private static void moveBranch(Repository repository, String branch, ObjectId revision) {
+    try {
+      RefUpdate update = repository.updateRef("refs/heads/" + branch);
+      update.setNewObjectId(revision);
+      assertThat(update.forceUpdate()).isIn(RefUpdate.Result.FORCED, RefUpdate.Result.FAST_FORWARD);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 }
@@ -3,7 +3,6 @@ package sonia.scm.repository.spi;
 import org.junit.Rule;
 import org.junit.Test;
 import sonia.scm.repository.spi.MergeConflictResult.SingleMergeConflict;
-import sonia.scm.repository.util.WorkdirProvider;
 
 import java.io.IOException;
 
@@ -67,7 +66,7 @@ public class GitMergeCommand_Conflict_Test extends AbstractGitCommandTestBase {
   }
 
   private MergeConflictResult computeMergeConflictResult(String branchToMerge, String targetBranch) {
-    GitMergeCommand gitMergeCommand = new GitMergeCommand(createContext(), repository, new SimpleGitWorkdirFactory(new WorkdirProvider()));
+    GitMergeCommand gitMergeCommand = new GitMergeCommand(createContext(), repository);
     MergeCommandRequest mergeCommandRequest = new MergeCommandRequest();
     mergeCommandRequest.setBranchToMerge(branchToMerge);
     mergeCommandRequest.setTargetBranch(targetBranch);
@@ -7,6 +7,8 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.CorruptObjectException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
@@ -18,7 +20,6 @@ import sonia.scm.BadRequestException;
 import sonia.scm.ConcurrentModificationException;
 import sonia.scm.NotFoundException;
 import sonia.scm.repository.Person;
-import sonia.scm.repository.util.WorkdirProvider;
 import sonia.scm.web.lfs.LfsBlobStoreFactory;
 
 import java.io.File;
@@ -26,6 +27,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 
 @SubjectAware(configuration = "classpath:sonia/scm/configuration/shiro.ini", username = "admin", password = "secret")
@@ -225,6 +227,51 @@ public class GitModifyCommandTest extends AbstractGitCommandTestBase {
     command.execute(request);
   }
 
+  @Test
+  public void shouldFailIfBranchIsModifiedConcurrently() throws IOException {
+    File newFile = Files.write(temporaryFolder.newFile().toPath(), "new content".getBytes()).toFile();
+    Repository gitRepository = createContext().open();
+    ObjectId concurrentRevision = gitRepository.resolve("test-branch");
+
+    GitModifyCommand command = createCommand();
+
+    ModifyCommandRequest request = new ModifyCommandRequest();
+    request.setCommitMessage("test commit");
+    request.addRequest(new ModifyCommandRequest.CreateFileRequest("new_file", newFile, false));
+    // another push moves the branch, after the modification has read it
+    request.addRequest(worker -> {
+      RefUpdate update = gitRepository.updateRef("refs/heads/master");
+      update.setNewObjectId(concurrentRevision);
+      update.forceUpdate();
+    });
+    request.setAuthor(new Person("Dirk Gently", "dirk@holistic.det"));
+
+    assertThatThrownBy(() -> command.execute(request)).isInstanceOf(ConcurrentModificationException.class);
+    assertThat(gitRepository.resolve("master")).isEqualTo(concurrentRevision);
+  }
+
+  @Test
+  public void shouldCreateCommitIfBranchHasExpectedRevision() throws IOException {
+    File newFile = Files.write(temporaryFolder.newFile().toPath(), "new content".getBytes()).toFile();
+    String expectedRevision = createContext().open().resolve("master").name();
+
+    GitModifyCommand command = createCommand();
+
+    ModifyCommandRequest request = new ModifyCommandRequest();
+    request.setCommitMessage("test commit");
+    request.setBranch("master");
+    request.addRequest(new ModifyCommandRequest.CreateFileRequest("new_file", newFile, false));
+    request.setAuthor(new Person("Dirk Gently", "dirk@holistic.det"));
+    request.setExpectedRevision(expectedRevision);
+
+    String newRef = command.execute(request);
+
+    try (RevWalk revWalk = new RevWalk(createContext().open())) {
+      RevCommit commit = revWalk.parseCommit(ObjectId.fromString(newRef));
+      assertThat(commit.getParent(0).name()).isEqualTo(expectedRevision);
+    }
+  }
+
   @Test
   public void shouldDeleteExistingFile() throws IOException, GitAPIException {
     GitModifyCommand command = createCommand();
@@ -299,7 +346,7 @@ public class GitModifyCommandTest extends AbstractGitCommandTestBase {
   }
 
   private GitModifyCommand createCommand() {
-    return new GitModifyCommand(createContext(), repository, new SimpleGitWorkdirFactory(new WorkdirProvider()), lfsBlobStoreFactory);
+    return new GitModifyCommand(createContext(), repository, lfsBlobStoreFactory);
   }
 
   @FunctionalInterface
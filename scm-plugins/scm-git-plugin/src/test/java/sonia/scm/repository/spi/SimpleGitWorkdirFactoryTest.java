@@ -16,6 +16,7 @@ import sonia.scm.repository.util.WorkingCopy;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 
 import static com.google.inject.util.Providers.of;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -83,7 +84,7 @@ public class SimpleGitWorkdirFactoryTest extends AbstractGitCommandTestBase {
   }
 
   @Test
-  public void cloneFromPoolShouldNotBeReused() {
+  public void closedCloneShouldBeReused() {
     SimpleGitWorkdirFactory factory = new SimpleGitWorkdirFactory(workdirProvider);
 
     File firstDirectory;
@@ -92,18 +93,24 @@ public class SimpleGitWorkdirFactoryTest extends AbstractGitCommandTestBase {
     }
     try (WorkingCopy<Repository, Repository> workingCopy = factory.createWorkingCopy(createContext(), null)) {
       File secondDirectory = workingCopy.getDirectory();
-      assertThat(secondDirectory).isNotEqualTo(firstDirectory);
+      assertThat(secondDirectory).isEqualTo(firstDirectory);
     }
+    assertThat(factory.getStatistics().getHitCount()).isEqualTo(1);
   }
 
   @Test
-  public void cloneFromPoolShouldBeDeletedOnClose() {
+  public void reusedCloneShouldBeResetToInitialBranch() throws IOException {
     SimpleGitWorkdirFactory factory = new SimpleGitWorkdirFactory(workdirProvider);
 
-    File directory;
     try (WorkingCopy<Repository, Repository> workingCopy = factory.createWorkingCopy(createContext(), null)) {
-      directory = workingCopy.getWorkingRepository().getWorkTree();
+      File workTree = workingCopy.getWorkingRepository().getWorkTree();
+      Files.write(new File(workTree, "a.txt").toPath(), "modified".getBytes());
+      Files.write(new File(workTree, "untracked.txt").toPath(), "untracked".getBytes());
+    }
+    try (WorkingCopy<Repository, Repository> workingCopy = factory.createWorkingCopy(createContext(), "test-branch")) {
+      File workTree = workingCopy.getWorkingRepository().getWorkTree();
+      assertThat(new File(workTree, "a.txt")).hasContent("a and b");
+      assertThat(new File(workTree, "untracked.txt")).doesNotExist();
     }
-    assertThat(directory).doesNotExist();
   }
 }
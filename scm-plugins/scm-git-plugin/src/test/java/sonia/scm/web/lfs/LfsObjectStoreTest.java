@@ -0,0 +1,279 @@
+package sonia.scm.web.lfs;
+
+import com.google.common.io.ByteStreams;
+import org.eclipse.jgit.lfs.lib.Constants;
+import org.eclipse.jgit.lfs.lib.LongObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sonia.scm.cache.MapCache;
+import sonia.scm.store.Blob;
+import sonia.scm.store.BlobStore;
+import sonia.scm.store.EntryAlreadyExistsStoreException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LfsObjectStoreTest {
+
+  private static final byte[] CONTENT = "hitchhiker".getBytes(StandardCharsets.UTF_8);
+  private static final String OID = LongObjectId.fromRaw(Constants.newMessageDigest().digest(CONTENT)).getName();
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path directory;
+  private LfsObjectStore store;
+
+  @Before
+  public void setUpStore() throws IOException {
+    directory = temporaryFolder.newFolder().toPath();
+    store = new LfsObjectStore(directory, new MapCache<>());
+  }
+
+  @Test
+  public void shouldStoreObjectSharded() throws IOException {
+    write(store.create("42", OID));
+
+    assertThat(directory.resolve("objects").resolve(OID.substring(0, 2)).resolve(OID.substring(2, 4)).resolve(OID))
+      .exists();
+    assertThat(store.getSize(OID)).isEqualTo(CONTENT.length);
+    assertThat(store.isReferenced("42", OID)).isTrue();
+    assertThat(read(store.get(OID))).isEqualTo(CONTENT);
+  }
+
+  @Test
+  public void shouldStoreObjectOnlyOnce() throws IOException {
+    write(store.create("42", OID));
+    write(store.create("21", OID));
+
+    assertThat(store.isReferenced("42", OID)).isTrue();
+    assertThat(store.isReferenced("21", OID)).isTrue();
+    assertThat(Files.list(directory.resolve("tmp"))).isEmpty();
+  }
+
+  @Test
+  public void shouldNotStoreDiscardedObject() throws IOException {
+    LfsObjectStore.PendingObject object = (LfsObjectStore.PendingObject) store.create("42", OID);
+    object.discard();
+
+    assertThat(store.get(OID)).isNull();
+    assertThat(store.getSize(OID)).isEqualTo(-1);
+    assertThat(store.isReferenced("42", OID)).isFalse();
+  }
+
+  @Test
+  public void shouldReadReferencesFromDisk() throws IOException {
+    write(store.create("42", OID));
+
+    LfsObjectStore reopened = new LfsObjectStore(directory, new MapCache<>());
+    assertThat(reopened.getReferences("42")).containsOnly(OID);
+    assertThat(reopened.isReferenced("21", OID)).isFalse();
+
+    reopened.removeReference("42", OID);
+    assertThat(new LfsObjectStore(directory, new MapCache<>()).getReferences("42")).isEmpty();
+  }
+
+  @Test
+  public void shouldImportFile() throws IOException {
+    Path file = temporaryFolder.newFile().toPath();
+    Files.write(file, CONTENT);
+    age(file);
+    FileTime modified = Files.getLastModifiedTime(file);
+
+    store.importFile("42", OID, file);
+
+    assertThat(store.isReferenced("42", OID)).isTrue();
+    assertThat(read(store.get(OID))).isEqualTo(CONTENT);
+    assertThat(Files.getLastModifiedTime(file)).isEqualTo(modified);
+  }
+
+  @Test
+  public void shouldImportVerifiedBlob() throws IOException {
+    Blob blob = mock(Blob.class);
+    when(blob.getId()).thenReturn(OID);
+    when(blob.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
+
+    assertThat(store.importBlob("42", blob)).isNotNull();
+    assertThat(store.isReferenced("42", OID)).isTrue();
+  }
+
+  @Test
+  public void shouldNotImportCorruptBlob() throws IOException {
+    Blob blob = mock(Blob.class);
+    when(blob.getId()).thenReturn(OID);
+    when(blob.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream("corrupt".getBytes()));
+
+    assertThat(store.importBlob("42", blob)).isNull();
+    assertThat(store.get(OID)).isNull();
+  }
+
+  @Test
+  public void shouldCollectUnreferencedObjects() throws IOException {
+    write(store.create("42", OID));
+    age(objectPath());
+
+    assertThat(store.gc("42"::equals)).isZero();
+    assertThat(store.get(OID)).isNotNull();
+
+    // the repository 42 does no longer exist
+    assertThat(store.gc("21"::equals)).isEqualTo(1);
+    assertThat(store.get(OID)).isNull();
+    assertThat(store.getReferences("42")).isEmpty();
+  }
+
+  @Test
+  public void shouldKeepObjectsOfRepositoryCreatedDuringGc() throws IOException {
+    write(store.create("42", OID));
+    store.removeReference("42", OID);
+    age(objectPath());
+    Path file = temporaryFolder.newFile().toPath();
+    Files.write(file, CONTENT);
+
+    // the repository 21 references the old object, after the gc has started
+    assertThat(store.gc(id -> {
+      if ("42".equals(id)) {
+        store.importFile("21", OID, file);
+      }
+      return true;
+    })).isZero();
+
+    assertThat(store.get(OID)).isNotNull();
+    assertThat(store.isReferenced("21", OID)).isTrue();
+    assertThat(directory.resolve("refs").resolve("21")).exists();
+  }
+
+  @Test
+  public void shouldKeepYoungUnreferencedObjects() throws IOException {
+    write(store.create("42", OID));
+    store.removeReference("42", OID);
+
+    assertThat(store.gc("42"::equals)).isZero();
+    assertThat(store.get(OID)).isNotNull();
+  }
+
+  @Test
+  public void shouldRemoveReferencesOfDeletedRepository() throws IOException {
+    write(store.create("42", OID));
+
+    store.removeReferences("42");
+
+    assertThat(store.isReferenced("42", OID)).isFalse();
+    assertThat(directory.resolve("refs").resolve("42")).doesNotExist();
+  }
+
+  @Test
+  public void shouldUseObjectStoreForOids() throws IOException {
+    BlobStore repositoryStore = mock(BlobStore.class);
+    LfsBlobStore blobStore = new LfsBlobStore(store, "42", repositoryStore);
+
+    write(blobStore.create(OID));
+
+    assertThat(read(blobStore.get(OID))).isEqualTo(CONTENT);
+    assertThat(new LfsBlobStore(store, "21", repositoryStore).get(OID)).isNull();
+  }
+
+  @Test(expected = EntryAlreadyExistsStoreException.class)
+  public void shouldFailToCreateExistingObject() throws IOException {
+    LfsBlobStore blobStore = new LfsBlobStore(store, "42", mock(BlobStore.class));
+    write(blobStore.create(OID));
+
+    blobStore.create(OID);
+  }
+
+  @Test
+  public void shouldUseRepositoryStoreForOtherIds() {
+    BlobStore repositoryStore = mock(BlobStore.class);
+    Blob other = mock(Blob.class);
+    when(repositoryStore.get("hitchhiker")).thenReturn(other);
+
+    assertThat(new LfsBlobStore(store, "42", repositoryStore).get("hitchhiker")).isSameAs(other);
+  }
+
+  @Test
+  public void shouldAppendToPartialUpload() throws IOException {
+    LfsBlobStore blobStore = new LfsBlobStore(store, "42", mock(BlobStore.class));
+    String id = OID + LfsObjectStore.PARTIAL_SUFFIX;
+
+    Blob partial = blobStore.create(id);
+    assertThat(partial.supportsAppending()).isTrue();
+    try (OutputStream output = partial.getAppendingOutputStream()) {
+      output.write(CONTENT, 0, 4);
+    }
+    try (OutputStream output = blobStore.get(id).getAppendingOutputStream()) {
+      output.write(CONTENT, 4, CONTENT.length - 4);
+    }
+
+    assertThat(read(blobStore.get(id))).isEqualTo(CONTENT);
+    assertThat(new LfsBlobStore(store, "21", mock(BlobStore.class)).get(id)).isNull();
+
+    blobStore.remove(id);
+    assertThat(blobStore.get(id)).isNull();
+  }
+
+  @Test
+  public void shouldCollectAbandonedPartialUploads() throws IOException {
+    String abandoned = OID + LfsObjectStore.PARTIAL_SUFFIX;
+    String resumed = LongObjectId.zeroId().getName() + LfsObjectStore.PARTIAL_SUFFIX;
+    write(store.createPartial("42", abandoned));
+    write(store.createPartial("42", resumed));
+    age(directory.resolve("tmp").resolve("42-" + abandoned));
+
+    store.gc("42"::equals);
+
+    assertThat(store.getPartial("42", abandoned)).isNull();
+    assertThat(store.getPartial("42", resumed)).isNotNull();
+  }
+
+  @Test
+  public void shouldMoveBlobOfRepositoryStoreIntoObjectStore() throws IOException {
+    BlobStore repositoryStore = mock(BlobStore.class);
+    Blob blob = mock(Blob.class);
+    when(blob.getId()).thenReturn(OID);
+    when(blob.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
+    when(repositoryStore.get(OID)).thenReturn(blob);
+
+    Blob migrated = new LfsBlobStore(store, "42", repositoryStore).get(OID);
+
+    assertThat(read(migrated)).isEqualTo(CONTENT);
+    assertThat(store.isReferenced("42", OID)).isTrue();
+    verify(repositoryStore).remove(blob);
+  }
+
+  private Path objectPath() throws IOException {
+    try (Stream<Path> files = Files.walk(directory.resolve("objects"))) {
+      return files.filter(Files::isRegularFile).findFirst().orElseThrow(IllegalStateException::new);
+    }
+  }
+
+  private static void age(Path file) throws IOException {
+    long old = System.currentTimeMillis() - LfsObjectStore.GC_GRACE_PERIOD - 1000L;
+    Files.setLastModifiedTime(file, FileTime.fromMillis(old));
+  }
+
+  private static void write(Blob blob) throws IOException {
+    try (OutputStream output = blob.getOutputStream()) {
+      output.write(CONTENT);
+    }
+    blob.commit();
+  }
+
+  private static byte[] read(Blob blob) throws IOException {
+    try (InputStream input = blob.getInputStream()) {
+      return ByteStreams.toByteArray(input);
+    }
+  }
+}
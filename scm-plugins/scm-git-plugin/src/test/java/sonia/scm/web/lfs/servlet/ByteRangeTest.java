@@ -0,0 +1,74 @@
+package sonia.scm.web.lfs.servlet;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ByteRangeTest {
+
+  @Test
+  public void shouldParseRanges() {
+    List<ByteRange> ranges = ByteRange.parse("bytes=0-9, 20-, -5", 100);
+
+    assertEquals(3, ranges.size());
+    assertRange(ranges.get(0), 0, 9);
+    assertRange(ranges.get(1), 20, 99);
+    assertRange(ranges.get(2), 95, 99);
+  }
+
+  @Test
+  public void shouldLimitRangesToSize() {
+    List<ByteRange> ranges = ByteRange.parse("bytes=5-200,-200", 10);
+
+    assertRange(ranges.get(0), 5, 9);
+    assertRange(ranges.get(1), 0, 9);
+  }
+
+  @Test
+  public void shouldSkipUnsatisfiableRanges() {
+    assertTrue(ByteRange.parse("bytes=10-20", 10).isEmpty());
+    assertTrue(ByteRange.parse("bytes=-0", 10).isEmpty());
+    assertEquals(1, ByteRange.parse("bytes=10-20,0-0", 10).size());
+  }
+
+  @Test
+  public void shouldIgnoreInvalidRanges() {
+    assertNull(ByteRange.parse(null, 10));
+    assertNull(ByteRange.parse("items=0-1", 10));
+    assertNull(ByteRange.parse("bytes=5-1", 10));
+    assertNull(ByteRange.parse("bytes=a-b", 10));
+    assertNull(ByteRange.parse("bytes=5", 10));
+  }
+
+  @Test
+  public void shouldParseUploadRange() {
+    ByteRange.Upload upload = ByteRange.parseUpload("bytes 10-19/40");
+
+    assertEquals(40, upload.getSize());
+    assertRange(upload.getRange(), 10, 19);
+    assertEquals(10, upload.getRange().getLength());
+  }
+
+  @Test
+  public void shouldParseUploadQuery() {
+    ByteRange.Upload upload = ByteRange.parseUpload("bytes */40");
+
+    assertEquals(40, upload.getSize());
+    assertNull(upload.getRange());
+  }
+
+  @Test
+  public void shouldRejectInvalidUploadRange() {
+    assertNull(ByteRange.parseUpload("bytes 10-40/40"));
+    assertNull(ByteRange.parseUpload("bytes 10-5/40"));
+    assertNull(ByteRange.parseUpload("bytes 0-5"));
+    assertNull(ByteRange.parseUpload("0-5/40"));
+  }
+
+  private void assertRange(ByteRange range, long first, long last) {
+    assertEquals(first, range.getFirst());
+    assertEquals(last, range.getLast());
+  }
+}
@@ -1,17 +1,92 @@
 package sonia.scm.web.lfs.servlet;
 
+import org.eclipse.jgit.lfs.lib.Constants;
+import org.eclipse.jgit.lfs.lib.LongObjectId;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sonia.scm.store.Blob;
+import sonia.scm.store.BlobStore;
 
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Created by omilke on 16.05.2017.
  */
 public class ScmFileTransferServletTest {
 
+  private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+  private static final String OID = oid(CONTENT);
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Map<String, Blob> blobs = new HashMap<>();
+
+  private BlobStore blobStore;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private ByteArrayOutputStream body;
+
+  private ScmFileTransferServlet servlet;
+
+  @Before
+  public void setUpServlet() throws IOException {
+    blobStore = mock(BlobStore.class);
+    when(blobStore.get(anyString())).thenAnswer(invocation -> blobs.get((String) invocation.getArgument(0)));
+    when(blobStore.create(anyString())).thenAnswer(invocation -> {
+      String id = invocation.getArgument(0);
+      Blob blob = new MemoryBlob(id);
+      blobs.put(id, blob);
+      return blob;
+    });
+    doAnswer(invocation -> blobs.remove(((Blob) invocation.getArgument(0)).getId()))
+      .when(blobStore).remove(any(Blob.class));
+
+    request = mock(HttpServletRequest.class);
+    when(request.getPathInfo()).thenReturn("/" + OID);
+
+    response = mock(HttpServletResponse.class);
+    body = new ByteArrayOutputStream();
+    when(response.getOutputStream()).thenReturn(new BufferedServletOutputStream(body));
+    when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+    servlet = new ScmFileTransferServlet(blobStore);
+  }
+
   @Test
   public void hasObjectId() throws Exception {
 
@@ -39,4 +114,272 @@ public class ScmFileTransferServletTest {
     assertThat(ScmFileTransferServlet.objectIdFromPath(path), is(nullValue()));
 
   }
+
+  @Test
+  public void shouldDownloadWholeBlob() throws Exception {
+    storeBlob();
+
+    servlet.doGet(request, response);
+
+    verify(response, never()).setStatus(anyInt());
+    verify(response).setHeader("ETag", "\"" + OID + "\"");
+    assertArrayEquals(CONTENT, body.toByteArray());
+  }
+
+  @Test
+  public void shouldDownloadRange() throws Exception {
+    storeBlob();
+    when(request.getHeader("Range")).thenReturn("bytes=2-4");
+
+    servlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    verify(response).setHeader("Content-Range", "bytes 2-4/10");
+    assertEquals("234", body.toString("US-ASCII"));
+  }
+
+  @Test
+  public void shouldDownloadRangeOfFileChannel() throws Exception {
+    File file = temporaryFolder.newFile();
+    Files.write(file.toPath(), CONTENT);
+    blobs.put(OID, new FileChannelBlob(OID, file));
+    when(request.getHeader("Range")).thenReturn("bytes=-3");
+
+    servlet.doGet(request, response);
+
+    verify(response).setHeader("Content-Range", "bytes 7-9/10");
+    assertEquals("789", body.toString("US-ASCII"));
+  }
+
+  @Test
+  public void shouldDownloadMultipleRanges() throws Exception {
+    storeBlob();
+    when(request.getHeader("Range")).thenReturn("bytes=0-1,8-");
+
+    servlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    verify(response).addHeader("Content-Length", String.valueOf(body.size()));
+    String multipart = body.toString("US-ASCII");
+    assertThat(multipart, containsString("Content-Range: bytes 0-1/10\r\n\r\n01\r\n"));
+    assertThat(multipart, containsString("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+  }
+
+  @Test
+  public void shouldIgnoreRangeIfEntityTagDoesNotMatch() throws Exception {
+    storeBlob();
+    when(request.getHeader("Range")).thenReturn("bytes=2-4");
+    when(request.getHeader("If-Range")).thenReturn("\"other\"");
+
+    servlet.doGet(request, response);
+
+    verify(response, never()).setStatus(anyInt());
+    assertArrayEquals(CONTENT, body.toByteArray());
+  }
+
+  @Test
+  public void shouldRespondWithRangeNotSatisfiable() throws Exception {
+    storeBlob();
+    when(request.getHeader("Range")).thenReturn("bytes=10-");
+
+    servlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    verify(response).setHeader("Content-Range", "bytes */10");
+  }
+
+  @Test
+  public void shouldRespondWithNotModified() throws Exception {
+    storeBlob();
+    when(request.getHeader("If-None-Match")).thenReturn("\"" + OID + "\"");
+
+    servlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals(0, body.size());
+  }
+
+  @Test
+  public void shouldStoreVerifiedUpload() throws Exception {
+    when(request.getInputStream()).thenReturn(new BufferedServletInputStream(CONTENT));
+
+    servlet.doPut(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_OK);
+    assertArrayEquals(CONTENT, content(blobs.get(OID)));
+  }
+
+  @Test
+  public void shouldRejectCorruptUpload() throws Exception {
+    when(request.getInputStream()).thenReturn(new BufferedServletInputStream("corrupt".getBytes(StandardCharsets.US_ASCII)));
+
+    servlet.doPut(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    assertTrue(blobs.isEmpty());
+  }
+
+  @Test
+  public void shouldResumeChunkedUpload() throws Exception {
+    putChunk("bytes 0-3/10", "0123");
+    verify(response).setStatus(ScmFileTransferServlet.SC_RESUME_INCOMPLETE);
+    verify(response).setHeader("Range", "bytes=0-3");
+
+    putChunk("bytes 5-9/10", "56789");
+    verify(response).setStatus(HttpServletResponse.SC_CONFLICT);
+
+    putChunk("bytes */10", "");
+    verify(response).setStatus(ScmFileTransferServlet.SC_RESUME_INCOMPLETE);
+
+    putChunk("bytes 4-9/10", "456789");
+    verify(response).setStatus(HttpServletResponse.SC_OK);
+    assertArrayEquals(CONTENT, content(blobs.get(OID)));
+    assertFalse(blobs.containsKey(OID + ScmFileTransferServlet.PARTIAL_SUFFIX));
+  }
+
+  @Test
+  public void shouldRejectCorruptChunkedUpload() throws Exception {
+    putChunk("bytes 0-9/10", "9876543210");
+
+    verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    assertTrue(blobs.isEmpty());
+  }
+
+  @Test
+  public void shouldRejectChunkedUploadIfBlobDoesNotSupportAppending() throws Exception {
+    Blob partial = mock(Blob.class);
+    when(partial.getId()).thenReturn(OID + ScmFileTransferServlet.PARTIAL_SUFFIX);
+    blobs.put(partial.getId(), partial);
+
+    putChunk("bytes 0-3/10", "0123");
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_IMPLEMENTED);
+    verify(partial, never()).getAppendingOutputStream();
+    assertTrue(blobs.isEmpty());
+  }
+
+  private void putChunk(String contentRange, String chunk) throws Exception {
+    response = mock(HttpServletResponse.class);
+    when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+    when(request.getHeader("Content-Range")).thenReturn(contentRange);
+    when(request.getInputStream()).thenReturn(new BufferedServletInputStream(chunk.getBytes(StandardCharsets.US_ASCII)));
+
+    servlet.doPut(request, response);
+  }
+
+  private void storeBlob() throws IOException {
+    Blob blob = blobStore.create(OID);
+    try (OutputStream output = blob.getOutputStream()) {
+      output.write(CONTENT);
+    }
+  }
+
+  private static byte[] content(Blob blob) throws IOException {
+    try (InputStream input = blob.getInputStream()) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      int read = input.read();
+      while (read >= 0) {
+        output.write(read);
+        read = input.read();
+      }
+      return output.toByteArray();
+    }
+  }
+
+  private static String oid(byte[] content) {
+    return LongObjectId.fromRaw(Constants.newMessageDigest().digest(content)).getName();
+  }
+
+  private static class MemoryBlob implements Blob {
+
+    private final String id;
+    private ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+    private MemoryBlob(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return new ByteArrayInputStream(content.toByteArray());
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      content = new ByteArrayOutputStream();
+      return content;
+    }
+
+    @Override
+    public boolean supportsAppending() {
+      return true;
+    }
+
+    @Override
+    public OutputStream getAppendingOutputStream() {
+      return content;
+    }
+
+    @Override
+    public long getSize() {
+      return content.size();
+    }
+  }
+
+  private static class FileChannelBlob extends MemoryBlob {
+
+    private final File file;
+
+    private FileChannelBlob(String id, File file) {
+      super(id);
+      this.file = file;
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() throws IOException {
+      return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    @Override
+    public long getSize() {
+      return file.length();
+    }
+  }
+
+  private static class BufferedServletOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream buffer;
+
+    private BufferedServletOutputStream(ByteArrayOutputStream buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+      buffer.write(b);
+    }
+  }
+
+  private static class BufferedServletInputStream extends ServletInputStream {
+
+    private final ByteArrayInputStream input;
+
+    private BufferedServletInputStream(byte[] content) {
+      this.input = new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public int read() {
+      return input.read();
+    }
+  }
 }
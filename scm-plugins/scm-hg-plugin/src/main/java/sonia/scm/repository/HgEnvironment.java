@@ -130,6 +130,27 @@ public final class HgEnvironment
     environment.put(ENV_CHALLENGE, hookManager.getChallenge());
   }
 
+  /**
+   * Prepares an environment which does not contain the credentials of the current user. This environment is used for
+   * command servers which are shared between requests of different users and which must therefore not execute any
+   * command which triggers repository hooks.
+   *
+   * @param environment environment to prepare
+   * @param handler repository handler
+   * @param hookManager hook manager
+   *
+   * @since 2.0.0
+   */
+  public static void prepareSharedEnvironment(Map<String, String> environment,
+    HgRepositoryHandler handler, HgHookManager hookManager)
+  {
+    environment.remove(SCM_BEARER_TOKEN);
+    environment.remove(SCM_XSRF);
+    environment.put(ENV_PYTHON_PATH, HgUtil.getPythonPath(handler.getConfig()));
+    environment.put(ENV_URL, hookManager.createUrl());
+    environment.put(ENV_CHALLENGE, hookManager.getChallenge());
+  }
+
   private static void extractXsrfKey(Map<String, String> environment, AccessToken accessToken) {
     environment.put(SCM_XSRF, accessToken.<String>getCustom(Xsrf.TOKEN_KEY).orElse("-"));
   }
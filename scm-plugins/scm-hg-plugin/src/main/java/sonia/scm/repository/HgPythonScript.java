@@ -49,7 +49,7 @@ public enum HgPythonScript
 {
   BLAME("blame.py"), CHANGELOG("changelog.py"), FILELOG("filelog.py"),
   LOG("log.py"), UTIL("util.py"), HOOK("scmhooks.py"), HGWEB("hgweb.py"),
-  VERSION("version.py");
+  HGWEB_WORKER("hgwebworker.py"), VERSION("version.py");
 
   /** Field description */
   private static final String BASE_DIRECTORY =
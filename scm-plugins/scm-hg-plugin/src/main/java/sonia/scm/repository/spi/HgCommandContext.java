@@ -40,6 +40,7 @@ import com.aragost.javahg.Repository;
 import com.google.common.base.Strings;
 
 import sonia.scm.repository.HgConfig;
+import sonia.scm.repository.HgEnvironment;
 import sonia.scm.repository.HgHookManager;
 import sonia.scm.repository.HgRepositoryHandler;
 import sonia.scm.web.HgUtil;
@@ -94,6 +95,26 @@ public class HgCommandContext implements Closeable
   public HgCommandContext(HgHookManager hookManager,
                           HgRepositoryHandler handler, sonia.scm.repository.Repository repository,
                           File directory, boolean pending)
+  {
+    this(hookManager, handler, repository, directory, pending, null);
+  }
+
+  /**
+   * Constructs a new context, which borrows its command server from the given pool.
+   *
+   *
+   * @param hookManager
+   * @param handler
+   * @param repository
+   * @param directory
+   * @param pending
+   * @param pool pool of command servers or {@code null} to start a new command server
+   *
+   * @since 2.0.0
+   */
+  public HgCommandContext(HgHookManager hookManager,
+                          HgRepositoryHandler handler, sonia.scm.repository.Repository repository,
+                          File directory, boolean pending, HgCommandServerPool pool)
   {
     this.hookManager = hookManager;
     this.handler = handler;
@@ -101,6 +122,7 @@ public class HgCommandContext implements Closeable
     this.scmRepository = repository;
     this.encoding = repository.getProperty(PROPERTY_ENCODING);
     this.pending = pending;
+    this.pool = pool;
 
     if (Strings.isNullOrEmpty(encoding))
     {
@@ -119,10 +141,23 @@ public class HgCommandContext implements Closeable
   @Override
   public void close() throws IOException
   {
-    if (repository != null)
+    if (lease != null)
+    {
+      pool.release(lease);
+      lease = null;
+    }
+    else if (repository != null)
     {
       repository.close();
     }
+    repository = null;
+
+    if (exclusiveRepository != null)
+    {
+      exclusiveRepository.close();
+      exclusiveRepository = null;
+      pool.invalidate(directory);
+    }
   }
 
   /**
@@ -135,12 +170,47 @@ public class HgCommandContext implements Closeable
   {
     if (repository == null)
     {
-      repository = HgUtil.open(handler, hookManager, directory, encoding, pending);
+      if (pool != null)
+      {
+        HgCommandServerPool.Key key = new HgCommandServerPool.Key(directory, encoding, pending);
+        lease = pool.borrow(key, () -> HgUtil.open(handler, directory, encoding, pending,
+          environment -> HgEnvironment.prepareSharedEnvironment(environment, handler, hookManager)));
+        repository = lease.getRepository();
+      }
+      else
+      {
+        repository = HgUtil.open(handler, hookManager, directory, encoding, pending);
+      }
     }
 
     return repository;
   }
 
+  /**
+   * Opens a repository with a command server which is not shared with other contexts. Commands which trigger
+   * repository hooks, such as pull, have to use this method, because the hooks need the credentials of the current
+   * user. After the context is closed, the pooled command servers of the repository are invalidated.
+   *
+   *
+   * @return repository with an exclusive command server
+   *
+   * @since 2.0.0
+   */
+  public Repository openExclusive()
+  {
+    if (pool == null)
+    {
+      return open();
+    }
+
+    if (exclusiveRepository == null)
+    {
+      exclusiveRepository = HgUtil.open(handler, hookManager, directory, encoding, pending);
+    }
+
+    return exclusiveRepository;
+  }
+
   public Repository openWithSpecialEnvironment(BiConsumer<sonia.scm.repository.Repository, Map<String, String>> prepareEnvironment)
   {
     return HgUtil.open(handler, directory, encoding,
@@ -184,5 +254,11 @@ public class HgCommandContext implements Closeable
   /** Field description */
   private Repository repository;
 
+  private Repository exclusiveRepository;
+
+  private final HgCommandServerPool pool;
+
+  private HgCommandServerPool.Lease lease;
+
   private final sonia.scm.repository.Repository scmRepository;
 }
@@ -0,0 +1,517 @@
+package sonia.scm.repository.spi;
+
+import com.aragost.javahg.Repository;
+import com.aragost.javahg.commands.BranchesCommand;
+import com.github.legman.Subscribe;
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.HgRepositoryHandler;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of warm mercurial command servers. Starting a command server means starting a new python interpreter,
+ * which is far more expensive than most of the commands executed by it. The pool keeps idle servers keyed by
+ * repository directory, encoding and pending flag, so that following {@link HgCommandContext}s of the same
+ * repository can reuse them.
+ * <p>
+ * The pool can be configured with the following system properties:
+ * <ul>
+ *   <li>{@value #PROPERTY_MAX_SIZE}: maximum number of pooled servers (default {@value #DEFAULT_MAX_SIZE},
+ *   0 disables the pool)</li>
+ *   <li>{@value #PROPERTY_IDLE_TIMEOUT}: seconds after which an idle server is stopped
+ *   (default {@value #DEFAULT_IDLE_TIMEOUT})</li>
+ *   <li>{@value #PROPERTY_HEALTH_CHECK_INTERVAL}: seconds of idleness after which a server is checked before it is
+ *   reused (default {@value #DEFAULT_HEALTH_CHECK_INTERVAL})</li>
+ * </ul>
+ * If all pooled servers are in use, a new unpooled server is started, which is stopped after its use.
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class HgCommandServerPool implements Closeable {
+
+  static final String PROPERTY_MAX_SIZE = "sonia.scm.hg.commandserver.poolSize";
+  static final String PROPERTY_IDLE_TIMEOUT = "sonia.scm.hg.commandserver.idleTimeout";
+  static final String PROPERTY_HEALTH_CHECK_INTERVAL = "sonia.scm.hg.commandserver.healthCheckInterval";
+
+  static final int DEFAULT_MAX_SIZE = 8;
+  static final int DEFAULT_IDLE_TIMEOUT = 300;
+  static final int DEFAULT_HEALTH_CHECK_INTERVAL = 30;
+
+  private static final Logger LOG = LoggerFactory.getLogger(HgCommandServerPool.class);
+
+  private final HgRepositoryHandler handler;
+
+  private final int maxSize;
+  private final long idleTimeout;
+  private final long healthCheckInterval;
+
+  private final Map<Key, Deque<PooledServer>> idle = new HashMap<>();
+
+  /** invalidation counter per directory */
+  private final Map<File, Long> generations = new HashMap<>();
+  private final ScheduledExecutorService evictionExecutor;
+
+  private int size;
+  private boolean closed;
+
+  private long hits;
+  private long misses;
+  private long overflows;
+  private long evictions;
+  private long invalidations;
+  private long failedHealthChecks;
+  private long spawns;
+  private long spawnNanos;
+  private long maxSpawnNanos;
+
+  @Inject
+  public HgCommandServerPool(HgRepositoryHandler handler) {
+    this(
+      handler,
+      Integer.getInteger(PROPERTY_MAX_SIZE, DEFAULT_MAX_SIZE),
+      TimeUnit.SECONDS.toNanos(Integer.getInteger(PROPERTY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT)),
+      TimeUnit.SECONDS.toNanos(Integer.getInteger(PROPERTY_HEALTH_CHECK_INTERVAL, DEFAULT_HEALTH_CHECK_INTERVAL))
+    );
+  }
+
+  HgCommandServerPool(HgRepositoryHandler handler, int maxSize, long idleTimeout, long healthCheckInterval) {
+    this.handler = handler;
+    this.maxSize = maxSize;
+    this.idleTimeout = idleTimeout;
+    this.healthCheckInterval = healthCheckInterval;
+    this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("hg-commandserver-eviction-%d").setDaemon(true).build()
+    );
+    long period = Math.max(TimeUnit.NANOSECONDS.toSeconds(idleTimeout) / 2, 1);
+    this.evictionExecutor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Returns a command server for the given key. If no idle server is available, a new one is started with the given
+   * factory. The returned lease must be given back with {@link #release(Lease)}.
+   *
+   * @param key pool key
+   * @param factory starts a new command server
+   *
+   * @return lease of a command server
+   */
+  Lease borrow(Key key, Supplier<Repository> factory) {
+    PooledServer server;
+    while ((server = takeIdle(key)) != null) {
+      if (isHealthy(server)) {
+        return new Lease(key, server.repository, true, generation(key));
+      }
+      discard(server.repository);
+    }
+
+    long generation = generation(key);
+    boolean pooled = reserve();
+    Repository repository;
+    try {
+      repository = spawn(key, factory);
+    } catch (RuntimeException ex) {
+      if (pooled) {
+        synchronized (this) {
+          size--;
+        }
+      }
+      throw ex;
+    }
+    return new Lease(key, repository, pooled, generation);
+  }
+
+  /**
+   * Gives a borrowed command server back to the pool.
+   *
+   * @param lease lease of the command server
+   */
+  void release(Lease lease) {
+    if (lease.released) {
+      return;
+    }
+    lease.released = true;
+
+    boolean stop = false;
+    synchronized (this) {
+      if (!lease.pooled) {
+        stop = true;
+      } else if (closed || lease.generation != generation(lease.key)) {
+        size--;
+        stop = true;
+      } else {
+        idle.computeIfAbsent(lease.key, k -> new ArrayDeque<>()).push(new PooledServer(lease.repository));
+      }
+    }
+
+    if (stop) {
+      discard(lease.repository);
+    }
+  }
+
+  /**
+   * Stops all idle command servers of the given repository directory and marks all borrowed servers of the directory
+   * as stale, so that they are stopped instead of being reused after their release. This should be called after the
+   * repository was modified outside of the pooled servers.
+   *
+   * @param directory repository directory
+   */
+  public void invalidate(File directory) {
+    List<Repository> stale = new ArrayList<>();
+    synchronized (this) {
+      Iterator<Map.Entry<Key, Deque<PooledServer>>> iterator = idle.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Key, Deque<PooledServer>> entry = iterator.next();
+        if (entry.getKey().directory.equals(directory)) {
+          entry.getValue().forEach(server -> stale.add(server.repository));
+          iterator.remove();
+        }
+      }
+      size -= stale.size();
+      invalidations++;
+      generations.merge(directory, 1L, Long::sum);
+    }
+    LOG.debug("invalidated {} idle command servers of {}", stale.size(), directory);
+    stale.forEach(this::discard);
+  }
+
+  @Subscribe
+  public void onEvent(PostReceiveRepositoryHookEvent event) {
+    sonia.scm.repository.Repository repository = event.getRepository();
+    if (repository != null && HgRepositoryHandler.TYPE_NAME.equals(repository.getType())) {
+      invalidate(handler.getDirectory(repository.getId()));
+    }
+  }
+
+  /**
+   * Returns the usage statistics of the pool.
+   *
+   * @return statistics
+   */
+  public synchronized Statistics getStatistics() {
+    int idleCount = idle.values().stream().mapToInt(Deque::size).sum();
+    return new Statistics(
+      hits, misses, overflows, evictions, invalidations, failedHealthChecks, spawns,
+      spawns > 0 ? TimeUnit.NANOSECONDS.toMillis(spawnNanos / spawns) : 0,
+      TimeUnit.NANOSECONDS.toMillis(maxSpawnNanos), idleCount, size - idleCount
+    );
+  }
+
+  @Override
+  public void close() {
+    List<Repository> servers = new ArrayList<>();
+    synchronized (this) {
+      closed = true;
+      idle.values().forEach(deque -> deque.forEach(server -> servers.add(server.repository)));
+      size -= servers.size();
+      idle.clear();
+    }
+    evictionExecutor.shutdownNow();
+    LOG.debug("stop {} idle command servers", servers.size());
+    servers.forEach(this::discard);
+  }
+
+  private synchronized long generation(Key key) {
+    return generations.getOrDefault(key.directory, 0L);
+  }
+
+  private synchronized PooledServer takeIdle(Key key) {
+    Deque<PooledServer> servers = idle.get(key);
+    PooledServer server = servers != null ? servers.poll() : null;
+    if (server != null) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return server;
+  }
+
+  /**
+   * Reserves a slot for a new pooled server. If the pool is full, the least recently used idle server is stopped to
+   * make room. If every server is in use, no slot is reserved and the caller gets an unpooled server.
+   */
+  private boolean reserve() {
+    Repository evicted = null;
+    synchronized (this) {
+      if (closed || maxSize <= 0) {
+        overflows++;
+        return false;
+      }
+      if (size >= maxSize) {
+        PooledServer oldest = removeOldestIdle();
+        if (oldest == null) {
+          overflows++;
+          return false;
+        }
+        evicted = oldest.repository;
+        evictions++;
+        size--;
+      }
+      size++;
+    }
+    if (evicted != null) {
+      discard(evicted);
+    }
+    return true;
+  }
+
+  private PooledServer removeOldestIdle() {
+    PooledServer oldest = null;
+    Deque<PooledServer> oldestDeque = null;
+    for (Deque<PooledServer> servers : idle.values()) {
+      PooledServer candidate = servers.peekLast();
+      if (candidate != null && (oldest == null || candidate.lastUsed < oldest.lastUsed)) {
+        oldest = candidate;
+        oldestDeque = servers;
+      }
+    }
+    if (oldestDeque != null) {
+      oldestDeque.pollLast();
+    }
+    return oldest;
+  }
+
+  private Repository spawn(Key key, Supplier<Repository> factory) {
+    long start = System.nanoTime();
+    Repository repository = factory.get();
+    long duration = System.nanoTime() - start;
+    synchronized (this) {
+      spawns++;
+      spawnNanos += duration;
+      maxSpawnNanos = Math.max(maxSpawnNanos, duration);
+    }
+    LOG.trace("started command server for {} in {}ms", key.directory, TimeUnit.NANOSECONDS.toMillis(duration));
+    return repository;
+  }
+
+  private boolean isHealthy(PooledServer server) {
+    if (System.nanoTime() - server.lastUsed < healthCheckInterval) {
+      return true;
+    }
+    try {
+      BranchesCommand.on(server.repository).execute();
+      return true;
+    } catch (RuntimeException ex) {
+      LOG.debug("pooled command server failed health check", ex);
+      synchronized (this) {
+        failedHealthChecks++;
+        size--;
+      }
+      return false;
+    }
+  }
+
+  private void evictIdle() {
+    List<Repository> expired = new ArrayList<>();
+    synchronized (this) {
+      long now = System.nanoTime();
+      for (Deque<PooledServer> servers : idle.values()) {
+        while (!servers.isEmpty() && now - servers.peekLast().lastUsed > idleTimeout) {
+          expired.add(servers.pollLast().repository);
+        }
+      }
+      idle.values().removeIf(Deque::isEmpty);
+      size -= expired.size();
+      evictions += expired.size();
+    }
+    if (!expired.isEmpty()) {
+      LOG.debug("stop {} expired idle command servers", expired.size());
+    }
+    expired.forEach(this::discard);
+  }
+
+  private void discard(Repository repository) {
+    try {
+      repository.close();
+    } catch (RuntimeException ex) {
+      LOG.warn("could not stop command server", ex);
+    }
+  }
+
+  /**
+   * Key of pooled command servers.
+   */
+  static final class Key {
+
+    private final File directory;
+    private final String encoding;
+    private final boolean pending;
+
+    Key(File directory, String encoding, boolean pending) {
+      this.directory = directory;
+      this.encoding = encoding;
+      this.pending = pending;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return pending == key.pending
+        && directory.equals(key.directory)
+        && Objects.equals(encoding, key.encoding);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(directory, encoding, pending);
+    }
+  }
+
+  /**
+   * A command server borrowed from the pool.
+   */
+  static final class Lease {
+
+    private final Key key;
+    private final Repository repository;
+    private final boolean pooled;
+    private final long generation;
+    private boolean released;
+
+    private Lease(Key key, Repository repository, boolean pooled, long generation) {
+      this.key = key;
+      this.repository = repository;
+      this.pooled = pooled;
+      this.generation = generation;
+    }
+
+    Repository getRepository() {
+      return repository;
+    }
+  }
+
+  private static final class PooledServer {
+
+    private final Repository repository;
+    private final long lastUsed = System.nanoTime();
+
+    private PooledServer(Repository repository) {
+      this.repository = repository;
+    }
+  }
+
+  /**
+   * Usage statistics of the pool.
+   */
+  public static final class Statistics {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long overflowCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final long failedHealthCheckCount;
+    private final long spawnCount;
+    private final long averageSpawnMillis;
+    private final long maxSpawnMillis;
+    private final int idleCount;
+    private final int activeCount;
+
+    Statistics(long hitCount, long missCount, long overflowCount, long evictionCount, long invalidationCount,
+               long failedHealthCheckCount, long spawnCount, long averageSpawnMillis, long maxSpawnMillis,
+               int idleCount, int activeCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.overflowCount = overflowCount;
+      this.evictionCount = evictionCount;
+      this.invalidationCount = invalidationCount;
+      this.failedHealthCheckCount = failedHealthCheckCount;
+      this.spawnCount = spawnCount;
+      this.averageSpawnMillis = averageSpawnMillis;
+      this.maxSpawnMillis = maxSpawnMillis;
+      this.idleCount = idleCount;
+      this.activeCount = activeCount;
+    }
+
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    public long getMissCount() {
+      return missCount;
+    }
+
+    public double getHitRate() {
+      long requests = hitCount + missCount;
+      return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public long getOverflowCount() {
+      return overflowCount;
+    }
+
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    public long getInvalidationCount() {
+      return invalidationCount;
+    }
+
+    public long getFailedHealthCheckCount() {
+      return failedHealthCheckCount;
+    }
+
+    public long getSpawnCount() {
+      return spawnCount;
+    }
+
+    public long getAverageSpawnMillis() {
+      return averageSpawnMillis;
+    }
+
+    public long getMaxSpawnMillis() {
+      return maxSpawnMillis;
+    }
+
+    public int getIdleCount() {
+      return idleCount;
+    }
+
+    public int getActiveCount() {
+      return activeCount;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+        .add("hitCount", hitCount)
+        .add("missCount", missCount)
+        .add("overflowCount", overflowCount)
+        .add("evictionCount", evictionCount)
+        .add("invalidationCount", invalidationCount)
+        .add("failedHealthCheckCount", failedHealthCheckCount)
+        .add("spawnCount", spawnCount)
+        .add("averageSpawnMillis", averageSpawnMillis)
+        .add("maxSpawnMillis", maxSpawnMillis)
+        .add("idleCount", idleCount)
+        .add("activeCount", activeCount)
+        .toString();
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package sonia.scm.repository.spi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.plugin.Extension;
+
+import javax.inject.Inject;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Stops the idle command servers of the {@link HgCommandServerPool} on shutdown.
+ *
+ * @since 2.0.0
+ */
+@Extension
+public class HgCommandServerPoolShutdownListener implements ServletContextListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HgCommandServerPoolShutdownListener.class);
+
+  private final HgCommandServerPool pool;
+
+  @Inject
+  public HgCommandServerPoolShutdownListener(HgCommandServerPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    // nothing to do
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    LOG.info("shutdown mercurial command server pool: {}", pool.getStatistics());
+    pool.close();
+  }
+}
@@ -93,7 +93,7 @@ public class HgPullCommand extends AbstractHgPushOrPullCommand
 
     try
     {
-      result = com.aragost.javahg.commands.PullCommand.on(open()).execute(url);
+      result = com.aragost.javahg.commands.PullCommand.on(getContext().openExclusive()).execute(url);
     }
     catch (ExecutionException ex)
     {
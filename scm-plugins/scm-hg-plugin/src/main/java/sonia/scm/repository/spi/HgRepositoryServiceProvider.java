@@ -79,13 +79,14 @@ public class HgRepositoryServiceProvider extends RepositoryServiceProvider
   //~--- constructors ---------------------------------------------------------
 
   HgRepositoryServiceProvider(HgRepositoryHandler handler,
-                              HgHookManager hookManager, Repository repository)
+                              HgHookManager hookManager, Repository repository,
+                              HgCommandServerPool pool)
   {
     this.repository = repository;
     this.handler = handler;
     this.repositoryDirectory = handler.getDirectory(repository.getId());
     this.context = new HgCommandContext(hookManager, handler, repository,
-      repositoryDirectory);
+      repositoryDirectory, handler.getHgContext().isPending(), pool);
   }
 
   //~--- methods --------------------------------------------------------------
@@ -49,13 +49,16 @@ public class HgRepositoryServiceResolver implements RepositoryServiceResolver
 
   private final HgRepositoryHandler handler;
   private final HgHookManager hookManager;
+  private final HgCommandServerPool pool;
 
   @Inject
   public HgRepositoryServiceResolver(HgRepositoryHandler handler,
-                                     HgHookManager hookManager)
+                                     HgHookManager hookManager,
+                                     HgCommandServerPool pool)
   {
     this.handler = handler;
     this.hookManager = hookManager;
+    this.pool = pool;
   }
 
   @Override
@@ -63,7 +66,7 @@ public class HgRepositoryServiceResolver implements RepositoryServiceResolver
     HgRepositoryServiceProvider provider = null;
 
     if (HgRepositoryHandler.TYPE_NAME.equalsIgnoreCase(repository.getType())) {
-      provider = new HgRepositoryServiceProvider(handler, hookManager, repository);
+      provider = new HgRepositoryServiceProvider(handler, hookManager, repository, pool);
     }
 
     return provider;
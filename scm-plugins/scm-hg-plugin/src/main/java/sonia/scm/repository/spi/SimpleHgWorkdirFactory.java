@@ -3,19 +3,27 @@ package sonia.scm.repository.spi;
 import com.aragost.javahg.BaseRepository;
 import com.aragost.javahg.Repository;
 import com.aragost.javahg.commands.CloneCommand;
+import com.aragost.javahg.commands.OutgoingCommand;
 import com.aragost.javahg.commands.PullCommand;
+import com.aragost.javahg.commands.StatusCommand;
+import com.aragost.javahg.commands.StatusResult;
+import com.aragost.javahg.commands.UpdateCommand;
 import com.aragost.javahg.commands.flags.CloneCommandFlags;
 import sonia.scm.repository.util.SimpleWorkdirFactory;
 import sonia.scm.repository.util.WorkdirProvider;
+import sonia.scm.util.IOUtil;
 import sonia.scm.web.HgRepositoryEnvironmentBuilder;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
+import javax.inject.Singleton;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 
+@Singleton
 public class SimpleHgWorkdirFactory extends SimpleWorkdirFactory<Repository, Repository, HgCommandContext> implements HgWorkdirFactory {
 
   private final Provider<HgRepositoryEnvironmentBuilder> hgRepositoryEnvironmentBuilder;
@@ -27,9 +35,7 @@ public class SimpleHgWorkdirFactory extends SimpleWorkdirFactory<Repository, Rep
   }
   @Override
   public ParentAndClone<Repository, Repository> cloneRepository(HgCommandContext context, File target, String initialBranch) throws IOException {
-    BiConsumer<sonia.scm.repository.Repository, Map<String, String>> repositoryMapBiConsumer =
-      (repository, environment) -> hgRepositoryEnvironmentBuilder.get().buildFor(repository, null, environment);
-    Repository centralRepository = context.openWithSpecialEnvironment(repositoryMapBiConsumer);
+    Repository centralRepository = openCentral(context);
     CloneCommand cloneCommand = CloneCommandFlags.on(centralRepository);
     if (initialBranch != null) {
       cloneCommand.updaterev(initialBranch);
@@ -41,6 +47,49 @@ public class SimpleHgWorkdirFactory extends SimpleWorkdirFactory<Repository, Rep
     return new ParentAndClone<>(centralRepository, clone);
   }
 
+  @Override
+  protected ParentAndClone<Repository, Repository> reclaim(HgCommandContext context, File target, String initialBranch) throws ReclaimFailedException {
+    Repository centralRepository = openCentral(context);
+    Repository clone = null;
+    try {
+      clone = Repository.open(target);
+      if (!OutgoingCommand.on(clone).execute().isEmpty()) {
+        throw new ReclaimFailedException("working copy contains changesets, which are missing in the central repository");
+      }
+      PullCommand.on(clone).execute();
+      UpdateCommand.on(clone).clean().rev(initialBranch == null ? "default" : initialBranch).execute();
+      StatusResult status = StatusCommand.on(clone).unknown().ignored().execute();
+      delete(target, status.getUnknown());
+      delete(target, status.getIgnored());
+      return new ParentAndClone<>(centralRepository, clone);
+    } catch (IOException | RuntimeException e) {
+      close(centralRepository, clone);
+      throw new ReclaimFailedException("could not reset working copy", e);
+    } catch (ReclaimFailedException e) {
+      close(centralRepository, clone);
+      throw e;
+    }
+  }
+
+  private Repository openCentral(HgCommandContext context) {
+    BiConsumer<sonia.scm.repository.Repository, Map<String, String>> repositoryMapBiConsumer =
+      (repository, environment) -> hgRepositoryEnvironmentBuilder.get().buildFor(repository, null, environment);
+    return context.openWithSpecialEnvironment(repositoryMapBiConsumer);
+  }
+
+  private void delete(File directory, List<String> paths) throws IOException {
+    for (String path : paths) {
+      IOUtil.delete(new File(directory, path));
+    }
+  }
+
+  private void close(Repository centralRepository, Repository clone) {
+    centralRepository.close();
+    if (clone != null) {
+      clone.close();
+    }
+  }
+
   @Override
   protected void closeRepository(Repository repository) {
     repository.close();
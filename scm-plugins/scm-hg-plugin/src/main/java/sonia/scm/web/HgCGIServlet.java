@@ -89,13 +89,15 @@ public class HgCGIServlet extends HttpServlet implements ScmProviderHttpServlet
                       ScmConfiguration configuration,
                       HgRepositoryHandler handler,
                       RepositoryRequestListenerUtil requestListenerUtil,
-                      HgRepositoryEnvironmentBuilder hgRepositoryEnvironmentBuilder)
+                      HgRepositoryEnvironmentBuilder hgRepositoryEnvironmentBuilder,
+                      HgWorkerPool workerPool)
   {
     this.cgiExecutorFactory = cgiExecutorFactory;
     this.configuration = configuration;
     this.handler = handler;
     this.requestListenerUtil = requestListenerUtil;
     this.hgRepositoryEnvironmentBuilder = hgRepositoryEnvironmentBuilder;
+    this.workerPool = workerPool;
     this.exceptionHandler = new HgCGIExceptionHandler();
     this.command = HgPythonScript.HGWEB.getFile(SCMContext.getContext());
   }
@@ -203,6 +205,15 @@ public class HgCGIServlet extends HttpServlet implements ScmProviderHttpServlet
     executor.setContentLengthWorkaround(true);
     hgRepositoryEnvironmentBuilder.buildFor(repository, request, executor.getEnvironment().asMutableMap());
 
+    // requests of the wire protocol are served by the long-lived workers,
+    // the hgweb ui is still served by a cgi process
+    if (workerPool.isEnabled() && WireProtocol.isWireProtocolRequest(request))
+    {
+      executeWithWorker(request, response, executor.getEnvironment());
+
+      return;
+    }
+
     String interpreter = getInterpreter();
 
     if (interpreter != null)
@@ -213,6 +224,37 @@ public class HgCGIServlet extends HttpServlet implements ScmProviderHttpServlet
     executor.execute(command.getAbsolutePath());
   }
 
+  /**
+   * Passes the request to a worker of the pool. Errors are reported by the
+   * exception handler, in the same way as errors of a cgi process.
+   *
+   *
+   * @param request
+   * @param response
+   * @param environment
+   *
+   * @throws IOException
+   */
+  private void executeWithWorker(HttpServletRequest request,
+    HttpServletResponse response, EnvList environment)
+    throws IOException
+  {
+    try
+    {
+      int statusCode = workerPool.execute(environment, request, response);
+
+      if (statusCode >= 304)
+      {
+        exceptionHandler.handleStatusCode(request, response,
+          response.getOutputStream(), statusCode);
+      }
+    }
+    catch (IOException ex)
+    {
+      exceptionHandler.handleException(request, response, ex);
+    }
+  }
+
   //~--- get methods ----------------------------------------------------------
 
   /**
@@ -258,4 +300,6 @@ public class HgCGIServlet extends HttpServlet implements ScmProviderHttpServlet
   private final RepositoryRequestListenerUtil requestListenerUtil;
 
   private final HgRepositoryEnvironmentBuilder hgRepositoryEnvironmentBuilder;
+
+  private final HgWorkerPool workerPool;
 }
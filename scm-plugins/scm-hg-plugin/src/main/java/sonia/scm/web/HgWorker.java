@@ -0,0 +1,232 @@
+package sonia.scm.web;
+
+import com.google.common.base.Charsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived python process running the hgweb worker script. The worker handles one request at a time and speaks a
+ * framed protocol over its stdin and stdout, every integer is written as four bytes in big endian order:
+ * <ul>
+ *   <li>request: number of environment entries, entries as length prefixed {@code KEY=value} strings, then the body
+ *   as length prefixed chunks, terminated by a chunk of length zero</li>
+ *   <li>response: status line and number of headers, headers as length prefixed name and value strings, then the
+ *   body as length prefixed chunks, terminated by a chunk of length zero</li>
+ * </ul>
+ * The stderr of the worker is written to the log.
+ *
+ * @since 2.0.0
+ */
+class HgWorker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HgWorker.class);
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final AtomicInteger COUNTER = new AtomicInteger();
+
+  private final Command command;
+  private final Process process;
+  private final DataOutputStream input;
+  private final DataInputStream output;
+
+  private int requestCount;
+
+  HgWorker(Command command, Process process) {
+    this.command = command;
+    this.process = process;
+    this.input = new DataOutputStream(new BufferedOutputStream(process.getOutputStream(), BUFFER_SIZE));
+    this.output = new DataInputStream(new BufferedInputStream(process.getInputStream(), BUFFER_SIZE));
+  }
+
+  /**
+   * Starts a new worker process.
+   *
+   * @param command command of the worker
+   *
+   * @return started worker
+   *
+   * @throws IOException if the process could not be started
+   */
+  static HgWorker start(Command command) throws IOException {
+    ProcessBuilder builder = new ProcessBuilder(command.arguments).directory(command.workDirectory);
+    builder.environment().put("PYTHONPATH", command.pythonPath);
+    Process process = builder.start();
+
+    Thread errorLogger = new Thread(
+      () -> logErrors(process.getErrorStream()), "hgweb-worker-stderr-" + COUNTER.incrementAndGet()
+    );
+    errorLogger.setDaemon(true);
+    errorLogger.start();
+
+    return new HgWorker(command, process);
+  }
+
+  private static void logErrors(InputStream errorStream) {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream, Charsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        LOG.warn(line);
+      }
+    } catch (IOException ex) {
+      LOG.debug("could not read error stream of hgweb worker", ex);
+    }
+  }
+
+  Command getCommand() {
+    return command;
+  }
+
+  int getRequestCount() {
+    return requestCount;
+  }
+
+  boolean isAlive() {
+    return process.isAlive();
+  }
+
+  /**
+   * Passes the request to the worker and writes the response of the worker to the servlet response. The body of an
+   * error response (status 304 or above) is discarded, the caller is responsible to write an error message. If the
+   * method fails with an exception, the state of the worker is unknown and it must not be used anymore.
+   *
+   * @param environment cgi environment of the request as {@code KEY=value} entries
+   * @param body body of the request
+   * @param response servlet response
+   *
+   * @return status code returned by the worker
+   *
+   * @throws IOException if the communication with the worker or the client fails
+   */
+  int execute(String[] environment, InputStream body, HttpServletResponse response) throws IOException {
+    requestCount++;
+    writeRequest(environment, body);
+
+    String status = readString();
+    int statusCode = Integer.parseInt(status.split(" ", 2)[0]);
+    int headerCount = output.readInt();
+    for (int i = 0; i < headerCount; i++) {
+      String name = readString();
+      String value = readString();
+      response.addHeader(name, value);
+    }
+
+    LOG.debug("hgweb worker returned with status {}", statusCode);
+    response.setStatus(statusCode);
+    if (statusCode < 304) {
+      try (OutputStream stream = response.getOutputStream()) {
+        copyBody(stream);
+      }
+    } else {
+      copyBody(null);
+    }
+    return statusCode;
+  }
+
+  /**
+   * Stops the worker process. The worker terminates itself, after its stdin was closed.
+   */
+  void close() {
+    try {
+      input.close();
+    } catch (IOException ex) {
+      LOG.debug("could not close stdin of hgweb worker", ex);
+    }
+    process.destroy();
+  }
+
+  private void writeRequest(String[] environment, InputStream body) throws IOException {
+    input.writeInt(environment.length);
+    for (String entry : environment) {
+      writeString(entry);
+    }
+
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = body.read(buffer)) > 0) {
+      input.writeInt(read);
+      input.write(buffer, 0, read);
+    }
+    input.writeInt(0);
+    input.flush();
+  }
+
+  private void copyBody(OutputStream stream) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int size;
+    while ((size = output.readInt()) > 0) {
+      while (size > 0) {
+        int read = output.read(buffer, 0, Math.min(size, buffer.length));
+        if (read < 0) {
+          throw new IOException("unexpected end of hgweb worker output");
+        }
+        if (stream != null) {
+          stream.write(buffer, 0, read);
+        }
+        size -= read;
+      }
+    }
+  }
+
+  private void writeString(String value) throws IOException {
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    input.writeInt(bytes.length);
+    input.write(bytes);
+  }
+
+  private String readString() throws IOException {
+    byte[] bytes = new byte[output.readInt()];
+    output.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  /**
+   * Command line and environment of a worker. Workers are only reused, if their command is equal to the current one.
+   */
+  static final class Command {
+
+    private final List<String> arguments;
+    private final String pythonPath;
+    private final File workDirectory;
+
+    Command(List<String> arguments, String pythonPath, File workDirectory) {
+      this.arguments = arguments;
+      this.pythonPath = pythonPath;
+      this.workDirectory = workDirectory;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Command other = (Command) o;
+      return arguments.equals(other.arguments)
+        && Objects.equals(pythonPath, other.pythonPath)
+        && Objects.equals(workDirectory, other.workDirectory);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(arguments, pythonPath, workDirectory);
+    }
+  }
+}
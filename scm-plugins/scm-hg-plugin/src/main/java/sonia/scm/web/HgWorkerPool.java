@@ -0,0 +1,335 @@
+package sonia.scm.web;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContext;
+import sonia.scm.repository.HgConfig;
+import sonia.scm.repository.HgPythonScript;
+import sonia.scm.repository.HgRepositoryHandler;
+import sonia.scm.web.cgi.EnvList;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Pool of long-lived hgweb worker processes, which serve the requests of the mercurial wire protocol. Starting a
+ * python interpreter and loading the mercurial extensions is far more expensive than most wire protocol commands, so
+ * the workers are reused for many requests instead of starting a cgi process for each of them.
+ * <p>
+ * The pool can be configured with the following system properties:
+ * <ul>
+ *   <li>{@value #PROPERTY_CONCURRENCY}: maximum number of concurrently running workers (default is the number of
+ *   available processors, but at least {@value #MIN_CONCURRENCY}, 0 disables the pool)</li>
+ *   <li>{@value #PROPERTY_MAX_REQUESTS}: number of requests after which a worker is replaced by a new one
+ *   (default {@value #DEFAULT_MAX_REQUESTS})</li>
+ *   <li>{@value #PROPERTY_QUEUE_TIMEOUT}: seconds a request waits for a free worker, before it is rejected
+ *   (default {@value #DEFAULT_QUEUE_TIMEOUT})</li>
+ * </ul>
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class HgWorkerPool implements Closeable {
+
+  static final String PROPERTY_CONCURRENCY = "sonia.scm.hg.worker.concurrency";
+  static final String PROPERTY_MAX_REQUESTS = "sonia.scm.hg.worker.maxRequests";
+  static final String PROPERTY_QUEUE_TIMEOUT = "sonia.scm.hg.worker.queueTimeout";
+
+  static final int MIN_CONCURRENCY = 2;
+  static final int DEFAULT_MAX_REQUESTS = 100;
+  static final int DEFAULT_QUEUE_TIMEOUT = 60;
+
+  private static final Logger LOG = LoggerFactory.getLogger(HgWorkerPool.class);
+
+  private final Supplier<HgWorker.Command> commandSupplier;
+  private final WorkerFactory workerFactory;
+  private final int concurrency;
+  private final int maxRequests;
+  private final long queueTimeout;
+
+  private final Semaphore permits;
+  private final Deque<HgWorker> idle = new ArrayDeque<>();
+
+  private boolean closed;
+
+  private long requests;
+  private long rejections;
+  private long spawns;
+  private long recycles;
+  private long failures;
+  private long queueNanos;
+  private long maxQueueNanos;
+
+  @Inject
+  public HgWorkerPool(HgRepositoryHandler handler) {
+    this(
+      () -> createCommand(handler.getConfig()),
+      HgWorker::start,
+      Integer.getInteger(PROPERTY_CONCURRENCY, Math.max(MIN_CONCURRENCY, Runtime.getRuntime().availableProcessors())),
+      Integer.getInteger(PROPERTY_MAX_REQUESTS, DEFAULT_MAX_REQUESTS),
+      TimeUnit.SECONDS.toNanos(Integer.getInteger(PROPERTY_QUEUE_TIMEOUT, DEFAULT_QUEUE_TIMEOUT))
+    );
+  }
+
+  HgWorkerPool(Supplier<HgWorker.Command> commandSupplier, WorkerFactory workerFactory, int concurrency,
+               int maxRequests, long queueTimeout) {
+    this.commandSupplier = commandSupplier;
+    this.workerFactory = workerFactory;
+    this.concurrency = concurrency;
+    this.maxRequests = maxRequests;
+    this.queueTimeout = queueTimeout;
+    this.permits = new Semaphore(Math.max(concurrency, 0), true);
+  }
+
+  private static HgWorker.Command createCommand(HgConfig config) {
+    File script = HgPythonScript.HGWEB_WORKER.getFile(SCMContext.getContext());
+    List<String> arguments = new ArrayList<>();
+    String python = config.getPythonBinary();
+    if (python != null) {
+      Splitter.on(CharMatcher.whitespace()).omitEmptyStrings().split(python).forEach(arguments::add);
+      if (config.isUseOptimizedBytecode()) {
+        arguments.add("-O");
+      }
+    }
+    arguments.add(script.getAbsolutePath());
+    return new HgWorker.Command(ImmutableList.copyOf(arguments), HgUtil.getPythonPath(config), script.getParentFile());
+  }
+
+  /**
+   * Returns {@code false} if the pool is disabled and every request has to be handled by a cgi process.
+   *
+   * @return {@code true} if the pool is enabled
+   */
+  public boolean isEnabled() {
+    return concurrency > 0;
+  }
+
+  /**
+   * Handles the request with a worker of the pool. If all workers are busy, the request waits for a free one. If
+   * no worker becomes free in time, the request is rejected with status 503. The body of error responses is not
+   * written, the caller has to write an error message for every status code of 304 or above.
+   *
+   * @param environment cgi environment of the request
+   * @param request servlet request
+   * @param response servlet response
+   *
+   * @return status code of the response
+   *
+   * @throws IOException if the communication with the worker or the client fails
+   */
+  public int execute(EnvList environment, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!acquirePermit()) {
+      LOG.warn("no hgweb worker became available within {}s, reject request", TimeUnit.NANOSECONDS.toSeconds(queueTimeout));
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      return HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+    }
+
+    try {
+      HgWorker worker = borrow();
+      boolean reusable = false;
+      try (InputStream body = request.getInputStream()) {
+        int statusCode = worker.execute(environment.getEnvArray(), body, response);
+        reusable = true;
+        return statusCode;
+      } finally {
+        giveBack(worker, reusable);
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Returns the usage statistics of the pool.
+   *
+   * @return statistics
+   */
+  public synchronized Statistics getStatistics() {
+    return new Statistics(
+      requests, rejections, spawns, recycles, failures,
+      requests > 0 ? TimeUnit.NANOSECONDS.toMillis(queueNanos / requests) : 0,
+      TimeUnit.NANOSECONDS.toMillis(maxQueueNanos), idle.size(), concurrency - permits.availablePermits()
+    );
+  }
+
+  @Override
+  public void close() {
+    List<HgWorker> workers;
+    synchronized (this) {
+      closed = true;
+      workers = new ArrayList<>(idle);
+      idle.clear();
+    }
+    LOG.debug("stop {} idle hgweb workers", workers.size());
+    workers.forEach(HgWorker::close);
+  }
+
+  private boolean acquirePermit() throws InterruptedIOException {
+    long start = System.nanoTime();
+    boolean acquired;
+    try {
+      acquired = permits.tryAcquire(queueTimeout, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for hgweb worker");
+    }
+    long duration = System.nanoTime() - start;
+    synchronized (this) {
+      if (acquired) {
+        requests++;
+        queueNanos += duration;
+        maxQueueNanos = Math.max(maxQueueNanos, duration);
+      } else {
+        rejections++;
+      }
+    }
+    LOG.trace("waited {}ms for hgweb worker", TimeUnit.NANOSECONDS.toMillis(duration));
+    return acquired;
+  }
+
+  private HgWorker borrow() throws IOException {
+    HgWorker.Command command = commandSupplier.get();
+    List<HgWorker> stale = new ArrayList<>();
+    HgWorker worker;
+    synchronized (this) {
+      while ((worker = idle.poll()) != null && (!worker.isAlive() || !worker.getCommand().equals(command))) {
+        stale.add(worker);
+      }
+    }
+    stale.forEach(HgWorker::close);
+
+    if (worker == null) {
+      long start = System.nanoTime();
+      worker = workerFactory.start(command);
+      synchronized (this) {
+        spawns++;
+      }
+      LOG.debug("started hgweb worker in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    return worker;
+  }
+
+  private void giveBack(HgWorker worker, boolean reusable) {
+    boolean stop = true;
+    synchronized (this) {
+      if (!reusable) {
+        failures++;
+      } else if (worker.getRequestCount() >= maxRequests) {
+        recycles++;
+      } else if (!closed) {
+        idle.push(worker);
+        stop = false;
+      }
+    }
+    if (stop) {
+      LOG.debug("stop hgweb worker after {} requests", worker.getRequestCount());
+      worker.close();
+    }
+  }
+
+  /**
+   * Starts new workers.
+   */
+  @FunctionalInterface
+  interface WorkerFactory {
+    HgWorker start(HgWorker.Command command) throws IOException;
+  }
+
+  /**
+   * Usage statistics of the pool.
+   */
+  public static final class Statistics {
+
+    private final long requestCount;
+    private final long rejectionCount;
+    private final long spawnCount;
+    private final long recycleCount;
+    private final long failureCount;
+    private final long averageQueueMillis;
+    private final long maxQueueMillis;
+    private final int idleCount;
+    private final int activeCount;
+
+    Statistics(long requestCount, long rejectionCount, long spawnCount, long recycleCount, long failureCount,
+               long averageQueueMillis, long maxQueueMillis, int idleCount, int activeCount) {
+      this.requestCount = requestCount;
+      this.rejectionCount = rejectionCount;
+      this.spawnCount = spawnCount;
+      this.recycleCount = recycleCount;
+      this.failureCount = failureCount;
+      this.averageQueueMillis = averageQueueMillis;
+      this.maxQueueMillis = maxQueueMillis;
+      this.idleCount = idleCount;
+      this.activeCount = activeCount;
+    }
+
+    public long getRequestCount() {
+      return requestCount;
+    }
+
+    public long getRejectionCount() {
+      return rejectionCount;
+    }
+
+    public long getSpawnCount() {
+      return spawnCount;
+    }
+
+    public long getRecycleCount() {
+      return recycleCount;
+    }
+
+    public long getFailureCount() {
+      return failureCount;
+    }
+
+    public long getAverageQueueMillis() {
+      return averageQueueMillis;
+    }
+
+    public long getMaxQueueMillis() {
+      return maxQueueMillis;
+    }
+
+    public int getIdleCount() {
+      return idleCount;
+    }
+
+    public int getActiveCount() {
+      return activeCount;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+        .add("requestCount", requestCount)
+        .add("rejectionCount", rejectionCount)
+        .add("spawnCount", spawnCount)
+        .add("recycleCount", recycleCount)
+        .add("failureCount", failureCount)
+        .add("averageQueueMillis", averageQueueMillis)
+        .add("maxQueueMillis", maxQueueMillis)
+        .add("idleCount", idleCount)
+        .add("activeCount", activeCount)
+        .toString();
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package sonia.scm.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.plugin.Extension;
+
+import javax.inject.Inject;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Stops the idle workers of the {@link HgWorkerPool} on shutdown.
+ *
+ * @since 2.0.0
+ */
+@Extension
+public class HgWorkerPoolShutdownListener implements ServletContextListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HgWorkerPoolShutdownListener.class);
+
+  private final HgWorkerPool pool;
+
+  @Inject
+  public HgWorkerPoolShutdownListener(HgWorkerPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    // nothing to do
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    LOG.info("shutdown hgweb worker pool: {}", pool.getStatistics());
+    pool.close();
+  }
+}
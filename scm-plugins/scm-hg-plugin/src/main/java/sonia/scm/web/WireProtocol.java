@@ -92,6 +92,20 @@ public final class WireProtocol {
     return write;
   }
 
+  /**
+   * Returns {@code true} if the request is a command of the wire protocol. Requests without a command in the query
+   * string are requests of the hgweb ui.
+   *
+   * @param request http request
+   *
+   * @return {@code true} for wire protocol requests
+   *
+   * @since 2.0.0
+   */
+  public static boolean isWireProtocolRequest(HttpServletRequest request) {
+    return getCommandFromQueryString(request) != null;
+  }
+
   @VisibleForTesting
   static boolean isWriteRequest(List<String> commands) {
     return !READ_COMMANDS.containsAll(commands);
@@ -0,0 +1,213 @@
+#
+# Copyright (c) 2010, Sebastian Sdorra
+# All rights reserved.
+#
+# Redistribution and use in source and binary forms, with or without
+# modification, are permitted provided that the following conditions are met:
+#
+# 1. Redistributions of source code must retain the above copyright notice,
+#    this list of conditions and the following disclaimer.
+# 2. Redistributions in binary form must reproduce the above copyright notice,
+#    this list of conditions and the following disclaimer in the documentation
+#    and/or other materials provided with the distribution.
+# 3. Neither the name of SCM-Manager; nor the names of its
+#    contributors may be used to endorse or promote products derived from this
+#    software without specific prior written permission.
+#
+# THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+# AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+# IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+# DISCLAIMED.  IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+# DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+# (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+# LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+# ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+# (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+# SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+#
+# http://bitbucket.org/sdorra/scm-manager
+#
+#
+
+#
+# long-lived hgweb worker, which is started by the HgWorkerPool of scm-manager.
+# The worker handles one request after another and communicates over its
+# stdin and stdout with a framed protocol (integers are 4 byte big endian):
+#
+# request:  env count, env entries (KEY=value), body chunks, empty chunk
+# response: status, header count, headers (name, value), body chunks, empty chunk
+#
+# strings and chunks are prefixed with their length. The worker stops at the
+# end of its stdin.
+#
+
+import os, struct, sys, tempfile, traceback
+from mercurial import demandimport, ui as uimod, hg
+from mercurial.hgweb import hgweb
+
+demandimport.enable()
+
+# keep the protocol streams and redirect everything else, which mercurial or
+# the hooks write to stdout, to stderr
+protocolIn = os.fdopen(os.dup(0), 'rb')
+protocolOut = os.fdopen(os.dup(1), 'wb')
+os.dup2(os.open(os.devnull, os.O_RDONLY), 0)
+os.dup2(2, 1)
+
+baseEnvironment = dict(os.environ)
+applications = {}
+
+# bodies up to this size are kept in memory, larger ones are spooled to disk
+MAX_MEMORY_BODY = 1024 * 1024
+
+# number of cached hgweb applications, the cache is cleared if it grows larger
+MAX_APPLICATIONS = 16
+
+def readExactly(size):
+  data = protocolIn.read(size)
+  if len(data) != size:
+    raise EOFError()
+  return data
+
+def readInt():
+  return struct.unpack('>i', readExactly(4))[0]
+
+def readString():
+  return readExactly(readInt())
+
+def writeInt(value):
+  protocolOut.write(struct.pack('>i', value))
+
+def writeString(value):
+  writeInt(len(value))
+  protocolOut.write(value)
+
+def createUi(httpPostArgs):
+  try:
+    u = uimod.ui.load()
+  except AttributeError:
+    # For installations earlier than Mercurial 4.1
+    u = uimod.ui()
+
+  u.setconfig('web', 'push_ssl', 'false')
+  u.setconfig('web', 'allow_read', '*')
+  u.setconfig('web', 'allow_push', '*')
+
+  u.setconfig('hooks', 'changegroup.scm', 'python:scmhooks.postHook')
+  u.setconfig('hooks', 'pretxnchangegroup.scm', 'python:scmhooks.preHook')
+
+  # Issue 970: https://goo.gl/poascp
+  u.setconfig('experimental', 'httppostargs', httpPostArgs)
+  return u
+
+def getApplication(environ):
+  key = (environ['SCM_REPOSITORY_PATH'], environ['SCM_HTTP_POST_ARGS'])
+  application = applications.get(key)
+  if application is None:
+    if len(applications) >= MAX_APPLICATIONS:
+      applications.clear()
+    u = createUi(key[1])
+    application = hgweb(hg.repository(u, key[0]))
+    applications[key] = application
+  return application
+
+def readRequest(count):
+  environ = {}
+  for i in range(count):
+    entry = readString()
+    separator = entry.find('=')
+    if separator > 0:
+      environ[entry[:separator]] = entry[separator + 1:]
+
+  body = tempfile.SpooledTemporaryFile(max_size=MAX_MEMORY_BODY)
+  size = readInt()
+  while size > 0:
+    body.write(readExactly(size))
+    size = readInt()
+  body.seek(0)
+  return environ, body
+
+class Response(object):
+
+  def __init__(self):
+    self.status = None
+    self.headers = None
+    self.sent = False
+
+  def start(self, status, headers, exc_info=None):
+    if exc_info:
+      try:
+        if self.sent:
+          raise exc_info[0], exc_info[1], exc_info[2]
+      finally:
+        exc_info = None
+    self.status = status
+    self.headers = headers
+    return self.write
+
+  def sendHeaders(self):
+    if not self.sent:
+      self.sent = True
+      writeString(self.status)
+      writeInt(len(self.headers))
+      for name, value in self.headers:
+        writeString(name)
+        writeString(value)
+
+  def write(self, data):
+    self.sendHeaders()
+    if data:
+      writeInt(len(data))
+      protocolOut.write(data)
+
+  def finish(self):
+    self.sendHeaders()
+    writeInt(0)
+    protocolOut.flush()
+
+def handle(environ, body):
+  # the hooks read the scm-manager environment from os.environ
+  os.environ.clear()
+  os.environ.update(baseEnvironment)
+  os.environ.update(environ)
+
+  environ = dict(os.environ)
+  environ['wsgi.input'] = body
+  environ['wsgi.errors'] = sys.stderr
+  environ['wsgi.version'] = (1, 0)
+  environ['wsgi.multithread'] = False
+  environ['wsgi.multiprocess'] = True
+  environ['wsgi.run_once'] = False
+  if environ.get('HTTPS', 'off').lower() in ('on', '1', 'yes'):
+    environ['wsgi.url_scheme'] = 'https'
+  else:
+    environ['wsgi.url_scheme'] = 'http'
+
+  response = Response()
+  try:
+    content = getApplication(environ)(environ, response.start)
+    try:
+      for chunk in content:
+        response.write(chunk)
+    finally:
+      if hasattr(content, 'close'):
+        content.close()
+  except Exception:
+    traceback.print_exc()
+    if response.sent:
+      # the response is incomplete, the worker can not be used anymore
+      sys.exit(1)
+    response.status = '500 Internal Server Error'
+    response.headers = []
+  response.finish()
+
+while True:
+  try:
+    count = readInt()
+  except EOFError:
+    break
+  environ, body = readRequest(count)
+  try:
+    handle(environ, body)
+  finally:
+    body.close()
@@ -38,11 +38,8 @@
 
 import os, urllib, urllib2
 
-baseUrl = os.environ['SCM_URL']
-challenge = os.environ['SCM_CHALLENGE']
-token = os.environ['SCM_BEARER_TOKEN']
-xsrf = os.environ['SCM_XSRF']
-repositoryId = os.environ['SCM_REPOSITORY_ID']
+# the environment is read on every call, because the module stays loaded in the
+# long-lived hgweb workers, which change the environment for every request
 
 def printMessages(ui, msgs):
   for line in msgs:
@@ -53,14 +50,14 @@ def printMessages(ui, msgs):
 def callHookUrl(ui, repo, hooktype, node):
   abort = True
   try:
-    url = baseUrl + hooktype
+    url = os.environ['SCM_URL'] + hooktype
     ui.debug( "send scm-hook to " + url + " and " + node + "\n" )
-    data = urllib.urlencode({'node': node, 'challenge': challenge, 'token': token, 'repositoryPath': repo.root, 'repositoryId': repositoryId})
+    data = urllib.urlencode({'node': node, 'challenge': os.environ['SCM_CHALLENGE'], 'token': os.environ['SCM_BEARER_TOKEN'], 'repositoryPath': repo.root, 'repositoryId': os.environ['SCM_REPOSITORY_ID']})
     # open url but ignore proxy settings
     proxy_handler = urllib2.ProxyHandler({})
     opener = urllib2.build_opener(proxy_handler)
     req = urllib2.Request(url, data)
-    req.add_header("X-XSRF-Token", xsrf)
+    req.add_header("X-XSRF-Token", os.environ['SCM_XSRF'])
     conn = opener.open(req)
     if 200 <= conn.code < 300:
       ui.debug( "scm-hook " + hooktype + " success with status code " + str(conn.code) + "\n" )
@@ -90,7 +87,7 @@ def callHookUrl(ui, repo, hooktype, node):
 def callback(ui, repo, hooktype, node=None):
   abort = True
   if node != None:
-    if len(baseUrl) > 0:
+    if len(os.environ['SCM_URL']) > 0:
       abort = callHookUrl(ui, repo, hooktype, node)
     else:
       ui.warn("ERROR: scm-manager hooks are disabled, please check your configuration and the scm-manager log for details\n")
@@ -51,4 +51,16 @@ class HgEnvironmentTest {
 
     assertThat(environment).containsKeys("SCM_XSRF");
   }
+
+  @Test
+  void shouldNotContainCredentialsInSharedEnvironment() {
+    Map<String, String> environment = new HashMap<>();
+    environment.put("SCM_BEARER_TOKEN", "secret");
+    environment.put("SCM_XSRF", "XSRF Token");
+
+    HgEnvironment.prepareSharedEnvironment(environment, handler, hookManager);
+
+    assertThat(environment).doesNotContainKeys("SCM_BEARER_TOKEN", "SCM_XSRF");
+    assertThat(environment).containsKeys("SCM_URL", "SCM_CHALLENGE", "PYTHONPATH");
+  }
 }
@@ -0,0 +1,121 @@
+package sonia.scm.repository.spi;
+
+import com.aragost.javahg.Repository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.HgRepositoryHandler;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class HgCommandServerPoolTest {
+
+  private static final HgCommandServerPool.Key KEY = new HgCommandServerPool.Key(new File("/repo"), "UTF-8", false);
+
+  @Mock
+  private HgRepositoryHandler handler;
+
+  private HgCommandServerPool pool;
+
+  private final AtomicInteger spawned = new AtomicInteger();
+
+  @BeforeEach
+  void createPool() {
+    pool = new HgCommandServerPool(handler, 2, TimeUnit.MINUTES.toNanos(5), TimeUnit.MINUTES.toNanos(5));
+  }
+
+  @AfterEach
+  void closePool() {
+    pool.close();
+  }
+
+  @Test
+  void shouldReuseReleasedServer() {
+    HgCommandServerPool.Lease first = pool.borrow(KEY, factory());
+    pool.release(first);
+
+    HgCommandServerPool.Lease second = pool.borrow(KEY, factory());
+
+    assertThat(second.getRepository()).isSameAs(first.getRepository());
+    assertThat(spawned).hasValue(1);
+    assertThat(pool.getStatistics().getHitCount()).isEqualTo(1);
+    assertThat(pool.getStatistics().getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldNotShareServersOfDifferentKeys() {
+    pool.release(pool.borrow(KEY, factory()));
+
+    HgCommandServerPool.Key other = new HgCommandServerPool.Key(new File("/repo"), "UTF-8", true);
+    pool.borrow(other, factory());
+
+    assertThat(spawned).hasValue(2);
+  }
+
+  @Test
+  void shouldStopUnpooledServerIfAllServersAreInUse() {
+    pool.borrow(KEY, factory());
+    pool.borrow(KEY, factory());
+    HgCommandServerPool.Lease overflow = pool.borrow(KEY, factory());
+
+    pool.release(overflow);
+
+    verify(overflow.getRepository()).close();
+    assertThat(pool.getStatistics().getOverflowCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldEvictOldestIdleServerIfPoolIsFull() {
+    HgCommandServerPool.Lease first = pool.borrow(KEY, factory());
+    HgCommandServerPool.Lease second = pool.borrow(new HgCommandServerPool.Key(new File("/other"), "UTF-8", false), factory());
+    pool.release(first);
+    pool.release(second);
+
+    pool.borrow(new HgCommandServerPool.Key(new File("/third"), "UTF-8", false), factory());
+
+    verify(first.getRepository()).close();
+    verify(second.getRepository(), never()).close();
+  }
+
+  @Test
+  void shouldStopIdleServersOnInvalidation() {
+    HgCommandServerPool.Lease lease = pool.borrow(KEY, factory());
+    pool.release(lease);
+
+    pool.invalidate(new File("/repo"));
+
+    verify(lease.getRepository()).close();
+    pool.borrow(KEY, factory());
+    assertThat(spawned).hasValue(2);
+  }
+
+  @Test
+  void shouldStopBorrowedServerAfterInvalidation() {
+    HgCommandServerPool.Lease lease = pool.borrow(KEY, factory());
+
+    pool.invalidate(new File("/repo"));
+    pool.release(lease);
+
+    verify(lease.getRepository()).close();
+    assertThat(pool.getStatistics().getIdleCount()).isZero();
+  }
+
+  private Supplier<Repository> factory() {
+    return () -> {
+      spawned.incrementAndGet();
+      return mock(Repository.class);
+    };
+  }
+}
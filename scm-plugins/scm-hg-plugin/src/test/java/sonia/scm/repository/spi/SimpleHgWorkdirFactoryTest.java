@@ -0,0 +1,100 @@
+package sonia.scm.repository.spi;
+
+import com.aragost.javahg.Repository;
+import com.aragost.javahg.commands.AddCommand;
+import com.aragost.javahg.commands.BranchCommand;
+import com.aragost.javahg.commands.CommitCommand;
+import com.aragost.javahg.commands.PullCommand;
+import com.aragost.javahg.commands.StatusCommand;
+import com.aragost.javahg.commands.StatusResult;
+import com.google.inject.util.Providers;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sonia.scm.repository.HgTestUtil;
+import sonia.scm.repository.util.WorkdirProvider;
+import sonia.scm.repository.util.WorkingCopy;
+import sonia.scm.web.HgRepositoryEnvironmentBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SimpleHgWorkdirFactoryTest extends AbstractHgCommandTestBase {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private SimpleHgWorkdirFactory workdirFactory;
+
+  @Before
+  public void initWorkdirFactory() throws IOException {
+    HgRepositoryEnvironmentBuilder hgRepositoryEnvironmentBuilder =
+      new HgRepositoryEnvironmentBuilder(handler, HgTestUtil.createHookManager());
+
+    workdirFactory = new SimpleHgWorkdirFactory(Providers.of(hgRepositoryEnvironmentBuilder), new WorkdirProvider(temporaryFolder.newFolder())) {
+      @Override
+      public void configure(PullCommand pullCommand) {
+        // we do not want to configure http hooks in this unit test
+      }
+    };
+  }
+
+  @Test
+  public void closedWorkingCopyShouldBeReused() {
+    File firstDirectory;
+    try (WorkingCopy<Repository, Repository> workingCopy = workdirFactory.createWorkingCopy(cmdContext, null)) {
+      firstDirectory = workingCopy.getDirectory();
+    }
+    try (WorkingCopy<Repository, Repository> workingCopy = workdirFactory.createWorkingCopy(cmdContext, null)) {
+      assertThat(workingCopy.getDirectory()).isEqualTo(firstDirectory);
+    }
+    assertThat(workdirFactory.getStatistics().getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void reusedWorkingCopyShouldBeCleanedAndSwitchedToInitialBranch() throws IOException {
+    File firstDirectory;
+    try (WorkingCopy<Repository, Repository> workingCopy = workdirFactory.createWorkingCopy(cmdContext, null)) {
+      firstDirectory = workingCopy.getDirectory();
+      Files.write(new File(firstDirectory, "a.txt").toPath(), "modified".getBytes());
+      Files.write(new File(firstDirectory, "unknown.txt").toPath(), "unknown".getBytes());
+      Files.write(new File(firstDirectory, ".hgignore").toPath(), "syntax: glob\n*.log\n".getBytes());
+      Files.write(new File(firstDirectory, "ignored.log").toPath(), "ignored".getBytes());
+    }
+    try (WorkingCopy<Repository, Repository> workingCopy = workdirFactory.createWorkingCopy(cmdContext, "test-branch")) {
+      File directory = workingCopy.getDirectory();
+      assertThat(directory).isEqualTo(firstDirectory);
+      assertThat(BranchCommand.on(workingCopy.getWorkingRepository()).get()).isEqualTo("test-branch");
+      assertThat(new File(directory, "unknown.txt")).doesNotExist();
+      assertThat(new File(directory, ".hgignore")).doesNotExist();
+      assertThat(new File(directory, "ignored.log")).doesNotExist();
+
+      StatusResult status = StatusCommand.on(workingCopy.getWorkingRepository()).execute();
+      assertThat(status.getModified()).isEmpty();
+      assertThat(status.getUnknown()).isEmpty();
+    }
+  }
+
+  @Test
+  public void workingCopyWithOutgoingChangesetsShouldNotBeReused() throws IOException {
+    File firstDirectory;
+    try (WorkingCopy<Repository, Repository> workingCopy = workdirFactory.createWorkingCopy(cmdContext, null)) {
+      firstDirectory = workingCopy.getDirectory();
+      Files.write(new File(firstDirectory, "new.txt").toPath(), "new".getBytes());
+      AddCommand.on(workingCopy.getWorkingRepository()).execute();
+      CommitCommand.on(workingCopy.getWorkingRepository())
+        .user("Arthur Dent <dent@hitchhiker.com>")
+        .message("not pulled into the central repository")
+        .execute();
+    }
+    try (WorkingCopy<Repository, Repository> workingCopy = workdirFactory.createWorkingCopy(cmdContext, null)) {
+      assertThat(workingCopy.getDirectory()).isNotEqualTo(firstDirectory);
+      assertThat(new File(workingCopy.getDirectory(), "new.txt")).doesNotExist();
+    }
+    assertThat(firstDirectory).doesNotExist();
+  }
+}
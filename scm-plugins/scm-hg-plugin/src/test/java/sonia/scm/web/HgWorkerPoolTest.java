@@ -0,0 +1,152 @@
+package sonia.scm.web;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.web.cgi.EnvList;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HgWorkerPoolTest {
+
+  private static final HgWorker.Command COMMAND = command("python");
+
+  @Mock
+  private HttpServletRequest request;
+
+  @Mock
+  private HttpServletResponse response;
+
+  private final List<HgWorker> started = new ArrayList<>();
+
+  private HgWorker.Command currentCommand = COMMAND;
+
+  private HgWorkerPool pool;
+
+  @BeforeEach
+  void createPool() throws IOException {
+    lenient().when(request.getInputStream()).thenReturn(mock(ServletInputStream.class));
+    pool = createPool(2, 3, 0);
+  }
+
+  @AfterEach
+  void closePool() {
+    pool.close();
+  }
+
+  @Test
+  void shouldReuseWorker() throws IOException {
+    execute();
+    execute();
+
+    assertThat(started).hasSize(1);
+    assertThat(pool.getStatistics().getRequestCount()).isEqualTo(2);
+    assertThat(pool.getStatistics().getSpawnCount()).isEqualTo(1);
+    assertThat(pool.getStatistics().getIdleCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldRecycleWorkerAfterMaxRequests() throws IOException {
+    execute();
+    HgWorker worker = started.get(0);
+    when(worker.getRequestCount()).thenReturn(3);
+
+    execute();
+    execute();
+
+    verify(worker).close();
+    assertThat(started).hasSize(2);
+    assertThat(pool.getStatistics().getRecycleCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldStopFailedWorker() throws IOException {
+    pool = createPool(2, 3, 0, command -> {
+      HgWorker worker = startWorker(command);
+      doThrow(new IOException("broken pipe")).when(worker).execute(any(), any(), any());
+      return worker;
+    });
+
+    assertThatThrownBy(this::execute).isInstanceOf(IOException.class);
+
+    verify(started.get(0)).close();
+    assertThat(pool.getStatistics().getFailureCount()).isEqualTo(1);
+    assertThat(pool.getStatistics().getActiveCount()).isZero();
+  }
+
+  @Test
+  void shouldReplaceWorkerOfOutdatedCommand() throws IOException {
+    execute();
+    currentCommand = command("python3");
+    execute();
+
+    verify(started.get(0)).close();
+    verify(started.get(1), never()).close();
+    assertThat(started).hasSize(2);
+  }
+
+  @Test
+  void shouldRejectRequestIfNoWorkerBecomesAvailable() throws IOException {
+    pool = createPool(1, 3, 0, command -> {
+      HgWorker worker = startWorker(command);
+      doAnswer(invocation -> {
+        // the only worker is busy, so the nested request has to be rejected
+        assertThat(execute()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        return HttpServletResponse.SC_OK;
+      }).when(worker).execute(any(), any(), any());
+      return worker;
+    });
+
+    assertThat(execute()).isEqualTo(HttpServletResponse.SC_OK);
+
+    verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    assertThat(pool.getStatistics().getRejectionCount()).isEqualTo(1);
+    assertThat(pool.getStatistics().getRequestCount()).isEqualTo(1);
+  }
+
+  private int execute() throws IOException {
+    return pool.execute(new EnvList(), request, response);
+  }
+
+  private HgWorkerPool createPool(int concurrency, int maxRequests, long queueTimeout) {
+    return createPool(concurrency, maxRequests, queueTimeout, this::startWorker);
+  }
+
+  private HgWorkerPool createPool(int concurrency, int maxRequests, long queueTimeout, HgWorkerPool.WorkerFactory factory) {
+    return new HgWorkerPool(() -> currentCommand, factory, concurrency, maxRequests, queueTimeout);
+  }
+
+  private HgWorker startWorker(HgWorker.Command command) {
+    HgWorker worker = mock(HgWorker.class);
+    lenient().when(worker.getCommand()).thenReturn(command);
+    lenient().when(worker.isAlive()).thenReturn(true);
+    started.add(worker);
+    return worker;
+  }
+
+  private static HgWorker.Command command(String python) {
+    return new HgWorker.Command(ImmutableList.of(python, "hgwebworker.py"), "/lib/python", new File("/lib/python"));
+  }
+}
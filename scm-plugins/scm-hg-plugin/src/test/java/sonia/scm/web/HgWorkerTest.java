@@ -0,0 +1,234 @@
+package sonia.scm.web;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HgWorkerTest {
+
+  private static final HgWorker.Command COMMAND = new HgWorker.Command(
+    ImmutableList.of("python", "hgwebworker.py"), "/lib/python", new File("/lib/python")
+  );
+
+  @Mock
+  private HttpServletResponse response;
+
+  @Test
+  void shouldWriteEnvironmentAndBodyAsFrames() throws IOException {
+    StubProcess process = new StubProcess(new ResponseRecorder().status("200 Script output follows").end());
+    HgWorker worker = new HgWorker(COMMAND, process);
+    when(response.getOutputStream()).thenReturn(new CapturingServletOutputStream());
+
+    byte[] body = new byte[10000];
+    Arrays.fill(body, (byte) 'a');
+    worker.execute(new String[]{"REQUEST_METHOD=POST", "QUERY_STRING=cmd=unbundle"}, new ByteArrayInputStream(body), response);
+
+    DataInputStream request = process.getWrittenRequest();
+    assertThat(request.readInt()).isEqualTo(2);
+    assertThat(readString(request)).isEqualTo("REQUEST_METHOD=POST");
+    assertThat(readString(request)).isEqualTo("QUERY_STRING=cmd=unbundle");
+
+    ByteArrayOutputStream writtenBody = new ByteArrayOutputStream();
+    int chunks = 0;
+    int size;
+    while ((size = request.readInt()) > 0) {
+      byte[] chunk = new byte[size];
+      request.readFully(chunk);
+      writtenBody.write(chunk);
+      chunks++;
+    }
+    assertThat(chunks).isEqualTo(2);
+    assertThat(writtenBody.toByteArray()).isEqualTo(body);
+    assertThat(request.read()).isEqualTo(-1);
+    assertThat(worker.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldWriteStatusHeadersAndBodyToResponse() throws IOException {
+    StubProcess process = new StubProcess(
+      new ResponseRecorder()
+        .status("200 Script output follows", "Content-Type", "application/mercurial-0.1", "Content-Length", "6")
+        .chunk("abc")
+        .chunk("def")
+        .end()
+    );
+    HgWorker worker = new HgWorker(COMMAND, process);
+    CapturingServletOutputStream stream = new CapturingServletOutputStream();
+    when(response.getOutputStream()).thenReturn(stream);
+
+    int statusCode = worker.execute(new String[0], emptyBody(), response);
+
+    assertThat(statusCode).isEqualTo(200);
+    verify(response).setStatus(200);
+    verify(response).addHeader("Content-Type", "application/mercurial-0.1");
+    verify(response).addHeader("Content-Length", "6");
+    assertThat(stream.toString()).isEqualTo("abcdef");
+  }
+
+  @Test
+  void shouldDiscardBodyOfErrorResponseUntilTerminator() throws IOException {
+    ResponseRecorder recorder = new ResponseRecorder()
+      .status("500 Internal Server Error", "Content-Type", "text/plain")
+      .chunk("stack trace")
+      .end()
+      .status("200 Script output follows")
+      .chunk("ok")
+      .end();
+    HgWorker worker = new HgWorker(COMMAND, new StubProcess(recorder));
+
+    int statusCode = worker.execute(new String[0], emptyBody(), response);
+
+    assertThat(statusCode).isEqualTo(500);
+    verify(response).setStatus(500);
+    verify(response, never()).getOutputStream();
+
+    // the next response starts right after the terminator of the error response
+    CapturingServletOutputStream stream = new CapturingServletOutputStream();
+    when(response.getOutputStream()).thenReturn(stream);
+    assertThat(worker.execute(new String[0], emptyBody(), response)).isEqualTo(200);
+    assertThat(stream.toString()).isEqualTo("ok");
+  }
+
+  @Test
+  void shouldFailOnTruncatedBody() throws IOException {
+    ResponseRecorder recorder = new ResponseRecorder().status("200 Script output follows").length(10);
+    HgWorker worker = new HgWorker(COMMAND, new StubProcess(recorder));
+    when(response.getOutputStream()).thenReturn(new CapturingServletOutputStream());
+
+    assertThatThrownBy(() -> worker.execute(new String[0], emptyBody(), response))
+      .isInstanceOf(IOException.class);
+  }
+
+  private static InputStream emptyBody() {
+    return new ByteArrayInputStream(new byte[0]);
+  }
+
+  private static String readString(DataInputStream stream) throws IOException {
+    byte[] bytes = new byte[stream.readInt()];
+    stream.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  /**
+   * Records the frames of worker responses, in the same format hgwebworker.py writes them.
+   */
+  private static class ResponseRecorder {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream output = new DataOutputStream(buffer);
+
+    private ResponseRecorder status(String status, String... headers) throws IOException {
+      writeString(status);
+      output.writeInt(headers.length / 2);
+      for (String header : headers) {
+        writeString(header);
+      }
+      return this;
+    }
+
+    private ResponseRecorder chunk(String content) throws IOException {
+      writeString(content);
+      return this;
+    }
+
+    private ResponseRecorder length(int length) throws IOException {
+      output.writeInt(length);
+      return this;
+    }
+
+    private ResponseRecorder end() throws IOException {
+      output.writeInt(0);
+      return this;
+    }
+
+    private void writeString(String value) throws IOException {
+      byte[] bytes = value.getBytes(Charsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+
+    private byte[] toByteArray() {
+      return buffer.toByteArray();
+    }
+  }
+
+  private static class StubProcess extends Process {
+
+    private final ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+    private final InputStream stdout;
+
+    private StubProcess(ResponseRecorder recorder) {
+      this.stdout = new ByteArrayInputStream(recorder.toByteArray());
+    }
+
+    private DataInputStream getWrittenRequest() {
+      return new DataInputStream(new ByteArrayInputStream(stdin.toByteArray()));
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return stdin;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return stdout;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override
+    public int waitFor() {
+      return 0;
+    }
+
+    @Override
+    public int exitValue() {
+      return 0;
+    }
+
+    @Override
+    public void destroy() {
+    }
+  }
+
+  private static class CapturingServletOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+      baos.write(b);
+    }
+
+    @Override
+    public String toString() {
+      return new String(baos.toByteArray(), Charsets.UTF_8);
+    }
+  }
+}
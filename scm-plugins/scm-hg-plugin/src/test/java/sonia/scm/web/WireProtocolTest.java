@@ -167,6 +167,18 @@ public class WireProtocolTest {
     assertTrue(WireProtocol.commandsOf(request).isEmpty());
   }
 
+  @Test
+  public void testIsWireProtocolRequest() {
+    when(request.getQueryString()).thenReturn("cmd=capabilities");
+    assertTrue(WireProtocol.isWireProtocolRequest(request));
+  }
+
+  @Test
+  public void testIsWireProtocolRequestWithoutCmdInQueryString() {
+    when(request.getQueryString()).thenReturn("style=raw");
+    assertFalse(WireProtocol.isWireProtocolRequest(request));
+  }
+
   private void expectQueryCommand(String expected, String queryString) {
     when(request.getQueryString()).thenReturn(queryString);
     List<String> commands = WireProtocol.commandsOf(request);
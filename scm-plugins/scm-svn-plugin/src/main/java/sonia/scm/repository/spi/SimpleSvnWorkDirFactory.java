@@ -1,20 +1,26 @@
 package sonia.scm.repository.spi;
 
 import org.apache.commons.lang.exception.CloneFailedException;
+import org.tmatesoft.svn.core.SVNDepth;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.wc2.SvnCheckout;
+import org.tmatesoft.svn.core.wc2.SvnCleanup;
 import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnRevert;
 import org.tmatesoft.svn.core.wc2.SvnTarget;
+import org.tmatesoft.svn.core.wc2.SvnUpdate;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.SvnWorkDirFactory;
 import sonia.scm.repository.util.SimpleWorkdirFactory;
 import sonia.scm.repository.util.WorkdirProvider;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.io.File;
 import java.io.IOException;
 
+@Singleton
 public class SimpleSvnWorkDirFactory extends SimpleWorkdirFactory<File, File, SvnContext> implements SvnWorkDirFactory {
 
   @Inject
@@ -53,6 +59,35 @@ public class SimpleSvnWorkDirFactory extends SimpleWorkdirFactory<File, File, Sv
     return new ParentAndClone<>(context.getDirectory(), workingCopy);
   }
 
+  @Override
+  protected ParentAndClone<File, File> reclaim(SvnContext context, File workingCopy, String initialBranch) throws ReclaimFailedException {
+    final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+
+    try {
+      final SvnRevert revert = svnOperationFactory.createRevert();
+      revert.setSingleTarget(SvnTarget.fromFile(workingCopy));
+      revert.setDepth(SVNDepth.INFINITY);
+      revert.run();
+
+      final SvnCleanup cleanup = svnOperationFactory.createCleanup();
+      cleanup.setSingleTarget(SvnTarget.fromFile(workingCopy));
+      cleanup.setRemoveUnversionedItems(true);
+      cleanup.setRemoveIgnoredItems(true);
+      cleanup.run();
+
+      final SvnUpdate update = svnOperationFactory.createUpdate();
+      update.setSingleTarget(SvnTarget.fromFile(workingCopy));
+      update.setDepth(SVNDepth.INFINITY);
+      update.run();
+    } catch (SVNException ex) {
+      throw new ReclaimFailedException("could not reset working copy", ex);
+    } finally {
+      svnOperationFactory.dispose();
+    }
+
+    return new ParentAndClone<>(context.getDirectory(), workingCopy);
+  }
+
   @Override
   protected void closeRepository(File workingCopy) {
   }
@@ -43,6 +43,7 @@ import org.tmatesoft.svn.core.ISVNLogEntryHandler;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
 import org.tmatesoft.svn.core.io.SVNRepository;
+import sonia.scm.cache.Cache;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.InternalRepositoryException;
@@ -66,9 +67,19 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
   private static final Logger logger =
     LoggerFactory.getLogger(SvnLogCommand.class);
 
+  /** name of the cache for the revision indexes of paths */
+  static final String INDEX_CACHE_NAME = "sonia.cache.svn.pathRevisions";
+
   SvnLogCommand(SvnContext context, Repository repository)
+  {
+    this(context, repository, null);
+  }
+
+  SvnLogCommand(SvnContext context, Repository repository,
+    Cache<String, SvnPathRevisionIndex> indexCache)
   {
     super(context, repository);
+    this.indexCache = indexCache;
   }
 
   //~--- get methods ----------------------------------------------------------
@@ -181,7 +192,10 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
   }
 
   /**
-   * Method description
+   * Reads a single page of the log for a path or a range of revisions. Only
+   * the log entries up to the end of the page are read from the repository,
+   * the total number of changesets is taken from the
+   * {@link SvnPathRevisionIndex} of the path.
    *
    *
    * @param repo
@@ -195,7 +209,6 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
    *
    * @throws SVNException
    */
-  @SuppressWarnings("unchecked")
   private ChangesetPagingResult getChangesets(SVNRepository repo,
     long startRevision, long endRevision, int start, int limit, String[] path)
     throws SVNException
@@ -204,7 +217,7 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
     long endRev = Math.max(endRevision, 0);
     long maxRev = repo.getLatestRevision();
 
-    if (startRevision >= 0l)
+    if ((startRevision >= 0l) && (startRevision <= maxRev))
     {
       startRev = startRevision;
     }
@@ -213,44 +226,77 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
       startRev = maxRev;
     }
 
-    List<SVNLogEntry> changesetList = Lists.newArrayList();
+    if (start < 0)
+    {
+      start = 0;
+    }
+
+    long max = (limit > 0)
+      ? (long) start + limit
+      : 0;
 
     logger.debug("fetch changeset from {} to {} for path {}", startRev, endRev,
       path);
 
-    Collection<SVNLogEntry> entries = repo.log(path, null, startRev, endRev,
-                                        true, true);
+    List<Changeset> changesets = Lists.newArrayList();
+
+    repo.log(path, startRev, endRev, true, true, max,
+      new ChangesetCollector(changesets, start));
+
+    int total = getIndex(path).count(repo, startRev, endRev);
 
-    for (SVNLogEntry entry : entries)
+    logger.trace("collected {} of total {} changesets", changesets.size(),
+      total);
+
+    return new ChangesetPagingResult(total, changesets);
+  }
+
+  /**
+   * Returns the revision index of the path.
+   *
+   *
+   * @param path
+   *
+   * @return
+   */
+  private SvnPathRevisionIndex getIndex(String[] path)
+  {
+    String indexPath = (path != null)
+      ? normalize(path[0])
+      : "";
+
+    if (indexCache == null)
     {
-      if (entry.getRevision() <= maxRev)
-      {
-        changesetList.add(entry);
-      }
+      return new SvnPathRevisionIndex(indexPath);
     }
 
-    int total = changesetList.size();
-    int max = limit + start;
-    int end = total;
+    String key = repository.getId().concat(":").concat(indexPath);
+    SvnPathRevisionIndex index = indexCache.get(key);
 
-    if ((max > 0) && (end > max))
+    if (index == null)
     {
-      end = max;
+      index = new SvnPathRevisionIndex(indexPath);
+      indexCache.put(key, index);
     }
 
-    if (start < 0)
+    return index;
+  }
+
+  private static String normalize(String path)
+  {
+    String normalized = path;
+
+    while (normalized.startsWith("/"))
     {
-      start = 0;
+      normalized = normalized.substring(1);
     }
 
-    logger.trace(
-      "create sublist from {} to {} of total {} collected changesets", start,
-      end, total);
-
-    changesetList = changesetList.subList(start, end);
+    while (normalized.endsWith("/"))
+    {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
 
-    return new ChangesetPagingResult(total,
-      SvnUtil.createChangesets(changesetList));
+    return normalized;
   }
 
   //~--- inner classes --------------------------------------------------------
@@ -269,8 +315,21 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
      * @param changesets
      */
     public ChangesetCollector(Collection<Changeset> changesets)
+    {
+      this(changesets, 0);
+    }
+
+    /**
+     * Constructs a collector, which skips the first entries.
+     *
+     *
+     * @param changesets
+     * @param skip number of entries to skip
+     */
+    public ChangesetCollector(Collection<Changeset> changesets, int skip)
     {
       this.changesets = changesets;
+      this.skip = skip;
     }
 
     //~--- methods ------------------------------------------------------------
@@ -286,12 +345,27 @@ public class SvnLogCommand extends AbstractSvnCommand implements LogCommand
     @Override
     public void handleLogEntry(SVNLogEntry logEntry) throws SVNException
     {
-      changesets.add(SvnUtil.createChangeset(logEntry));
+      if (skip > 0)
+      {
+        skip--;
+      }
+      else
+      {
+        changesets.add(SvnUtil.createChangeset(logEntry));
+      }
     }
 
     //~--- fields -------------------------------------------------------------
 
     /** Field description */
     private final Collection<Changeset> changesets;
+
+    /** number of entries which are still skipped */
+    private int skip;
   }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** cache of the revision indexes, may be {@code null} */
+  private final Cache<String, SvnPathRevisionIndex> indexCache;
 }
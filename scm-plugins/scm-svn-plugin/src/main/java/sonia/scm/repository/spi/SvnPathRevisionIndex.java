@@ -0,0 +1,148 @@
+package sonia.scm.repository.spi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Sorted list of the revisions which have changed a path. The index is built with the first request and is afterwards
+ * only extended by the revisions, which were committed since the last request. It is used to count the changesets of a
+ * path without reading its whole history for every page of the log.
+ * <p>
+ * The history is traced like {@link SVNRepository#log(String[], long, long, boolean, boolean,
+ * org.tmatesoft.svn.core.ISVNLogEntryHandler)} with {@code strictNode} enabled, so the index ends at the revision
+ * which has created the node of the path. Instances are thread safe.
+ *
+ * @since 2.0.0
+ */
+final class SvnPathRevisionIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SvnPathRevisionIndex.class);
+
+  private static final long[] EMPTY = new long[0];
+
+  private final String path;
+
+  /** revisions in ascending order */
+  private long[] revisions = EMPTY;
+  private int size;
+  private long indexedRevision = -1;
+
+  /** revisions below belong to the history of a replaced node and are not indexed */
+  private long replacedBefore;
+
+  /**
+   * Creates an empty index for the given path.
+   *
+   * @param path path relative to the repository root, an empty string for the root
+   */
+  SvnPathRevisionIndex(String path) {
+    this.path = path;
+  }
+
+  /**
+   * Returns the number of revisions between the two revisions, which have changed the path. The index is extended up to
+   * the upper revision, if necessary.
+   *
+   * @param repository repository
+   * @param upperRevision highest revision (inclusive)
+   * @param lowerRevision lowest revision (inclusive)
+   *
+   * @return number of revisions
+   *
+   * @throws SVNException
+   */
+  synchronized int count(SVNRepository repository, long upperRevision, long lowerRevision) throws SVNException {
+    if (upperRevision < replacedBefore) {
+      return countWithoutIndex(repository, upperRevision, lowerRevision);
+    }
+    update(repository, upperRevision);
+    int from = position(lowerRevision);
+    int to = position(upperRevision + 1);
+    return Math.max(to - from, 0);
+  }
+
+  private int countWithoutIndex(SVNRepository repository, long upperRevision, long lowerRevision)
+    throws SVNException {
+    LOG.debug("count revisions of replaced node at path {} without index", path);
+    int[] count = {0};
+    repository.log(new String[]{path}, upperRevision, lowerRevision, false, true, 0, entry -> count[0]++);
+    return count[0];
+  }
+
+  private void update(SVNRepository repository, long upperRevision) throws SVNException {
+    if (upperRevision <= indexedRevision) {
+      return;
+    }
+    long startRevision = indexedRevision + 1;
+    LOG.trace("index revisions {} to {} of path {}", startRevision, upperRevision, path);
+
+    boolean root = path.isEmpty();
+    String absolutePath = "/".concat(path);
+    long[] created = {-1};
+
+    // the log is read in ascending order, because the start revision is lower than the end revision
+    repository.log(new String[]{path}, startRevision, upperRevision, !root, true, 0, entry -> {
+      if (!root && isCreation(entry, absolutePath)) {
+        created[0] = entry.getRevision();
+      }
+      append(entry.getRevision());
+    });
+
+    if (created[0] >= 0) {
+      // the node was replaced, the older revisions belong to the history of another node
+      dropBefore(created[0]);
+    }
+    indexedRevision = upperRevision;
+  }
+
+  private void append(long revision) {
+    if (size == revisions.length) {
+      revisions = Arrays.copyOf(revisions, Math.max(16, size * 2));
+    }
+    revisions[size++] = revision;
+  }
+
+  private void dropBefore(long revision) {
+    int from = position(revision);
+    if (from > 0) {
+      revisions = Arrays.copyOfRange(revisions, from, size);
+      size -= from;
+      replacedBefore = revision;
+    }
+  }
+
+  /**
+   * Returns the position of the first revision which is greater or equal than the given revision.
+   */
+  private int position(long revision) {
+    int index = Arrays.binarySearch(revisions, 0, size, revision);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  private static boolean isCreation(SVNLogEntry entry, String absolutePath) {
+    Map<String, SVNLogEntryPath> changedPaths = entry.getChangedPaths();
+    if (changedPaths == null) {
+      return false;
+    }
+    for (SVNLogEntryPath changedPath : changedPaths.values()) {
+      char type = changedPath.getType();
+      if ((type == SVNLogEntryPath.TYPE_ADDED || type == SVNLogEntryPath.TYPE_REPLACED)
+        && isSameOrParent(changedPath.getPath(), absolutePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSameOrParent(String changedPath, String absolutePath) {
+    return absolutePath.equals(changedPath)
+      || (absolutePath.startsWith(changedPath) && absolutePath.charAt(changedPath.length()) == '/');
+  }
+}
@@ -35,6 +35,7 @@ package sonia.scm.repository.spi;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closeables;
+import sonia.scm.cache.Cache;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.SvnRepositoryHandler;
 import sonia.scm.repository.SvnWorkDirFactory;
@@ -63,11 +64,13 @@ public class SvnRepositoryServiceProvider extends RepositoryServiceProvider
 
   @Inject
   SvnRepositoryServiceProvider(SvnRepositoryHandler handler,
-    Repository repository, SvnWorkDirFactory workdirFactory)
+    Repository repository, SvnWorkDirFactory workdirFactory,
+    Cache<String, SvnPathRevisionIndex> indexCache)
   {
     this.repository = repository;
     this.context = new SvnContext(repository, handler.getDirectory(repository.getId()));
     this.workDirFactory = workdirFactory;
+    this.indexCache = indexCache;
   }
 
   //~--- methods --------------------------------------------------------------
@@ -155,7 +158,7 @@ public class SvnRepositoryServiceProvider extends RepositoryServiceProvider
   @Override
   public SvnLogCommand getLogCommand()
   {
-    return new SvnLogCommand(context, repository);
+    return new SvnLogCommand(context, repository, indexCache);
   }
 
   public ModificationsCommand getModificationsCommand() {
@@ -199,4 +202,6 @@ public class SvnRepositoryServiceProvider extends RepositoryServiceProvider
   private final Repository repository;
 
   private final SvnWorkDirFactory workDirFactory;
+
+  private final Cache<String, SvnPathRevisionIndex> indexCache;
 }
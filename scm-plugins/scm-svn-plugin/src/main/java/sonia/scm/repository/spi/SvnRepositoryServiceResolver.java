@@ -33,6 +33,8 @@
 package sonia.scm.repository.spi;
 
 import com.google.inject.Inject;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.SvnRepositoryHandler;
@@ -43,11 +45,13 @@ public class SvnRepositoryServiceResolver implements RepositoryServiceResolver {
 
   private SvnRepositoryHandler handler;
   private SvnWorkDirFactory workdirFactory;
+  private Cache<String, SvnPathRevisionIndex> indexCache;
 
   @Inject
-  public SvnRepositoryServiceResolver(SvnRepositoryHandler handler, SvnWorkDirFactory workdirFactory) {
+  public SvnRepositoryServiceResolver(SvnRepositoryHandler handler, SvnWorkDirFactory workdirFactory, CacheManager cacheManager) {
     this.handler = handler;
     this.workdirFactory = workdirFactory;
+    this.indexCache = cacheManager.getCache(SvnLogCommand.INDEX_CACHE_NAME);
   }
 
   @Override
@@ -55,7 +59,7 @@ public class SvnRepositoryServiceResolver implements RepositoryServiceResolver {
     SvnRepositoryServiceProvider provider = null;
 
     if (SvnRepositoryHandler.TYPE_NAME.equalsIgnoreCase(repository.getType())) {
-      provider = new SvnRepositoryServiceProvider(handler, repository, workdirFactory);
+      provider = new SvnRepositoryServiceProvider(handler, repository, workdirFactory, indexCache);
     }
 
     return provider;
@@ -59,7 +59,6 @@ class SvnGZipFilter implements ScmProviderHttpServlet {
   SvnGZipFilter(SvnRepositoryHandler handler, ScmProviderHttpServlet delegate) {
     this.handler = handler;
     this.delegate = delegate;
-    config.setBufferResponse(false);
   }
 
   @Override
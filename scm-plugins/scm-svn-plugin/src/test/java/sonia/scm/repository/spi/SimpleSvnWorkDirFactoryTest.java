@@ -5,12 +5,19 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.wc2.SvnCheckout;
+import org.tmatesoft.svn.core.wc2.SvnCommit;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnScheduleForAddition;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.util.WorkdirProvider;
 import sonia.scm.repository.util.WorkingCopy;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -40,7 +47,7 @@ public class SimpleSvnWorkDirFactoryTest extends AbstractSvnCommandTestBase {
   }
 
   @Test
-  public void cloneFromPoolshouldNotBeReused() {
+  public void closedWorkingCopyShouldBeReused() {
     SimpleSvnWorkDirFactory factory = new SimpleSvnWorkDirFactory(workdirProvider);
 
     File firstDirectory;
@@ -49,23 +56,29 @@ public class SimpleSvnWorkDirFactoryTest extends AbstractSvnCommandTestBase {
     }
     try (WorkingCopy<File, File> workingCopy = factory.createWorkingCopy(createContext(), null)) {
       File secondDirectory = workingCopy.getDirectory();
-      assertThat(secondDirectory).isNotEqualTo(firstDirectory);
+      assertThat(secondDirectory).isEqualTo(firstDirectory);
     }
+    assertThat(factory.getStatistics().getHitCount()).isEqualTo(1);
   }
 
   @Test
-  public void shouldDeleteCloneOnClose() {
+  public void reusedWorkingCopyShouldBeRevertedCleanedAndUpdated() throws SVNException, IOException {
     SimpleSvnWorkDirFactory factory = new SimpleSvnWorkDirFactory(workdirProvider);
 
-    File directory;
-    File workingRepository;
     try (WorkingCopy<File, File> workingCopy = factory.createWorkingCopy(createContext(), null)) {
-      directory = workingCopy.getDirectory();
-      workingRepository = workingCopy.getWorkingRepository();
+      File directory = workingCopy.getWorkingRepository();
+      Files.write(new File(directory, "a.txt").toPath(), "modified".getBytes());
+      Files.write(new File(directory, "unversioned.txt").toPath(), "unversioned".getBytes());
+    }
+    commitNewFile("concurrent.txt", "committed by someone else");
 
+    try (WorkingCopy<File, File> workingCopy = factory.createWorkingCopy(createContext(), null)) {
+      File directory = workingCopy.getWorkingRepository();
+      assertThat(new File(directory, "a.txt")).hasContent("a and b\nline for blame test");
+      assertThat(new File(directory, "unversioned.txt")).doesNotExist();
+      assertThat(new File(directory, "concurrent.txt")).hasContent("committed by someone else");
     }
-    assertThat(directory).doesNotExist();
-    assertThat(workingRepository).doesNotExist();
+    assertThat(factory.getStatistics().getHitCount()).isEqualTo(1);
   }
 
   @Test
@@ -74,4 +87,28 @@ public class SimpleSvnWorkDirFactoryTest extends AbstractSvnCommandTestBase {
     Repository scmRepository = factory.getScmRepository(createContext());
     assertThat(scmRepository).isSameAs(repository);
   }
+
+  private void commitNewFile(String path, String content) throws SVNException, IOException {
+    File checkout = temporaryFolder.newFolder();
+    SvnOperationFactory operationFactory = new SvnOperationFactory();
+    try {
+      SvnCheckout svnCheckout = operationFactory.createCheckout();
+      svnCheckout.setSingleTarget(SvnTarget.fromFile(checkout));
+      svnCheckout.setSource(SvnTarget.fromURL(SVNURL.fromFile(createContext().getDirectory())));
+      svnCheckout.run();
+
+      File file = new File(checkout, path);
+      Files.write(file.toPath(), content.getBytes());
+      SvnScheduleForAddition add = operationFactory.createScheduleForAddition();
+      add.setSingleTarget(SvnTarget.fromFile(file));
+      add.run();
+
+      SvnCommit commit = operationFactory.createCommit();
+      commit.setSingleTarget(SvnTarget.fromFile(checkout));
+      commit.setCommitMessage("add " + path);
+      commit.run();
+    } finally {
+      operationFactory.dispose();
+    }
+  }
 }
@@ -36,6 +36,7 @@ package sonia.scm.repository.spi;
 
 import com.google.common.collect.Iterables;
 import org.junit.Test;
+import sonia.scm.cache.MapCache;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.Modifications;
@@ -177,6 +178,47 @@ public class SvnLogCommandTest extends AbstractSvnCommandTestBase
     assertEquals("1", c2.getId());
   }
 
+  @Test
+  public void testGetByPathWithPaging() {
+    LogCommandRequest request = new LogCommandRequest();
+
+    request.setPath("a.txt");
+    request.setPagingStart(1);
+    request.setPagingLimit(1);
+
+    ChangesetPagingResult result = createCommand().getChangesets(request);
+
+    assertNotNull(result);
+    assertEquals(3, result.getTotal());
+    assertEquals(1, result.getChangesets().size());
+    assertEquals("3", result.getChangesets().get(0).getId());
+  }
+
+  @Test
+  public void testGetByPathFromCachedIndex() {
+    MapCache<String, SvnPathRevisionIndex> cache = new MapCache<>();
+    LogCommandRequest request = new LogCommandRequest();
+
+    request.setPath("a.txt");
+    request.setStartChangeset("3");
+
+    SvnLogCommand command = new SvnLogCommand(createContext(), repository, cache);
+    ChangesetPagingResult result = command.getChangesets(request);
+
+    assertEquals(2, result.getTotal());
+    assertEquals("3", result.getChangesets().get(0).getId());
+    assertEquals(1, cache.size());
+
+    request.setStartChangeset(null);
+    request.setPagingLimit(1);
+    result = command.getChangesets(request);
+
+    assertEquals(3, result.getTotal());
+    assertEquals(1, result.getChangesets().size());
+    assertEquals("5", result.getChangesets().get(0).getId());
+    assertEquals(1, cache.size());
+  }
+
   /**
    * Method description
    *
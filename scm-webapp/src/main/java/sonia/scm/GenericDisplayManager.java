@@ -1,40 +1,37 @@
 package sonia.scm;
 
-import sonia.scm.search.SearchRequest;
-import sonia.scm.search.SearchUtil;
+import sonia.scm.search.SearchIndex;
 
 import java.util.Collection;
 import java.util.Optional;
 import java.util.function.Function;
 
 import static java.util.Optional.ofNullable;
-import static sonia.scm.group.DisplayGroup.from;
+import static java.util.stream.Collectors.toList;
 
 public abstract class GenericDisplayManager<D, T extends ReducedModelObject> implements DisplayManager<T> {
 
   private final GenericDAO<D> dao;
+  private final SearchIndex<D> index;
   private final Function<D, T> transform;
 
-  protected GenericDisplayManager(GenericDAO<D> dao, Function<D, T> transform) {
+  protected GenericDisplayManager(GenericDAO<D> dao, SearchIndex<D> index, Function<D, T> transform) {
     this.dao = dao;
+    this.index = index;
     this.transform = transform;
   }
 
   @Override
   public Collection<T> autocomplete(String filter) {
     checkPermission();
-    SearchRequest searchRequest = new SearchRequest(filter, true, DEFAULT_LIMIT);
-    return SearchUtil.search(
-      searchRequest,
-      dao.getAll(),
-      object -> matches(searchRequest, object)? transform.apply(object): null
-    );
+    return index.search(filter, DEFAULT_LIMIT, object -> true)
+      .stream()
+      .map(transform)
+      .collect(toList());
   }
 
   protected abstract void checkPermission();
 
-  protected abstract boolean matches(SearchRequest searchRequest, D object);
-
   @Override
   public Optional<T> get(String id) {
     return ofNullable(dao.get(id)).map(transform);
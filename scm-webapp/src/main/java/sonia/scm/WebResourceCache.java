@@ -0,0 +1,390 @@
+package sonia.scm;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.filter.GZipFilterConfig;
+import sonia.scm.plugin.PluginLoader;
+import sonia.scm.plugin.UberWebResourceLoader;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fingerprints and precompressed variants of the resources of the {@link UberWebResourceLoader}. The fingerprint of a
+ * resource is a hash of its content, which is used as strong entity tag and to create urls which never change their
+ * content. The gzip variant of a compressible resource is created once and is stored content addressed in the cache
+ * directory, so that it survives restarts. A brotli variant is used, if the resource loader provides it as resource
+ * with the additional extension {@code .br}.
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class WebResourceCache {
+
+  /** name of the query parameter which carries the fingerprint of a resource */
+  public static final String FINGERPRINT_PARAMETER = "v";
+
+  @VisibleForTesting
+  static final String DIRECTORY = "cache/webresources";
+
+  private static final Logger LOG = LoggerFactory.getLogger(WebResourceCache.class);
+
+  private static final int FINGERPRINT_LENGTH = 20;
+  private static final int MIN_COMPRESSION_LENGTH = 512;
+  private static final String GZIP_EXTENSION = ".gz";
+  private static final String BROTLI_EXTENSION = ".br";
+
+  private static final Map<String, String> CONTENT_TYPES = ImmutableMap.<String, String>builder()
+    .put("html", "text/html")
+    .put("css", "text/css")
+    .put("js", "application/javascript")
+    .put("map", "application/json")
+    .put("json", "application/json")
+    .put("svg", "image/svg+xml")
+    .put("txt", "text/plain")
+    .put("xml", "application/xml")
+    .put("png", "image/png")
+    .put("jpg", "image/jpeg")
+    .put("gif", "image/gif")
+    .put("ico", "image/x-icon")
+    .put("woff", "font/woff")
+    .put("woff2", "font/woff2")
+    .put("ttf", "font/ttf")
+    .put("eot", "application/vnd.ms-fontobject")
+    .build();
+
+  private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+  private final UberWebResourceLoader webResourceLoader;
+  private final File directory;
+  private final GZipFilterConfig compression = new GZipFilterConfig();
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  @Inject
+  public WebResourceCache(PluginLoader pluginLoader, SCMContextProvider context) {
+    this(pluginLoader.getUberWebResourceLoader(), new File(context.getBaseDirectory(), DIRECTORY));
+  }
+
+  /**
+   * Creates a new cache.
+   *
+   * @param webResourceLoader resource loader
+   * @param directory directory for the compressed variants, {@code null} disables the compressed variants
+   */
+  @VisibleForTesting
+  WebResourceCache(UberWebResourceLoader webResourceLoader, File directory) {
+    this.webResourceLoader = webResourceLoader;
+    this.directory = directory;
+  }
+
+  /**
+   * Appends the fingerprint of the resource as query parameter to the path. A fingerprinted url can be cached
+   * forever, because it changes with the content of the resource. The path is returned unchanged, if the resource
+   * does not exist or could not be read.
+   *
+   * @param path path of the resource
+   *
+   * @return path with fingerprint
+   */
+  public String fingerprint(String path) {
+    URL url = webResourceLoader.getResource(path);
+    if (url == null) {
+      return path;
+    }
+    try {
+      return path + "?" + FINGERPRINT_PARAMETER + "=" + get(path, url).getFingerprint();
+    } catch (IOException ex) {
+      LOG.warn("could not create fingerprint of {}", path, ex);
+      return path;
+    }
+  }
+
+  /**
+   * Returns the cached entry of the resource. The entry is created with the first request of the resource and is
+   * recreated if the file of the resource was modified.
+   *
+   * @param path path of the resource
+   * @param url url of the resource
+   *
+   * @return cache entry
+   *
+   * @throws IOException if the resource could not be read
+   */
+  Entry get(String path, URL url) throws IOException {
+    String key = path.startsWith("/") ? path : "/".concat(path);
+    Entry entry = entries.get(key);
+    long lastModified = lastModified(url);
+    if (entry == null || !entry.url.toExternalForm().equals(url.toExternalForm()) || entry.lastModified != lastModified) {
+      entry = create(path, url, lastModified);
+      entries.put(key, entry);
+    }
+    return entry;
+  }
+
+  private Entry create(String path, URL url, long lastModified) throws IOException {
+    LOG.debug("create fingerprint of web resource {}", path);
+    Hasher hasher = Hashing.sha256().newHasher();
+    long length = 0;
+    byte[] buffer = new byte[8192];
+    try (InputStream input = url.openStream()) {
+      int read = input.read(buffer);
+      while (read >= 0) {
+        hasher.putBytes(buffer, 0, read);
+        length += read;
+        read = input.read(buffer);
+      }
+    }
+
+    String fingerprint = hasher.hash().toString().substring(0, FINGERPRINT_LENGTH);
+    String contentType = contentType(path);
+
+    File gzip = null;
+    if (directory != null && length >= MIN_COMPRESSION_LENGTH && compression.isCompressible(contentType)) {
+      try {
+        gzip = compress(url, fingerprint);
+      } catch (IOException ex) {
+        LOG.warn("could not create compressed variant of {}", path, ex);
+      }
+    }
+
+    long modified = lastModified > 0 ? lastModified : connectionLastModified(url);
+    return new Entry(url, lastModified, modified, fingerprint, contentType, length, gzip,
+      webResourceLoader.getResource(path + BROTLI_EXTENSION));
+  }
+
+  /**
+   * Deletes the compressed variants from the cache directory, which do not belong to a resource of the cache. The
+   * fingerprints of the resources change with every upgrade of a plugin, so the variants of the old versions would
+   * pile up otherwise. Files which were created after the given time are kept, because they could belong to a
+   * resource which is added to the cache right now.
+   *
+   * @param createdBefore only files which were modified before this time are deleted
+   */
+  void prune(long createdBefore) {
+    File[] files = directory != null ? directory.listFiles() : null;
+    if (files == null) {
+      return;
+    }
+    Set<String> current = entries.values().stream()
+      .filter(entry -> entry.gzip != null)
+      .map(entry -> entry.gzip.getName())
+      .collect(Collectors.toSet());
+    int count = 0;
+    for (File file : files) {
+      if (file.isFile() && !current.contains(file.getName()) && file.lastModified() < createdBefore) {
+        try {
+          Files.delete(file.toPath());
+          count++;
+        } catch (IOException ex) {
+          LOG.warn("could not delete outdated compressed web resource {}", file, ex);
+        }
+      }
+    }
+    LOG.debug("deleted {} outdated compressed web resources", count);
+  }
+
+  private File compress(URL url, String fingerprint) throws IOException {
+    File file = new File(directory, fingerprint + GZIP_EXTENSION);
+    if (file.exists()) {
+      return file;
+    }
+    if (!directory.exists() && !directory.mkdirs()) {
+      LOG.warn("could not create directory {} for compressed web resources", directory);
+      return null;
+    }
+    File temp = File.createTempFile(fingerprint, ".tmp", directory);
+    try {
+      try (InputStream input = url.openStream();
+           OutputStream output = new GZIPOutputStream(new FileOutputStream(temp), 8192)) {
+        ByteStreams.copy(input, output);
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+    return file;
+  }
+
+  private long lastModified(URL url) {
+    if ("file".equals(url.getProtocol())) {
+      try {
+        return Paths.get(url.toURI()).toFile().lastModified();
+      } catch (URISyntaxException | IllegalArgumentException ex) {
+        LOG.trace("could not resolve file of {}", url, ex);
+      }
+    }
+    return 0L;
+  }
+
+  private long connectionLastModified(URL url) {
+    try {
+      URLConnection connection = url.openConnection();
+      // jar connections keep the jar file open for the cached jar url, the input stream closes it otherwise
+      connection.setUseCaches(false);
+      long lastModified = connection.getLastModified();
+      connection.getInputStream().close();
+      return lastModified;
+    } catch (IOException ex) {
+      LOG.trace("could not read last modification time of {}", url, ex);
+      return 0L;
+    }
+  }
+
+  private String contentType(String path) {
+    int index = path.lastIndexOf('.');
+    if (index >= 0) {
+      String contentType = CONTENT_TYPES.get(path.substring(index + 1).toLowerCase(Locale.ENGLISH));
+      if (contentType != null) {
+        return contentType;
+      }
+    }
+    String guessed = URLConnection.guessContentTypeFromName(path);
+    return guessed != null ? guessed : DEFAULT_CONTENT_TYPE;
+  }
+
+  /**
+   * Fingerprint and variants of a single resource.
+   */
+  static final class Entry {
+
+    private final URL url;
+    private final long lastModified;
+    private final long modified;
+    private final String fingerprint;
+    private final String contentType;
+    private final long length;
+    private final File gzip;
+    private final URL brotli;
+
+    private Entry(URL url, long lastModified, long modified, String fingerprint, String contentType, long length,
+                  File gzip, URL brotli) {
+      this.url = url;
+      this.lastModified = lastModified;
+      this.modified = modified;
+      this.fingerprint = fingerprint;
+      this.contentType = contentType;
+      this.length = length;
+      this.gzip = gzip;
+      this.brotli = brotli;
+    }
+
+    String getFingerprint() {
+      return fingerprint;
+    }
+
+    String getContentType() {
+      return contentType;
+    }
+
+    /**
+     * Returns the time of the last modification of the resource or 0, if it is unknown.
+     */
+    long getLastModified() {
+      return modified;
+    }
+
+    boolean hasVariants() {
+      return gzip != null || brotli != null;
+    }
+
+    /**
+     * Selects the best variant of the resource for the accepted encodings of the client.
+     *
+     * @param acceptEncoding value of the accept encoding header, may be {@code null}
+     *
+     * @return selected variant
+     */
+    Variant select(String acceptEncoding) {
+      if (acceptEncoding != null) {
+        if (brotli != null && accepts(acceptEncoding, "br")) {
+          return new Variant("br", brotli, -1);
+        }
+        if (gzip != null && gzip.exists() && accepts(acceptEncoding, "gzip")) {
+          try {
+            return new Variant("gzip", gzip.toURI().toURL(), gzip.length());
+          } catch (IOException ex) {
+            LOG.warn("could not use compressed variant {}", gzip, ex);
+          }
+        }
+      }
+      return new Variant(null, url, length);
+    }
+
+    private static boolean accepts(String acceptEncoding, String encoding) {
+      for (String part : acceptEncoding.split(",")) {
+        String[] values = part.trim().split(";");
+        if (encoding.equalsIgnoreCase(values[0].trim()) && !isRejected(values)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static boolean isRejected(String[] values) {
+      for (int i = 1; i < values.length; i++) {
+        String value = values[i].replace(" ", "");
+        if (value.matches("q=0(\\.0*)?")) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Representation of a resource with its content encoding.
+   */
+  static final class Variant {
+
+    private final String encoding;
+    private final URL url;
+    private final long length;
+
+    private Variant(String encoding, URL url, long length) {
+      this.encoding = encoding;
+      this.url = url;
+      this.length = length;
+    }
+
+    /**
+     * Returns the content encoding or {@code null} for the identity encoding.
+     */
+    String getEncoding() {
+      return encoding;
+    }
+
+    /**
+     * Returns the length of the variant or -1 if it is unknown.
+     */
+    long getLength() {
+      return length;
+    }
+
+    InputStream open() throws IOException {
+      return url.openStream();
+    }
+  }
+}
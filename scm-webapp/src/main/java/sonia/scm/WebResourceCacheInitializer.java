@@ -0,0 +1,68 @@
+package sonia.scm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.plugin.Extension;
+import sonia.scm.plugin.InstalledPlugin;
+import sonia.scm.plugin.PluginLoader;
+import sonia.scm.plugin.PluginResources;
+
+import javax.inject.Inject;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.util.Set;
+
+/**
+ * Creates the fingerprints and compressed variants of the ui bundles of all installed plugins on startup, so that the
+ * first page load does not have to wait for them. Afterwards the compressed variants of outdated resources, e.g. of
+ * a previous version of a plugin, are deleted. The work is done in a background thread.
+ *
+ * @since 2.0.0
+ */
+@Extension
+public class WebResourceCacheInitializer implements ServletContextListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WebResourceCacheInitializer.class);
+
+  private final PluginLoader pluginLoader;
+  private final WebResourceCache cache;
+
+  @Inject
+  public WebResourceCacheInitializer(PluginLoader pluginLoader, WebResourceCache cache) {
+    this.pluginLoader = pluginLoader;
+    this.cache = cache;
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    Thread thread = new Thread(this::initialize, "WebResourceCacheInitializer");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  private void initialize() {
+    long start = System.currentTimeMillis();
+    LOG.debug("initialize web resource cache");
+    for (InstalledPlugin plugin : pluginLoader.getInstalledPlugins()) {
+      PluginResources resources = plugin.getDescriptor().getResources();
+      if (resources != null) {
+        initialize(resources.getScriptResources());
+        initialize(resources.getStylesheetResources());
+      }
+    }
+    cache.prune(start);
+    LOG.debug("web resource cache initialized");
+  }
+
+  private void initialize(Set<String> paths) {
+    if (paths != null) {
+      paths.forEach(cache::fingerprint);
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    // nothing to do
+  }
+}
@@ -1,8 +1,8 @@
 package sonia.scm;
 
-import com.github.sdorra.webresources.CacheControl;
-import com.github.sdorra.webresources.WebResourceSender;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteStreams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sonia.scm.filter.WebElement;
@@ -16,10 +16,16 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 
 /**
- * WebResourceServlet serves resources from the {@link UberWebResourceLoader}.
+ * WebResourceServlet serves resources from the {@link UberWebResourceLoader}. Every resource is served with its
+ * fingerprint as strong entity tag and with the time of its last modification, so that unchanged resources are
+ * answered with 304 for clients using either of the validators. Requests with the current fingerprint in the url are
+ * cached forever by the browser. Compressed variants are taken from the {@link WebResourceCache} instead of
+ * compressing the resource with every request.
  *
  * @since 2.0.0
  */
@@ -42,19 +48,27 @@ public class WebResourceServlet extends HttpServlet {
 
   private static final Logger LOG = LoggerFactory.getLogger(WebResourceServlet.class);
 
-  private final WebResourceSender sender = WebResourceSender.create()
-    .withGZIP()
-    .withGZIPMinLength(512)
-    .withBufferSize(16384)
-    .withCacheControl(CacheControl.create().noCache());
+  @VisibleForTesting
+  static final String CACHE_CONTROL_IMMUTABLE = "public, max-age=31536000, immutable";
+
+  @VisibleForTesting
+  static final String CACHE_CONTROL_REVALIDATE = "no-cache";
+
+  private static final int BUFFER_SIZE = 16384;
 
   private final UberWebResourceLoader webResourceLoader;
   private final PushStateDispatcher pushStateDispatcher;
+  private final WebResourceCache cache;
 
-  @Inject
   public WebResourceServlet(PluginLoader pluginLoader, PushStateDispatcher dispatcher) {
+    this(pluginLoader, dispatcher, new WebResourceCache(pluginLoader.getUberWebResourceLoader(), null));
+  }
+
+  @Inject
+  public WebResourceServlet(PluginLoader pluginLoader, PushStateDispatcher dispatcher, WebResourceCache cache) {
     this.webResourceLoader = pluginLoader.getUberWebResourceLoader();
     this.pushStateDispatcher = dispatcher;
+    this.cache = cache;
   }
 
   @Override
@@ -65,7 +79,7 @@ public class WebResourceServlet extends HttpServlet {
     URL url = webResourceLoader.getResource(uri);
     if (url != null) {
       LOG.trace("found {} -- serve as resource {}", uri, url);
-      serveResource(request, response, url);
+      serveResource(request, response, uri, url);
     } else {
       LOG.trace("could not find {} -- dispatch", uri);
       dispatch(request, response, uri);
@@ -85,14 +99,107 @@ public class WebResourceServlet extends HttpServlet {
     return HttpUtil.getStrippedURI(request);
   }
 
-  private void serveResource(HttpServletRequest request, HttpServletResponse response, URL url) {
+  private void serveResource(HttpServletRequest request, HttpServletResponse response, String uri, URL url) {
     try {
-      LOG.debug("using sender to serve {}", request.getRequestURI());
-      sender.resource(url).send(request, response);
+      WebResourceCache.Entry entry = cache.get(uri, url);
+      String fingerprint = entry.getFingerprint();
+
+      response.setHeader("Cache-Control", isFingerprinted(request, fingerprint)
+        ? CACHE_CONTROL_IMMUTABLE : CACHE_CONTROL_REVALIDATE);
+      if (entry.hasVariants()) {
+        response.addHeader("Vary", "Accept-Encoding");
+      }
+
+      WebResourceCache.Variant variant = entry.select(request.getHeader("Accept-Encoding"));
+      response.setHeader("ETag", etag(fingerprint, variant));
+      long lastModified = entry.getLastModified();
+      if (lastModified > 0) {
+        response.setDateHeader("Last-Modified", lastModified);
+      }
+      if (isNotModified(request, fingerprint, lastModified)) {
+        LOG.trace("resource {} is not modified", uri);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+
+      LOG.debug("serve resource {} with encoding {}", uri, variant.getEncoding());
+      send(response, entry, variant);
     } catch (IOException ex) {
       LOG.warn("failed to serve resource: {}", url);
       response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
     }
   }
 
+  private void send(HttpServletResponse response, WebResourceCache.Entry entry, WebResourceCache.Variant variant)
+    throws IOException {
+    try (InputStream input = variant.open()) {
+      response.setContentType(entry.getContentType());
+      if (variant.getEncoding() != null) {
+        response.setHeader("Content-Encoding", variant.getEncoding());
+      }
+      if (variant.getLength() >= 0) {
+        // setContentLengthLong is not available with servlet api 3.0
+        response.setHeader("Content-Length", Long.toString(variant.getLength()));
+      }
+      response.setBufferSize(BUFFER_SIZE);
+      OutputStream output = response.getOutputStream();
+      ByteStreams.copy(input, output);
+      output.flush();
+    }
+  }
+
+  private boolean isFingerprinted(HttpServletRequest request, String fingerprint) {
+    return fingerprint.equals(request.getParameter(WebResourceCache.FINGERPRINT_PARAMETER));
+  }
+
+  private String etag(String fingerprint, WebResourceCache.Variant variant) {
+    // every representation needs its own strong entity tag
+    if (variant.getEncoding() != null) {
+      return "\"" + fingerprint + "-" + variant.getEncoding() + "\"";
+    }
+    return "\"" + fingerprint + "\"";
+  }
+
+  private boolean isNotModified(HttpServletRequest request, String fingerprint, long lastModified) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      // the entity tag is the stronger validator, so If-Modified-Since is ignored if both are sent
+      return isNotModified(ifNoneMatch, fingerprint);
+    }
+    return lastModified > 0 && isNotModifiedSince(request, lastModified);
+  }
+
+  private boolean isNotModifiedSince(HttpServletRequest request, long lastModified) {
+    long ifModifiedSince;
+    try {
+      ifModifiedSince = request.getDateHeader("If-Modified-Since");
+    } catch (IllegalArgumentException ex) {
+      LOG.trace("ignore invalid If-Modified-Since header", ex);
+      return false;
+    }
+    // http dates have a precision of seconds
+    return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /**
+   * The encoding of the client could have been changed, so every entity tag of the resource matches.
+   */
+  @VisibleForTesting
+  static boolean isNotModified(String ifNoneMatch, String fingerprint) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String value : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+      if ("*".equals(value)) {
+        return true;
+      }
+      String tag = value.startsWith("W/") ? value.substring(2) : value;
+      tag = tag.replace("\"", "");
+      if (tag.equals(fingerprint) || tag.startsWith(fingerprint + "-")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
 }
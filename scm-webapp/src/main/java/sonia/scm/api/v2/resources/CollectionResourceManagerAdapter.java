@@ -62,11 +62,8 @@ class CollectionResourceManagerAdapter<MODEL_OBJECT extends ModelObject,
   }
 
   private Comparator<MODEL_OBJECT> createComparator(String sortBy, boolean desc) {
-    Comparator<MODEL_OBJECT> comparator = Comparables.comparator(type, sortBy);
-    if (desc) {
-      comparator = comparator.reversed();
-    }
-    return comparator;
+    // keep property and direction visible, so that managers are able to use an index
+    return Comparables.comparator(type, sortBy, desc);
   }
 
   /**
@@ -31,6 +31,7 @@ public class DiffResultDto extends HalRepresentation {
     private String oldMode;
     private String type;
     private String language;
+    private boolean truncated;
     private List<HunkDto> hunks;
 
   }
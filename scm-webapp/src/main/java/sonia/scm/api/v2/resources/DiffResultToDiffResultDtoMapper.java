@@ -88,6 +88,8 @@ class DiffResultToDiffResultDtoMapper {
       hunks.add(mapHunk(hunk));
     }
     dto.setHunks(hunks);
+    // the file knows whether its hunks were truncated only after they were parsed
+    dto.setTruncated(file.isTruncated());
 
     return dto;
   }
@@ -0,0 +1,28 @@
+package sonia.scm.api.v2.resources;
+
+import de.otto.edison.hal.HalRepresentation;
+import de.otto.edison.hal.Links;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+public class HealthCheckProgressDto extends HalRepresentation {
+
+  private boolean running;
+  private int total;
+  private int completed;
+  private int unhealthy;
+  private Instant started;
+  private Instant finished;
+
+  public HealthCheckProgressDto(boolean running, int total, int completed, int unhealthy, Instant started, Instant finished, Links links) {
+    super(links);
+    this.running = running;
+    this.total = total;
+    this.completed = completed;
+    this.unhealthy = unhealthy;
+    this.started = started;
+    this.finished = finished;
+  }
+}
@@ -0,0 +1,111 @@
+package sonia.scm.api.v2.resources;
+
+import de.otto.edison.hal.Links;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import sonia.scm.repository.HealthCheckProgress;
+import sonia.scm.repository.HealthChecker;
+import sonia.scm.repository.RepositoryPermissions;
+import sonia.scm.web.VndMediaType;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.time.Instant;
+
+/**
+ * RESTFul WebService Endpoint for the health check of all repositories.
+ */
+@Path(HealthCheckResource.PATH)
+public class HealthCheckResource {
+
+  static final String PATH = "v2/health-check";
+
+  private final HealthChecker healthChecker;
+
+  @Inject
+  public HealthCheckResource(HealthChecker healthChecker) {
+    this.healthChecker = healthChecker;
+  }
+
+  /**
+   * Returns the progress of the running or the last health check of all repositories.
+   *
+   * @param uriInfo uri info
+   *
+   * @return progress of the health check
+   */
+  @GET
+  @Path("")
+  @Produces(VndMediaType.HEALTH_CHECK_PROGRESS)
+  @Operation(summary = "Health check progress", description = "Returns the progress of the health check of all repositories.", tags = "Repository")
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = VndMediaType.HEALTH_CHECK_PROGRESS,
+      schema = @Schema(implementation = HealthCheckProgressDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to run health checks for all repositories")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public HealthCheckProgressDto get(@Context UriInfo uriInfo) {
+    RepositoryPermissions.healthCheck("*").check();
+
+    HealthCheckProgress progress = healthChecker.getProgress();
+    return new HealthCheckProgressDto(
+      progress.isRunning(),
+      progress.getTotal(),
+      progress.getCompleted(),
+      progress.getUnhealthy(),
+      toInstant(progress.getStarted()),
+      toInstant(progress.getFinished()),
+      Links.linkingTo().self(uriInfo.getAbsolutePath().toASCIIString()).build()
+    );
+  }
+
+  /**
+   * Starts the health check of all repositories in the background.
+   *
+   * @return accepted response
+   */
+  @POST
+  @Path("")
+  @Operation(summary = "Start health check", description = "Starts the health check of all repositories in the background.", tags = "Repository")
+  @ApiResponse(responseCode = "202", description = "health check started")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to run health checks for all repositories")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response start() {
+    RepositoryPermissions.healthCheck("*").check();
+
+    healthChecker.startCheckAll();
+    return Response.accepted().build();
+  }
+
+  private Instant toInstant(long millis) {
+    return millis > 0 ? Instant.ofEpochMilli(millis) : null;
+  }
+}
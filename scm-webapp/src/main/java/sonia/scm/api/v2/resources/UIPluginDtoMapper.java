@@ -2,6 +2,7 @@ package sonia.scm.api.v2.resources;
 
 import com.google.common.base.Strings;
 import de.otto.edison.hal.Links;
+import sonia.scm.WebResourceCache;
 import sonia.scm.plugin.InstalledPlugin;
 import sonia.scm.util.HttpUtil;
 
@@ -18,11 +19,17 @@ public class UIPluginDtoMapper {
 
   private final ResourceLinks resourceLinks;
   private final HttpServletRequest request;
+  private final WebResourceCache webResourceCache;
 
-  @Inject
   public UIPluginDtoMapper(ResourceLinks resourceLinks, HttpServletRequest request) {
+    this(resourceLinks, request, null);
+  }
+
+  @Inject
+  public UIPluginDtoMapper(ResourceLinks resourceLinks, HttpServletRequest request, WebResourceCache webResourceCache) {
     this.resourceLinks = resourceLinks;
     this.request = request;
+    this.webResourceCache = webResourceCache;
   }
 
   public UIPluginDto map(InstalledPlugin plugin) {
@@ -44,12 +51,20 @@ public class UIPluginDtoMapper {
     Set<String> scriptResources = wrapper.getDescriptor().getResources().getScriptResources();
     if (scriptResources != null) {
       return scriptResources.stream()
+        .map(this::addFingerprint)
         .map(this::addContextPath)
         .collect(Collectors.toSet());
     }
     return Collections.emptySet();
   }
 
+  private String addFingerprint(String resource) {
+    if (webResourceCache == null) {
+      return resource;
+    }
+    return webResourceCache.fingerprint(resource);
+  }
+
   private String addContextPath(String resource) {
     String ctxPath = request.getContextPath();
     if (Strings.isNullOrEmpty(ctxPath)) {
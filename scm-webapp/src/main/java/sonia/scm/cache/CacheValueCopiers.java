@@ -0,0 +1,138 @@
+package sonia.scm.cache;
+
+import com.google.common.collect.ImmutableSet;
+import sonia.scm.io.DeepCopy;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the {@link CacheValueCopier}s. The registry resolves the copy method of a value by its type:
+ * <ol>
+ *   <li>values implementing {@link ImmutableCacheValue} and well known immutable types are not copied at all</li>
+ *   <li>values of a type with a registered copier, or a subtype of it, are copied by the most specific copier</li>
+ *   <li>all other values are copied with a serialization based {@link DeepCopy}</li>
+ * </ol>
+ * The resolved copy method is remembered per type, so that the lookup is done only once for each type.
+ *
+ * @since 2.0.0
+ */
+public final class CacheValueCopiers {
+
+  private static final CacheValueCopiers DEFAULT = new CacheValueCopiers(ImmutableSet.of());
+
+  private static final Set<Class<?>> IMMUTABLE_TYPES = ImmutableSet.of(
+    String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+    Double.class, Class.class
+  );
+
+  private static final CacheValueCopier<Object> IDENTITY = new TypedCopier<Object>(Object.class) {
+    @Override
+    public Object copy(Object value) {
+      return value;
+    }
+  };
+
+  private static final CacheValueCopier<Object> SERIALIZATION = new TypedCopier<Object>(Object.class) {
+    @Override
+    public Object copy(Object value) {
+      try {
+        return DeepCopy.copy(value);
+      } catch (IOException ex) {
+        throw new CacheException("could not create a copy of ".concat(value.toString()), ex);
+      }
+    }
+  };
+
+  private final Map<Class<?>, CacheValueCopier<?>> registered = new HashMap<>();
+  private final ConcurrentMap<Class<?>, CacheValueCopier<Object>> resolved = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new registry for the given copiers.
+   *
+   * @param copiers registered copiers
+   */
+  public CacheValueCopiers(Set<CacheValueCopier> copiers) {
+    for (CacheValueCopier<?> copier : copiers) {
+      registered.put(copier.getType(), copier);
+    }
+  }
+
+  /**
+   * Returns the registry without any registered copier.
+   *
+   * @return default registry
+   */
+  public static CacheValueCopiers defaults() {
+    return DEFAULT;
+  }
+
+  /**
+   * Returns {@code true} if values of the given type are shared without a copy.
+   *
+   * @param type type of the value
+   *
+   * @return {@code true} if the type is immutable
+   */
+  public boolean isImmutable(Class<?> type) {
+    return resolve(type) == IDENTITY;
+  }
+
+  /**
+   * Creates a copy of the value with the copier of its type.
+   *
+   * @param value value to copy
+   * @param <T> type of value
+   *
+   * @return copy of the value or the value itself, if it is immutable
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T copy(T value) {
+    if (value == null) {
+      return null;
+    }
+    return (T) resolve(value.getClass()).copy(value);
+  }
+
+  private CacheValueCopier<Object> resolve(Class<?> type) {
+    return resolved.computeIfAbsent(type, this::lookup);
+  }
+
+  @SuppressWarnings("unchecked")
+  private CacheValueCopier<Object> lookup(Class<?> type) {
+    if (ImmutableCacheValue.class.isAssignableFrom(type) || Enum.class.isAssignableFrom(type)
+      || IMMUTABLE_TYPES.contains(type)) {
+      return IDENTITY;
+    }
+    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+      CacheValueCopier<?> copier = registered.get(c);
+      if (copier != null) {
+        return (CacheValueCopier<Object>) copier;
+      }
+    }
+    for (Map.Entry<Class<?>, CacheValueCopier<?>> e : registered.entrySet()) {
+      if (e.getKey().isAssignableFrom(type)) {
+        return (CacheValueCopier<Object>) e.getValue();
+      }
+    }
+    return SERIALIZATION;
+  }
+
+  private abstract static class TypedCopier<T> implements CacheValueCopier<T> {
+
+    private final Class<T> type;
+
+    private TypedCopier(Class<T> type) {
+      this.type = type;
+    }
+
+    @Override
+    public Class<T> getType() {
+      return type;
+    }
+  }
+}
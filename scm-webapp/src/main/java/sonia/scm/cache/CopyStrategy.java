@@ -32,17 +32,14 @@
 
 package sonia.scm.cache;
 
-//~--- non-JDK imports --------------------------------------------------------
-
-import sonia.scm.io.DeepCopy;
-
 //~--- JDK imports ------------------------------------------------------------
 
-import java.io.IOException;
-
 import java.util.Locale;
 
 /**
+ * Defines when a cache creates copies of its values. The copies are created
+ * by the {@link CacheValueCopiers}, values which implement
+ * {@link ImmutableCacheValue} are never copied.
  *
  * @author Sebastian Sdorra
  */
@@ -85,34 +82,68 @@ public enum CopyStrategy
   }
 
   /**
-   * Method description
+   * Returns a copy of the object, if the strategy copies on read.
    *
    *
-   * @param object
-   * @param <T>
+   * @param object object to copy
+   * @param <T> type of object
    *
-   * @return
+   * @return copy of the object or the object itself
    */
   public <T> T copyOnRead(T object)
+  {
+    return copyOnRead(object, CacheValueCopiers.defaults());
+  }
+
+  /**
+   * Returns a copy of the object, if the strategy copies on read.
+   *
+   *
+   * @param object object to copy
+   * @param copiers copiers used to create the copy
+   * @param <T> type of object
+   *
+   * @return copy of the object or the object itself
+   *
+   * @since 2.0.0
+   */
+  public <T> T copyOnRead(T object, CacheValueCopiers copiers)
   {
     return copyOnRead
-      ? deepCopy(object)
+      ? copiers.copy(object)
       : object;
   }
 
   /**
-   * Method description
+   * Returns a copy of the object, if the strategy copies on write.
    *
    *
-   * @param object
-   * @param <T>
+   * @param object object to copy
+   * @param <T> type of object
    *
-   * @return
+   * @return copy of the object or the object itself
    */
   public <T> T copyOnWrite(T object)
+  {
+    return copyOnWrite(object, CacheValueCopiers.defaults());
+  }
+
+  /**
+   * Returns a copy of the object, if the strategy copies on write.
+   *
+   *
+   * @param object object to copy
+   * @param copiers copiers used to create the copy
+   * @param <T> type of object
+   *
+   * @return copy of the object or the object itself
+   *
+   * @since 2.0.0
+   */
+  public <T> T copyOnWrite(T object, CacheValueCopiers copiers)
   {
     return copyOnWrite
-      ? deepCopy(object)
+      ? copiers.copy(object)
       : object;
   }
 
@@ -129,32 +160,30 @@ public enum CopyStrategy
     return configName;
   }
 
-  //~--- methods --------------------------------------------------------------
+  /**
+   * Returns {@code true} if the strategy copies values on read.
+   *
+   *
+   * @return {@code true} if values are copied on read
+   *
+   * @since 2.0.0
+   */
+  public boolean isCopyOnRead()
+  {
+    return copyOnRead;
+  }
 
   /**
-   * Method description
+   * Returns {@code true} if the strategy copies values on write.
    *
    *
-   * @param object
-   * @param <T>
+   * @return {@code true} if values are copied on write
    *
-   * @return
+   * @since 2.0.0
    */
-  private <T> T deepCopy(T object)
+  public boolean isCopyOnWrite()
   {
-    T copy = null;
-
-    try
-    {
-      copy = DeepCopy.copy(object);
-    }
-    catch (IOException ex)
-    {
-      throw new CacheException(
-        "could not create a copy of ".concat(object.toString()), ex);
-    }
-
-    return copy;
+    return copyOnWrite;
   }
 
   //~--- fields ---------------------------------------------------------------
@@ -85,10 +85,26 @@ public class GuavaCache<K, V>
    * @param configuration
    * @param name
    */
-  @SuppressWarnings("unchecked")
   public GuavaCache(GuavaCacheConfiguration configuration, String name)
   {
-    this(GuavaCaches.create(configuration, name), configuration.getCopyStrategy(), name);
+    this(configuration, name, CacheValueCopiers.defaults());
+  }
+
+  /**
+   * Constructs a new cache, which uses the given copiers to copy its values.
+   *
+   *
+   * @param configuration configuration of the cache
+   * @param name name of the cache
+   * @param copiers copiers for the values of the cache
+   *
+   * @since 2.0.0
+   */
+  @SuppressWarnings("unchecked")
+  public GuavaCache(GuavaCacheConfiguration configuration, String name,
+    CacheValueCopiers copiers)
+  {
+    this(GuavaCaches.create(configuration, name), configuration.getCopyStrategy(), copiers, name);
   }
 
   /**
@@ -102,8 +118,25 @@ public class GuavaCache<K, V>
   @VisibleForTesting
   protected GuavaCache(com.google.common.cache.Cache<K, V> cache,
     CopyStrategy copyStrategy, String name)
+  {
+    this(cache, copyStrategy, CacheValueCopiers.defaults(), name);
+  }
+
+  /**
+   * Constructs ...
+   *
+   *
+   * @param cache
+   * @param copyStrategy
+   * @param copiers
+   * @param name
+   */
+  @VisibleForTesting
+  protected GuavaCache(com.google.common.cache.Cache<K, V> cache,
+    CopyStrategy copyStrategy, CacheValueCopiers copiers, String name)
   {
     this.cache = cache;
+    this.copiers = copiers;
     this.name = name;
 
     if (copyStrategy != null)
@@ -173,7 +206,9 @@ public class GuavaCache<K, V>
   {
     V previous = cache.getIfPresent(key);
 
-    cache.put(key, copyStrategy.copyOnWrite(value));
+    cache.put(key, copyStrategy.isCopyOnWrite()
+      ? copy(value)
+      : value);
 
     return previous;
   }
@@ -268,7 +303,11 @@ public class GuavaCache<K, V>
 
     if (value != null)
     {
-      value = copyStrategy.copyOnRead(value);
+      if (copyStrategy.isCopyOnRead())
+      {
+        value = copy(value);
+      }
+
       hitCount.incrementAndGet();
     }
     else
@@ -288,7 +327,35 @@ public class GuavaCache<K, V>
   @Override
   public CacheStatistics getStatistics()
   {
-    return new CacheStatistics(name, hitCount.get(), missCount.get());
+    return new CacheStatistics(name, hitCount.get(), missCount.get(),
+      copyCount.get(), copyTime.get());
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Copies the value and records the costs of the copy. Immutable values are
+   * neither copied nor recorded.
+   *
+   *
+   * @param value value to copy
+   *
+   * @return copy of the value
+   */
+  private V copy(V value)
+  {
+    if ((value == null) || copiers.isImmutable(value.getClass()))
+    {
+      return value;
+    }
+
+    long start = System.nanoTime();
+    V copy = copiers.copy(value);
+
+    copyTime.addAndGet(System.nanoTime() - start);
+    copyCount.incrementAndGet();
+
+    return copy;
   }
 
   //~--- fields ---------------------------------------------------------------
@@ -299,6 +366,15 @@ public class GuavaCache<K, V>
   /** Field description */
   private final CopyStrategy copyStrategy;
 
+  /** copiers for the values of the cache */
+  private final CacheValueCopiers copiers;
+
+  /** number of copied values */
+  private final AtomicLong copyCount = new AtomicLong();
+
+  /** time spent to copy values in nanoseconds */
+  private final AtomicLong copyTime = new AtomicLong();
+
   /** Field description */
   private final AtomicLong hitCount = new AtomicLong();
 
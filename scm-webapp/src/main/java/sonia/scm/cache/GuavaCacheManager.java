@@ -37,6 +37,7 @@ package sonia.scm.cache;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import org.slf4j.Logger;
@@ -47,6 +48,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Guava based implementation of {@link CacheManager} and {@link org.apache.shiro.cache.CacheManager}.
@@ -75,6 +77,21 @@ public class GuavaCacheManager
     this(GuavaCacheConfigurationReader.read());
   }
 
+  /**
+   * Constructs a new cache manager, whose caches use the given copiers to
+   * copy their values.
+   *
+   *
+   * @param copiers registered copiers for cache values
+   *
+   * @since 2.0.0
+   */
+  @Inject
+  public GuavaCacheManager(Set<CacheValueCopier> copiers)
+  {
+    this(GuavaCacheConfigurationReader.read(), new CacheValueCopiers(copiers));
+  }
+
   /**
    * Constructs ...
    *
@@ -84,13 +101,27 @@ public class GuavaCacheManager
   @VisibleForTesting
   protected GuavaCacheManager(GuavaCacheManagerConfiguration config)
   {
+    this(config, CacheValueCopiers.defaults());
+  }
+
+  /**
+   * Constructs ...
+   *
+   * @param config
+   * @param copiers
+   */
+  @VisibleForTesting
+  protected GuavaCacheManager(GuavaCacheManagerConfiguration config,
+    CacheValueCopiers copiers)
+  {
+    this.copiers = copiers;
     defaultConfiguration = config.getDefaultCache();
 
     for (GuavaNamedCacheConfiguration ncc : config.getCaches())
     {
       logger.debug("create cache {} from configured configuration {}",
         ncc.getName(), ncc);
-      cacheMap.put(ncc.getName(), new GuavaCache(ncc));
+      cacheMap.put(ncc.getName(), new GuavaCache(ncc, ncc.getName(), copiers));
     }
   }
 
@@ -140,7 +171,7 @@ public class GuavaCacheManager
       logger.debug(
         "cache {} does not exists, creating a new instance from default configuration: {}",
         name, defaultConfiguration);
-      cache = new GuavaCache<K, V>(defaultConfiguration, name);
+      cache = new GuavaCache<K, V>(defaultConfiguration, name, copiers);
       cacheMap.put(name, cache);
     }
 
@@ -152,6 +183,9 @@ public class GuavaCacheManager
   /** Field description */
   private volatile Map<String, GuavaCache> cacheMap = Maps.newHashMap();
 
+  /** copiers for the values of the caches */
+  private final CacheValueCopiers copiers;
+
   /** Field description */
   private GuavaCacheConfiguration defaultConfiguration;
 }
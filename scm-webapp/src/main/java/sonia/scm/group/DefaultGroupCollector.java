@@ -1,20 +1,31 @@
 package sonia.scm.group;
 
 import com.cronutils.utils.VisibleForTesting;
+import com.github.legman.Subscribe;
 import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sonia.scm.HandlerEventType;
 import sonia.scm.cache.Cache;
 import sonia.scm.cache.CacheManager;
 import sonia.scm.security.Authentications;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Collect groups for a certain principal.
  * <strong>Warning</strong>: The class is only for internal use and should never used directly.
+ * <p>
+ * The internal groups are resolved from an index of the groups of every member. The index is built with the first
+ * request and is maintained from the {@link GroupEvent}s afterwards.
  */
 @Singleton
 public class DefaultGroupCollector implements GroupCollector {
@@ -28,6 +39,11 @@ public class DefaultGroupCollector implements GroupCollector {
   private final Cache<String, Set<String>> cache;
   private final Set<GroupResolver> groupResolvers;
 
+  /** internal groups of every member, {@code null} until the index is built */
+  private Map<String, Set<String>> memberships;
+  /** indexed members of every group, to remove memberships without relying on the old state of an event */
+  private Map<String, Set<String>> members;
+
   @Inject
   public DefaultGroupCollector(GroupDAO groupDAO, CacheManager cacheManager, Set<GroupResolver> groupResolvers) {
     this.groupDAO = groupDAO;
@@ -37,6 +53,33 @@ public class DefaultGroupCollector implements GroupCollector {
 
   @Override
   public Set<String> collect(String principal) {
+    return collect(principal, internalGroups(Collections.singleton(principal)).get(principal));
+  }
+
+  @Override
+  public Map<String, Set<String>> collectAll(Collection<String> principals) {
+    Map<String, Set<String>> internalGroups = internalGroups(principals);
+    Map<String, Set<String>> groups = new LinkedHashMap<>();
+    for (String principal : principals) {
+      groups.put(principal, collect(principal, internalGroups.get(principal)));
+    }
+    return groups;
+  }
+
+  /**
+   * Updates the index of internal groups, after a group was created, modified or deleted.
+   *
+   * @param event group event
+   */
+  @Subscribe(async = false)
+  public void onEvent(GroupEvent event) {
+    HandlerEventType type = event.getEventType();
+    if (type.isPost()) {
+      update(event.getItem(), type == HandlerEventType.DELETE);
+    }
+  }
+
+  private Set<String> collect(String principal, Set<String> internalGroups) {
     ImmutableSet.Builder<String> builder = ImmutableSet.builder();
 
     if (!Authentications.isSubjectAnonymous(principal)) {
@@ -44,18 +87,70 @@ public class DefaultGroupCollector implements GroupCollector {
     }
 
     builder.addAll(resolveExternalGroups(principal));
-    appendInternalGroups(principal, builder);
+    builder.addAll(internalGroups);
 
     Set<String> groups = builder.build();
     LOG.debug("collected following groups for principal {}: {}", principal, groups);
     return groups;
   }
 
-  private void appendInternalGroups(String principal, ImmutableSet.Builder<String> builder) {
+  private synchronized Map<String, Set<String>> internalGroups(Collection<String> principals) {
+    if (memberships == null) {
+      buildIndex();
+    }
+    Map<String, Set<String>> internalGroups = new HashMap<>();
+    for (String principal : principals) {
+      // the sets are immutable and are replaced on modification, so they can be used outside of the lock
+      internalGroups.put(principal, memberships.getOrDefault(principal, Collections.emptySet()));
+    }
+    return internalGroups;
+  }
+
+  private void buildIndex() {
+    memberships = new HashMap<>();
+    members = new HashMap<>();
     for (Group group : groupDAO.getAll()) {
-      if (group.isMember(principal)) {
-        builder.add(group.getName());
-      }
+      addMembers(group);
+    }
+    LOG.debug("indexed {} members of {} groups", memberships.size(), members.size());
+  }
+
+  private synchronized void update(Group group, boolean deleted) {
+    if (memberships == null) {
+      // the index is built from the current state of the dao, as soon as it is needed
+      return;
+    }
+    removeMembers(group.getName());
+    if (!deleted) {
+      addMembers(group);
+    }
+  }
+
+  private void addMembers(Group group) {
+    List<String> groupMembers = group.getMembers();
+    Set<String> indexed = groupMembers != null ? ImmutableSet.copyOf(groupMembers) : ImmutableSet.of();
+    members.put(group.getName(), indexed);
+    for (String member : indexed) {
+      memberships.merge(
+        member,
+        ImmutableSet.of(group.getName()),
+        (groups, added) -> ImmutableSet.<String>builder().addAll(groups).addAll(added).build()
+      );
+    }
+  }
+
+  private void removeMembers(String groupName) {
+    Set<String> indexed = members.remove(groupName);
+    if (indexed == null) {
+      return;
+    }
+    for (String member : indexed) {
+      memberships.computeIfPresent(member, (m, groups) -> {
+        ImmutableSet<String> remaining = groups.stream()
+          .filter(group -> !group.equals(groupName))
+          .collect(ImmutableSet.toImmutableSet());
+        return remaining.isEmpty() ? null : remaining;
+      });
     }
   }
 
@@ -46,7 +46,6 @@ import sonia.scm.HandlerEventType;
 import sonia.scm.ManagerDaoAdapter;
 import sonia.scm.NotFoundException;
 import sonia.scm.SCMContextProvider;
-import sonia.scm.TransformFilter;
 import sonia.scm.search.SearchRequest;
 import sonia.scm.search.SearchUtil;
 import sonia.scm.util.CollectionAppender;
@@ -60,6 +59,7 @@ import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -82,11 +82,13 @@ public class DefaultGroupManager extends AbstractGroupManager
    *
    *
    * @param groupDAO
+   * @param searchIndex
    */
   @Inject
-  public DefaultGroupManager(GroupDAO groupDAO)
+  public DefaultGroupManager(GroupDAO groupDAO, GroupSearchIndex searchIndex)
   {
     this.groupDAO = groupDAO;
+    this.searchIndex = searchIndex;
     this.managerDaoAdapter = new ManagerDaoAdapter<>(groupDAO);
   }
 
@@ -195,24 +197,12 @@ public class DefaultGroupManager extends AbstractGroupManager
     }
 
     final PermissionActionCheck<Group> check = GroupPermissions.read();
-    return SearchUtil.search(searchRequest, groupDAO.getAll(),
-      new TransformFilter<Group, Group>()
-    {
-      @Override
-      public Group accept(Group group)
-      {
-        Group result = null;
-
-        if (check.isPermitted(group) && matches(searchRequest, group))
-        {
-          result = group.clone();
-        }
-
-        return result;
-      }
-    });
+    List<Group> groups = searchIndex.search(searchRequest,
+      group -> check.isPermitted(group)
+        && (searchRequest.isIgnoreCase() || matches(searchRequest, group)));
+    return groups.stream().map(Group::clone).collect(Collectors.toList());
   }
-  
+
   private boolean matches(SearchRequest searchRequest, Group group) {
     return SearchUtil.matchesOne(searchRequest, group.getName(), group.getDescription());
   }
@@ -385,5 +375,6 @@ public class DefaultGroupManager extends AbstractGroupManager
 
   /** Field description */
   private GroupDAO groupDAO;
+  private final GroupSearchIndex searchIndex;
   private final ManagerDaoAdapter<Group> managerDaoAdapter;
 }
@@ -0,0 +1,53 @@
+package sonia.scm.group;
+
+import com.github.legman.Subscribe;
+import sonia.scm.HandlerEventType;
+import sonia.scm.search.SearchIndex;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Search index over the name and the description of all groups. The index is maintained from the
+ * {@link GroupEvent}s.
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class GroupSearchIndex extends SearchIndex<Group> {
+
+  @Inject
+  public GroupSearchIndex(GroupDAO groupDAO) {
+    super(groupDAO::getAll);
+  }
+
+  /**
+   * Updates the index, after a group was created, modified or deleted.
+   *
+   * @param event group event
+   */
+  @Subscribe(async = false)
+  public void onEvent(GroupEvent event) {
+    HandlerEventType type = event.getEventType();
+    if (type == HandlerEventType.DELETE) {
+      remove(event.getItem());
+    } else if (type.isPost()) {
+      put(event.getItem());
+    }
+  }
+
+  @Override
+  protected String getId(Group group) {
+    return group.getId();
+  }
+
+  @Override
+  protected String[] getFields(Group group) {
+    return new String[]{group.getName(), group.getDescription()};
+  }
+
+  @Override
+  protected Group copy(Group group) {
+    return group.clone();
+  }
+}
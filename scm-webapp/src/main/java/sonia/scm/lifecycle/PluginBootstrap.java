@@ -42,6 +42,7 @@ public final class PluginBootstrap {
   private static final String DIRECTORY_PLUGINS = "plugins";
   private static final String PLUGIN_DIRECTORY = "/WEB-INF/plugins/";
   private static final String PLUGIN_COREINDEX = PLUGIN_DIRECTORY.concat("plugin-index.xml");
+  private static final String STARTUP_INDEX = ".startup-index.xml";
 
   private final ClassLoaderLifeCycle classLoaderLifeCycle;
   private final ServletContext servletContext;
@@ -127,8 +128,14 @@ public final class PluginBootstrap {
     return Boolean.getBoolean("sonia.scm.boot.disable-core-plugin-extraction");
   }
 
-  private void extractCorePlugin(ServletContext context, File pluginDirectory,
+  private void extractCorePlugin(ServletContext context, File pluginDirectory, PluginStartupIndex startupIndex,
                                  PluginIndexEntry entry) throws IOException {
+    String directoryName = startupIndex.getDirectory(entry.getName(), entry.getChecksum());
+    if (directoryName != null && isUpToDate(new File(pluginDirectory, directoryName), entry.getChecksum())) {
+      LOG.debug("plugin {} is up to date", directoryName);
+      return;
+    }
+
     URL url = context.getResource(PLUGIN_DIRECTORY.concat(entry.getName()));
     SmpArchive archive = SmpArchive.create(url);
     InstalledPluginDescriptor plugin = archive.getPlugin();
@@ -152,6 +159,14 @@ public final class PluginBootstrap {
         PluginsInternal.extract(archive, entry.getChecksum(), directory, checksumFile, true);
       }
     }
+
+    startupIndex.put(entry.getName(), entry.getChecksum(), directory.getName());
+  }
+
+  private boolean isUpToDate(File directory, String expectedChecksum) throws IOException {
+    File checksumFile = PluginsInternal.getChecksumFile(directory);
+    return checksumFile.exists()
+      && expectedChecksum.equals(Files.toString(checksumFile, Charsets.UTF_8).trim());
   }
 
   private void extractCorePlugins(ServletContext context, File pluginDirectory) throws IOException {
@@ -159,9 +174,14 @@ public final class PluginBootstrap {
 
     PluginIndex index = readCorePluginIndex(context);
 
-    for (PluginIndexEntry entry : index) {
-      extractCorePlugin(context, pluginDirectory, entry);
-    }
+    File startupIndexFile = new File(pluginDirectory, STARTUP_INDEX);
+    PluginStartupIndex startupIndex = PluginStartupIndex.read(startupIndexFile);
+
+    PluginsInternal.forEachParallel(
+      index.getPlugins(), entry -> extractCorePlugin(context, pluginDirectory, startupIndex, entry)
+    );
+
+    startupIndex.write(startupIndexFile);
   }
 
 
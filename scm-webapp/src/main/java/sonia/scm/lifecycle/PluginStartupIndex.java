@@ -0,0 +1,120 @@
+package sonia.scm.lifecycle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXB;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Persisted index of the core plugin archives, which maps the name and the checksum of an archive to the directory
+ * of the extracted plugin. With the index an unchanged core plugin is detected by its checksum, without reading the
+ * descriptor from the archive.
+ *
+ * @since 2.0.0
+ */
+@XmlRootElement(name = "startup-index")
+@XmlAccessorType(XmlAccessType.FIELD)
+final class PluginStartupIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PluginStartupIndex.class);
+
+  @XmlElement(name = "plugin")
+  private List<Entry> plugins = new ArrayList<>();
+
+  private transient boolean modified;
+
+  /**
+   * Reads the index from the file. An empty index is returned, if the file does not exist or could not be read.
+   *
+   * @param file index file
+   *
+   * @return index
+   */
+  static PluginStartupIndex read(File file) {
+    if (file.exists()) {
+      try {
+        return JAXB.unmarshal(file, PluginStartupIndex.class);
+      } catch (DataBindingException ex) {
+        LOG.warn("could not read plugin startup index {}, start with an empty one", file, ex);
+      }
+    }
+    return new PluginStartupIndex();
+  }
+
+  /**
+   * Writes the index to the file, if it was modified.
+   *
+   * @param file index file
+   */
+  synchronized void write(File file) {
+    if (modified) {
+      try {
+        JAXB.marshal(this, file);
+        modified = false;
+      } catch (DataBindingException ex) {
+        LOG.warn("could not write plugin startup index {}", file, ex);
+      }
+    }
+  }
+
+  /**
+   * Returns the name of the plugin directory of the archive or {@code null}, if the archive with the checksum is
+   * unknown.
+   *
+   * @param archive name of the archive
+   * @param checksum checksum of the archive
+   *
+   * @return name of the plugin directory or {@code null}
+   */
+  synchronized String getDirectory(String archive, String checksum) {
+    for (Entry entry : plugins) {
+      if (entry.archive.equals(archive) && entry.checksum.equals(checksum)) {
+        return entry.directory;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Stores the plugin directory for the archive with the checksum.
+   *
+   * @param archive name of the archive
+   * @param checksum checksum of the archive
+   * @param directory name of the plugin directory
+   */
+  synchronized void put(String archive, String checksum, String directory) {
+    if (Objects.equals(getDirectory(archive, checksum), directory)) {
+      return;
+    }
+    plugins.removeIf(entry -> entry.archive.equals(archive));
+    plugins.add(new Entry(archive, checksum, directory));
+    modified = true;
+  }
+
+  @XmlAccessorType(XmlAccessType.FIELD)
+  private static final class Entry {
+
+    private String archive;
+    private String checksum;
+    private String directory;
+
+    Entry() {
+      // required by jaxb
+    }
+
+    Entry(String archive, String checksum, String directory) {
+      this.archive = archive;
+      this.checksum = checksum;
+      this.directory = directory;
+    }
+  }
+}
@@ -27,6 +27,7 @@ import sonia.scm.store.JAXBConfigurationEntryStoreFactory;
 import sonia.scm.store.JAXBConfigurationStoreFactory;
 import sonia.scm.store.JAXBDataStoreFactory;
 import sonia.scm.store.JAXBPropertyFileAccess;
+import sonia.scm.store.JournaledConfigurationEntryStoreFactory;
 import sonia.scm.update.BlobDirectoryAccess;
 import sonia.scm.update.PropertyFileAccess;
 import sonia.scm.update.UpdateStepRepositoryMetadataAccess;
@@ -66,7 +67,7 @@ public class BootstrapModule extends AbstractModule {
 
     // bind core
     bind(ConfigurationStoreFactory.class, JAXBConfigurationStoreFactory.class);
-    bind(ConfigurationEntryStoreFactory.class, JAXBConfigurationEntryStoreFactory.class);
+    bind(ConfigurationEntryStoreFactory.class, configurationEntryStoreFactory());
     bind(DataStoreFactory.class, JAXBDataStoreFactory.class);
     bind(BlobStoreFactory.class, FileBlobStoreFactory.class);
     bind(PluginLoader.class).toInstance(pluginLoader);
@@ -76,6 +77,13 @@ public class BootstrapModule extends AbstractModule {
     bind(new TypeLiteral<UpdateStepRepositoryMetadataAccess<Path>>() {}).to(new TypeLiteral<MetadataStore>() {});
   }
 
+  private Class<? extends ConfigurationEntryStoreFactory> configurationEntryStoreFactory() {
+    if (Boolean.getBoolean("sonia.scm.store.journal")) {
+      return JournaledConfigurationEntryStoreFactory.class;
+    }
+    return JAXBConfigurationEntryStoreFactory.class;
+  }
+
   private <T> void bind(Class<T> clazz, Class<? extends T> defaultImplementation) {
     Class<? extends T> implementation = find(clazz, defaultImplementation);
     LOG.debug("bind {} to {}", clazz, implementation);
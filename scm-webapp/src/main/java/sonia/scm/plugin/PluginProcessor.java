@@ -56,6 +56,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -505,38 +506,49 @@ public final class PluginProcessor
   }
 
   /**
-   * Method description
+   * Extracts the archives. The checksums and the extraction of the archives
+   * are done in parallel.
    *
    *
    * @param archives
    *
    * @throws IOException
    */
-  private void extract(Iterable<Path> archives) throws IOException
+  private void extract(Collection<Path> archives) throws IOException
   {
     logger.debug("extract archives");
 
-    for (Path archive : archives)
-    {
-      File archiveFile = archive.toFile();
+    PluginsInternal.forEachParallel(archives, this::extractArchive);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param archive
+   *
+   * @throws IOException
+   */
+  private void extractArchive(Path archive) throws IOException
+  {
+    File archiveFile = archive.toFile();
 
-      logger.trace("extract archive {}", archive);
+    logger.trace("extract archive {}", archive);
 
-      SmpArchive smp = SmpArchive.create(archive);
+    SmpArchive smp = SmpArchive.create(archive);
 
-      logger.debug("extract plugin {}", smp.getPlugin());
+    logger.debug("extract plugin {}", smp.getPlugin());
 
-      File directory =
-        PluginsInternal.createPluginDirectory(pluginDirectory.toFile(),
-          smp.getPlugin());
+    File directory =
+      PluginsInternal.createPluginDirectory(pluginDirectory.toFile(),
+        smp.getPlugin());
 
-      String checksum = com.google.common.io.Files.hash(archiveFile,
-                          Hashing.sha256()).toString();
-      File checksumFile = PluginsInternal.getChecksumFile(directory);
+    String checksum = com.google.common.io.Files.hash(archiveFile,
+                        Hashing.sha256()).toString();
+    File checksumFile = PluginsInternal.getChecksumFile(directory);
 
-      PluginsInternal.extract(smp, checksum, directory, checksumFile, false);
-      moveArchive(archive);
-    }
+    PluginsInternal.extract(smp, checksum, directory, checksumFile, false);
+    moveArchive(archive);
   }
 
   /**
@@ -579,7 +591,7 @@ public final class PluginProcessor
    *
    * @throws IOException
    */
-  private void moveArchive(Path archive) throws IOException
+  private synchronized void moveArchive(Path archive) throws IOException
   {
     if (!Files.exists(installedDirectory))
     {
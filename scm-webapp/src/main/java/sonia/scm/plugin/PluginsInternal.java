@@ -37,6 +37,7 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,7 +52,14 @@ import java.io.IOException;
 
 import java.nio.file.Path;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  *
@@ -151,6 +159,99 @@ public final class PluginsInternal
     }
   }
 
+  /**
+   * Executes the action for every item in parallel and waits until all
+   * actions are finished. Plugin archives are independent of each other, so
+   * checksums and extraction of multiple archives can run concurrently.
+   *
+   *
+   * @param items items to process
+   * @param action action for a single item
+   * @param <T> type of items
+   *
+   * @throws IOException if one of the actions fails
+   *
+   * @since 2.0.0
+   */
+  public static <T> void forEachParallel(Collection<T> items,
+    PluginAction<T> action)
+    throws IOException
+  {
+    int threads = Math.min(items.size(),
+                    Runtime.getRuntime().availableProcessors());
+
+    if (threads <= 1)
+    {
+      for (T item : items)
+      {
+        action.execute(item);
+      }
+
+      return;
+    }
+
+    ClassLoader contextClassLoader =
+      Thread.currentThread().getContextClassLoader();
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+                                 new ThreadFactoryBuilder()
+                                   .setNameFormat("PluginExtractor-%d")
+                                   .setDaemon(true)
+                                   .build());
+
+    try
+    {
+      List<Future<Void>> futures = new ArrayList<>();
+
+      for (T item : items)
+      {
+        futures.add(executor.submit(() -> {
+          Thread.currentThread().setContextClassLoader(contextClassLoader);
+          action.execute(item);
+
+          return null;
+        }));
+      }
+
+      for (Future<Void> future : futures)
+      {
+        await(future);
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void await(Future<Void> future) throws IOException
+  {
+    try
+    {
+      future.get();
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+
+      throw new PluginLoadException("interrupted during plugin processing", ex);
+    }
+    catch (ExecutionException ex)
+    {
+      Throwable cause = ex.getCause();
+
+      if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      else if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+
+      throw new PluginLoadException("plugin processing failed", cause);
+    }
+  }
+
   /**
    * Method description
    *
@@ -181,6 +282,29 @@ public final class PluginsInternal
 
   //~--- inner classes --------------------------------------------------------
 
+  /**
+   * Action for a single item of {@link #forEachParallel(Collection, PluginAction)}.
+   *
+   * @param <T> type of item
+   *
+   * @since 2.0.0
+   */
+  @FunctionalInterface
+  public interface PluginAction<T>
+  {
+
+    /**
+     * Executes the action for the item.
+     *
+     *
+     * @param item item
+     *
+     * @throws IOException
+     */
+    void execute(T item) throws IOException;
+  }
+
+
   /**
    * Class description
    *
@@ -43,12 +43,14 @@ import sonia.scm.ConfigurationException;
 import sonia.scm.HandlerEventType;
 import sonia.scm.ManagerDaoAdapter;
 import sonia.scm.NotFoundException;
+import sonia.scm.PageResult;
 import sonia.scm.SCMContextProvider;
 import sonia.scm.Type;
 import sonia.scm.config.ScmConfiguration;
 import sonia.scm.security.KeyGenerator;
 import sonia.scm.util.AssertUtil;
 import sonia.scm.util.CollectionAppender;
+import sonia.scm.util.Comparables;
 import sonia.scm.util.IOUtil;
 import sonia.scm.util.Util;
 
@@ -89,14 +91,24 @@ public class DefaultRepositoryManager extends AbstractRepositoryManager {
   private final Set<Type> types;
   private final Provider<NamespaceStrategy> namespaceStrategyProvider;
   private final ManagerDaoAdapter<Repository> managerDaoAdapter;
+  private final RepositoryListingIndex listingIndex;
 
 
-  @Inject
   public DefaultRepositoryManager(ScmConfiguration configuration,
                                   SCMContextProvider contextProvider, KeyGenerator keyGenerator,
                                   RepositoryDAO repositoryDAO, Set<RepositoryHandler> handlerSet,
                                   Provider<NamespaceStrategy> namespaceStrategyProvider) {
+    this(configuration, contextProvider, keyGenerator, repositoryDAO, handlerSet, namespaceStrategyProvider, null);
+  }
+
+  @Inject
+  public DefaultRepositoryManager(ScmConfiguration configuration,
+                                  SCMContextProvider contextProvider, KeyGenerator keyGenerator,
+                                  RepositoryDAO repositoryDAO, Set<RepositoryHandler> handlerSet,
+                                  Provider<NamespaceStrategy> namespaceStrategyProvider,
+                                  RepositoryListingIndex listingIndex) {
     this.configuration = configuration;
+    this.listingIndex = listingIndex;
     this.keyGenerator = keyGenerator;
     this.repositoryDAO = repositoryDAO;
     this.namespaceStrategyProvider = namespaceStrategyProvider;
@@ -273,6 +285,27 @@ public class DefaultRepositoryManager extends AbstractRepositoryManager {
     return repositories;
   }
 
+  /**
+   * Serves the page from the {@link RepositoryListingIndex}, if the repositories are sorted by an indexed property.
+   * Otherwise all repositories are read, filtered and sorted.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public PageResult<Repository> getPage(Predicate<Repository> filter, Comparator<Repository> comparator,
+                                        int pageNumber, int pageSize) {
+    if (listingIndex != null && comparator instanceof Comparables.PropertyComparator) {
+      Comparables.PropertyComparator<Repository> propertyComparator =
+        (Comparables.PropertyComparator<Repository>) comparator;
+      if (listingIndex.isIndexed(propertyComparator.getProperty())) {
+        return listingIndex.getPage(
+          repository -> handlerMap.containsKey(repository.getType()), filter,
+          propertyComparator.getProperty(), propertyComparator.isDescending(), pageNumber, pageSize
+        );
+      }
+    }
+    return super.getPage(filter, comparator, pageNumber, pageSize);
+  }
+
   @Override
   public Collection<Repository> getAll() {
     return getAll(repository -> true, null);
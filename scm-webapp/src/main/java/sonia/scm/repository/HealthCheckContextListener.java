@@ -35,8 +35,6 @@ package sonia.scm.repository;
 
 import com.google.inject.Inject;
 
-import org.apache.shiro.SecurityUtils;
-
 import sonia.scm.plugin.Extension;
 import sonia.scm.web.security.AdministrationContext;
 import sonia.scm.web.security.PrivilegedAction;
@@ -128,7 +126,7 @@ public class HealthCheckContextListener implements ServletContextListener
     {
 
       // excute health checks for all repsitories asynchronous
-      SecurityUtils.getSubject().execute(healthChecker::checkAll);
+      healthChecker.startCheckAll();
     }
 
     //~--- fields -------------------------------------------------------------
@@ -0,0 +1,85 @@
+package sonia.scm.repository;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Progress of the health check of all repositories.
+ *
+ * @since 2.0.0
+ */
+public final class HealthCheckProgress {
+
+  private final boolean running;
+  private final int total;
+  private final int completed;
+  private final int unhealthy;
+  private final long started;
+  private final long finished;
+
+  HealthCheckProgress(boolean running, int total, int completed, int unhealthy, long started, long finished) {
+    this.running = running;
+    this.total = total;
+    this.completed = completed;
+    this.unhealthy = unhealthy;
+    this.started = started;
+    this.finished = finished;
+  }
+
+  static HealthCheckProgress notStarted() {
+    return new HealthCheckProgress(false, 0, 0, 0, 0L, 0L);
+  }
+
+  /**
+   * Returns {@code true} if the check is still running.
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Returns the number of repositories which are checked by the run.
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns the number of repositories which are already checked.
+   */
+  public int getCompleted() {
+    return completed;
+  }
+
+  /**
+   * Returns the number of repositories which were found unhealthy.
+   */
+  public int getUnhealthy() {
+    return unhealthy;
+  }
+
+  /**
+   * Returns the start time of the check in milliseconds or 0, if no check was started.
+   */
+  public long getStarted() {
+    return started;
+  }
+
+  /**
+   * Returns the end time of the check in milliseconds or 0, if the check is still running.
+   */
+  public long getFinished() {
+    return finished;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+      .add("running", running)
+      .add("total", total)
+      .add("completed", completed)
+      .add("unhealthy", unhealthy)
+      .add("started", started)
+      .add("finished", finished)
+      .toString();
+  }
+}
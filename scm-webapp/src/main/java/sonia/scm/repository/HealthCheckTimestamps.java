@@ -0,0 +1,30 @@
+package sonia.scm.repository;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Time of the last health check for every repository.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = "health-check")
+class HealthCheckTimestamps {
+
+  private HashMap<String, Long> lastChecks;
+
+  HealthCheckTimestamps() {
+    this(Collections.emptyMap());
+  }
+
+  HealthCheckTimestamps(Map<String, Long> lastChecks) {
+    this.lastChecks = new HashMap<>(lastChecks);
+  }
+
+  Map<String, Long> getLastChecks() {
+    return Collections.unmodifiableMap(lastChecks);
+  }
+}
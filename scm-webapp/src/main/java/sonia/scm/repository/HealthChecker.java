@@ -29,29 +29,100 @@
 package sonia.scm.repository;
 
 import com.github.sdorra.ssp.PermissionActionCheck;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sonia.scm.NotFoundException;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
-
+/**
+ * Executes the {@link HealthCheck}s for repositories. A check of all repositories runs in parallel, the number of
+ * threads can be configured with the system property {@code sonia.scm.healthCheck.threads} (default 4) and the number
+ * of repositories which are checked per second can be limited with {@code sonia.scm.healthCheck.checksPerSecond}
+ * (default unlimited). Repositories which were modified since their last check or which were never checked are
+ * checked first, the time of the last check is stored for every repository.
+ */
+@Singleton
 public final class HealthChecker {
 
   private static final Logger logger =
     LoggerFactory.getLogger(HealthChecker.class);
 
+  private static final String STORE_NAME = "health-check";
+
   private final Set<HealthCheck> checks;
 
   private final RepositoryManager repositoryManager;
 
+  private final ConfigurationStore<HealthCheckTimestamps> store;
+  private final Map<String, Long> lastChecks = new ConcurrentHashMap<>();
+
+  private final ExecutorService coordinator;
+  private final ExecutorService executor;
+  private final RateLimiter rateLimiter;
+
+  private volatile Run lastRun;
+
   @Inject
   public HealthChecker(Set<HealthCheck> checks,
-                       RepositoryManager repositoryManager) {
+                       RepositoryManager repositoryManager,
+                       ConfigurationStoreFactory storeFactory) {
+    this(checks, repositoryManager, storeFactory,
+      Integer.getInteger("sonia.scm.healthCheck.threads", 4),
+      Integer.getInteger("sonia.scm.healthCheck.checksPerSecond", 0));
+  }
+
+  @VisibleForTesting
+  HealthChecker(Set<HealthCheck> checks,
+                RepositoryManager repositoryManager,
+                ConfigurationStoreFactory storeFactory,
+                int threads,
+                double checksPerSecond) {
     this.checks = checks;
     this.repositoryManager = repositoryManager;
+    this.store = storeFactory.withType(HealthCheckTimestamps.class).withName(STORE_NAME).build();
+    this.store.getOptional().ifPresent(timestamps -> lastChecks.putAll(timestamps.getLastChecks()));
+    this.coordinator = Executors.newSingleThreadExecutor(threadFactory("HealthCheckCoordinator-%d"));
+    this.executor = createExecutor(Math.max(threads, 1));
+    this.rateLimiter = checksPerSecond > 0 ? RateLimiter.create(checksPerSecond) : null;
+  }
+
+  private static ExecutorService createExecutor(int threads) {
+    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+      threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory("HealthCheck-%d")
+    );
+    threadPool.allowCoreThreadTimeOut(true);
+    return threadPool;
+  }
+
+  private static ThreadFactory threadFactory(String nameFormat) {
+    return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
   }
 
   public void check(String id){
@@ -64,6 +135,7 @@ public final class HealthChecker {
     }
 
     doCheck(repository);
+    storeLastChecks();
   }
 
   public void check(Repository repository)
@@ -71,29 +143,155 @@ public final class HealthChecker {
     RepositoryPermissions.healthCheck(repository).check();
 
     doCheck(repository);
+    storeLastChecks();
   }
 
+  /**
+   * Starts the check of all repositories in the background, with the privileges of the current subject.
+   *
+   * @since 2.0.0
+   */
+  public void startCheckAll() {
+    Subject subject = SecurityUtils.getSubject();
+    coordinator.execute(subject.associateWith(this::checkAll));
+  }
+
+  /**
+   * Checks all repositories for which the current subject has the permission to run a health check and waits until
+   * all checks are finished. If a check of all repositories is already running, the method returns immediately.
+   */
   public void checkAll() {
     logger.debug("check health of all repositories");
 
-    PermissionActionCheck<Repository> check = RepositoryPermissions.healthCheck();
+    Run run = startRun();
+    if (run == null) {
+      logger.info("health check of all repositories is already running");
+      return;
+    }
+
+    try {
+      Collection<Repository> all = repositoryManager.getAll();
+      List<Repository> repositories = prioritize(filterPermitted(all));
+      run.total = repositories.size();
 
-    for (Repository repository : repositoryManager.getAll()) {
+      Subject subject = SecurityUtils.getSubject();
+      List<Future<?>> futures = new ArrayList<>(repositories.size());
+      for (Repository repository : repositories) {
+        futures.add(executor.submit(subject.associateWith(() -> checkScheduled(run, repository))));
+      }
+      awaitAll(futures);
+
+      removeLastChecksOfDeletedRepositories(all);
+    } finally {
+      run.finished = System.currentTimeMillis();
+      storeLastChecks();
+      logger.info("finished health check of {} repositories, {} are unhealthy", run.completed.get(), run.unhealthy.get());
+    }
+  }
+
+  /**
+   * Returns the progress of the running or the last check of all repositories.
+   *
+   * @return progress of the check
+   * @since 2.0.0
+   */
+  public HealthCheckProgress getProgress() {
+    Run run = lastRun;
+    if (run == null) {
+      return HealthCheckProgress.notStarted();
+    }
+    return new HealthCheckProgress(
+      run.isRunning(), run.total, run.completed.get(), run.unhealthy.get(), run.started, run.finished
+    );
+  }
+
+  private synchronized Run startRun() {
+    if (lastRun != null && lastRun.isRunning()) {
+      return null;
+    }
+    lastRun = new Run();
+    return lastRun;
+  }
+
+  private List<Repository> filterPermitted(Collection<Repository> repositories) {
+    PermissionActionCheck<Repository> check = RepositoryPermissions.healthCheck();
+    List<Repository> permitted = new ArrayList<>();
+    for (Repository repository : repositories) {
       if (check.isPermitted(repository)) {
-        try {
-          check(repository);
-        } catch (NotFoundException ex) {
-          logger.error("health check ends with exception", ex);
-        }
+        permitted.add(repository);
       } else {
         logger.debug(
           "no permissions to execute health check for repository {}",
           repository.getId());
       }
     }
+    return permitted;
+  }
+
+  /**
+   * Sorts the repositories, so that repositories which were modified since their last check come first. Within each
+   * group the repositories which were checked the longest time ago come first.
+   */
+  private List<Repository> prioritize(List<Repository> repositories) {
+    repositories.sort(
+      Comparator.comparing((Repository repository) -> !isModifiedSinceLastCheck(repository))
+        .thenComparingLong(this::getLastCheck)
+    );
+    return repositories;
+  }
+
+  private boolean isModifiedSinceLastCheck(Repository repository) {
+    Long lastCheck = lastChecks.get(repository.getId());
+    Long lastModified = repository.getLastModified();
+    return lastCheck == null || (lastModified != null && lastModified > lastCheck);
+  }
+
+  private long getLastCheck(Repository repository) {
+    return lastChecks.getOrDefault(repository.getId(), 0L);
+  }
+
+  private void checkScheduled(Run run, Repository repository) {
+    if (rateLimiter != null) {
+      rateLimiter.acquire();
+    }
+    try {
+      if (!doCheck(repository)) {
+        run.unhealthy.incrementAndGet();
+      }
+    } catch (NotFoundException ex) {
+      logger.error("health check ends with exception", ex);
+    } catch (RuntimeException ex) {
+      logger.error("health check of repository {} failed", repository.getId(), ex);
+    } finally {
+      run.completed.incrementAndGet();
+    }
+  }
+
+  private void awaitAll(List<Future<?>> futures) {
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException ex) {
+        logger.warn("interrupted while waiting for health checks");
+        futures.forEach(f -> f.cancel(false));
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException ex) {
+        logger.error("health check ends with exception", ex.getCause());
+      }
+    }
+  }
+
+  private void removeLastChecksOfDeletedRepositories(Collection<Repository> repositories) {
+    Set<String> ids = repositories.stream().map(Repository::getId).collect(Collectors.toSet());
+    lastChecks.keySet().retainAll(ids);
   }
 
-  private void doCheck(Repository repository){
+  private synchronized void storeLastChecks() {
+    store.set(new HealthCheckTimestamps(lastChecks));
+  }
+
+  private boolean doCheck(Repository repository){
     logger.info("start health check for repository {}", repository.getName());
 
     HealthCheckResult result = HealthCheckResult.healthy();
@@ -118,7 +316,21 @@ public final class HealthChecker {
         ImmutableList.copyOf(result.getFailures()));
       repositoryManager.modify(repository);
     }
+
+    lastChecks.put(repository.getId(), System.currentTimeMillis());
+    return result.isHealthy();
   }
 
+  private static class Run {
 
+    private final long started = System.currentTimeMillis();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger unhealthy = new AtomicInteger();
+    private volatile int total;
+    private volatile long finished;
+
+    private boolean isRunning() {
+      return finished == 0;
+    }
+  }
 }
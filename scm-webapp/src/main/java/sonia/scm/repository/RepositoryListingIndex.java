@@ -0,0 +1,296 @@
+package sonia.scm.repository;
+
+import com.github.legman.Subscribe;
+import com.github.sdorra.ssp.PermissionActionCheck;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.PageResult;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.security.Scope;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Sorted index of all repositories for the paged repository listing. The index holds the repositories in the order of
+ * every supported sort property and the readable repositories of every user, which has requested the listing. A page
+ * is served by walking the sorted order and picking the readable repositories, so that neither the sort nor the
+ * permission checks are done for every request.
+ * <p>
+ * The sorted orders are dropped with every {@link RepositoryEvent} and are rebuilt lazily with the next request. The
+ * readable repositories of a user are recalculated if the orders were rebuilt or if the authorization of the user was
+ * invalidated. The invalidation is triggered by the {@link sonia.scm.security.DefaultAuthorizationCollector} after it
+ * dropped its own cache, otherwise the readable repositories could be recalculated from an outdated authorization.
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class RepositoryListingIndex {
+
+  @VisibleForTesting
+  static final String CACHE_NAME = "sonia.cache.repositories.readable";
+
+  private static final Logger LOG = LoggerFactory.getLogger(RepositoryListingIndex.class);
+
+  private static final Map<String, Function<Repository, Comparable<?>>> PROPERTIES =
+    ImmutableMap.<String, Function<Repository, Comparable<?>>>builder()
+      .put("id", Repository::getId)
+      .put("namespaceAndName", Repository::getNamespaceAndName)
+      .put("namespace", Repository::getNamespace)
+      .put("name", Repository::getName)
+      .put("lastModified", Repository::getLastModified)
+      .put("creationDate", Repository::getCreationDate)
+      .build();
+
+  private final RepositoryDAO repositoryDAO;
+  private final Cache<ReadableKey, Readable> readableCache;
+  private final AtomicLong readableVersion = new AtomicLong();
+
+  private Snapshot snapshot;
+
+  @Inject
+  public RepositoryListingIndex(RepositoryDAO repositoryDAO, CacheManager cacheManager) {
+    this(repositoryDAO, cacheManager.getCache(CACHE_NAME));
+  }
+
+  @VisibleForTesting
+  RepositoryListingIndex(RepositoryDAO repositoryDAO, Cache<ReadableKey, Readable> readableCache) {
+    this.repositoryDAO = repositoryDAO;
+    this.readableCache = readableCache;
+  }
+
+  /**
+   * Returns {@code true} if the index is able to sort the repositories by the given property.
+   *
+   * @param property name of the property
+   *
+   * @return {@code true} if the property is indexed
+   */
+  public boolean isIndexed(String property) {
+    return PROPERTIES.containsKey(property);
+  }
+
+  /**
+   * Returns a page of the repositories, which are readable for the current subject.
+   *
+   * @param supported predicate for repositories of a supported type
+   * @param filter filter for the repositories
+   * @param property indexed property to sort by
+   * @param desc {@code true} for descending order
+   * @param pageNumber number of the page (zero based)
+   * @param pageSize size of the page
+   *
+   * @return page of repositories, the repositories are copies of the stored ones
+   */
+  public PageResult<Repository> getPage(Predicate<Repository> supported, Predicate<Repository> filter,
+                                        String property, boolean desc, int pageNumber, int pageSize) {
+    Snapshot current = snapshot();
+    int[] order = current.order(property);
+    BitSet readable = readable(current, supported);
+
+    long first = (long) pageNumber * pageSize;
+    List<Repository> entities = new ArrayList<>(pageSize);
+    int count = 0;
+    for (int i = 0; i < order.length; i++) {
+      int position = order[desc ? order.length - 1 - i : i];
+      if (readable.get(position)) {
+        Repository repository = current.repositories[position];
+        if (filter.test(repository)) {
+          if (count >= first && entities.size() < pageSize) {
+            entities.add(repository.clone());
+          }
+          count++;
+        }
+      }
+    }
+    return new PageResult<>(entities, count);
+  }
+
+  /**
+   * Drops the sorted orders, after a repository was created, modified or deleted.
+   *
+   * @param event repository event
+   */
+  @Subscribe(async = false)
+  public void onEvent(RepositoryEvent event) {
+    if (event.getEventType().isPost()) {
+      invalidate();
+    }
+  }
+
+  /**
+   * Drops the readable repositories of the given user. The cached authorization of the user has to be dropped before.
+   *
+   * @param username name of the user
+   */
+  public void invalidateReadable(String username) {
+    LOG.debug("clear readable repositories of user {}", username);
+    readableVersion.incrementAndGet();
+    readableCache.removeAll(key -> username.equals(key.username));
+  }
+
+  /**
+   * Drops the readable repositories of every user. The cached authorizations have to be dropped before.
+   */
+  public void invalidateReadable() {
+    LOG.debug("clear readable repositories of every user");
+    readableVersion.incrementAndGet();
+    readableCache.clear();
+  }
+
+  private synchronized void invalidate() {
+    snapshot = null;
+  }
+
+  private synchronized Snapshot snapshot() {
+    if (snapshot == null) {
+      snapshot = new Snapshot(repositoryDAO.getAll());
+    }
+    return snapshot;
+  }
+
+  private BitSet readable(Snapshot current, Predicate<Repository> supported) {
+    ReadableKey key = createKey();
+    if (key != null) {
+      Readable cached = readableCache.get(key);
+      if (cached != null && cached.snapshot == current) {
+        return cached.positions;
+      }
+    }
+
+    long version = readableVersion.get();
+    BitSet positions = collectReadable(current, supported);
+    // an authorization which was invalidated during the collection may have been used, so the result is not cached
+    if (key != null && version == readableVersion.get()) {
+      readableCache.put(key, new Readable(current, positions));
+    }
+    return positions;
+  }
+
+  private BitSet collectReadable(Snapshot current, Predicate<Repository> supported) {
+    LOG.trace("collect readable repositories of {}", SecurityUtils.getSubject().getPrincipal());
+    PermissionActionCheck<Repository> check = RepositoryPermissions.read();
+    Repository[] repositories = current.repositories;
+    BitSet positions = new BitSet(repositories.length);
+    for (int i = 0; i < repositories.length; i++) {
+      if (supported.test(repositories[i]) && check.isPermitted(repositories[i])) {
+        positions.set(i);
+      }
+    }
+    return positions;
+  }
+
+  private ReadableKey createKey() {
+    Subject subject = SecurityUtils.getSubject();
+    Object principal = subject.getPrincipal();
+    if (principal == null) {
+      return null;
+    }
+    PrincipalCollection principals = subject.getPrincipals();
+    Scope scope = principals != null ? principals.oneByType(Scope.class) : null;
+    return new ReadableKey(principal.toString(), scope != null ? scope.toString() : "");
+  }
+
+  /**
+   * Immutable state of all repositories, with lazily created sorted orders.
+   */
+  private static final class Snapshot {
+
+    private final Repository[] repositories;
+    private final ConcurrentMap<String, int[]> orders = new ConcurrentHashMap<>();
+
+    private Snapshot(Collection<Repository> repositories) {
+      this.repositories = repositories.toArray(new Repository[0]);
+    }
+
+    int[] order(String property) {
+      return orders.computeIfAbsent(property, this::sort);
+    }
+
+    private int[] sort(String property) {
+      LOG.debug("sort {} repositories by {}", repositories.length, property);
+      Function<Repository, Comparable<?>> extractor = PROPERTIES.get(property);
+      Comparator<Integer> comparator = Comparator.<Integer, Comparable<?>>comparing(
+        position -> extractor.apply(repositories[position]), Snapshot::compare
+      );
+      // sorting is stable, equal values keep the order of the store
+      Integer[] positions = new Integer[repositories.length];
+      for (int i = 0; i < positions.length; i++) {
+        positions[i] = i;
+      }
+      Arrays.sort(positions, comparator);
+      return Arrays.stream(positions).mapToInt(Integer::intValue).toArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Comparable<?> left, Comparable<?> right) {
+      if (left == null) {
+        return right == null ? 0 : -1;
+      }
+      if (right == null) {
+        return 1;
+      }
+      return ((Comparable<Object>) left).compareTo(right);
+    }
+  }
+
+  @VisibleForTesting
+  static final class Readable {
+
+    private final Snapshot snapshot;
+    private final BitSet positions;
+
+    private Readable(Snapshot snapshot, BitSet positions) {
+      this.snapshot = snapshot;
+      this.positions = positions;
+    }
+  }
+
+  @VisibleForTesting
+  static final class ReadableKey {
+
+    private final String username;
+    private final String scope;
+
+    private ReadableKey(String username, String scope) {
+      this.username = username;
+      this.scope = scope;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ReadableKey other = (ReadableKey) o;
+      return Objects.equal(username, other.username) && Objects.equal(scope, other.scope);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(username, scope);
+    }
+  }
+}
@@ -5,29 +5,43 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+/**
+ * Scheduler which uses a single timer thread. The timer sleeps until the next run of the nearest task, triggers it and
+ * arms itself again for the next run of the task. The triggered tasks are executed on the worker pools of
+ * {@link CronWorkerPools}.
+ */
 @Singleton
 public class CronScheduler implements Scheduler {
 
   private static final Logger LOG = LoggerFactory.getLogger(CronScheduler.class);
 
-  private final ScheduledExecutorService executorService;
+  private final ScheduledThreadPoolExecutor timer;
   private final CronTaskFactory taskFactory;
+  private final CronWorkerPools workerPools;
   private final CronThreadFactory threadFactory;
+  private final Set<CronTask> tasks = ConcurrentHashMap.newKeySet();
 
   @Inject
-  public CronScheduler(CronTaskFactory taskFactory) {
+  public CronScheduler(CronTaskFactory taskFactory, CronWorkerPools workerPools) {
     this.taskFactory = taskFactory;
+    this.workerPools = workerPools;
     this.threadFactory = new CronThreadFactory();
-    this.executorService = createExecutor();
+    this.timer = createTimer();
   }
 
-  private ScheduledExecutorService createExecutor() {
-    return Executors.newScheduledThreadPool(2, threadFactory);
+  private ScheduledThreadPoolExecutor createTimer() {
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
   }
 
   @Override
@@ -43,18 +57,52 @@ public class CronScheduler implements Scheduler {
   private CronTask schedule(CronTask task) {
     if (task.hasNextRun()) {
       LOG.debug("schedule task {}", task);
-      Future<?> future = executorService.scheduleAtFixedRate(task, 0L, 1L, TimeUnit.SECONDS);
-      task.setFuture(future);
+      tasks.add(task);
+      arm(task);
     } else {
       LOG.debug("skip scheduling, because task {} has no next run", task);
     }
     return task;
   }
 
+  private void arm(CronTask task) {
+    try {
+      Future<?> future = timer.schedule(() -> trigger(task), task.getDelayToNextRun(), TimeUnit.MILLISECONDS);
+      task.setFuture(future);
+    } catch (RejectedExecutionException ex) {
+      LOG.debug("could not schedule task {}, because the scheduler is closed", task);
+    }
+  }
+
+  private void trigger(CronTask task) {
+    try {
+      task.run();
+    } finally {
+      if (task.isPending()) {
+        arm(task);
+      } else {
+        tasks.remove(task);
+      }
+    }
+  }
+
+  /**
+   * Returns the execution statistics of all scheduled tasks.
+   *
+   * @return statistics of scheduled tasks
+   *
+   * @since 2.0.0
+   */
+  public List<CronTaskStatistics> getStatistics() {
+    tasks.removeIf(task -> !task.isPending());
+    return tasks.stream().map(CronTask::getStatistics).collect(Collectors.toList());
+  }
+
   @Override
   public void close() {
-    LOG.debug("shutdown underlying executor service");
+    LOG.debug("shutdown scheduler timer and worker pools, statistics: {}", getStatistics());
+    timer.shutdownNow();
     threadFactory.close();
-    executorService.shutdown();
+    workerPools.close();
   }
 }
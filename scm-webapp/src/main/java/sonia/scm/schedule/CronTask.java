@@ -1,13 +1,25 @@
 package sonia.scm.schedule;
 
 import com.cronutils.utils.VisibleForTesting;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.ZonedDateTime;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
 
+/**
+ * A task which is triggered by the timer of the {@link CronScheduler} at its next run. The trigger calculates the
+ * following run and hands the execution over to the worker pool of the task, so the timer is never blocked by a long
+ * running task.
+ */
 class CronTask implements Task, Runnable {
 
   private static final Logger LOG = LoggerFactory.getLogger(CronTask.class);
@@ -15,43 +27,151 @@ class CronTask implements Task, Runnable {
   private final String name;
   private final CronExpression expression;
   private final Runnable runnable;
+  private final CronTaskConfiguration configuration;
+  private final Executor executor;
+
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicLong runCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final AtomicLong overlapCount = new AtomicLong();
+  private final AtomicLong misfireCount = new AtomicLong();
+  private final AtomicLong totalDuration = new AtomicLong();
+  private final LongAccumulator maxDuration = new LongAccumulator(Math::max, 0L);
+  private final LongAccumulator maxLag = new LongAccumulator(Math::max, 0L);
+  private volatile long lastDuration;
+  private volatile long lastLag;
 
   private ZonedDateTime nextRun;
   private Future<?> future;
+  private boolean cancelled;
 
   CronTask(String name, CronExpression expression, Runnable runnable) {
+    this(name, expression, runnable, CronTaskConfiguration.of(name), MoreExecutors.directExecutor());
+  }
+
+  CronTask(String name, CronExpression expression, Runnable runnable, CronTaskConfiguration configuration, Executor executor) {
     this.name = name;
     this.expression = expression;
     this.runnable = runnable;
+    this.configuration = configuration;
+    this.executor = executor;
     this.nextRun = expression.calculateNextRun().orElse(null);
   }
 
-  void setFuture(Future<?> future) {
+  synchronized void setFuture(Future<?> future) {
     this.future = future;
+    if (cancelled) {
+      future.cancel(false);
+    }
   }
 
   @Override
-  public synchronized void run() {
-    if (hasNextRun() && expression.shouldRun(nextRun)) {
-      LOG.debug("execute task {}, because of matching expression {}", name, expression);
-      runnable.run();
-      Optional<ZonedDateTime> next = expression.calculateNextRun();
-      if (next.isPresent()) {
-        nextRun = next.get();
-      } else {
-        LOG.debug("cancel task {}, because expression {} has no next execution", name, expression);
-        nextRun = null;
-        cancel();
+  public void run() {
+    ZonedDateTime scheduled = trigger();
+    if (scheduled == null) {
+      LOG.trace("skip execution of task {}, because expression {} does not match", name, expression);
+      return;
+    }
+
+    long lag = millisSince(scheduled);
+    if (lag > configuration.getMisfireThreshold().toMillis()) {
+      misfireCount.incrementAndGet();
+      if (configuration.getMisfirePolicy() == CronTaskConfiguration.MisfirePolicy.SKIP) {
+        LOG.warn("skip execution of task {}, because it was triggered {}ms too late", name, lag);
+        return;
       }
+      LOG.warn("task {} was triggered {}ms too late", name, lag);
+    }
+
+    if (active.get() > 0 && configuration.getOverlapPolicy() == CronTaskConfiguration.OverlapPolicy.SKIP) {
+      LOG.debug("skip execution of task {}, because the previous run is still active", name);
+      overlapCount.incrementAndGet();
+      return;
+    }
+
+    LOG.debug("execute task {}, because of matching expression {}", name, expression);
+    active.incrementAndGet();
+    try {
+      executor.execute(() -> execute(scheduled));
+    } catch (RejectedExecutionException ex) {
+      active.decrementAndGet();
+      LOG.warn("worker pool {} rejected execution of task {}", configuration.getPool(), name, ex);
+    }
+  }
+
+  /**
+   * Returns the planned time of the current run and advances to the next run, or returns {@code null} if the task is
+   * not due.
+   */
+  private synchronized ZonedDateTime trigger() {
+    if (cancelled || !hasNextRun() || !expression.shouldRun(nextRun)) {
+      return null;
+    }
+    ZonedDateTime scheduled = nextRun;
+    Optional<ZonedDateTime> next = expression.calculateNextRun();
+    if (next.isPresent()) {
+      nextRun = next.get();
     } else {
-      LOG.trace("skip execution of task {}, because expression {} does not match", name, expression);
+      LOG.debug("cancel task {}, because expression {} has no next execution", name, expression);
+      nextRun = null;
+      cancel();
+    }
+    return scheduled;
+  }
+
+  private void execute(ZonedDateTime scheduled) {
+    long lag = millisSince(scheduled);
+    lastLag = lag;
+    maxLag.accumulate(lag);
+
+    long start = System.nanoTime();
+    try {
+      runnable.run();
+    } catch (Exception ex) {
+      failureCount.incrementAndGet();
+      LOG.error("execution of task {} failed", name, ex);
+    } finally {
+      long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      lastDuration = duration;
+      totalDuration.addAndGet(duration);
+      maxDuration.accumulate(duration);
+      runCount.incrementAndGet();
+      active.decrementAndGet();
     }
   }
 
+  private long millisSince(ZonedDateTime time) {
+    return Math.max(0L, System.currentTimeMillis() - time.toInstant().toEpochMilli());
+  }
+
   boolean hasNextRun() {
     return nextRun != null;
   }
 
+  /**
+   * Returns {@code true} if the task has to be triggered again.
+   */
+  synchronized boolean isPending() {
+    return !cancelled && hasNextRun();
+  }
+
+  /**
+   * Returns the milliseconds until the next run, or zero if the next run is already due.
+   */
+  synchronized long getDelayToNextRun() {
+    if (nextRun == null) {
+      return 0L;
+    }
+    return Math.max(0L, nextRun.toInstant().toEpochMilli() - System.currentTimeMillis());
+  }
+
+  CronTaskStatistics getStatistics() {
+    return new CronTaskStatistics(
+      name, expression.toString(), runCount.get(), failureCount.get(), overlapCount.get(), misfireCount.get(),
+      lastDuration, totalDuration.get(), maxDuration.get(), lastLag, maxLag.get()
+    );
+  }
+
   @VisibleForTesting
   String getName() {
     return name;
@@ -65,7 +185,10 @@ class CronTask implements Task, Runnable {
   @Override
   public synchronized void cancel() {
     LOG.debug("cancel task {} with expression {}", name, expression);
-    future.cancel(false);
+    cancelled = true;
+    if (future != null) {
+      future.cancel(false);
+    }
   }
 
   @Override
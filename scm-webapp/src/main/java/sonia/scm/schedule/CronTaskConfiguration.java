@@ -0,0 +1,117 @@
+package sonia.scm.schedule;
+
+import com.google.common.base.MoreObjects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Execution settings of a {@link CronTask}. The settings are read from system properties, which are prefixed with
+ * {@code sonia.scm.schedule.} and the name of the task (the class name of the runnable), e.g.
+ * {@code -Dsonia.scm.schedule.sonia.scm.repository.GitGcTask.threads=2}:
+ * <ul>
+ *   <li>{@code pool} - name of the worker pool, tasks with the same pool name share their threads (default: task name)</li>
+ *   <li>{@code threads} - number of worker threads of the pool (default: 1)</li>
+ *   <li>{@code overlap} - {@link OverlapPolicy} if the previous run is still active (default: skip)</li>
+ *   <li>{@code misfire} - {@link MisfirePolicy} if a run is triggered too late (default: fire_once)</li>
+ *   <li>{@code misfireThreshold} - seconds after which a run is considered as misfired (default: 60)</li>
+ * </ul>
+ */
+final class CronTaskConfiguration {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CronTaskConfiguration.class);
+
+  private static final String PREFIX = "sonia.scm.schedule.";
+
+  /**
+   * Behaviour if a task is triggered while its previous run is still active.
+   */
+  enum OverlapPolicy {
+    /** the new run is skipped */
+    SKIP,
+    /** the new run is queued on the worker pool of the task */
+    ALLOW
+  }
+
+  /**
+   * Behaviour if a task is triggered later than the misfire threshold, e.g. because the system was suspended. Missed
+   * runs are never fired more than once, because the next run is always calculated from the current time.
+   */
+  enum MisfirePolicy {
+    /** the task is executed once */
+    FIRE_ONCE,
+    /** the run is skipped and the task waits for its next regular run */
+    SKIP
+  }
+
+  private final String pool;
+  private final int threads;
+  private final OverlapPolicy overlapPolicy;
+  private final MisfirePolicy misfirePolicy;
+  private final Duration misfireThreshold;
+
+  CronTaskConfiguration(String pool, int threads, OverlapPolicy overlapPolicy, MisfirePolicy misfirePolicy, Duration misfireThreshold) {
+    this.pool = pool;
+    this.threads = threads;
+    this.overlapPolicy = overlapPolicy;
+    this.misfirePolicy = misfirePolicy;
+    this.misfireThreshold = misfireThreshold;
+  }
+
+  static CronTaskConfiguration of(String name) {
+    String prefix = PREFIX + name + ".";
+    return new CronTaskConfiguration(
+      System.getProperty(prefix + "pool", name),
+      Math.max(1, Integer.getInteger(prefix + "threads", 1)),
+      policy(prefix + "overlap", OverlapPolicy.class, OverlapPolicy.SKIP),
+      policy(prefix + "misfire", MisfirePolicy.class, MisfirePolicy.FIRE_ONCE),
+      Duration.ofSeconds(Long.getLong(prefix + "misfireThreshold", 60L))
+    );
+  }
+
+  private static <E extends Enum<E>> E policy(String property, Class<E> type, E defaultValue) {
+    String value = System.getProperty(property);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Enum.valueOf(type, value.trim().toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException ex) {
+      LOG.warn("unknown value {} for {}, using {}", value, property, defaultValue);
+      return defaultValue;
+    }
+  }
+
+  String getPool() {
+    return pool;
+  }
+
+  int getThreads() {
+    return threads;
+  }
+
+  OverlapPolicy getOverlapPolicy() {
+    return overlapPolicy;
+  }
+
+  MisfirePolicy getMisfirePolicy() {
+    return misfirePolicy;
+  }
+
+  Duration getMisfireThreshold() {
+    return misfireThreshold;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+      .add("pool", pool)
+      .add("threads", threads)
+      .add("overlapPolicy", overlapPolicy)
+      .add("misfirePolicy", misfirePolicy)
+      .add("misfireThreshold", misfireThreshold)
+      .toString();
+  }
+}
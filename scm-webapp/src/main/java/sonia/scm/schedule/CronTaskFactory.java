@@ -10,11 +10,13 @@ class CronTaskFactory {
 
   private final Injector injector;
   private final PrivilegedRunnableFactory runnableFactory;
+  private final CronWorkerPools workerPools;
 
   @Inject
-  public CronTaskFactory(Injector injector, PrivilegedRunnableFactory runnableFactory) {
+  public CronTaskFactory(Injector injector, PrivilegedRunnableFactory runnableFactory, CronWorkerPools workerPools) {
     this.injector = injector;
     this.runnableFactory = runnableFactory;
+    this.workerPools = workerPools;
   }
 
   CronTask create(String expression, Runnable runnable) {
@@ -27,6 +29,7 @@ class CronTaskFactory {
 
   private CronTask create(String expression, String name, Provider<? extends Runnable> runnableProvider) {
     Runnable runnable = runnableFactory.create(runnableProvider);
-    return new CronTask(name, new CronExpression(expression), runnable);
+    CronTaskConfiguration configuration = CronTaskConfiguration.of(name);
+    return new CronTask(name, new CronExpression(expression), runnable, configuration, workerPools.get(configuration));
   }
 }
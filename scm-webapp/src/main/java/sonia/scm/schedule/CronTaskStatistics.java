@@ -0,0 +1,133 @@
+package sonia.scm.schedule;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Execution statistics of a scheduled task. Instances of this class are immutable.
+ *
+ * @since 2.0.0
+ */
+public final class CronTaskStatistics {
+
+  private final String name;
+  private final String expression;
+  private final long runCount;
+  private final long failureCount;
+  private final long overlapCount;
+  private final long misfireCount;
+  private final long lastDuration;
+  private final long totalDuration;
+  private final long maxDuration;
+  private final long lastLag;
+  private final long maxLag;
+
+  @SuppressWarnings("squid:S00107") // value object with a field for every statistic
+  CronTaskStatistics(String name, String expression, long runCount, long failureCount, long overlapCount,
+                     long misfireCount, long lastDuration, long totalDuration, long maxDuration, long lastLag, long maxLag) {
+    this.name = name;
+    this.expression = expression;
+    this.runCount = runCount;
+    this.failureCount = failureCount;
+    this.overlapCount = overlapCount;
+    this.misfireCount = misfireCount;
+    this.lastDuration = lastDuration;
+    this.totalDuration = totalDuration;
+    this.maxDuration = maxDuration;
+    this.lastLag = lastLag;
+    this.maxLag = maxLag;
+  }
+
+  /**
+   * Returns the name of the task.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the cron expression of the task.
+   */
+  public String getExpression() {
+    return expression;
+  }
+
+  /**
+   * Returns the number of finished runs, including the failed ones.
+   */
+  public long getRunCount() {
+    return runCount;
+  }
+
+  /**
+   * Returns the number of runs which have thrown an exception.
+   */
+  public long getFailureCount() {
+    return failureCount;
+  }
+
+  /**
+   * Returns the number of runs which were skipped, because the previous run was still active.
+   */
+  public long getOverlapCount() {
+    return overlapCount;
+  }
+
+  /**
+   * Returns the number of runs which were triggered later than the misfire threshold.
+   */
+  public long getMisfireCount() {
+    return misfireCount;
+  }
+
+  /**
+   * Returns the duration of the last run in milliseconds.
+   */
+  public long getLastDuration() {
+    return lastDuration;
+  }
+
+  /**
+   * Returns the average duration of all runs in milliseconds.
+   */
+  public long getAverageDuration() {
+    return runCount > 0 ? totalDuration / runCount : 0L;
+  }
+
+  /**
+   * Returns the duration of the longest run in milliseconds.
+   */
+  public long getMaxDuration() {
+    return maxDuration;
+  }
+
+  /**
+   * Returns the milliseconds between the planned and the actual start of the last run.
+   */
+  public long getLastLag() {
+    return lastLag;
+  }
+
+  /**
+   * Returns the largest delay between the planned and the actual start of a run in milliseconds.
+   */
+  public long getMaxLag() {
+    return maxLag;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+      .add("name", name)
+      .add("expression", expression)
+      .add("runCount", runCount)
+      .add("failureCount", failureCount)
+      .add("overlapCount", overlapCount)
+      .add("misfireCount", misfireCount)
+      .add("lastDuration", lastDuration)
+      .add("averageDuration", getAverageDuration())
+      .add("maxDuration", maxDuration)
+      .add("lastLag", lastLag)
+      .add("maxLag", maxLag)
+      .toString();
+  }
+}
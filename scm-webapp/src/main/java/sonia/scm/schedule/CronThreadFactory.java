@@ -17,6 +17,7 @@ import java.util.concurrent.atomic.AtomicLong;
 class CronThreadFactory implements ThreadFactory, AutoCloseable {
 
   private static final String NAME_TEMPLATE = "CronScheduler-%d-%d";
+  private static final String POOL_NAME_TEMPLATE = "CronScheduler-%s-%d";
 
   private static final AtomicLong FACTORY_COUNTER = new AtomicLong();
 
@@ -26,6 +27,18 @@ class CronThreadFactory implements ThreadFactory, AutoCloseable {
 
   private final long factoryId = FACTORY_COUNTER.incrementAndGet();
   private final AtomicLong threadCounter = new AtomicLong();
+  private final String poolName;
+
+  CronThreadFactory() {
+    this(null);
+  }
+
+  /**
+   * Creates a thread factory for a named worker pool, the name of the pool becomes part of the thread names.
+   */
+  CronThreadFactory(String poolName) {
+    this.poolName = poolName;
+  }
 
   @Override
   public Thread newThread(final Runnable r) {
@@ -44,6 +57,9 @@ class CronThreadFactory implements ThreadFactory, AutoCloseable {
 
   private String createName() {
     long threadId = threadCounter.incrementAndGet();
+    if (poolName != null) {
+      return String.format(POOL_NAME_TEMPLATE, poolName, threadId);
+    }
     return String.format(NAME_TEMPLATE, factoryId, threadId);
   }
 
@@ -0,0 +1,58 @@
+package sonia.scm.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named worker pools which execute the scheduled tasks. Every task runs on the pool of its
+ * {@link CronTaskConfiguration}, so that a long running task does not delay the tasks of other pools.
+ * Idle worker threads are stopped after one minute.
+ */
+@Singleton
+class CronWorkerPools implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CronWorkerPools.class);
+
+  private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+  Executor get(CronTaskConfiguration configuration) {
+    return pools.computeIfAbsent(configuration.getPool(), name -> {
+      LOG.debug("create worker pool {} with {} threads", name, configuration.getThreads());
+      return new Pool(name, configuration.getThreads());
+    }).executor;
+  }
+
+  @Override
+  public void close() {
+    LOG.debug("shutdown {} worker pools", pools.size());
+    pools.values().forEach(Pool::close);
+    pools.clear();
+  }
+
+  private static class Pool {
+
+    private final CronThreadFactory threadFactory;
+    private final ThreadPoolExecutor executor;
+
+    private Pool(String name, int threads) {
+      this.threadFactory = new CronThreadFactory(name);
+      this.executor = new ThreadPoolExecutor(
+        threads, threads, 1L, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), threadFactory
+      );
+      this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private void close() {
+      executor.shutdown();
+      threadFactory.close();
+    }
+  }
+}
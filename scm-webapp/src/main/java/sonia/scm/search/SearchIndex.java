@@ -0,0 +1,468 @@
+package sonia.scm.search;
+
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index for the search and autocompletion of named objects like users and groups. The index holds the
+ * objects sorted by their lower case name, for prefix queries, and a trigram index over all searchable fields, for
+ * substring queries. The matching semantics are the same as the case insensitive ones of {@link SearchUtil}, but
+ * the results are ranked:
+ * <ol>
+ *   <li>objects whose name is equal to the query</li>
+ *   <li>objects whose name starts with the query</li>
+ *   <li>objects with a field or a word of a field starting with the query</li>
+ *   <li>objects with a field containing the query</li>
+ * </ol>
+ * Within a rank the objects are ordered by their name. The search stops as soon as the requested number of objects
+ * is found, so that the filter (usually a permission check) is only applied to the candidates which are needed.
+ * <p>
+ * The index is built lazily from its source with the first search and is maintained incrementally afterwards, by
+ * calls of {@link #put} and {@link #remove}. Removed objects are only marked as such, the index is compacted if more
+ * than half of its entries are removed.
+ *
+ * @param <T> type of indexed objects
+ *
+ * @since 2.0.0
+ */
+public abstract class SearchIndex<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchIndex.class);
+
+  private static final int GRAM_LENGTH = 3;
+
+  private static final int RANK_EQUAL_NAME = 0;
+  private static final int RANK_NAME_PREFIX = 1;
+  private static final int RANK_WORD_PREFIX = 2;
+  private static final int RANK_SUBSTRING = 3;
+
+  private final Supplier<Collection<T>> source;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final List<Document<T>> documents = new ArrayList<>();
+  private final Map<String, Integer> positions = new HashMap<>();
+  private final BitSet removed = new BitSet();
+  private final TreeMap<String, Integer> names = new TreeMap<>();
+  private final Map<String, Postings> grams = new HashMap<>();
+
+  private volatile boolean built;
+
+  /**
+   * Creates a new index.
+   *
+   * @param source supplier for all objects, which is called to build the index
+   */
+  protected SearchIndex(Supplier<Collection<T>> source) {
+    this.source = source;
+  }
+
+  /**
+   * Returns the unique id of the object.
+   *
+   * @param object indexed object
+   *
+   * @return id of the object
+   */
+  protected abstract String getId(T object);
+
+  /**
+   * Returns the searchable fields of the object, the first one is the name of the object. Fields may be
+   * {@code null}.
+   *
+   * @param object indexed object
+   *
+   * @return searchable fields
+   */
+  protected abstract String[] getFields(T object);
+
+  /**
+   * Returns a copy of the object, which is stored in the index.
+   *
+   * @param object object to copy
+   *
+   * @return copy of the object
+   */
+  protected abstract T copy(T object);
+
+  /**
+   * Searches the objects matching the query of the request, in the order of their rank. The start and the maximum
+   * number of results are interpreted like {@link SearchUtil#search}. The case sensitivity of the request is
+   * ignored, case sensitive requests must be verified by the filter.
+   *
+   * @param request search request
+   * @param filter filter, which is only applied to matching objects
+   *
+   * @return matching objects, these are the instances stored in the index and must not be modified
+   */
+  public List<T> search(SearchRequest request, Predicate<T> filter) {
+    int skip = Math.max(0, request.getStartWith() - 1);
+    int limit = (int) Math.min(Integer.MAX_VALUE, (long) skip + Math.max(1, request.getMaxResults()));
+    List<T> result = search(request.getQuery(), limit, filter);
+    return result.subList(Math.min(skip, result.size()), result.size());
+  }
+
+  /**
+   * Searches the objects matching the query, in the order of their rank.
+   *
+   * @param query query, which may contain the wildcards {@code *} and {@code ?}
+   * @param limit maximum number of results
+   * @param filter filter, which is only applied to matching objects
+   *
+   * @return matching objects, these are the instances stored in the index and must not be modified
+   */
+  public List<T> search(String query, int limit, Predicate<T> filter) {
+    ensureBuilt();
+    Query compiled = Query.create(query);
+    List<T> result = new ArrayList<>(Math.min(limit, 16));
+    lock.readLock().lock();
+    try {
+      if (compiled.isPlain()) {
+        collectNamePrefixes(compiled.literal, limit, filter, result);
+      }
+      if (result.size() < limit) {
+        collectRanked(compiled, limit, filter, result);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return result;
+  }
+
+  /**
+   * Adds the object to the index or replaces the indexed object with the same id.
+   *
+   * @param object new or modified object
+   */
+  protected void put(T object) {
+    lock.writeLock().lock();
+    try {
+      if (!built) {
+        // the index reads the current state of the source, as soon as it is needed
+        return;
+      }
+      removeDocument(getId(object));
+      addDocument(copy(object));
+      compactIfNecessary();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the object from the index.
+   *
+   * @param object removed object
+   */
+  protected void remove(T object) {
+    lock.writeLock().lock();
+    try {
+      if (!built) {
+        return;
+      }
+      removeDocument(getId(object));
+      compactIfNecessary();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void ensureBuilt() {
+    if (built) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      if (!built) {
+        long start = System.nanoTime();
+        rebuild(source.get(), true);
+        built = true;
+        LOG.debug("built search index of {} objects in {}ms", positions.size(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void rebuild(Collection<T> objects, boolean copy) {
+    documents.clear();
+    positions.clear();
+    removed.clear();
+    names.clear();
+    grams.clear();
+    for (T object : objects) {
+      addDocument(copy ? copy(object) : object);
+    }
+  }
+
+  private void compactIfNecessary() {
+    int count = removed.cardinality();
+    if (count > 0 && count > documents.size() / 2) {
+      LOG.debug("compact search index with {} removed objects", count);
+      List<T> objects = new ArrayList<>(positions.size());
+      for (int position = removed.nextClearBit(0); position < documents.size(); position = removed.nextClearBit(position + 1)) {
+        objects.add(documents.get(position).object);
+      }
+      rebuild(objects, false);
+    }
+  }
+
+  private void addDocument(T object) {
+    Document<T> document = new Document<>(getId(object), object, getFields(object));
+    int position = documents.size();
+    documents.add(document);
+    positions.put(document.id, position);
+    names.put(document.nameKey(), position);
+
+    Set<String> documentGrams = new HashSet<>();
+    for (String field : document.fields) {
+      for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+        documentGrams.add(field.substring(i, i + GRAM_LENGTH));
+      }
+    }
+    // positions are increasing, so the postings stay sorted
+    for (String gram : documentGrams) {
+      grams.computeIfAbsent(gram, g -> new Postings()).add(position);
+    }
+  }
+
+  private void removeDocument(String id) {
+    Integer position = positions.remove(id);
+    if (position != null) {
+      removed.set(position);
+      names.remove(documents.get(position).nameKey());
+    }
+  }
+
+  private void collectNamePrefixes(String prefix, int limit, Predicate<T> filter, List<T> result) {
+    // the exact match sorts first, because the name is followed by a null character in the key
+    for (int position : names.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+      if (!accept(position, filter, limit, result)) {
+        return;
+      }
+    }
+  }
+
+  private void collectRanked(Query query, int limit, Predicate<T> filter, List<T> result) {
+    List<List<Integer>> ranks = new ArrayList<>();
+    for (int i = RANK_EQUAL_NAME; i <= RANK_SUBSTRING; i++) {
+      ranks.add(new ArrayList<>());
+    }
+    // name prefixes of plain queries are already collected from the sorted names
+    int minRank = query.isPlain() ? RANK_WORD_PREFIX : RANK_EQUAL_NAME;
+
+    int[] candidates = candidates(query);
+    int count = candidates != null ? candidates.length : documents.size();
+    for (int i = 0; i < count; i++) {
+      int position = candidates != null ? candidates[i] : i;
+      if (!removed.get(position)) {
+        int rank = query.rank(documents.get(position));
+        if (rank >= minRank) {
+          ranks.get(rank).add(position);
+        }
+      }
+    }
+
+    Comparator<Integer> byName = Comparator.comparing(position -> documents.get(position).nameKey());
+    for (List<Integer> rank : ranks) {
+      rank.sort(byName);
+      for (int position : rank) {
+        if (!accept(position, filter, limit, result)) {
+          return;
+        }
+      }
+    }
+  }
+
+  private boolean accept(int position, Predicate<T> filter, int limit, List<T> result) {
+    T object = documents.get(position).object;
+    if (filter.test(object)) {
+      result.add(object);
+    }
+    return result.size() < limit;
+  }
+
+  /**
+   * Returns the positions of all documents containing every trigram of the longest literal of the query or
+   * {@code null}, if the literal is too short and every document is a candidate.
+   */
+  private int[] candidates(Query query) {
+    String literal = query.longestLiteral();
+    if (literal.length() < GRAM_LENGTH) {
+      return null;
+    }
+
+    List<Postings> postings = new ArrayList<>();
+    for (int i = 0; i + GRAM_LENGTH <= literal.length(); i++) {
+      Postings gramPostings = grams.get(literal.substring(i, i + GRAM_LENGTH));
+      if (gramPostings == null) {
+        return new int[0];
+      }
+      postings.add(gramPostings);
+    }
+    postings.sort(Comparator.comparingInt(p -> p.size));
+
+    Postings smallest = postings.get(0);
+    int[] result = Arrays.copyOf(smallest.positions, smallest.size);
+    int size = result.length;
+    for (Postings other : postings.subList(1, postings.size())) {
+      int retained = 0;
+      for (int i = 0; i < size; i++) {
+        if (Arrays.binarySearch(other.positions, 0, other.size, result[i]) >= 0) {
+          result[retained++] = result[i];
+        }
+      }
+      size = retained;
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  private static final class Document<T> {
+
+    private final String id;
+    private final T object;
+    private final String name;
+    private final String[] fields;
+
+    private Document(String id, T object, String[] fields) {
+      this.id = id;
+      this.object = object;
+      this.fields = Arrays.stream(fields)
+        .filter(field -> !Strings.isNullOrEmpty(field))
+        .map(field -> field.toLowerCase(Locale.ENGLISH))
+        .toArray(String[]::new);
+      this.name = fields.length > 0 ? Strings.nullToEmpty(fields[0]).toLowerCase(Locale.ENGLISH) : "";
+    }
+
+    private boolean hasName() {
+      return !name.isEmpty();
+    }
+
+    private String nameKey() {
+      return name + '\0' + id;
+    }
+  }
+
+  /**
+   * Sorted positions of the documents containing a trigram.
+   */
+  private static final class Postings {
+
+    private int[] positions = new int[4];
+    private int size;
+
+    private void add(int position) {
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      positions[size++] = position;
+    }
+  }
+
+  private static final class Query {
+
+    private final String literal;
+    private final Pattern pattern;
+
+    private Query(String literal, Pattern pattern) {
+      this.literal = literal;
+      this.pattern = pattern;
+    }
+
+    static Query create(String query) {
+      // leading and trailing wildcards are implied, because the query may match anywhere in a field
+      String normalized = Strings.nullToEmpty(query).trim().toLowerCase(Locale.ENGLISH)
+        .replaceAll("^\\*+|\\*+$", "");
+      if (normalized.indexOf('*') < 0 && normalized.indexOf('?') < 0) {
+        return new Query(normalized, null);
+      }
+
+      StringBuilder regex = new StringBuilder();
+      StringBuilder literal = new StringBuilder();
+      String longest = "";
+      for (char c : normalized.toCharArray()) {
+        if (c == '*' || c == '?') {
+          regex.append(Pattern.quote(literal.toString())).append(c == '*' ? ".*" : ".");
+          if (literal.length() > longest.length()) {
+            longest = literal.toString();
+          }
+          literal.setLength(0);
+        } else {
+          literal.append(c);
+        }
+      }
+      regex.append(Pattern.quote(literal.toString()));
+      if (literal.length() > longest.length()) {
+        longest = literal.toString();
+      }
+      return new Query(longest, Pattern.compile(regex.toString()));
+    }
+
+    boolean isPlain() {
+      return pattern == null;
+    }
+
+    String longestLiteral() {
+      return literal;
+    }
+
+    /**
+     * Returns the rank of the document or -1, if the document does not match.
+     */
+    int rank(Document<?> document) {
+      int best = -1;
+      for (int i = 0; i < document.fields.length; i++) {
+        String field = document.fields[i];
+        boolean name = i == 0 && document.hasName();
+        int start = find(field, 0);
+        while (start >= 0) {
+          int rank;
+          if (name && start == 0) {
+            rank = isPlain() && field.length() == literal.length() ? RANK_EQUAL_NAME : RANK_NAME_PREFIX;
+          } else if (start == 0 || !Character.isLetterOrDigit(field.charAt(start - 1))) {
+            rank = RANK_WORD_PREFIX;
+          } else {
+            rank = RANK_SUBSTRING;
+          }
+          if (best < 0 || rank < best) {
+            best = rank;
+          }
+          if (best <= RANK_WORD_PREFIX || start + 1 >= field.length()) {
+            break;
+          }
+          start = find(field, start + 1);
+        }
+      }
+      return best;
+    }
+
+    private int find(String field, int from) {
+      if (pattern == null) {
+        return field.indexOf(literal, from);
+      }
+      Matcher matcher = pattern.matcher(field);
+      return matcher.find(from) ? matcher.start() : -1;
+    }
+  }
+}
@@ -44,11 +44,15 @@ import sonia.scm.group.GroupModificationEvent;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryEvent;
 import sonia.scm.repository.RepositoryModificationEvent;
+import sonia.scm.repository.RepositoryPermission;
 import sonia.scm.user.User;
 import sonia.scm.user.UserEvent;
 import sonia.scm.user.UserModificationEvent;
 
 import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Receives all kinds of events, which affects authorization relevant data and fires an
@@ -156,9 +160,9 @@ public class AuthorizationChangedEventProducer {
     Repository repository = event.getItem();
     if (isAuthorizationDataModified(repository, event.getItemBeforeModification())) {
       logger.debug(
-        "fire authorization changed event, because a relevant field of repository {} has changed", repository.getName()
+        "fire authorization changed events, because a relevant field of repository {} has changed", repository.getName()
       );
-      fireEventForEveryUser();
+      fireEventsForChangedPermissions(repository.getPermissions(), event.getItemBeforeModification().getPermissions());
     } else {
       logger.debug(
         "authorization changed event is not fired, because non relevant field of repository {} has changed",
@@ -171,24 +175,47 @@ public class AuthorizationChangedEventProducer {
     return !(repository.getPermissions().containsAll(beforeModification.getPermissions()) && beforeModification.getPermissions().containsAll(repository.getPermissions()));
   }
 
+  /**
+   * Fires an event for every user and every group whose permissions have been removed or added. The events are fired
+   * in the order of the permissions, removed permissions first.
+   */
+  private void fireEventsForChangedPermissions(Collection<RepositoryPermission> permissions, Collection<RepositoryPermission> permissionsBeforeModification) {
+    Set<RepositoryPermission> changed = new LinkedHashSet<>();
+    permissionsBeforeModification.stream().filter(p -> !permissions.contains(p)).forEach(changed::add);
+    permissions.stream().filter(p -> !permissionsBeforeModification.contains(p)).forEach(changed::add);
+    fireEventsForPermissions(changed);
+  }
+
+  private void fireEventsForPermissions(Collection<? extends PermissionObject> permissions) {
+    Set<PermissionObject> fired = new LinkedHashSet<>();
+    for (PermissionObject permission : permissions) {
+      if (fired.stream().noneMatch(f -> isSamePrincipal(f, permission))) {
+        fired.add(permission);
+        if (permission.isGroupPermission()) {
+          sendEvent(AuthorizationChangedEvent.createForGroup(permission.getName()));
+        } else {
+          fireEventForUser(permission.getName());
+        }
+      }
+    }
+  }
+
+  private boolean isSamePrincipal(PermissionObject one, PermissionObject two) {
+    return one.isGroupPermission() == two.isGroupPermission() && one.getName().equals(two.getName());
+  }
+
   private void fireEventForEveryUser() {
     sendEvent(AuthorizationChangedEvent.createForEveryUser());
   }
 
   private void handleRepositoryEvent(RepositoryEvent event){
     logger.debug(
-      "fire authorization changed event, because of received {} event for repository {}",
-      event.getEventType(), event.getItem().getName()
+      "fire authorization changed events for the permissions of repository {}, because of received {} event",
+      event.getItem().getName(), event.getEventType()
     );
-    fireEventForEveryUser();
+    fireEventsForPermissions(event.getItem().getPermissions());
   }
 
-  /**
-   * Invalidates the whole cache if a group permission has changed and invalidates the cached entries of a user, if a
-   * user permission has changed.
-   *
-   * @param event permission event
-   */
   @Subscribe
   public void onEvent(AssignedPermissionEvent event) {
     if (event.getEventType().isPost()) {
@@ -50,17 +50,19 @@ import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sonia.scm.HandlerEventType;
 import sonia.scm.cache.Cache;
 import sonia.scm.cache.CacheManager;
 import sonia.scm.group.GroupCollector;
 import sonia.scm.group.GroupPermissions;
 import sonia.scm.plugin.Extension;
-import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryDAO;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.repository.RepositoryListingIndex;
 import sonia.scm.repository.RepositoryPermission;
+import sonia.scm.repository.RepositoryRoleEvent;
 import sonia.scm.user.User;
 import sonia.scm.user.UserPermissions;
-import sonia.scm.util.Util;
 
 import java.util.Collection;
 import java.util.Set;
@@ -94,16 +96,20 @@ public class DefaultAuthorizationCollector implements AuthorizationCollector
    * @param securitySystem
    * @param repositoryPermissionProvider
    * @param groupCollector
+   * @param listingIndex
    */
   @Inject
   public DefaultAuthorizationCollector(CacheManager cacheManager,
-                                       RepositoryDAO repositoryDAO, SecuritySystem securitySystem, RepositoryPermissionProvider repositoryPermissionProvider, GroupCollector groupCollector)
+                                       RepositoryDAO repositoryDAO, SecuritySystem securitySystem, RepositoryPermissionProvider repositoryPermissionProvider, GroupCollector groupCollector,
+                                       RepositoryListingIndex listingIndex)
   {
     this.cache = cacheManager.getCache(CACHE_NAME);
     this.repositoryDAO = repositoryDAO;
     this.securitySystem = securitySystem;
     this.repositoryPermissionProvider = repositoryPermissionProvider;
     this.groupCollector = groupCollector;
+    this.listingIndex = listingIndex;
+    this.permissionIndex = new RepositoryPermissionIndex(repositoryDAO::getAll);
   }
 
   //~--- methods --------------------------------------------------------------
@@ -186,49 +192,21 @@ public class DefaultAuthorizationCollector implements AuthorizationCollector
   private void collectRepositoryPermissions(Builder<String> builder, User user,
     Set<String> groups)
   {
-    for (Repository repository : repositoryDAO.getAll())
+    for (RepositoryPermissionIndex.Grant grant : permissionIndex.getGrants(user.getName(), groups))
     {
-      collectRepositoryPermissions(builder, repository, user, groups);
+      addRepositoryPermission(builder, grant.getRepositoryId(), user, grant.getPermission());
     }
   }
 
-  private void collectRepositoryPermissions(Builder<String> builder,
-    Repository repository, User user, Set<String> groups)
-  {
-    Collection<RepositoryPermission> repositoryPermissions = repository.getPermissions();
-
-    if (Util.isNotEmpty(repositoryPermissions))
-    {
-      boolean hasPermission = false;
-      for (RepositoryPermission permission : repositoryPermissions)
-      {
-        hasPermission = isUserPermitted(user, groups, permission);
-        if (hasPermission) {
-          addRepositoryPermission(builder, repository, user, permission);
-        }
-      }
-
-      if (!hasPermission && logger.isTraceEnabled())
-      {
-        logger.trace("no permission for user {} defined at repository {}", user.getName(), repository.getName());
-      }
-    }
-    else if (logger.isTraceEnabled())
-    {
-      logger.trace("repository {} has no permission entries",
-        repository.getName());
-    }
-  }
-
-  private void addRepositoryPermission(Builder<String> builder, Repository repository, User user, RepositoryPermission permission) {
+  private void addRepositoryPermission(Builder<String> builder, String repositoryId, User user, RepositoryPermission permission) {
     Collection<String> verbs = getVerbs(permission);
     if (!verbs.isEmpty())
     {
-      String perm = "repository:" + String.join(",", verbs) + ":" + repository.getId();
+      String perm = "repository:" + String.join(",", verbs) + ":" + repositoryId;
       if (logger.isTraceEnabled())
       {
         logger.trace("add repository permission {} for user {} at repository {}",
-          perm, user.getName(), repository.getName());
+          perm, user.getName(), repositoryId);
       }
 
       builder.add(perm);
@@ -260,10 +238,7 @@ public class DefaultAuthorizationCollector implements AuthorizationCollector
       builder.add(getChangeOwnPasswordPermission(user));
     }
 
-    SimpleAuthorizationInfo info = new SimpleAuthorizationInfo(ImmutableSet.of(Role.USER));
-    info.addStringPermissions(builder.build());
-
-    return info;
+    return new ImmutableAuthorizationInfo(ImmutableSet.of(Role.USER), builder.build());
   }
 
   private String getGroupAutocompletePermission() {
@@ -293,12 +268,59 @@ public class DefaultAuthorizationCollector implements AuthorizationCollector
     //J+
   }
 
+  /**
+   * Invalidates the cache of the affected users. The readable repositories of the {@link RepositoryListingIndex} are
+   * invalidated afterwards, so that they are never recalculated from an outdated authorization.
+   *
+   * @param event authorization changed event
+   */
   @Subscribe
   public void invalidateCache(AuthorizationChangedEvent event) {
-    if (event.isEveryUserAffected()) {
+    if (event.getNameOfAffectedGroup() != null) {
+      invalidateGroupCache(event.getNameOfAffectedGroup());
+      listingIndex.invalidateReadable();
+    } else if (event.isEveryUserAffected()) {
       invalidateUserCache(event.getNameOfAffectedUser());
+      listingIndex.invalidateReadable(event.getNameOfAffectedUser());
     } else {
       invalidateCache();
+      listingIndex.invalidateReadable();
+    }
+  }
+
+  /**
+   * Updates the permission index. The index is updated synchronously, before the asynchronous
+   * {@link AuthorizationChangedEvent} of the {@link AuthorizationChangedEventProducer} invalidates the cache.
+   *
+   * @param event repository event
+   */
+  @Subscribe(async = false)
+  public void updatePermissionIndex(RepositoryEvent event) {
+    if (event.getEventType().isPost()) {
+      if (event.getEventType() == HandlerEventType.DELETE) {
+        permissionIndex.remove(event.getItem());
+      } else {
+        permissionIndex.update(event.getItem());
+      }
+    }
+  }
+
+  /**
+   * Invalidates the cache of every user and group which is using the changed role.
+   *
+   * @param event repository role event
+   */
+  @Subscribe
+  public void invalidateCache(RepositoryRoleEvent event) {
+    if (event.getEventType().isPost()) {
+      for (RepositoryPermissionIndex.Principal principal : permissionIndex.getPrincipalsWithRole(event.getItem().getName())) {
+        if (principal.isGroup()) {
+          invalidateGroupCache(principal.getName());
+        } else {
+          invalidateUserCache(principal.getName());
+        }
+      }
+      listingIndex.invalidateReadable();
     }
   }
 
@@ -307,6 +329,11 @@ public class DefaultAuthorizationCollector implements AuthorizationCollector
     cache.removeAll((CacheKey item) -> username.equalsIgnoreCase(item.username));
   }
 
+  private void invalidateGroupCache(final String groupname) {
+    logger.info("invalidate cache for members of group {}, because of a received authorization event", groupname);
+    cache.removeAll((CacheKey item) -> item.groupnames.contains(groupname));
+  }
+
   private void invalidateCache() {
     logger.info("invalidate cache, because of a received authorization event");
     cache.clear();
@@ -380,4 +407,9 @@ public class DefaultAuthorizationCollector implements AuthorizationCollector
 
   private final RepositoryPermissionProvider repositoryPermissionProvider;
   private final GroupCollector groupCollector;
+
+  /** index of the repository permissions by user and group */
+  private final RepositoryPermissionIndex permissionIndex;
+
+  private final RepositoryListingIndex listingIndex;
 }
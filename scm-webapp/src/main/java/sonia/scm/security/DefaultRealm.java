@@ -38,6 +38,7 @@ import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.authc.credential.CredentialsMatcher;
 import org.apache.shiro.authc.credential.PasswordMatcher;
 import org.apache.shiro.authc.credential.PasswordService;
 import org.apache.shiro.authz.AuthorizationInfo;
@@ -86,15 +87,38 @@ public class DefaultRealm extends AuthorizingRealm
    * @param authorizationCollectors
    * @param helperFactory
    */
-  @Inject
   public DefaultRealm(PasswordService service, Set<AuthorizationCollector> authorizationCollectors, DAORealmHelperFactory helperFactory)
+  {
+    this(service, authorizationCollectors, helperFactory, null);
+  }
+
+  /**
+   * Constructs a new realm, which caches verified credentials.
+   *
+   *
+   * @param service
+   * @param authorizationCollectors
+   * @param helperFactory
+   * @param credentialCache cache for verified credentials, may be {@code null}
+   */
+  @Inject
+  public DefaultRealm(PasswordService service, Set<AuthorizationCollector> authorizationCollectors,
+    DAORealmHelperFactory helperFactory, VerifiedCredentialCache credentialCache)
   {
     this.authorizationCollectors = authorizationCollectors;
     this.helper = helperFactory.create(REALM);
 
-    PasswordMatcher matcher = new PasswordMatcher();
+    PasswordMatcher passwordMatcher = new PasswordMatcher();
+
+    passwordMatcher.setPasswordService(service);
+
+    CredentialsMatcher matcher = passwordMatcher;
+
+    if (credentialCache != null)
+    {
+      matcher = credentialCache.wrap(passwordMatcher);
+    }
 
-    matcher.setPasswordService(service);
     setCredentialsMatcher(helper.wrapCredentialsMatcher(matcher));
     setAuthenticationTokenClass(UsernamePasswordToken.class);
 
@@ -0,0 +1,56 @@
+package sonia.scm.security;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
+import sonia.scm.cache.ImmutableCacheValue;
+
+import java.util.Collection;
+
+/**
+ * {@link AuthorizationInfo} which can not be modified after its creation. The authorization cache shares instances
+ * of this class between requests without copying the permissions.
+ *
+ * @since 2.0.0
+ */
+final class ImmutableAuthorizationInfo implements AuthorizationInfo, ImmutableCacheValue {
+
+  private static final long serialVersionUID = -2539618437417539154L;
+
+  private final ImmutableSet<String> roles;
+  private final ImmutableSet<String> stringPermissions;
+
+  ImmutableAuthorizationInfo(Collection<String> roles, Collection<String> stringPermissions) {
+    this.roles = ImmutableSet.copyOf(roles);
+    this.stringPermissions = ImmutableSet.copyOf(stringPermissions);
+  }
+
+  @Override
+  public Collection<String> getRoles() {
+    return roles;
+  }
+
+  @Override
+  public Collection<String> getStringPermissions() {
+    return stringPermissions;
+  }
+
+  /**
+   * Returns {@code null}, because all permissions are string permissions.
+   *
+   * @return {@code null}
+   */
+  @Override
+  public Collection<Permission> getObjectPermissions() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+      .add("roles", roles)
+      .add("stringPermissions", stringPermissions)
+      .toString();
+  }
+}
@@ -0,0 +1,253 @@
+package sonia.scm.security;
+
+import com.google.common.base.Objects;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryPermission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Inverted index of the repository permissions. The index maps every user and group to the repositories and
+ * permissions which are granted to them, so that the permissions of a user can be collected without iterating over
+ * every repository. The index is built from all repositories on first access and is afterwards updated with every
+ * single repository.
+ */
+final class RepositoryPermissionIndex {
+
+  private final Supplier<Collection<Repository>> repositories;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<Principal, Map<String, List<RepositoryPermission>>> grants = new HashMap<>();
+  private final Map<String, List<RepositoryPermission>> permissionsByRepository = new HashMap<>();
+
+  private volatile boolean initialized;
+
+  RepositoryPermissionIndex(Supplier<Collection<Repository>> repositories) {
+    this.repositories = repositories;
+  }
+
+  /**
+   * Returns the repository permissions granted to the user or to one of its groups.
+   *
+   * @param username name of the user
+   * @param groups groups of the user
+   *
+   * @return granted permissions
+   */
+  List<Grant> getGrants(String username, Collection<String> groups) {
+    initialize();
+    lock.readLock().lock();
+    try {
+      List<Grant> result = new ArrayList<>();
+      collect(result, Principal.user(username));
+      for (String group : groups) {
+        collect(result, Principal.group(group));
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void collect(List<Grant> result, Principal principal) {
+    Map<String, List<RepositoryPermission>> byRepository = grants.get(principal);
+    if (byRepository != null) {
+      byRepository.forEach(
+        (repositoryId, permissions) -> permissions.forEach(p -> result.add(new Grant(repositoryId, p)))
+      );
+    }
+  }
+
+  /**
+   * Returns all users and groups which have a permission with the given role.
+   *
+   * @param role name of the repository role
+   *
+   * @return users and groups with the role
+   */
+  Set<Principal> getPrincipalsWithRole(String role) {
+    initialize();
+    lock.readLock().lock();
+    try {
+      Set<Principal> principals = new HashSet<>();
+      for (List<RepositoryPermission> permissions : permissionsByRepository.values()) {
+        for (RepositoryPermission permission : permissions) {
+          if (role.equals(permission.getRole())) {
+            principals.add(Principal.of(permission));
+          }
+        }
+      }
+      return principals;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Replaces the indexed permissions of the repository.
+   *
+   * @param repository created or modified repository
+   */
+  void update(Repository repository) {
+    initialize();
+    lock.writeLock().lock();
+    try {
+      remove(repository.getId());
+      add(repository);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the permissions of the repository from the index.
+   *
+   * @param repository deleted repository
+   */
+  void remove(Repository repository) {
+    initialize();
+    lock.writeLock().lock();
+    try {
+      remove(repository.getId());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void initialize() {
+    if (initialized) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      if (!initialized) {
+        for (Repository repository : repositories.get()) {
+          add(repository);
+        }
+        initialized = true;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void add(Repository repository) {
+    Collection<RepositoryPermission> permissions = repository.getPermissions();
+    if (permissions == null || permissions.isEmpty()) {
+      return;
+    }
+    List<RepositoryPermission> copy = new ArrayList<>(permissions);
+    permissionsByRepository.put(repository.getId(), copy);
+    for (RepositoryPermission permission : copy) {
+      grants.computeIfAbsent(Principal.of(permission), p -> new HashMap<>())
+        .computeIfAbsent(repository.getId(), id -> new ArrayList<>())
+        .add(permission);
+    }
+  }
+
+  private void remove(String repositoryId) {
+    List<RepositoryPermission> permissions = permissionsByRepository.remove(repositoryId);
+    if (permissions == null) {
+      return;
+    }
+    Set<Principal> principals = new LinkedHashSet<>();
+    permissions.forEach(permission -> principals.add(Principal.of(permission)));
+    for (Principal principal : principals) {
+      Map<String, List<RepositoryPermission>> byRepository = grants.get(principal);
+      if (byRepository != null) {
+        byRepository.remove(repositoryId);
+        if (byRepository.isEmpty()) {
+          grants.remove(principal);
+        }
+      }
+    }
+  }
+
+  /**
+   * Repository permission granted at a single repository.
+   */
+  static final class Grant {
+
+    private final String repositoryId;
+    private final RepositoryPermission permission;
+
+    private Grant(String repositoryId, RepositoryPermission permission) {
+      this.repositoryId = repositoryId;
+      this.permission = permission;
+    }
+
+    String getRepositoryId() {
+      return repositoryId;
+    }
+
+    RepositoryPermission getPermission() {
+      return permission;
+    }
+  }
+
+  /**
+   * User or group which owns a permission.
+   */
+  static final class Principal {
+
+    private final String name;
+    private final boolean group;
+
+    private Principal(String name, boolean group) {
+      this.name = name;
+      this.group = group;
+    }
+
+    static Principal of(PermissionObject permission) {
+      return new Principal(permission.getName(), permission.isGroupPermission());
+    }
+
+    static Principal user(String name) {
+      return new Principal(name, false);
+    }
+
+    static Principal group(String name) {
+      return new Principal(name, true);
+    }
+
+    String getName() {
+      return name;
+    }
+
+    boolean isGroup() {
+      return group;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Principal other = (Principal) o;
+      return group == other.group && Objects.equal(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(name, group);
+    }
+
+    @Override
+    public String toString() {
+      return (group ? "group " : "user ") + name;
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package sonia.scm.security;
+
+import com.github.legman.Subscribe;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.io.BaseEncoding;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.authc.credential.CredentialsMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.Cache;
+import sonia.scm.cache.CacheManager;
+import sonia.scm.cache.CacheStatistics;
+import sonia.scm.user.User;
+import sonia.scm.user.UserEvent;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Cache of successfully verified username and password combinations. Clients of the scm protocols send their
+ * credentials with every request and the verification of the password hash is expensive by design. The cache allows
+ * repeated requests to skip the hash verification.
+ * <p>
+ * The cache does not store passwords. An entry is identified by a HMAC of the username, the password and the stored
+ * password hash, with a random key which is created on startup and never leaves the memory. A changed password hash
+ * therefore never matches an existing entry. The entries of a user are invalidated, if the user is modified or deleted
+ * or if its authorization has changed.
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class VerifiedCredentialCache {
+
+  @VisibleForTesting
+  static final String CACHE_NAME = "sonia.cache.credentials";
+
+  private static final Logger LOG = LoggerFactory.getLogger(VerifiedCredentialCache.class);
+
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final int KEY_LENGTH = 32;
+
+  private final Cache<CacheKey, Boolean> cache;
+  private final SecretKeySpec key;
+
+  @Inject
+  public VerifiedCredentialCache(CacheManager cacheManager) {
+    this(cacheManager.getCache(CACHE_NAME), new SecureRandom());
+  }
+
+  @VisibleForTesting
+  VerifiedCredentialCache(Cache<CacheKey, Boolean> cache, SecureRandom random) {
+    this.cache = cache;
+    byte[] secret = new byte[KEY_LENGTH];
+    random.nextBytes(secret);
+    this.key = new SecretKeySpec(secret, ALGORITHM);
+  }
+
+  /**
+   * Wraps the credentials matcher, so that successfully verified credentials are cached.
+   *
+   * @param credentialsMatcher credentials matcher which verifies the password
+   *
+   * @return caching credentials matcher
+   */
+  public CredentialsMatcher wrap(CredentialsMatcher credentialsMatcher) {
+    return new CachingCredentialsMatcher(credentialsMatcher);
+  }
+
+  /**
+   * Invalidates the entries of the user, if the user was modified or deleted.
+   *
+   * @param event user event
+   */
+  @Subscribe(async = false)
+  public void onEvent(UserEvent event) {
+    HandlerEventType type = event.getEventType();
+    if (type == HandlerEventType.MODIFY || type == HandlerEventType.DELETE) {
+      invalidate(event.getItem());
+      if (event.getOldItem() != null) {
+        invalidate(event.getOldItem());
+      }
+    }
+  }
+
+  /**
+   * Invalidates the entries of the affected user or the whole cache, if more than one user is affected.
+   *
+   * @param event authorization changed event
+   */
+  @Subscribe(async = false)
+  public void onEvent(AuthorizationChangedEvent event) {
+    // isEveryUserAffected returns the opposite of its name, so only the name of the affected user is reliable
+    String username = event.getNameOfAffectedUser();
+    if (username != null) {
+      invalidate(username);
+    } else {
+      LOG.debug("clear verified credentials, because of a received authorization event");
+      cache.clear();
+    }
+  }
+
+  /**
+   * Returns the statistics of the cache.
+   *
+   * @return cache statistics
+   */
+  public CacheStatistics getStatistics() {
+    return cache.getStatistics();
+  }
+
+  private void invalidate(User user) {
+    invalidate(user.getName());
+  }
+
+  private void invalidate(String username) {
+    LOG.debug("invalidate verified credentials of user {}", username);
+    cache.removeAll(cacheKey -> username.equals(cacheKey.username));
+  }
+
+  private CacheKey createKey(String username, char[] password, String storedCredentials) {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      mac.update(username.getBytes(StandardCharsets.UTF_8));
+      mac.update((byte) 0);
+      ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+      mac.update(encoded);
+      // do not leave a copy of the password in the heap
+      Arrays.fill(encoded.array(), (byte) 0);
+      mac.update((byte) 0);
+      mac.update(storedCredentials.getBytes(StandardCharsets.UTF_8));
+      return new CacheKey(username, BaseEncoding.base64().encode(mac.doFinal()));
+    } catch (GeneralSecurityException ex) {
+      throw new IllegalStateException("could not create hmac of credentials", ex);
+    }
+  }
+
+  private class CachingCredentialsMatcher implements CredentialsMatcher {
+
+    private final CredentialsMatcher credentialsMatcher;
+
+    private CachingCredentialsMatcher(CredentialsMatcher credentialsMatcher) {
+      this.credentialsMatcher = credentialsMatcher;
+    }
+
+    @Override
+    public boolean doCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
+      if (!isCacheable(token, info)) {
+        return credentialsMatcher.doCredentialsMatch(token, info);
+      }
+
+      UsernamePasswordToken upt = (UsernamePasswordToken) token;
+      CacheKey cacheKey = createKey(upt.getUsername(), upt.getPassword(), (String) info.getCredentials());
+      if (cache.get(cacheKey) != null) {
+        LOG.trace("use verified credentials of user {} from cache", upt.getUsername());
+        return true;
+      }
+
+      boolean result = credentialsMatcher.doCredentialsMatch(token, info);
+      if (result) {
+        cache.put(cacheKey, Boolean.TRUE);
+      }
+      return result;
+    }
+
+    private boolean isCacheable(AuthenticationToken token, AuthenticationInfo info) {
+      if (!(token instanceof UsernamePasswordToken) || !(info.getCredentials() instanceof String)) {
+        return false;
+      }
+      UsernamePasswordToken upt = (UsernamePasswordToken) token;
+      return upt.getUsername() != null && upt.getPassword() != null;
+    }
+  }
+
+  @VisibleForTesting
+  static final class CacheKey {
+
+    private final String username;
+    private final String hmac;
+
+    private CacheKey(String username, String hmac) {
+      this.username = username;
+      this.hmac = hmac;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return Objects.equal(username, other.username) && Objects.equal(hmac, other.hmac);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(username, hmac);
+    }
+  }
+}
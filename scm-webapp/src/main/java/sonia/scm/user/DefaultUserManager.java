@@ -45,7 +45,6 @@ import sonia.scm.HandlerEventType;
 import sonia.scm.ManagerDaoAdapter;
 import sonia.scm.NotFoundException;
 import sonia.scm.SCMContextProvider;
-import sonia.scm.TransformFilter;
 import sonia.scm.search.SearchRequest;
 import sonia.scm.search.SearchUtil;
 import sonia.scm.security.Authentications;
@@ -59,6 +58,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -81,11 +81,13 @@ public class DefaultUserManager extends AbstractUserManager
    * Constructs ...
    *
    * @param userDAO
+   * @param searchIndex
    */
   @Inject
-  public DefaultUserManager(UserDAO userDAO)
+  public DefaultUserManager(UserDAO userDAO, UserSearchIndex searchIndex)
   {
     this.userDAO = userDAO;
+    this.searchIndex = searchIndex;
     this.managerDaoAdapter = new ManagerDaoAdapter<>(userDAO);
   }
 
@@ -226,17 +228,10 @@ public class DefaultUserManager extends AbstractUserManager
     }
 
     final PermissionActionCheck<User> check = UserPermissions.read();
-    return SearchUtil.search(searchRequest, userDAO.getAll(), new TransformFilter<User, User>() {
-      @Override
-      public User accept(User user)
-      {
-        User result = null;
-        if (check.isPermitted(user) && matches(searchRequest, user)) {
-          result = user.clone();
-        }
-        return result;
-      }
-    });
+    List<User> users = searchIndex.search(searchRequest,
+      user -> check.isPermitted(user)
+        && (searchRequest.isIgnoreCase() || matches(searchRequest, user)));
+    return users.stream().map(User::clone).collect(Collectors.toList());
   }
 
   private boolean matches(SearchRequest searchRequest, User user) {
@@ -412,5 +407,6 @@ public class DefaultUserManager extends AbstractUserManager
   //~--- fields ---------------------------------------------------------------
 
   private final UserDAO userDAO;
+  private final UserSearchIndex searchIndex;
   private final ManagerDaoAdapter<User> managerDaoAdapter;
 }
@@ -0,0 +1,53 @@
+package sonia.scm.user;
+
+import com.github.legman.Subscribe;
+import sonia.scm.HandlerEventType;
+import sonia.scm.search.SearchIndex;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Search index over the name, the display name and the mail address of all users. The index is maintained from the
+ * {@link UserEvent}s.
+ *
+ * @since 2.0.0
+ */
+@Singleton
+public class UserSearchIndex extends SearchIndex<User> {
+
+  @Inject
+  public UserSearchIndex(UserDAO userDAO) {
+    super(userDAO::getAll);
+  }
+
+  /**
+   * Updates the index, after a user was created, modified or deleted.
+   *
+   * @param event user event
+   */
+  @Subscribe(async = false)
+  public void onEvent(UserEvent event) {
+    HandlerEventType type = event.getEventType();
+    if (type == HandlerEventType.DELETE) {
+      remove(event.getItem());
+    } else if (type.isPost()) {
+      put(event.getItem());
+    }
+  }
+
+  @Override
+  protected String getId(User user) {
+    return user.getId();
+  }
+
+  @Override
+  protected String[] getFields(User user) {
+    return new String[]{user.getName(), user.getDisplayName(), user.getMail()};
+  }
+
+  @Override
+  protected User copy(User user) {
+    return user.clone();
+  }
+}
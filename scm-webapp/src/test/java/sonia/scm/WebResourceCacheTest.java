@@ -0,0 +1,74 @@
+package sonia.scm;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import sonia.scm.plugin.UberWebResourceLoader;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class WebResourceCacheTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock
+  private UberWebResourceLoader webResourceLoader;
+
+  private File directory;
+
+  private WebResourceCache cache;
+
+  @Before
+  public void setUpCache() throws IOException {
+    directory = temporaryFolder.newFolder();
+    cache = new WebResourceCache(webResourceLoader, directory);
+  }
+
+  @Test
+  public void shouldPruneCompressedVariantsOfOutdatedResources() throws IOException {
+    File outdated = new File(directory, "0123456789abcdef0123.gz");
+    Files.write("outdated".getBytes(Charsets.UTF_8), outdated);
+    assertTrue(outdated.setLastModified(System.currentTimeMillis() - 60000L));
+
+    File resource = temporaryFolder.newFile("bundle.js");
+    Files.write(Strings.repeat("console.log('hello');\n", 100).getBytes(Charsets.UTF_8), resource);
+    when(webResourceLoader.getResource("/assets/bundle.js")).thenReturn(resource.toURI().toURL());
+    cache.fingerprint("/assets/bundle.js");
+    File[] variants = directory.listFiles();
+    assertEquals(2, variants.length);
+    for (File variant : variants) {
+      assertTrue(variant.setLastModified(System.currentTimeMillis() - 60000L));
+    }
+
+    cache.prune(System.currentTimeMillis());
+
+    assertFalse(outdated.exists());
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void shouldKeepFilesCreatedAfterStart() throws IOException {
+    long start = System.currentTimeMillis() - 60000L;
+    File recent = new File(directory, "0123456789abcdef0123.gz");
+    Files.write("recent".getBytes(Charsets.UTF_8), recent);
+
+    cache.prune(start);
+
+    assertTrue(recent.exists());
+  }
+}
@@ -1,6 +1,8 @@
 package sonia.scm;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import org.junit.Before;
 import org.junit.Rule;
@@ -15,13 +17,17 @@ import sonia.scm.plugin.UberWebResourceLoader;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -120,6 +126,127 @@ public class WebResourceServletTest {
     verify(response).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
   }
 
+  @Test
+  public void testDoGetWithMatchingETag() throws IOException {
+    when(request.getRequestURI()).thenReturn("/scm/README.txt");
+    ServletOutputStream output = mock(ServletOutputStream.class);
+    when(response.getOutputStream()).thenReturn(output);
+
+    File file = temporaryFolder.newFile();
+    Files.write("hello".getBytes(Charsets.UTF_8), file);
+    when(webResourceLoader.getResource("/README.txt")).thenReturn(file.toURI().toURL());
+
+    String path = new WebResourceCache(webResourceLoader, null).fingerprint("/README.txt");
+    when(request.getHeader("If-None-Match")).thenReturn("\"" + path.substring(path.indexOf('=') + 1) + "\"");
+    servlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(output, never()).write(anyInt());
+  }
+
+  @Test
+  public void testDoGetWithIfModifiedSince() throws IOException {
+    when(request.getRequestURI()).thenReturn("/scm/README.txt");
+    ServletOutputStream output = mock(ServletOutputStream.class);
+    when(response.getOutputStream()).thenReturn(output);
+
+    File file = temporaryFolder.newFile();
+    Files.write("hello".getBytes(Charsets.UTF_8), file);
+    assertTrue(file.setLastModified(1500000000000L));
+    when(webResourceLoader.getResource("/README.txt")).thenReturn(file.toURI().toURL());
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(1500000000999L);
+
+    servlet.doGet(request, response);
+
+    verify(response).setDateHeader("Last-Modified", 1500000000000L);
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(output, never()).write(anyInt());
+  }
+
+  @Test
+  public void testDoGetWithOutdatedIfModifiedSince() throws IOException {
+    when(request.getRequestURI()).thenReturn("/scm/README.txt");
+    TestingOutputServletOutputStream output = new TestingOutputServletOutputStream();
+    when(response.getOutputStream()).thenReturn(output);
+
+    File file = temporaryFolder.newFile();
+    Files.write("hello".getBytes(Charsets.UTF_8), file);
+    assertTrue(file.setLastModified(1500000000000L));
+    when(webResourceLoader.getResource("/README.txt")).thenReturn(file.toURI().toURL());
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(1400000000000L);
+
+    servlet.doGet(request, response);
+
+    verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals("hello", output.buffer.toString());
+  }
+
+  @Test
+  public void testDoGetWithFingerprint() throws IOException {
+    when(request.getRequestURI()).thenReturn("/scm/README.txt");
+    when(response.getOutputStream()).thenReturn(new TestingOutputServletOutputStream());
+
+    File file = temporaryFolder.newFile();
+    Files.write("hello".getBytes(Charsets.UTF_8), file);
+    when(webResourceLoader.getResource("/README.txt")).thenReturn(file.toURI().toURL());
+
+    String path = new WebResourceCache(webResourceLoader, null).fingerprint("/README.txt");
+    when(request.getParameter(WebResourceCache.FINGERPRINT_PARAMETER)).thenReturn(path.substring(path.indexOf('=') + 1));
+    servlet.doGet(request, response);
+
+    verify(response).setHeader("Cache-Control", WebResourceServlet.CACHE_CONTROL_IMMUTABLE);
+  }
+
+  @Test
+  public void testDoGetWithoutFingerprint() throws IOException {
+    when(request.getRequestURI()).thenReturn("/scm/README.txt");
+    when(response.getOutputStream()).thenReturn(new TestingOutputServletOutputStream());
+
+    File file = temporaryFolder.newFile();
+    Files.write("hello".getBytes(Charsets.UTF_8), file);
+    when(webResourceLoader.getResource("/README.txt")).thenReturn(file.toURI().toURL());
+
+    servlet.doGet(request, response);
+
+    verify(response).setHeader("Cache-Control", WebResourceServlet.CACHE_CONTROL_REVALIDATE);
+    verify(response).setHeader(eq("ETag"), anyString());
+  }
+
+  @Test
+  public void testDoGetWithPrecompressedVariant() throws IOException {
+    servlet = new WebResourceServlet(
+      pluginLoader, pushStateDispatcher, new WebResourceCache(webResourceLoader, temporaryFolder.newFolder())
+    );
+    when(request.getRequestURI()).thenReturn("/scm/assets/bundle.js");
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+    TestingOutputServletOutputStream output = new TestingOutputServletOutputStream();
+    when(response.getOutputStream()).thenReturn(output);
+
+    String content = Strings.repeat("console.log('hello');\n", 100);
+    File file = temporaryFolder.newFile("bundle.js");
+    Files.write(content.getBytes(Charsets.UTF_8), file);
+    when(webResourceLoader.getResource("/assets/bundle.js")).thenReturn(file.toURI().toURL());
+
+    servlet.doGet(request, response);
+
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).addHeader("Vary", "Accept-Encoding");
+    byte[] decompressed = ByteStreams.toByteArray(
+      new GZIPInputStream(new ByteArrayInputStream(output.buffer.toByteArray()))
+    );
+    assertEquals(content, new String(decompressed, Charsets.UTF_8));
+  }
+
+  @Test
+  public void testIsNotModified() {
+    assertTrue(WebResourceServlet.isNotModified("\"abc\"", "abc"));
+    assertTrue(WebResourceServlet.isNotModified("W/\"abc-gzip\"", "abc"));
+    assertTrue(WebResourceServlet.isNotModified("\"xyz\", \"abc\"", "abc"));
+    assertTrue(WebResourceServlet.isNotModified("*", "abc"));
+    assertFalse(WebResourceServlet.isNotModified("\"xyz\"", "abc"));
+    assertFalse(WebResourceServlet.isNotModified(null, "abc"));
+  }
+
   private static class TestingOutputServletOutputStream extends ServletOutputStream {
 
     private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
@@ -16,11 +16,13 @@ import org.mockito.junit.MockitoJUnitRunner;
 import sonia.scm.DisplayManager;
 import sonia.scm.group.DefaultGroupDisplayManager;
 import sonia.scm.group.Group;
+import sonia.scm.group.GroupSearchIndex;
 import sonia.scm.group.xml.XmlGroupDAO;
 import sonia.scm.store.ConfigurationStore;
 import sonia.scm.store.ConfigurationStoreFactory;
 import sonia.scm.user.DefaultUserDisplayManager;
 import sonia.scm.user.User;
+import sonia.scm.user.UserSearchIndex;
 import sonia.scm.user.xml.XmlUserDAO;
 import sonia.scm.web.RestDispatcher;
 import sonia.scm.web.VndMediaType;
@@ -71,8 +73,8 @@ public class AutoCompleteResourceTest {
     XmlGroupDAO groupDAO = new XmlGroupDAO(storeFactory);
     groupDao = spy(groupDAO);
     ReducedObjectModelToDtoMapperImpl mapper = new ReducedObjectModelToDtoMapperImpl();
-    DefaultUserDisplayManager userManager = new DefaultUserDisplayManager(this.userDao);
-    DefaultGroupDisplayManager groupManager = new DefaultGroupDisplayManager(groupDao);
+    DefaultUserDisplayManager userManager = new DefaultUserDisplayManager(this.userDao, new UserSearchIndex(this.userDao));
+    DefaultGroupDisplayManager groupManager = new DefaultGroupDisplayManager(groupDao, new GroupSearchIndex(groupDao));
     AutoCompleteResource autoCompleteResource = new AutoCompleteResource(mapper, userManager, groupManager);
     dispatcher.addSingletonResource(autoCompleteResource);
   }
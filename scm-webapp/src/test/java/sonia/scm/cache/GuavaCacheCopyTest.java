@@ -35,6 +35,11 @@ package sonia.scm.cache;
 //~--- non-JDK imports --------------------------------------------------------
 
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
 
 /**
  *
@@ -57,4 +62,76 @@ public class GuavaCacheCopyTest extends CacheCopyTestBase
   {
     return new GuavaCache(CacheBuilder.newBuilder().build(), strategy, "ka");
   }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testImmutableValueIsNotCopied()
+  {
+    GuavaCache<String, ImmutableObject> cache =
+      new GuavaCache(CacheBuilder.newBuilder().build(), CopyStrategy.READWRITE,
+        "ka");
+    ImmutableObject io = new ImmutableObject();
+
+    cache.put("a", io);
+    assertSame(io, cache.get("a"));
+    assertEquals(0, cache.getStatistics().getCopyCount());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRegisteredCopier()
+  {
+    CacheValueCopiers copiers =
+      new CacheValueCopiers(ImmutableSet.<CacheValueCopier>of(new MutableObjectCopier()));
+    GuavaCache<String, MutableObject> cache =
+      new GuavaCache(CacheBuilder.newBuilder().build(), CopyStrategy.READ,
+        copiers, "ka");
+
+    cache.put("a", new MutableObject(1));
+
+    MutableObject mo = cache.get("a");
+
+    assertEquals(2, mo.getVersion());
+    mo = cache.get("a");
+    assertEquals(2, mo.getVersion());
+
+    CacheStatistics statistics = cache.getStatistics();
+
+    assertEquals(2, statistics.getCopyCount());
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Value which opts out of copies.
+   */
+  private static class ImmutableObject implements ImmutableCacheValue {}
+
+  /**
+   * Copier which marks the copy with the next version.
+   */
+  private static class MutableObjectCopier
+    implements CacheValueCopier<MutableObject>
+  {
+
+    @Override
+    public Class<MutableObject> getType()
+    {
+      return MutableObject.class;
+    }
+
+    @Override
+    public MutableObject copy(MutableObject value)
+    {
+      return new MutableObject(value.getVersion() + 1);
+    }
+  }
 }
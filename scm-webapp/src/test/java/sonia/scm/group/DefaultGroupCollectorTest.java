@@ -8,15 +8,19 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.HandlerEventType;
 import sonia.scm.cache.MapCache;
 import sonia.scm.cache.MapCacheManager;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -89,6 +93,34 @@ class DefaultGroupCollectorTest {
       assertThat(groupNames).containsOnly("_authenticated", "heartOfGold", "fjordsOfAfrican");
     }
 
+    @Test
+    void shouldCollectGroupsOfManyPrincipals() {
+      Map<String, Set<String>> groups = collector.collectAll(Arrays.asList("dent", "trillian", "marvin"));
+
+      assertThat(groups).containsOnlyKeys("dent", "trillian", "marvin");
+      assertThat(groups.get("dent")).containsOnly("_authenticated", "g42", "fjordsOfAfrican");
+      assertThat(groups.get("trillian")).containsOnly("_authenticated", "heartOfGold", "fjordsOfAfrican");
+      assertThat(groups.get("marvin")).containsOnly("_authenticated");
+      verify(groupDAO, times(1)).getAll();
+    }
+
+    @Test
+    void shouldUpdateMembershipsFromEvents() {
+      collector.collect("trillian");
+
+      Group heartOfGold = new Group("xml", "heartOfGold", "zaphod");
+      collector.onEvent(new GroupEvent(HandlerEventType.MODIFY, heartOfGold, new Group("xml", "heartOfGold")));
+      collector.onEvent(new GroupEvent(HandlerEventType.CREATE, new Group("xml", "crew", "trillian", "marvin")));
+      collector.onEvent(new GroupEvent(HandlerEventType.DELETE, new Group("xml", "g42")));
+      collector.onEvent(new GroupEvent(HandlerEventType.BEFORE_DELETE, new Group("xml", "fjordsOfAfrican")));
+
+      assertThat(collector.collect("trillian")).containsOnly("_authenticated", "fjordsOfAfrican", "crew");
+      assertThat(collector.collect("zaphod")).containsOnly("_authenticated", "heartOfGold");
+      assertThat(collector.collect("marvin")).containsOnly("_authenticated", "crew");
+      assertThat(collector.collect("prefect")).containsOnly("_authenticated");
+      verify(groupDAO, times(1)).getAll();
+    }
+
     @Test
     void shouldCombineWithResolvers() {
       when(groupResolver.resolve("trillian")).thenReturn(ImmutableSet.of("awesome", "incredible"));
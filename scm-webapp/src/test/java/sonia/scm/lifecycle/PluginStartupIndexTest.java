@@ -0,0 +1,60 @@
+package sonia.scm.lifecycle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junitpioneer.jupiter.TempDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(TempDirectory.class)
+class PluginStartupIndexTest {
+
+  @Test
+  void shouldReturnDirectoryOfKnownArchive(@TempDirectory.TempDir Path directory) {
+    File file = directory.resolve("index.xml").toFile();
+
+    PluginStartupIndex index = PluginStartupIndex.read(file);
+    index.put("scm-git-plugin.smp", "abc", "scm-git-plugin");
+    index.write(file);
+
+    PluginStartupIndex reread = PluginStartupIndex.read(file);
+    assertThat(reread.getDirectory("scm-git-plugin.smp", "abc")).isEqualTo("scm-git-plugin");
+    assertThat(reread.getDirectory("scm-git-plugin.smp", "def")).isNull();
+    assertThat(reread.getDirectory("scm-hg-plugin.smp", "abc")).isNull();
+  }
+
+  @Test
+  void shouldReplaceEntryOfUpdatedArchive(@TempDirectory.TempDir Path directory) {
+    File file = directory.resolve("index.xml").toFile();
+
+    PluginStartupIndex index = PluginStartupIndex.read(file);
+    index.put("scm-git-plugin.smp", "abc", "scm-git-plugin");
+    index.put("scm-git-plugin.smp", "def", "scm-git-plugin");
+
+    assertThat(index.getDirectory("scm-git-plugin.smp", "abc")).isNull();
+    assertThat(index.getDirectory("scm-git-plugin.smp", "def")).isEqualTo("scm-git-plugin");
+  }
+
+  @Test
+  void shouldNotWriteUnmodifiedIndex(@TempDirectory.TempDir Path directory) {
+    File file = directory.resolve("index.xml").toFile();
+
+    PluginStartupIndex.read(file).write(file);
+
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  void shouldStartWithEmptyIndexForCorruptFile(@TempDirectory.TempDir Path directory) throws IOException {
+    Path file = directory.resolve("index.xml");
+    Files.write(file, "<startup-index".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(PluginStartupIndex.read(file.toFile()).getDirectory("scm-git-plugin.smp", "abc")).isNull();
+  }
+}
@@ -0,0 +1,140 @@
+package sonia.scm.repository;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HealthCheckerTest {
+
+  @Mock
+  private Subject subject;
+
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  private final InMemoryConfigurationStoreFactory storeFactory = InMemoryConfigurationStoreFactory.create();
+  private final List<String> checked = new CopyOnWriteArrayList<>();
+
+  private final Repository heartOfGold = repository("hog", 1000L);
+  private final Repository puzzle = repository("42", 1000L);
+  private final Repository transporter = repository("hvpt", 3000L);
+
+  @BeforeEach
+  void setUpSubject() {
+    ThreadContext.bind(subject);
+    lenient().when(subject.isPermitted(anyString())).thenReturn(true);
+    lenient().when(subject.associateWith(any(Runnable.class))).thenAnswer(invocation -> invocation.getArgument(0));
+  }
+
+  @AfterEach
+  void clearThreadContext() {
+    ThreadContext.unbindSubject();
+  }
+
+  @Test
+  void shouldCheckModifiedRepositoriesFirst() {
+    store().set(new HealthCheckTimestamps(ImmutableMap.of("hog", 1500L, "hvpt", 2000L)));
+    when(repositoryManager.getAll()).thenReturn(Arrays.asList(heartOfGold, transporter, puzzle));
+
+    createHealthChecker(HealthCheckResult.healthy()).checkAll();
+
+    // never checked and modified repositories first, afterwards the least recently checked
+    assertThat(checked).containsExactly("42", "hvpt", "hog");
+  }
+
+  @Test
+  void shouldStoreTimeOfLastCheck() {
+    when(repositoryManager.getAll()).thenReturn(Arrays.asList(heartOfGold, puzzle));
+
+    createHealthChecker(HealthCheckResult.healthy()).checkAll();
+
+    assertThat(store().get().getLastChecks()).containsOnlyKeys("hog", "42");
+  }
+
+  @Test
+  void shouldRemoveTimestampsOfDeletedRepositories() {
+    store().set(new HealthCheckTimestamps(ImmutableMap.of("deleted", 1500L)));
+    when(repositoryManager.getAll()).thenReturn(Arrays.asList(heartOfGold));
+
+    createHealthChecker(HealthCheckResult.healthy()).checkAll();
+
+    assertThat(store().get().getLastChecks()).containsOnlyKeys("hog");
+  }
+
+  @Test
+  void shouldReportProgress() {
+    when(repositoryManager.getAll()).thenReturn(Arrays.asList(heartOfGold, puzzle, transporter));
+
+    HealthChecker healthChecker = createHealthChecker(HealthCheckResult.unhealthy(new HealthCheckFailure("1", "broken", "broken")));
+    assertThat(healthChecker.getProgress().getStarted()).isZero();
+
+    healthChecker.checkAll();
+
+    HealthCheckProgress progress = healthChecker.getProgress();
+    assertThat(progress.isRunning()).isFalse();
+    assertThat(progress.getTotal()).isEqualTo(3);
+    assertThat(progress.getCompleted()).isEqualTo(3);
+    assertThat(progress.getUnhealthy()).isEqualTo(3);
+    assertThat(progress.getFinished()).isGreaterThanOrEqualTo(progress.getStarted());
+  }
+
+  @Test
+  void shouldStoreFailuresOfUnhealthyRepositories() {
+    when(repositoryManager.getAll()).thenReturn(Arrays.asList(heartOfGold));
+
+    createHealthChecker(HealthCheckResult.unhealthy(new HealthCheckFailure("1", "broken", "broken"))).checkAll();
+
+    assertThat(heartOfGold.isHealthy()).isFalse();
+    verify(repositoryManager).modify(heartOfGold);
+  }
+
+  @Test
+  void shouldSkipRepositoriesWithoutPermission() {
+    when(subject.isPermitted(anyString())).thenReturn(false);
+    when(repositoryManager.getAll()).thenReturn(Arrays.asList(heartOfGold, puzzle));
+
+    createHealthChecker(HealthCheckResult.healthy()).checkAll();
+
+    assertThat(checked).isEmpty();
+  }
+
+  private HealthChecker createHealthChecker(HealthCheckResult result) {
+    HealthCheck check = repository -> {
+      checked.add(repository.getId());
+      return result;
+    };
+    return new HealthChecker(ImmutableSet.of(check), repositoryManager, storeFactory, 1, 0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ConfigurationStore<HealthCheckTimestamps> store() {
+    return storeFactory.get("health-check", null);
+  }
+
+  private Repository repository(String id, long lastModified) {
+    Repository repository = new Repository(id, "git", "hitchhiker", id);
+    repository.setLastModified(lastModified);
+    return repository;
+  }
+}
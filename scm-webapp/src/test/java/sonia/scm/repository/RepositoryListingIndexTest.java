@@ -0,0 +1,184 @@
+package sonia.scm.repository;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.HandlerEventType;
+import sonia.scm.PageResult;
+import sonia.scm.cache.GuavaCache;
+import sonia.scm.cache.GuavaCacheConfiguration;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RepositoryListingIndexTest {
+
+  private static final Predicate<Repository> ALL = repository -> true;
+
+  @Mock
+  private Subject subject;
+
+  @Mock
+  private RepositoryDAO repositoryDAO;
+
+  private RepositoryListingIndex index;
+
+  private final Repository heartOfGold = repository("1", "hitchhiker", "heartOfGold", 3000L);
+  private final Repository puzzle = repository("2", "hitchhiker", "puzzle", 1000L);
+  private final Repository restaurant = repository("3", "milliways", "restaurant", 2000L);
+  private final Repository secret = repository("4", "secret", "vogon", 4000L);
+
+  @BeforeEach
+  void setUpIndex() {
+    ThreadContext.bind(subject);
+    lenient().when(subject.getPrincipal()).thenReturn("trillian");
+    lenient().when(subject.isPermitted(anyString()))
+      .thenAnswer(invocation -> !((String) invocation.getArgument(0)).endsWith(":4"));
+    lenient().when(repositoryDAO.getAll()).thenReturn(Arrays.asList(puzzle, secret, restaurant, heartOfGold));
+
+    index = new RepositoryListingIndex(
+      repositoryDAO, new GuavaCache<>(new GuavaCacheConfiguration(), RepositoryListingIndex.CACHE_NAME)
+    );
+  }
+
+  @AfterEach
+  void unbindSubject() {
+    ThreadContext.unbindSubject();
+  }
+
+  @Test
+  void shouldReturnSortedPageOfReadableRepositories() {
+    PageResult<Repository> page = index.getPage(ALL, ALL, "namespaceAndName", false, 0, 2);
+
+    assertThat(page.getOverallCount()).isEqualTo(3);
+    assertThat(page.getEntities()).extracting("name").containsExactly("heartOfGold", "puzzle");
+  }
+
+  @Test
+  void shouldReturnSecondPageInDescendingOrder() {
+    PageResult<Repository> page = index.getPage(ALL, ALL, "lastModified", true, 1, 2);
+
+    assertThat(page.getOverallCount()).isEqualTo(3);
+    assertThat(page.getEntities()).extracting("name").containsExactly("puzzle");
+  }
+
+  @Test
+  void shouldApplyFilterAndSupportedTypes() {
+    PageResult<Repository> page = index.getPage(
+      repository -> !"3".equals(repository.getId()),
+      repository -> repository.getName().contains("o"),
+      "name", false, 0, 10
+    );
+
+    assertThat(page.getOverallCount()).isEqualTo(1);
+    assertThat(page.getEntities()).extracting("name").containsExactly("heartOfGold");
+  }
+
+  @Test
+  void shouldReturnCopies() {
+    PageResult<Repository> page = index.getPage(ALL, ALL, "id", false, 0, 1);
+
+    Repository repository = page.getEntities().iterator().next();
+    assertThat(repository).isEqualTo(heartOfGold).isNotSameAs(heartOfGold);
+  }
+
+  @Test
+  void shouldCheckPermissionsOnlyOnce() {
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+    index.getPage(ALL, ALL, "creationDate", false, 1, 2);
+
+    verify(subject, times(4)).isPermitted(anyString());
+  }
+
+  @Test
+  void shouldCheckPermissionsAgainAfterAuthorizationChanged() {
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+    index.invalidateReadable("trillian");
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+
+    verify(subject, times(8)).isPermitted(anyString());
+  }
+
+  @Test
+  void shouldOnlyCheckPermissionsOfAffectedUserAgain() {
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+    when(subject.getPrincipal()).thenReturn("dent");
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+
+    index.invalidateReadable("dent");
+    when(subject.getPrincipal()).thenReturn("trillian");
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+    verify(subject, times(8)).isPermitted(anyString());
+
+    when(subject.getPrincipal()).thenReturn("dent");
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+    verify(subject, times(12)).isPermitted(anyString());
+  }
+
+  @Test
+  void shouldCheckPermissionsOfEveryUserAgainAfterGlobalChange() {
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+    index.invalidateReadable();
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+
+    verify(subject, times(8)).isPermitted(anyString());
+  }
+
+  @Test
+  void shouldNotCacheReadableRepositoriesIfInvalidatedDuringCollection() {
+    when(subject.isPermitted(anyString())).thenAnswer(invocation -> {
+      // the authorization is invalidated, while the outdated one is used to collect the readable repositories
+      index.invalidateReadable("trillian");
+      return true;
+    });
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+
+    when(subject.isPermitted(anyString()))
+      .thenAnswer(invocation -> !((String) invocation.getArgument(0)).endsWith(":4"));
+    PageResult<Repository> page = index.getPage(ALL, ALL, "name", false, 0, 10);
+
+    assertThat(page.getOverallCount()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldRebuildIndexAfterRepositoryEvent() {
+    index.getPage(ALL, ALL, "name", false, 0, 2);
+
+    Repository created = repository("5", "hitchhiker", "earth", 5000L);
+    when(repositoryDAO.getAll()).thenReturn(Arrays.asList(puzzle, secret, restaurant, heartOfGold, created));
+    index.onEvent(new RepositoryEvent(HandlerEventType.CREATE, created));
+
+    PageResult<Repository> page = index.getPage(ALL, ALL, "name", false, 0, 2);
+    assertThat(page.getOverallCount()).isEqualTo(4);
+    assertThat(page.getEntities()).extracting("name").containsExactly("earth", "heartOfGold");
+  }
+
+  @Test
+  void shouldNotFailForMissingValues() {
+    puzzle.setLastModified(null);
+
+    PageResult<Repository> page = index.getPage(ALL, ALL, "lastModified", false, 0, 1);
+
+    assertThat(page.getEntities()).extracting("name").containsExactly("puzzle");
+  }
+
+  private static Repository repository(String id, String namespace, String name, long lastModified) {
+    Repository repository = new Repository(id, "git", namespace, name);
+    repository.setLastModified(lastModified);
+    repository.setCreationDate(lastModified);
+    return repository;
+  }
+}
@@ -6,8 +6,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -32,7 +37,7 @@ class CronSchedulerTest {
   @Test
   void shouldScheduleWithClass() {
     when(task.hasNextRun()).thenReturn(true);
-    try (CronScheduler scheduler = new CronScheduler(taskFactory)) {
+    try (CronScheduler scheduler = new CronScheduler(taskFactory, new CronWorkerPools())) {
       scheduler.schedule("vep", TestingRunnable.class);
       verify(task).setFuture(any(Future.class));
     }
@@ -41,7 +46,7 @@ class CronSchedulerTest {
   @Test
   void shouldScheduleWithRunnable() {
     when(task.hasNextRun()).thenReturn(true);
-    try (CronScheduler scheduler = new CronScheduler(taskFactory)) {
+    try (CronScheduler scheduler = new CronScheduler(taskFactory, new CronWorkerPools())) {
       scheduler.schedule("vep", new TestingRunnable());
       verify(task).setFuture(any(Future.class));
     }
@@ -49,12 +54,28 @@ class CronSchedulerTest {
 
   @Test
   void shouldSkipSchedulingWithoutNextRun(){
-    try (CronScheduler scheduler = new CronScheduler(taskFactory)) {
+    try (CronScheduler scheduler = new CronScheduler(taskFactory, new CronWorkerPools())) {
       scheduler.schedule("vep", new TestingRunnable());
       verify(task, never()).setFuture(any(Future.class));
     }
   }
 
+  @Test
+  void shouldExecuteTaskAtNextRun() throws InterruptedException {
+    CronExpression expression = mock(CronExpression.class);
+    when(expression.calculateNextRun()).thenReturn(Optional.of(ZonedDateTime.now()), Optional.empty());
+    when(expression.shouldRun(any(ZonedDateTime.class))).thenReturn(true);
+
+    CountDownLatch latch = new CountDownLatch(1);
+    CronTask realTask = new CronTask("vep", expression, latch::countDown);
+    when(taskFactory.create(anyString(), any(Runnable.class))).thenReturn(realTask);
+
+    try (CronScheduler scheduler = new CronScheduler(taskFactory, new CronWorkerPools())) {
+      scheduler.schedule("vep", new TestingRunnable());
+      assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+  }
+
   private static class TestingRunnable implements Runnable {
 
     @Override
@@ -25,6 +25,9 @@ class CronTaskFactoryTest {
   @Mock
   private PrivilegedRunnableFactory runnableFactory;
 
+  @Mock
+  private CronWorkerPools workerPools;
+
   @InjectMocks
   private CronTaskFactory taskFactory;
 
@@ -8,8 +8,12 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -86,4 +90,90 @@ class CronTaskTest {
 
     verify(runnable, never()).run();
   }
+
+  @Test
+  void shouldSkipOverlappingRun() {
+    ZonedDateTime time = ZonedDateTime.now();
+    when(expression.calculateNextRun()).thenReturn(Optional.of(time));
+    when(expression.shouldRun(time)).thenReturn(true);
+
+    List<Runnable> queued = new ArrayList<>();
+    CronTask task = task(configuration(CronTaskConfiguration.OverlapPolicy.SKIP, CronTaskConfiguration.MisfirePolicy.FIRE_ONCE), queued::add);
+    task.run();
+    task.run();
+
+    assertThat(queued).hasSize(1);
+    assertThat(task.getStatistics().getOverlapCount()).isEqualTo(1);
+
+    queued.get(0).run();
+    task.run();
+
+    assertThat(queued).hasSize(2);
+  }
+
+  @Test
+  void shouldQueueOverlappingRun() {
+    ZonedDateTime time = ZonedDateTime.now();
+    when(expression.calculateNextRun()).thenReturn(Optional.of(time));
+    when(expression.shouldRun(time)).thenReturn(true);
+
+    List<Runnable> queued = new ArrayList<>();
+    CronTask task = task(configuration(CronTaskConfiguration.OverlapPolicy.ALLOW, CronTaskConfiguration.MisfirePolicy.FIRE_ONCE), queued::add);
+    task.run();
+    task.run();
+
+    assertThat(queued).hasSize(2);
+  }
+
+  @Test
+  void shouldSkipMisfiredRun() {
+    ZonedDateTime time = ZonedDateTime.now().minusMinutes(5);
+    when(expression.calculateNextRun()).thenReturn(Optional.of(time), Optional.of(ZonedDateTime.now().plusMinutes(1)));
+    when(expression.shouldRun(time)).thenReturn(true);
+
+    CronTask task = task(configuration(CronTaskConfiguration.OverlapPolicy.SKIP, CronTaskConfiguration.MisfirePolicy.SKIP), Runnable::run);
+    task.run();
+
+    verify(runnable, never()).run();
+    assertThat(task.getStatistics().getMisfireCount()).isEqualTo(1);
+    assertThat(task.isPending()).isTrue();
+  }
+
+  @Test
+  void shouldFireMisfiredRunOnce() {
+    ZonedDateTime time = ZonedDateTime.now().minusMinutes(5);
+    when(expression.calculateNextRun()).thenReturn(Optional.of(time), Optional.of(ZonedDateTime.now().plusMinutes(1)));
+    when(expression.shouldRun(time)).thenReturn(true);
+
+    CronTask task = task(configuration(CronTaskConfiguration.OverlapPolicy.SKIP, CronTaskConfiguration.MisfirePolicy.FIRE_ONCE), Runnable::run);
+    task.run();
+
+    verify(runnable).run();
+    assertThat(task.getStatistics().getMisfireCount()).isEqualTo(1);
+    assertThat(task.getStatistics().getLastLag()).isGreaterThanOrEqualTo(Duration.ofMinutes(5).toMillis());
+  }
+
+  @Test
+  void shouldCollectStatisticsOfFailedRuns() {
+    ZonedDateTime time = ZonedDateTime.now();
+    when(expression.calculateNextRun()).thenReturn(Optional.of(time));
+    when(expression.shouldRun(time)).thenReturn(true);
+    doThrow(new IllegalStateException("failed")).when(runnable).run();
+
+    CronTask task = task();
+    task.run();
+
+    CronTaskStatistics statistics = task.getStatistics();
+    assertThat(statistics.getRunCount()).isEqualTo(1);
+    assertThat(statistics.getFailureCount()).isEqualTo(1);
+    assertThat(task.isPending()).isTrue();
+  }
+
+  private CronTask task(CronTaskConfiguration configuration, Executor executor) {
+    return new CronTask("one", expression, runnable, configuration, executor);
+  }
+
+  private CronTaskConfiguration configuration(CronTaskConfiguration.OverlapPolicy overlapPolicy, CronTaskConfiguration.MisfirePolicy misfirePolicy) {
+    return new CronTaskConfiguration("one", 1, overlapPolicy, misfirePolicy, Duration.ofMinutes(1));
+  }
 }
@@ -51,6 +51,14 @@ class CronThreadFactoryTest {
     assertThat(one).isNotEqualTo(two);
   }
 
+  @Test
+  void shouldCreateThreadWithNameOfPool() {
+    try (CronThreadFactory threadFactory = new CronThreadFactory("gc")) {
+      Thread thread = threadFactory.newThread(doNothind);
+      assertThat(thread.getName()).isEqualTo("CronScheduler-gc-1");
+    }
+  }
+
   @Nested
   class ShiroTests {
 
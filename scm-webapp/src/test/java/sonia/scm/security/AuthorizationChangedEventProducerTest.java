@@ -94,9 +94,15 @@ public class AuthorizationChangedEventProducerTest {
     assertEquals(username, producer.event.getNameOfAffectedUser());
   }
 
+  private void assertGroupEventIsFired(String groupname){
+    assertNotNull(producer.event);
+    assertEquals(groupname, producer.event.getNameOfAffectedGroup());
+  }
+
   private void assertGlobalEventIsFired(){
     assertNotNull(producer.event);
     assertFalse(producer.event.isEveryUserAffected());
+    assertNull(producer.event.getNameOfAffectedGroup());
   }
 
   /**
@@ -164,11 +170,26 @@ public class AuthorizationChangedEventProducerTest {
   public void testOnRepositoryEvent()
   {
     Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setPermissions(Lists.newArrayList(new RepositoryPermission("test", singletonList("read"), false)));
     producer.onEvent(new RepositoryEvent(HandlerEventType.BEFORE_CREATE, repository));
     assertEventIsNotFired();
 
     producer.onEvent(new RepositoryEvent(HandlerEventType.CREATE, repository));
-    assertGlobalEventIsFired();
+    assertUserEventIsFired("test");
+  }
+
+  /**
+   * Tests {@link AuthorizationChangedEventProducer#onEvent(sonia.scm.repository.RepositoryEvent)} for a repository
+   * without permissions.
+   */
+  @Test
+  public void testOnRepositoryEventWithoutPermissions()
+  {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setPermissions(Lists.newArrayList());
+
+    producer.onEvent(new RepositoryEvent(HandlerEventType.DELETE, repository));
+    assertEventIsNotFired();
   }
 
  /**
@@ -197,7 +218,7 @@ public class AuthorizationChangedEventProducerTest {
 
     repositoryModified.setPermissions(Lists.newArrayList(new RepositoryPermission("test123", singletonList("read"), false)));
     producer.onEvent(new RepositoryModificationEvent(HandlerEventType.CREATE, repositoryModified, repository));
-    assertGlobalEventIsFired();
+    assertUserEventIsFired("test123");
 
     resetStoredEvent();
 
@@ -205,7 +226,7 @@ public class AuthorizationChangedEventProducerTest {
       Lists.newArrayList(new RepositoryPermission("test", singletonList("read"), true))
     );
     producer.onEvent(new RepositoryModificationEvent(HandlerEventType.CREATE, repositoryModified, repository));
-    assertGlobalEventIsFired();
+    assertGroupEventIsFired("test");
 
     resetStoredEvent();
 
@@ -213,7 +234,7 @@ public class AuthorizationChangedEventProducerTest {
       Lists.newArrayList(new RepositoryPermission("test", asList("read", "write"), false))
     );
     producer.onEvent(new RepositoryModificationEvent(HandlerEventType.CREATE, repositoryModified, repository));
-    assertGlobalEventIsFired();
+    assertUserEventIsFired("test");
 
     resetStoredEvent();
     repository.setPermissions(Lists.newArrayList(new RepositoryPermission("test", asList("read", "write"), false)));
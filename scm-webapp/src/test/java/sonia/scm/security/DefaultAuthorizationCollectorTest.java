@@ -45,30 +45,43 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import sonia.scm.HandlerEventType;
 import sonia.scm.SCMContext;
 import sonia.scm.cache.Cache;
 import sonia.scm.cache.CacheManager;
 import sonia.scm.group.GroupCollector;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryDAO;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.repository.RepositoryListingIndex;
+import sonia.scm.repository.RepositoryModificationEvent;
 import sonia.scm.repository.RepositoryPermission;
 import sonia.scm.repository.RepositoryRole;
+import sonia.scm.repository.RepositoryRoleEvent;
 import sonia.scm.repository.RepositoryTestData;
 import sonia.scm.user.User;
 import sonia.scm.user.UserTestData;
 
+import java.util.Collection;
+
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.anyObject;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -99,6 +112,9 @@ public class DefaultAuthorizationCollectorTest {
   @Mock
   private GroupCollector groupCollector;
 
+  @Mock
+  private RepositoryListingIndex listingIndex;
+
   private DefaultAuthorizationCollector collector;
 
   @Rule
@@ -110,7 +126,7 @@ public class DefaultAuthorizationCollectorTest {
   @Before
   public void setUp(){
     when(cacheManager.getCache(Mockito.any(String.class))).thenReturn(cache);
-    collector = new DefaultAuthorizationCollector(cacheManager, repositoryDAO, securitySystem, repositoryPermissionProvider, groupCollector);
+    collector = new DefaultAuthorizationCollector(cacheManager, repositoryDAO, securitySystem, repositoryPermissionProvider, groupCollector, listingIndex);
   }
 
   /**
@@ -329,6 +345,81 @@ public class DefaultAuthorizationCollectorTest {
 
     collector.invalidateCache(AuthorizationChangedEvent.createForUser("dent"));
     verify(cache).removeAll(any());
+
+    collector.invalidateCache(AuthorizationChangedEvent.createForGroup("crew"));
+    verify(cache, times(2)).removeAll(any());
+    verify(cache).clear();
+  }
+
+  /**
+   * Tests that the readable repositories of the listing index are invalidated after the authorization cache.
+   */
+  @Test
+  public void testInvalidateListingIndexAfterCache() {
+    InOrder inOrder = inOrder(cache, listingIndex);
+
+    collector.invalidateCache(AuthorizationChangedEvent.createForUser("dent"));
+    inOrder.verify(cache).removeAll(any());
+    inOrder.verify(listingIndex).invalidateReadable("dent");
+
+    collector.invalidateCache(AuthorizationChangedEvent.createForEveryUser());
+    inOrder.verify(cache).clear();
+    inOrder.verify(listingIndex).invalidateReadable();
+  }
+
+  /**
+   * Tests that the permission index is updated by repository events.
+   */
+  @Test
+  @SubjectAware(
+    configuration = "classpath:sonia/scm/shiro-001.ini"
+  )
+  public void testCollectAfterRepositoryEvents() {
+    authenticate(UserTestData.createTrillian(), "main");
+    Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+    heartOfGold.setId("one");
+    heartOfGold.setPermissions(Lists.newArrayList(new RepositoryPermission("trillian", asList("read", "pull"), false)));
+    when(repositoryDAO.getAll()).thenReturn(Lists.newArrayList(heartOfGold));
+
+    assertThat(collector.collect().getStringPermissions(), hasItem("repository:read,pull:one"));
+
+    Repository puzzle42 = RepositoryTestData.create42Puzzle();
+    puzzle42.setId("two");
+    puzzle42.setPermissions(Lists.newArrayList(new RepositoryPermission("main", singletonList("read"), true)));
+    collector.updatePermissionIndex(new RepositoryEvent(HandlerEventType.CREATE, puzzle42));
+
+    Repository modifiedHeartOfGold = heartOfGold.clone();
+    modifiedHeartOfGold.setPermissions(Lists.newArrayList(new RepositoryPermission("dent", singletonList("read"), false)));
+    collector.updatePermissionIndex(new RepositoryModificationEvent(HandlerEventType.MODIFY, modifiedHeartOfGold, heartOfGold));
+
+    Collection<String> permissions = collector.collect().getStringPermissions();
+    assertThat(permissions, hasItem("repository:read:two"));
+    assertThat(permissions, not(hasItem("repository:read,pull:one")));
+
+    collector.updatePermissionIndex(new RepositoryEvent(HandlerEventType.DELETE, puzzle42));
+    assertThat(collector.collect().getStringPermissions(), not(hasItem("repository:read:two")));
+    verify(repositoryDAO).getAll();
+  }
+
+  /**
+   * Tests that a changed repository role invalidates only the users and groups of the role.
+   */
+  @Test
+  public void testInvalidateCacheForRepositoryRole() {
+    Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+    heartOfGold.setId("one");
+    heartOfGold.setPermissions(Lists.newArrayList(
+      new RepositoryPermission("trillian", "user role", false),
+      new RepositoryPermission("crew", "user role", true)
+    ));
+    when(repositoryDAO.getAll()).thenReturn(Lists.newArrayList(heartOfGold));
+
+    collector.invalidateCache(new RepositoryRoleEvent(HandlerEventType.MODIFY, new RepositoryRole("user role", singletonList("read"), "xml")));
+    verify(cache, times(2)).removeAll(any());
+
+    collector.invalidateCache(new RepositoryRoleEvent(HandlerEventType.MODIFY, new RepositoryRole("other role", singletonList("read"), "xml")));
+    verify(cache, times(2)).removeAll(any());
+    verify(cache, never()).clear();
   }
 
 }
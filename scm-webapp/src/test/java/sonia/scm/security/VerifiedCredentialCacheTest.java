@@ -0,0 +1,130 @@
+package sonia.scm.security;
+
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.authc.credential.CredentialsMatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.HandlerEventType;
+import sonia.scm.cache.GuavaCache;
+import sonia.scm.cache.GuavaCacheConfiguration;
+import sonia.scm.user.UserEvent;
+import sonia.scm.user.UserTestData;
+
+import java.security.SecureRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class VerifiedCredentialCacheTest {
+
+  @Mock
+  private CredentialsMatcher delegate;
+
+  private GuavaCache<VerifiedCredentialCache.CacheKey, Boolean> cache;
+  private VerifiedCredentialCache credentialCache;
+  private CredentialsMatcher matcher;
+
+  @BeforeEach
+  void setUpCache() {
+    cache = new GuavaCache<>(new GuavaCacheConfiguration(), VerifiedCredentialCache.CACHE_NAME);
+    credentialCache = new VerifiedCredentialCache(cache, new SecureRandom());
+    matcher = credentialCache.wrap(delegate);
+  }
+
+  @Test
+  void shouldSkipVerificationOfCachedCredentials() {
+    when(delegate.doCredentialsMatch(any(), any())).thenReturn(true);
+
+    assertThat(matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"))).isTrue();
+    assertThat(matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"))).isTrue();
+
+    verify(delegate, times(1)).doCredentialsMatch(any(), any());
+  }
+
+  @Test
+  void shouldNotCacheWrongCredentials() {
+    when(delegate.doCredentialsMatch(any(), any())).thenReturn(false);
+
+    assertThat(matcher.doCredentialsMatch(token("trillian", "wrong"), info("trillian", "hash"))).isFalse();
+    assertThat(matcher.doCredentialsMatch(token("trillian", "wrong"), info("trillian", "hash"))).isFalse();
+
+    verify(delegate, times(2)).doCredentialsMatch(any(), any());
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void shouldVerifyOtherPasswordAndChangedHash() {
+    when(delegate.doCredentialsMatch(any(), any())).thenReturn(true);
+
+    matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"));
+    matcher.doCredentialsMatch(token("trillian", "other"), info("trillian", "hash"));
+    matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "changed"));
+
+    verify(delegate, times(3)).doCredentialsMatch(any(), any());
+  }
+
+  @Test
+  void shouldInvalidateCredentialsOfModifiedUser() {
+    when(delegate.doCredentialsMatch(any(), any())).thenReturn(true);
+    matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"));
+    matcher.doCredentialsMatch(token("dent", "secret"), info("dent", "hash"));
+
+    credentialCache.onEvent(new UserEvent(HandlerEventType.MODIFY, UserTestData.createTrillian()));
+
+    assertThat(cache.size()).isEqualTo(1);
+    matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"));
+    verify(delegate, times(3)).doCredentialsMatch(any(), any());
+  }
+
+  @Test
+  void shouldClearCacheIfEveryUserIsAffected() {
+    when(delegate.doCredentialsMatch(any(), any())).thenReturn(true);
+    matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"));
+    matcher.doCredentialsMatch(token("dent", "secret"), info("dent", "hash"));
+
+    credentialCache.onEvent(AuthorizationChangedEvent.createForEveryUser());
+
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void shouldOnlyInvalidateCredentialsOfAffectedUser() {
+    when(delegate.doCredentialsMatch(any(), any())).thenReturn(true);
+    matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"));
+    matcher.doCredentialsMatch(token("dent", "secret"), info("dent", "hash"));
+
+    credentialCache.onEvent(AuthorizationChangedEvent.createForUser("trillian"));
+
+    assertThat(cache.size()).isEqualTo(1);
+    matcher.doCredentialsMatch(token("dent", "secret"), info("dent", "hash"));
+    verify(delegate, times(2)).doCredentialsMatch(any(), any());
+  }
+
+  @Test
+  void shouldCountHits() {
+    when(delegate.doCredentialsMatch(any(), any())).thenReturn(true);
+
+    matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"));
+    matcher.doCredentialsMatch(token("trillian", "secret"), info("trillian", "hash"));
+
+    assertThat(credentialCache.getStatistics().getHitCount()).isEqualTo(1);
+    assertThat(credentialCache.getStatistics().getMissCount()).isEqualTo(1);
+  }
+
+  private UsernamePasswordToken token(String username, String password) {
+    return new UsernamePasswordToken(username, password);
+  }
+
+  private AuthenticationInfo info(String username, String hash) {
+    return new SimpleAuthenticationInfo(username, hash, DefaultRealm.REALM);
+  }
+}
@@ -84,7 +84,8 @@ public class DefaultUserManagerTest extends UserManagerTestBase
   @Override
   public UserManager createManager()
   {
-    return new DefaultUserManager(createXmlUserDAO());
+    UserDAO xmlUserDAO = createXmlUserDAO();
+    return new DefaultUserManager(xmlUserDAO, new UserSearchIndex(xmlUserDAO));
   }
 
   @Before
@@ -99,7 +100,7 @@ public class DefaultUserManagerTest extends UserManagerTestBase
 
   @Test(expected = InvalidPasswordException.class)
   public void shouldFailChangePasswordForWrongOldPassword() {
-    UserManager userManager = new DefaultUserManager(userDAO);
+    UserManager userManager = new DefaultUserManager(userDAO, new UserSearchIndex(userDAO));
 
     userManager.changePasswordForLoggedInUser("wrongPassword", "---");
   }
@@ -110,7 +111,7 @@ public class DefaultUserManagerTest extends UserManagerTestBase
 
     doNothing().when(userDAO).modify(userCaptor.capture());
 
-    UserManager userManager = new DefaultUserManager(userDAO);
+    UserManager userManager = new DefaultUserManager(userDAO, new UserSearchIndex(userDAO));
 
     userManager.changePasswordForLoggedInUser("oldEncrypted", "newEncrypted");
 
@@ -121,14 +122,14 @@ public class DefaultUserManagerTest extends UserManagerTestBase
   public void shouldFailOverwritePasswordForWrongType() {
     trillian.setType("wrongType");
 
-    UserManager userManager = new DefaultUserManager(userDAO);
+    UserManager userManager = new DefaultUserManager(userDAO, new UserSearchIndex(userDAO));
 
     userManager.overwritePassword("trillian", "---");
   }
 
   @Test(expected = NotFoundException.class)
   public void shouldFailOverwritePasswordForMissingUser() {
-    UserManager userManager = new DefaultUserManager(userDAO);
+    UserManager userManager = new DefaultUserManager(userDAO, new UserSearchIndex(userDAO));
 
     userManager.overwritePassword("notExisting", "---");
   }
@@ -139,7 +140,7 @@ public class DefaultUserManagerTest extends UserManagerTestBase
 
     doNothing().when(userDAO).modify(userCaptor.capture());
 
-    UserManager userManager = new DefaultUserManager(userDAO);
+    UserManager userManager = new DefaultUserManager(userDAO, new UserSearchIndex(userDAO));
 
     userManager.overwritePassword("trillian", "newEncrypted");
 
@@ -0,0 +1,143 @@
+package sonia.scm.user;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.HandlerEventType;
+import sonia.scm.search.SearchRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class UserSearchIndexTest {
+
+  private static final Predicate<User> ALL = user -> true;
+
+  @Mock
+  private UserDAO userDAO;
+
+  private UserSearchIndex index;
+
+  @BeforeEach
+  void setUpIndex() {
+    lenient().when(userDAO.getAll()).thenReturn(Arrays.asList(
+      new User("zaphod", "Zaphod Beeblebrox", "zaphod.beeblebrox@hitchhiker.com"),
+      new User("trillian", "Tricia McMillan", "tricia.mcmillan@hitchhiker.com"),
+      new User("tricia", "Tricia Marvin", "tricia@hitchhiker.com"),
+      new User("dent", "Arthur Dent", "arthur.dent@hitchhiker.com"),
+      new User("marvin", "Marvin", "paranoid.android@hitchhiker.com"),
+      new User("accident", "Accident", "accident@earth.com")
+    ));
+    index = new UserSearchIndex(userDAO);
+  }
+
+  @Test
+  void shouldRankNamePrefixesBeforeWordPrefixes() {
+    List<User> users = index.search("tri", 10, ALL);
+
+    assertThat(users).extracting("name").containsExactly("tricia", "trillian");
+
+    users = index.search("marvin", 10, ALL);
+
+    assertThat(users).extracting("name").containsExactly("marvin", "tricia");
+  }
+
+  @Test
+  void shouldRankEqualNameBeforeSubstrings() {
+    List<User> users = index.search("dent", 10, ALL);
+
+    assertThat(users).extracting("name").containsExactly("dent", "accident");
+
+    users = index.search("roid", 10, ALL);
+
+    assertThat(users).extracting("name").containsExactly("marvin");
+  }
+
+  @Test
+  void shouldFindSubstringsOfAllFieldsIgnoringCase() {
+    List<User> users = index.search("MCMILL", 10, ALL);
+
+    assertThat(users).extracting("name").containsExactly("trillian");
+
+    users = index.search("hitchhiker.com", 10, ALL);
+
+    assertThat(users).hasSize(5);
+  }
+
+  @Test
+  void shouldSupportWildcards() {
+    List<User> users = index.search("tri*mc", 10, ALL);
+
+    assertThat(users).extracting("name").containsExactly("trillian");
+
+    users = index.search("?ent", 10, ALL);
+
+    assertThat(users).extracting("name").containsExactly("dent", "accident");
+  }
+
+  @Test
+  void shouldStopFilteringIfLimitIsReached() {
+    List<String> tested = new ArrayList<>();
+
+    List<User> users = index.search("a", 2, user -> tested.add(user.getName()));
+
+    assertThat(users).hasSize(2);
+    assertThat(tested).hasSize(2);
+  }
+
+  @Test
+  void shouldOnlyReturnFilteredUsers() {
+    List<User> users = index.search("tri", 10, user -> !"tricia".equals(user.getName()));
+
+    assertThat(users).extracting("name").containsExactly("trillian");
+  }
+
+  @Test
+  void shouldPageLikeSearchUtil() {
+    SearchRequest request = new SearchRequest("hitchhiker", true, 2);
+    request.setStartWith(2);
+
+    List<User> users = index.search(request, ALL);
+
+    assertThat(users).extracting("name").containsExactly("marvin", "tricia");
+  }
+
+  @Test
+  void shouldUpdateIndexFromEvents() {
+    index.search("tri", 10, ALL);
+
+    User modified = new User("trillian", "Trillian Astra", "trillian@hitchhiker.com");
+    index.onEvent(new UserEvent(HandlerEventType.MODIFY, modified, new User("trillian")));
+    index.onEvent(new UserEvent(HandlerEventType.CREATE, new User("slarti", "Slartibartfast", "slarti@magrathea.com")));
+    index.onEvent(new UserEvent(HandlerEventType.DELETE, new User("tricia")));
+    index.onEvent(new UserEvent(HandlerEventType.BEFORE_DELETE, new User("dent")));
+
+    assertThat(index.search("mcmillan", 10, ALL)).isEmpty();
+    assertThat(index.search("astra", 10, ALL)).extracting("displayName").containsExactly("Trillian Astra");
+    assertThat(index.search("bart", 10, ALL)).extracting("name").containsExactly("slarti");
+    assertThat(index.search("tri", 10, ALL)).extracting("name").containsExactly("trillian");
+    assertThat(index.search("dent", 10, ALL)).extracting("name").containsExactly("dent", "accident");
+    verify(userDAO, times(1)).getAll();
+  }
+
+  @Test
+  void shouldCompactIndexAfterManyRemovals() {
+    index.search("tri", 10, ALL);
+
+    for (String name : Arrays.asList("zaphod", "trillian", "tricia", "accident")) {
+      index.onEvent(new UserEvent(HandlerEventType.DELETE, new User(name)));
+    }
+
+    assertThat(index.search("hitchhiker", 10, ALL)).extracting("name").containsExactly("dent", "marvin");
+  }
+}